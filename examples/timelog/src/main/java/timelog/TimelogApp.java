@@ -2,6 +2,7 @@ package timelog;
 
 import com.openkoda.App;
 import com.openkoda.core.customisation.CustomisationService;
+import com.openkoda.core.repository.pagination.CountModeJpaRepository;
 import jakarta.annotation.PostConstruct;
 import jakarta.inject.Inject;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -12,7 +13,7 @@ import timelog.repository.TimelogRepository;
 
 @SpringBootApplication(scanBasePackages = {"com.openkoda", "timelog"})
 @ComponentScan({"com.openkoda", "timelog"})
-@EnableJpaRepositories({"com.openkoda", "timelog.repository"})
+@EnableJpaRepositories(basePackages = {"com.openkoda", "timelog.repository"}, repositoryBaseClass = CountModeJpaRepository.class)
 @EntityScan({"com.openkoda", "timelog.model"})
 public class TimelogApp extends App {
 
@@ -23,6 +23,8 @@ package com.openkoda;
 
 import com.openkoda.core.customisation.BasicCustomisationService;
 import com.openkoda.core.helper.SpringProfilesHelper;
+import com.openkoda.core.lifecycle.StartupTimeline;
+import com.openkoda.core.repository.pagination.CountModeJpaRepository;
 import com.openkoda.model.component.Form;
 import com.openkoda.repository.FormRepository;
 import com.openkoda.service.dynamicentity.DynamicEntityDescriptor;
@@ -65,7 +67,7 @@ import static com.openkoda.service.dynamicentity.DynamicEntityRegistrationServic
 @EnableCaching//(mode = AdviceMode.ASPECTJ)
 @RestController
 @Configuration
-@EnableJpaRepositories(basePackages = {"com.openkoda","com.openkoda.dynamicentity.generated"})
+@EnableJpaRepositories(basePackages = {"com.openkoda","com.openkoda.dynamicentity.generated"}, repositoryBaseClass = CountModeJpaRepository.class)
 @EnableTransactionManagement
 public class App extends SpringBootServletInitializer {
     protected static ConfigurableApplicationContext context;
@@ -92,8 +94,11 @@ public class App extends SpringBootServletInitializer {
         }
         
         System.setProperty("jakarta.xml.bind.JAXBContextFactory", "com.sun.xml.bind.v2.ContextFactory");
+        long start = System.currentTimeMillis();
         context = SpringApplication.run(appClass, args);
+        StartupTimeline.record("Spring context, including the phases above", start);
         BasicCustomisationService customisationService = context.getBean(BasicCustomisationService.class);
+        printStartupTimeline();
     }
 
     protected static void initializationSafetyCheck(boolean isforce) {
@@ -120,6 +125,13 @@ public class App extends SpringBootServletInitializer {
     }
 
 
+    private static void printStartupTimeline() {
+        System.out.println("*********************************************************************");
+        System.out.println(" Startup timeline");
+        System.out.println(StartupTimeline.report());
+        System.out.println("*********************************************************************");
+    }
+
     public static void shutdown() {
         System.exit(0);
     }
@@ -144,18 +156,24 @@ public class App extends SpringBootServletInitializer {
                 forms = fr.findAll();
             }
             context.close();
+            StartupTimeline.reset();
             if (reloadAllForms) {
                 DynamicEntityRegistrationService.generateDynamicEntityDescriptors(forms, System.currentTimeMillis());
             }
 
             try {
+                long start = System.currentTimeMillis();
                 buildAndLoadDynamicClasses(App.class.getClassLoader());
+                StartupTimeline.record("Dynamic entity classes", start);
             } catch (IOException|URISyntaxException e) {
                 System.err.println(e.getMessage());
                 throw new RuntimeException(e);
             }
 
+            long start = System.currentTimeMillis();
             context = new SpringApplicationBuilder(mainClass).run(args.getSourceArgs());
+            StartupTimeline.record("Spring context, including the phases above", start);
+            printStartupTimeline();
         });
 
         thread.setDaemon(false);
@@ -2,7 +2,9 @@ package com.openkoda;
 
 import com.openkoda.core.helper.PrivilegeHelper;
 import com.openkoda.core.helper.SpringProfilesHelper;
+import com.openkoda.model.common.IdFamily;
 import com.openkoda.model.component.Form;
+import com.openkoda.service.dynamicentity.DynamicEntityClassCache;
 import com.openkoda.service.dynamicentity.DynamicEntityRegistrationService;
 import com.openkoda.service.upgrade.DbVersionService;
 import org.apache.commons.lang3.StringUtils;
@@ -66,6 +68,8 @@ public class JDBCApp {
         String currentDbVersionQuery = getProperty(appProps, "upgrade.db.current");
         String dbVersionInsertQuery = getProperty(appProps, "upgrade.db.insert");
         DbVersionService versionService = new DbVersionService(upgradeScript, currentDbVersionQuery, dbVersionInsertQuery, isForce);        
+        DynamicEntityClassCache.configure("true".equalsIgnoreCase(getProperty(appProps, "startup.cache.enabled")),
+                getProperty(appProps, "startup.cache.dir"), getProperty(appProps, "startup.cache.secret"));
         
         try (Connection con = DriverManager
                 .getConnection(
@@ -78,6 +82,7 @@ public class JDBCApp {
               if(!SpringProfilesHelper.isInitializationProfile()) {
                   // try to perform db upgrades - if applicable    
                   versionService.tryUpgade(con);
+                  alignIdSequences(con, appProps);
                   
                   // use stmt here
                   String sql = """
@@ -125,6 +130,38 @@ public class JDBCApp {
 
     }
     
+    /**
+     * Sets INCREMENT BY of the id sequences to the allocation sizes configured for each {@link IdFamily},
+     * as Hibernate refuses to start when they differ. Before the change the sequence is moved past
+     * the last block of ids allocated with the previous increment.
+     */
+    private static void alignIdSequences(Connection con, Properties appProps) throws SQLException {
+        for (IdFamily family : IdFamily.values()) {
+            int allocationSize = family.getAllocationSize(getProperty(appProps, "spring.jpa.properties." + family.getAllocationSetting()));
+            Long incrementBy = null;
+            Long lastValue = null;
+            try (PreparedStatement ps = con.prepareStatement("SELECT increment_by, last_value FROM pg_sequences WHERE schemaname = 'public' AND sequencename = ?")) {
+                ps.setString(1, family.sequenceName);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        incrementBy = rs.getLong(1);
+                        lastValue = (Long) rs.getObject(2);
+                    }
+                }
+            }
+            if (incrementBy == null || incrementBy == allocationSize) {
+                continue;
+            }
+            try (Statement stmt = con.createStatement()) {
+                if (lastValue != null) {
+                    stmt.execute(String.format("SELECT setval('public.%s', %d, false)", family.sequenceName, lastValue + incrementBy));
+                }
+                stmt.execute(String.format("ALTER SEQUENCE public.%s INCREMENT BY %d", family.sequenceName, allocationSize));
+            }
+            System.out.println(" Sequence " + family.sequenceName + " increment changed from " + incrementBy + " to " + allocationSize);
+        }
+    }
+
     public static String getProperty(Properties appProps, String property) {
         String value = appProps.getProperty(property);
         if(propertyAlternativesMap.containsKey(property)) {
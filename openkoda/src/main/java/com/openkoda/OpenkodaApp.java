@@ -1,6 +1,7 @@
 package com.openkoda;
 
 import com.openkoda.core.helper.SpringProfilesHelper;
+import com.openkoda.core.lifecycle.StartupTimeline;
 import com.openkoda.repository.NativeQueries;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -27,9 +28,14 @@ public class OpenkodaApp {
 
     public static void startOpenkodaApp(Class appClass, String[] args) throws IOException, ClassNotFoundException, URISyntaxException {
         setProfiles(args);
+        StartupTimeline.reset();
+        long start = System.currentTimeMillis();
         JDBCApp.main(args);
+        StartupTimeline.record("Database upgrade and dynamic entity descriptors", start);
         if(!SpringProfilesHelper.isInitializationProfile()) {
+            start = System.currentTimeMillis();
             buildAndLoadDynamicClasses(App.class.getClassLoader());
+            StartupTimeline.record("Dynamic entity classes", start);
         }
         App.startApp(appClass, args, true);
     }
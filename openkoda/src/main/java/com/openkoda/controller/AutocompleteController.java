@@ -0,0 +1,104 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.controller;
+
+import com.openkoda.core.security.HasSecurityRules;
+import com.openkoda.repository.SecureEntityDictionaryRepository;
+import com.openkoda.service.autocomplete.WebendpointAutocompleteIndex;
+import com.openkoda.service.autocomplete.WebendpointAutocompleteResponse;
+import jakarta.inject.Inject;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static com.openkoda.controller.common.URLConstants.*;
+
+/**
+ * Endpoints feeding code editor autocomplete.
+ * Webendpoint suggestions are served from {@link WebendpointAutocompleteIndex} with ETag, so that the browser
+ * gets 304 Not Modified when no ServerJs changed since the last fetch.
+ * Large entity dictionaries of form dropdowns are searched page by page with {@link SecureEntityDictionaryRepository#typeahead}.
+ */
+@RestController
+@RequestMapping({_HTML + _AUTOCOMPLETE})
+public class AutocompleteController extends ComponentProvider implements HasSecurityRules {
+
+    @Inject
+    private WebendpointAutocompleteIndex webendpointAutocompleteIndex;
+
+    @Inject
+    private SecureEntityDictionaryRepository secureEntityDictionaryRepository;
+
+    @PreAuthorize(CHECK_CAN_READ_BACKEND)
+    @GetMapping("/webendpoint")
+    public ResponseEntity<WebendpointAutocompleteResponse> getWebendpointSuggestions(WebRequest request) {
+        debug("[getWebendpointSuggestions]");
+        String etag = webendpointAutocompleteIndex.getETag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .eTag(etag)
+                .body(webendpointAutocompleteIndex.getResponse());
+    }
+
+    @PreAuthorize(CHECK_CAN_READ_BACKEND)
+    @GetMapping("/webendpoint/services")
+    public SortedMap<String, String> getServicesSuggestions(@RequestParam(value = "prefix", required = false) String prefix) {
+        debug("[getServicesSuggestions] {}", prefix);
+        return webendpointAutocompleteIndex.getServicesSuggestions(prefix);
+    }
+
+    @PreAuthorize(CHECK_CAN_READ_BACKEND)
+    @GetMapping("/webendpoint/imports")
+    public List<String> getImportSuggestions(@RequestParam(value = "prefix", required = false) String prefix) {
+        debug("[getImportSuggestions] {}", prefix);
+        return webendpointAutocompleteIndex.getImportSuggestions(prefix);
+    }
+
+    /**
+     * Entities are filtered by the secure predicate of the current user, so any authenticated user can search
+     */
+    @PreAuthorize(CHECK_IS_AUTHENTICATED)
+    @GetMapping(_DICTIONARY + "/{token}")
+    public ResponseEntity<Map<Object, String>> getDictionaryPage(@PathVariable("token") String token,
+                                                                 @RequestParam(value = "organizationId", required = false) Long organizationId,
+                                                                 @RequestParam(value = "id", required = false) Long id,
+                                                                 @RequestParam(value = "q", required = false) String search,
+                                                                 @RequestParam(value = "page", defaultValue = "0") int page,
+                                                                 @RequestParam(value = "size", defaultValue = "50") int size) {
+        debug("[getDictionaryPage] {} {}", token, search);
+        Map<Object, String> result = secureEntityDictionaryRepository.typeahead(token, organizationId, id, search, page, size);
+        return result != null ? ResponseEntity.ok(result) : ResponseEntity.notFound().build();
+    }
+}
@@ -22,19 +22,27 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 package com.openkoda.controller;
 
 import com.openkoda.controller.common.PageAttributes;
+import com.openkoda.core.configuration.WebSocketConfig;
 import com.openkoda.core.controller.generic.AbstractController;
 import com.openkoda.core.flow.Flow;
 import com.openkoda.core.flow.PageAttr;
 import com.openkoda.core.form.AbstractOrganizationRelatedEntityForm;
 import com.openkoda.core.form.CRUDControllerConfiguration;
 import com.openkoda.core.form.ReflectionBasedEntityForm;
+import com.openkoda.core.repository.pagination.CountMode;
+import com.openkoda.core.repository.pagination.CountModePageable;
+import com.openkoda.core.repository.pagination.PaginationHelper;
 import com.openkoda.core.security.HasSecurityRules;
 import com.openkoda.core.security.OrganizationUser;
 import com.openkoda.core.security.UserProvider;
+import com.openkoda.model.Privilege;
 import com.openkoda.model.PrivilegeBase;
 import com.openkoda.model.common.SearchableOrganizationRelatedEntity;
 import com.openkoda.model.file.File;
+import com.openkoda.repository.SecureEntityDictionaryRepository;
+import com.openkoda.service.csv.CsvImportProgress;
 import com.openkoda.service.dynamicentity.DynamicEntityRegistrationService;
+import jakarta.persistence.Table;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
@@ -50,10 +58,14 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import reactor.util.function.Tuple2;
 import reactor.util.function.Tuples;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.lang.reflect.Field;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
@@ -75,6 +87,8 @@ public class CRUDControllerHtml extends AbstractController implements HasSecurit
     public static final String OBJ_FILTER_PREFIX = "obj_filter_";
     @Value("${default.layout:main}")
     String defaultLayoutName;
+    @Value("${pagination.crud.count-mode:EXACT}")
+    CountMode defaultCountMode;
 
     /** GET request that displays list of instances of entity {@link CRUDControllerConfiguration#getEntityClass()} associated with a generic controller registered under {@param objKey}.
      * The list is restricted to the result of search with the search term {@param search}
@@ -85,6 +99,7 @@ public class CRUDControllerHtml extends AbstractController implements HasSecurit
      * @return
      */
     @SuppressWarnings("unchecked")
+    @Transactional(readOnly = true)
     @GetMapping(_ALL)
     //TODO Rule 1.2: All business logic delegation should be in Abstract Controller
     //TODO Rule 1.4 All methods in non-public controllers must have @PreAuthorize
@@ -122,7 +137,9 @@ public class CRUDControllerHtml extends AbstractController implements HasSecurit
             aPageable = PageRequest.of(aPageable.getPageNumber(), aPageable.getPageSize(), Sort.Direction.ASC, sortColumn);
         }
 
-        final Pageable finalPageable = aPageable;
+        final CountMode countMode = conf.getCountMode() != null ? conf.getCountMode() : defaultCountMode;
+        final Pageable finalPageable = CountModePageable.of(aPageable, countMode,
+                countMode == CountMode.CACHED ? PaginationHelper.countKey(request, objKey) : null);
         Map<String, Boolean> fieldColumnVisibility = new HashMap<>();
         return Flow.init(componentProvider)
                 .thenSet(searchTerm, a -> search)
@@ -296,6 +313,7 @@ public class CRUDControllerHtml extends AbstractController implements HasSecurit
                 .mav(a -> true, a -> false);
     }
 
+    @Transactional(readOnly = true)
     @GetMapping(_ID + _VIEW)
     //TODO Rule 1.2: All business logic delegation should be in Abstract Controller
     //TODO Rule 1.4 All methods in non-public controllers must have @PreAuthorize
@@ -356,6 +374,49 @@ public class CRUDControllerHtml extends AbstractController implements HasSecurit
         services.file.getFileContentAndPrepareResponse(report, true, false, response);
     }
 
+    /**
+     * Imports csv file into the table of a dynamic entity, see {@link com.openkoda.service.csv.DynamicEntityCsvImportService}.
+     * Progress is sent to websocket channel /queue/{obj}/{channelId}.
+     */
+    @PostMapping(_IMPORT + _CSV)
+    public ResponseEntity<Object> importCsv(
+            @PathVariable(name=ORGANIZATIONID, required = false) Long organizationId,
+            @PathVariable(name="obj", required=true) String objKey,
+            @RequestParam("file") MultipartFile csvFile,
+            @RequestParam(required = false, defaultValue = "false") boolean overwrite,
+            @RequestParam(required = false) String channelId
+    ) throws SQLException, IOException {
+        debug("[importCsv] {}", objKey);
+        CRUDControllerConfiguration conf = controllers.htmlCrudControllerConfigurationMap.getIgnoreCase(objKey);
+        if (notValidAccess(Privilege.canImportData, conf.getOrganizationId(), organizationId)
+                || notValidAccess(conf.getPostNewPrivilege(), conf.getOrganizationId(), organizationId)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Table table = (Table) conf.getEntityClass().getAnnotation(Table.class);
+        if (table == null || !DynamicEntityRegistrationService.dynamicEntityClasses.containsValue(conf.getEntityClass())) {
+            return ResponseEntity.badRequest().body("Import is available for dynamic entities only");
+        }
+        String channel = StringUtils.isNotBlank(channelId) ? WebSocketConfig.CHANNEL_PREFIX + objKey + "/" + channelId : null;
+        try (Reader reader = new InputStreamReader(csvFile.getInputStream(), StandardCharsets.UTF_8)) {
+            CsvImportProgress progress = services.csvImport.importCsv(reader, objKey, conf.getFrontendMappingDefinition(), table.name(), organizationId, overwrite,
+                    p -> {
+                        if (channel != null) {
+                            services.websocket.sendToChannel(channel, p.getPhase() == CsvImportProgress.Phase.FAILED ? Map.of("error", p.toString()) : Map.of("result", p.toString()));
+                        }
+                    });
+            if (progress.getPhase() == CsvImportProgress.Phase.DONE) {
+                // rows are promoted with plain sql, bypassing PropertyChangeInterceptor
+                SecureEntityDictionaryRepository.invalidateDictionaries(Set.of(conf.getEntityClass()));
+            }
+            if (channel != null && !progress.getErrors().isEmpty()) {
+                services.websocket.sendToChannel(channel, Map.of("error", String.join("\n", progress.getErrors())));
+            }
+            return progress.getPhase() == CsvImportProgress.Phase.DONE
+                    ? ResponseEntity.ok(progress)
+                    : ResponseEntity.unprocessableEntity().body(progress);
+        }
+    }
+
     private boolean notValidAccess(PrivilegeBase privilege, Long confOrganizationId, Long organizationId){
         return !hasGlobalOrOrgPrivilege(privilege, organizationId);
     }
@@ -22,11 +22,14 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 package com.openkoda.controller;
 
 import com.openkoda.core.job.JobsScheduler;
+import com.openkoda.core.repository.pagination.CountMode;
+import com.openkoda.core.repository.pagination.PageCount;
 import com.openkoda.model.common.SearchableEntity;
 import com.openkoda.model.common.SearchableRepositoryMetadata;
 import com.openkoda.repository.SearchableRepositories;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -50,9 +53,10 @@ public class GlobalSearchController extends AbstractGlobalSearchController {
      * @param search
      * @return
      */
+    @Transactional(readOnly = true)
     @GetMapping(value = _SEARCH)
     //TODO Rule 1.4 All methods in non-public controllers must have @PreAuthorize
-    public Object getSearchResult(@Qualifier("search") Pageable searchPageable,
+    public Object getSearchResult(@Qualifier("search") @PageCount(CountMode.ESTIMATED) Pageable searchPageable,
                                   @RequestParam(required = false, defaultValue = "", name = "search_search") String search) {
         debug("[getSearchResult] {}", search);
         return findSearchResult(searchPageable, search)
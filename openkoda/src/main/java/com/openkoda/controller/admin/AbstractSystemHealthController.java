@@ -28,9 +28,38 @@ import com.openkoda.core.flow.PageModelMap;
 
 public class AbstractSystemHealthController extends AbstractController {
 
+    private static final int PROFILER_METHODS_SHOWN = 30;
+
     protected PageModelMap getSystemHealth(){
         return Flow.init()
                 .thenSet(systemHealthStatus, a -> services.systemStatus.statusNow())
+                .thenSet(profilerSnapshot, a -> services.profiler.snapshot(PROFILER_METHODS_SHOWN))
+                .execute();
+    }
+
+    protected PageModelMap getProfiler(){
+        return Flow.init()
+                .thenSet(profilerSnapshot, a -> services.profiler.snapshot(PROFILER_METHODS_SHOWN))
+                .execute();
+    }
+
+    protected PageModelMap setProfilerSamplingRate(double samplingRate){
+        return Flow.init()
+                .then(a -> {
+                    services.profiler.setSamplingRate(samplingRate);
+                    return samplingRate;
+                })
+                .thenSet(profilerSnapshot, a -> services.profiler.snapshot(PROFILER_METHODS_SHOWN))
+                .execute();
+    }
+
+    protected PageModelMap resetProfiler(){
+        return Flow.init()
+                .then(a -> {
+                    services.profiler.reset();
+                    return true;
+                })
+                .thenSet(profilerSnapshot, a -> services.profiler.snapshot(PROFILER_METHODS_SHOWN))
                 .execute();
     }
     protected PageModelMap validate(){
@@ -39,6 +68,19 @@ public class AbstractSystemHealthController extends AbstractController {
                 .execute();
     }
 
+    protected PageModelMap getIndexAdvice(){
+        return Flow.init()
+                .thenSet(indexAdvice, a -> services.databaseIndex.advise())
+                .execute();
+    }
+
+    protected PageModelMap provisionIndexes(){
+        return Flow.init()
+                .then(a -> services.databaseIndex.startProvisioning())
+                .thenSet(indexAdvice, a -> services.databaseIndex.advise())
+                .execute();
+    }
+
     protected PageModelMap getThreads(){
         return Flow.init()
                .thenSet(serverJsThreads,  a ->ServerJSProcessRunner.getServerJsThreads())
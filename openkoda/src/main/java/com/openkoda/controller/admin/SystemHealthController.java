@@ -23,9 +23,13 @@ package com.openkoda.controller.admin;
 
 import com.openkoda.App;
 import com.openkoda.core.flow.Flow;
+import com.openkoda.core.profiler.Profiler;
 import com.openkoda.core.security.HasSecurityRules;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.ModelAndView;
@@ -52,6 +56,61 @@ public class SystemHealthController extends AbstractSystemHealthController imple
                 .mav("system-health::database-validation");
     }
 
+    @PreAuthorize(CHECK_CAN_READ_SUPPORT_DATA)
+    @GetMapping(_SYSTEM_HEATH + _PROFILER)
+    public Object profiler() {
+        debug("[profiler]");
+        return getProfiler()
+                .mav("system-health::profiler");
+    }
+
+    /**
+     * Exports all collected profiler statistics as a JSON file
+     */
+    @PreAuthorize(CHECK_CAN_READ_SUPPORT_DATA)
+    @GetMapping(value = _SYSTEM_HEATH + _PROFILER + _EXPORT, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Profiler.Snapshot> exportProfiler() {
+        debug("[exportProfiler]");
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"profiler.json\"")
+                .body(services.profiler.snapshot());
+    }
+
+    @PreAuthorize(CHECK_CAN_MANAGE_BACKEND)
+    @PostMapping(_SYSTEM_HEATH + _PROFILER)
+    public Object profilerSamplingRate(@RequestParam("samplingRate") double samplingRate) {
+        debug("[profilerSamplingRate] {}", samplingRate);
+        return setProfilerSamplingRate(samplingRate)
+                .mav("system-health::profiler");
+    }
+
+    @PreAuthorize(CHECK_CAN_MANAGE_BACKEND)
+    @PostMapping(_SYSTEM_HEATH + _PROFILER + _RESET)
+    public Object profilerReset() {
+        debug("[profilerReset]");
+        return resetProfiler()
+                .mav("system-health::profiler");
+    }
+
+    @PreAuthorize(CHECK_CAN_READ_SUPPORT_DATA)
+    @GetMapping(_SYSTEM_HEATH + _INDEXES)
+    public Object indexes() {
+        debug("[indexes]");
+        return getIndexAdvice()
+                .mav("system-health::indexes");
+    }
+
+    /**
+     * Starts creating missing indexes in background, the page shows that provisioning is in progress
+     */
+    @PreAuthorize(CHECK_CAN_MANAGE_BACKEND)
+    @PostMapping(_SYSTEM_HEATH + _INDEXES + _PROVISION)
+    public Object indexesProvision() {
+        debug("[indexesProvision]");
+        return provisionIndexes()
+                .mav("system-health::indexes");
+    }
+
     @PreAuthorize(CHECK_CAN_READ_BACKEND)
     @GetMapping(_THREAD)
     public Object threads() {
@@ -37,6 +37,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import javax.inject.Inject;
@@ -54,6 +55,7 @@ abstract public class CRUDApiController<E extends SearchableOrganizationRelatedE
         this.key = key;
     }
 
+    @Transactional(readOnly = true)
     @GetMapping(value=_ALL, produces=MediaType.APPLICATION_JSON_VALUE)
     public Object getAll(
             @PathVariable(name=ORGANIZATIONID, required = false) Long organizationId,
@@ -72,6 +74,7 @@ abstract public class CRUDApiController<E extends SearchableOrganizationRelatedE
                 .getAsMap(genericTableViewMap);
     }
 
+    @Transactional(readOnly = true)
     @GetMapping(value = "{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public Object settings(
             @PathVariable(name = ID) Long objectId,
@@ -27,12 +27,14 @@ import com.openkoda.core.flow.BasePageAttributes;
 import com.openkoda.core.flow.PageAttr;
 import com.openkoda.core.flow.PageModelMap;
 import com.openkoda.core.flow.mbean.LoggingEntriesStack;
+import com.openkoda.core.profiler.Profiler;
 import com.openkoda.core.form.AbstractForm;
 import com.openkoda.core.form.AbstractOrganizationRelatedEntityForm;
 import com.openkoda.core.form.FrontendMappingDefinition;
 import com.openkoda.core.form.FrontendMappingFieldDefinition;
 import com.openkoda.core.helper.ReadableCode;
 import com.openkoda.core.repository.common.ProfileSettingsRepository;
+import com.openkoda.core.service.system.DatabaseIndexService;
 import com.openkoda.dto.CanonicalObject;
 import com.openkoda.dto.OrganizationDto;
 import com.openkoda.dto.OrganizationRelatedObject;
@@ -177,7 +179,9 @@ public interface PageAttributes extends BasePageAttributes, ReadableCode {
     PageAttr<String> notificationMessage = new PageAttr<>("notificationMessage");
     PageAttr<String> menuItem = new PageAttr<>("menuItem");
     PageAttr<SystemHealthStatus> systemHealthStatus = new PageAttr<>("systemHealthStatus");
+    PageAttr<Profiler.Snapshot> profilerSnapshot = new PageAttr<>("profilerSnapshot");
     PageAttr<String> databaseUpdateScript = new PageAttr<>("databaseUpdateScript");
+    PageAttr<DatabaseIndexService.Advice> indexAdvice = new PageAttr<>("indexAdvice");
     PageAttr<CanonicalObject> canonicalObject = new PageAttr<>("canonicalObject");
 
     PageAttr<Integer> unreadNotificationsNumber = new PageAttr<>("unreadNotificationsNumber");
@@ -142,12 +142,18 @@ public interface URLConstants {
     String _MEMBER = "/" + MEMBER;
     String _FILE = "/" + FILE;
     String _WEBENDPOINT = "/" + WEBENDPOINT;
+    String AUTOCOMPLETE = "autocomplete";
+    String _AUTOCOMPLETE = "/" + AUTOCOMPLETE;
+    String DICTIONARY = "dictionary";
+    String _DICTIONARY = "/" + DICTIONARY;
     String _PAGEBUILDER = "/" + PAGEBUILDER;
     String _SERVERJS = "/" + SERVERJS;
     String _ORGANIZATION = "/" + ORGANIZATION;
     String _EMAIL_CONFIG = "/" + EMAIL_CONFIG;
     String _DASHBOARD = "/" + DASHBOARD;
     String _HISTORY = "/" + HISTORY;
+    String _PURGE = "/purge";
+    String _CANCEL = "/cancel";
     String _EVENTS = "/" + EVENTS;
     String _TEST = "/" + TEST;
     String _INVITE = "/" + INVITE;
@@ -203,6 +209,11 @@ public interface URLConstants {
     String _SYSTEM_HEATH = "/" + SYSTEM_HEATH;
     String VALIDATE = "validate";
     String _VALIDATE = "/" + VALIDATE;
+    String PROFILER = "profiler";
+    String _PROFILER = "/" + PROFILER;
+    String INDEXES = "indexes";
+    String _INDEXES = "/" + INDEXES;
+    String _PROVISION = "/provision";
     String THREAD = "thread";
     String _THREAD = "/" + THREAD;
     String _THREAD_ID_INTERRUPT = _THREAD + _ID + _INTERRUPT;
@@ -43,7 +43,7 @@ public class AbstractNotificationController extends AbstractController {
         Optional<OrganizationUser> user = UserProvider.getFromContext();
         Set<Long> organizationIds = user.get().getOrganizationIds();
         return Flow.init()
-                .thenSet(notificationPage, a -> repositories.unsecure.notification.findAll(userId, organizationIds, notificationPageable))
+                .thenSet(notificationPage, a -> repositories.unsecure.notification.findPage(userId, organizationIds, notificationPageable))
                 .execute();
     }
 
@@ -54,7 +54,7 @@ public class AbstractNotificationController extends AbstractController {
     protected PageModelMap getAllNotifications(Long userId, Long organizationId, Pageable notificationPageable) {
         debug("[getAllNotifications] UserId: {} orgId: {}", userId, organizationId);
         return Flow.init()
-                .thenSet(notificationPage, a -> repositories.unsecure.notification.findAll(userId, Collections.singleton(organizationId), notificationPageable))
+                .thenSet(notificationPage, a -> repositories.unsecure.notification.findPage(userId, Collections.singleton(organizationId), notificationPageable))
                 .execute();
     }
 
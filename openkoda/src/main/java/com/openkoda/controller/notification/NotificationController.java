@@ -21,6 +21,8 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 package com.openkoda.controller.notification;
 
+import com.openkoda.core.repository.pagination.CountMode;
+import com.openkoda.core.repository.pagination.PageCount;
 import com.openkoda.core.security.HasSecurityRules;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.Pageable;
@@ -45,7 +47,7 @@ public class NotificationController extends AbstractNotificationController imple
      */
     @PreAuthorize(CHECK_IS_THIS_USERID)
     @RequestMapping(_NOTIFICATION + _USERID + _ALL)
-    public Object openAllNotifications(@PathVariable(USERID) Long userId, @Qualifier("notification") Pageable notificationPageable) {
+    public Object openAllNotifications(@PathVariable(USERID) Long userId, @Qualifier("notification") @PageCount(CountMode.SLICE) Pageable notificationPageable) {
         debug("[openAllNotifications] UserId: {} ", userId);
         return getAllNotifications(userId, notificationPageable).mav("notification-all");
     }
@@ -56,7 +58,7 @@ public class NotificationController extends AbstractNotificationController imple
      */
     @PreAuthorize(CHECK_IS_THIS_USERID)
     @RequestMapping(_ORGANIZATION_ORGANIZATIONID + _NOTIFICATION + _USERID + _ALL)
-    public Object openAllNotifications(@PathVariable(ORGANIZATIONID) Long organizationId, @PathVariable(USERID) Long userId, @Qualifier("notification") Pageable notificationPageable) {
+    public Object openAllNotifications(@PathVariable(ORGANIZATIONID) Long organizationId, @PathVariable(USERID) Long userId, @Qualifier("notification") @PageCount(CountMode.SLICE) Pageable notificationPageable) {
         debug("[openAllNotifications] UserId: {} OrgId: {}", userId, organizationId);
         return getAllNotifications(userId, organizationId, notificationPageable).mav("notification-all");
     }
@@ -32,6 +32,7 @@ import com.openkoda.form.InviteUserForm;
 import com.openkoda.form.OrganizationForm;
 import com.openkoda.model.Organization;
 import com.openkoda.model.Privilege;
+import com.openkoda.repository.specifications.OrganizationSpecifications;
 import com.openkoda.repository.specifications.UserSpecifications;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -64,7 +65,7 @@ public class AbstractOrganizationController extends AbstractController implement
         Pageable finalAPageable = aPageable;
         return Flow.init()
                 .thenSet(organizationPage, a -> repositories.secure.organization.search(
-                        aSearchTerm, null, aSpecification, finalAPageable))
+                        aSearchTerm, null, Specification.where(OrganizationSpecifications.notPurged()).and(aSpecification), finalAPageable))
                 .execute();
     }
 
@@ -143,7 +144,6 @@ public class AbstractOrganizationController extends AbstractController implement
         return Flow.init()
                 .thenSet(organizationEntity, a -> repositories.unsecure.organization.findOne(organizationId))
                 .then(a -> services.organization.markSchemaAsDeleted(organizationId, a.model.get(organizationEntity).getAssignedDatasource()))
-                .then(a -> services.organization.dropSchemaConstraints(organizationId, a.result, a.model.get(organizationEntity).getAssignedDatasource()))
                 .then(a -> services.organization.removeOrganization(organizationId))
                 .execute();
     }
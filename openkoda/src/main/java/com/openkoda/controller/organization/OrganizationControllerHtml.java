@@ -24,6 +24,7 @@ package com.openkoda.controller.organization;
 import com.openkoda.form.GlobalOrgRoleForm;
 import com.openkoda.form.InviteUserForm;
 import com.openkoda.form.OrganizationForm;
+import com.openkoda.model.OrganizationPurge;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -182,6 +183,24 @@ public class OrganizationControllerHtml extends AbstractOrganizationController {
                 .mav( a -> true, a -> false);
     }
 
+    /**
+     * Progress of the background removal of the organization
+     */
+    @PreAuthorize(CHECK_CAN_MANAGE_ORG_DATA)
+    @GetMapping(_ORGANIZATIONID + _PURGE)
+    public Object getOrganizationPurge(@PathVariable(ORGANIZATIONID) Long organizationId){
+        debug("[getOrganizationPurge] organizationId {}", organizationId);
+        return services.organizationPurge.getPurge(organizationId);
+    }
+
+    @PreAuthorize(CHECK_CAN_MANAGE_ORG_DATA)
+    @PostMapping(_ORGANIZATIONID + _PURGE + _CANCEL)
+    public Object cancelOrganizationPurge(@PathVariable(ORGANIZATIONID) Long organizationId){
+        debug("[cancelOrganizationPurge] organizationId {}", organizationId);
+        OrganizationPurge purge = services.organizationPurge.getPurge(organizationId);
+        return purge != null && services.organizationPurge.cancel(purge.getId());
+    }
+
     @PreAuthorize(CHECK_CAN_MANAGE_ORG_DATA)
     @GetMapping(_ORGANIZATIONID + _RULE_LINE + "/{type}")
     public Object getStatementLineForm(@PathVariable(ORGANIZATIONID) Long organizationId, @PathVariable("type") String type,
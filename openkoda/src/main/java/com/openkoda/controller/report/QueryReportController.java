@@ -18,6 +18,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.orm.jpa.JpaSystemException;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
@@ -62,6 +63,7 @@ public class QueryReportController extends AbstractController implements HasSecu
                 .mav(a -> a.get(reportId), a -> br.getFieldError().getField());
     }
 
+    @Transactional(readOnly = true)
     @PostMapping(_QUERY)
     @PreAuthorize(CHECK_CAN_CREATE_REPORTS)
     public Object runQuery(@PathVariable(name=ORGANIZATIONID, required = false) Long organizationId,
@@ -135,6 +137,7 @@ public class QueryReportController extends AbstractController implements HasSecu
         services.file.getFileContentAndPrepareResponse(report, true, false, response);
     }
 
+    @Transactional(readOnly = true)
     @GetMapping(_ID)
     @PreAuthorize(CHECK_CAN_READ_REPORTS)
     public Object getReport(@PathVariable(name=ORGANIZATIONID, required = false) Long organizationId,
@@ -23,12 +23,18 @@ package com.openkoda.core.audit;
 
 import com.openkoda.core.flow.LoggingComponent;
 import com.openkoda.core.helper.ApplicationContextProvider;
+import com.openkoda.repository.SecureEntityDictionaryRepository;
+import org.hibernate.Hibernate;
 import org.hibernate.Interceptor;
 import org.hibernate.Transaction;
 import org.hibernate.type.Type;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -65,6 +71,7 @@ public class PropertyChangeInterceptor implements Interceptor, LoggingComponent
    public boolean onFlushDirty(Object entity, Object id, Object[] currentState, Object[] previousState, String[] propertyNames,
             Type[] types) {
       debug("[onFlushDirty]");
+      ModifiedEntityClasses.add(Hibernate.getClass(entity));
       return getAuditInterceptor().onFlushDirty( auditMap , entity , id , currentState , previousState , propertyNames , types );
    }
 
@@ -74,6 +81,7 @@ public class PropertyChangeInterceptor implements Interceptor, LoggingComponent
    @Override
    public boolean onSave(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types) {
       debug("[onSave]");
+      ModifiedEntityClasses.add(Hibernate.getClass(entity));
       return getAuditInterceptor().onSave( auditMap , entity , id , state , propertyNames , types );
    }
 
@@ -83,6 +91,7 @@ public class PropertyChangeInterceptor implements Interceptor, LoggingComponent
    @Override
    public void onDelete(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types) {
       debug("[onDelete]");
+      ModifiedEntityClasses.add(Hibernate.getClass(entity));
       getAuditInterceptor().onDelete( auditMap , entity , id , state , propertyNames , types );
    }
 
@@ -105,4 +114,48 @@ public class PropertyChangeInterceptor implements Interceptor, LoggingComponent
       return ApplicationContextProvider.getContext().getBean( AuditInterceptor.class );
    }
 
+   /**
+    * Registers entities written by statements which bypass Hibernate, so that their cached dictionaries are dropped
+    * after the current transaction completes, same as for entities written through the entity manager
+    * (immediately when there is no transaction).
+    */
+   public static void entityClassModified(Class<?> entityClass) {
+      ModifiedEntityClasses.add( entityClass );
+   }
+
+   /**
+    * Classes of entities written within a transaction, registered with the transaction on its first write.
+    * The interceptor is shared by all sessions, so the classes are kept per transaction, not in the interceptor.
+    * Cached dictionaries of the classes are dropped after commit or rollback, as they could have been read after
+    * flush within the transaction.
+    */
+   static class ModifiedEntityClasses implements TransactionSynchronization {
+
+      final Set<Class<?>> entityClasses = new HashSet<>();
+
+      static void add(Class<?> entityClass) {
+         if ( !TransactionSynchronizationManager.isSynchronizationActive() ) {
+            SecureEntityDictionaryRepository.invalidateDictionaries( Set.of( entityClass ) );
+            return;
+         }
+         current().entityClasses.add( entityClass );
+      }
+
+      static ModifiedEntityClasses current() {
+         for ( TransactionSynchronization s : TransactionSynchronizationManager.getSynchronizations() ) {
+            if ( s instanceof ModifiedEntityClasses m ) {
+               return m;
+            }
+         }
+         ModifiedEntityClasses m = new ModifiedEntityClasses();
+         TransactionSynchronizationManager.registerSynchronization( m );
+         return m;
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+         SecureEntityDictionaryRepository.invalidateDictionaries( entityClasses );
+      }
+   }
+
 }
@@ -21,12 +21,11 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 package com.openkoda.core.audit;
 
+import com.openkoda.core.service.system.SystemHealthSampler;
 import com.openkoda.core.service.system.SystemHealthStatusService;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.function.ToDoubleFunction;
 
 
 /**
@@ -62,19 +61,6 @@ public class SystemHealthStatus {
      */
     private String logMinDurationStatement;
 
-    /**
-     * Should be true when application runs on Windows
-     */
-    private boolean isWindows;
-    /**
-     * Should be true when runs on linux and sysstat tool enabled
-     */
-    private boolean sysstatEnabled;
-    /**
-     * Should be true when runs on linux and sysstat tool installed
-     */
-    private boolean sysstatInstalled;
-
     /**
      * Keeps free disk space for drives
      */
@@ -85,13 +71,15 @@ public class SystemHealthStatus {
     private Map<String, Long> totalPartitionSpace = new HashMap<>();
 
     /**
-     * Keeps processes data read from pidstat (if sysstat installed)
+     * Latest sample of JVM, process and connection pool metrics
+     * See {@link SystemHealthSampler}
      */
-    private List<String[]> pidstatData;
+    private SystemHealthSampler.Sample sample;
+
     /**
-     * Keeps processes headers from pidstat (if sysstat installed)
+     * Samples kept by {@link SystemHealthSampler}, from the oldest
      */
-    private String[] pidstatHeader;
+    private List<SystemHealthSampler.Sample> history = Collections.emptyList();
 
     public void setDiskSpace(String path, long freeSpace, long totalSpace) {
         freePartitionSpace.put(path, freeSpace);
@@ -150,40 +138,44 @@ public class SystemHealthStatus {
         this.logMinDurationStatement = logMinDurationStatement;
     }
 
-    public void setSysstatEnabled(boolean systatEnabled) {
-        this.sysstatEnabled = systatEnabled;
-    }
-
-    public boolean isSysstatEnabled() {
-        return sysstatEnabled;
-    }
-
-    public void setSysstatInstalled(boolean systatEnabled) {
-        this.sysstatInstalled = systatEnabled;
-    }
-
-    public boolean isSysstatInstalled() {
-        return sysstatInstalled;
+    public SystemHealthSampler.Sample getSample() {
+        return sample;
     }
 
-    public boolean isWindows() {
-        return isWindows;
+    public void setSample(SystemHealthSampler.Sample sample) {
+        this.sample = sample;
     }
 
-    public void setIsWindows(boolean isWindows) {
-        this.isWindows = isWindows;
+    public List<SystemHealthSampler.Sample> getHistory() {
+        return history;
     }
 
-    public void setPidstatData(List<String[]> pidstatRows) {
-        this.pidstatHeader = pidstatRows.get(0);
-        this.pidstatData = pidstatRows.subList(1, pidstatRows.size());
+    public void setHistory(List<SystemHealthSampler.Sample> history) {
+        this.history = history;
     }
 
-    public List<String[]> getPidstatData() {
-        return this.pidstatData;
-    }
-
-    public String[] getPidstatHeader() {
-        return pidstatHeader;
+    /**
+     * @param metric one of processCpu, systemCpu, heap, threads, connections, gcTime
+     * @return SVG polyline points of the metric over the sample history, scaled to given size
+     */
+    public String trendPoints(String metric, int width, int height) {
+        ToDoubleFunction<SystemHealthSampler.Sample> value = switch (metric) {
+            case "processCpu" -> SystemHealthSampler.Sample::processCpuLoad;
+            case "systemCpu" -> SystemHealthSampler.Sample::systemCpuLoad;
+            case "heap" -> SystemHealthSampler.Sample::heapUsed;
+            case "threads" -> SystemHealthSampler.Sample::threads;
+            case "connections" -> s -> s.connectionPools().stream().mapToInt(SystemHealthSampler.ConnectionPool::active).sum();
+            case "gcTime" -> SystemHealthSampler.Sample::gcTimeMs;
+            default -> throw new IllegalArgumentException(metric);
+        };
+        double[] values = history.stream().mapToDouble(value).map(v -> Math.max(0, v)).toArray();
+        double max = metric.endsWith("Cpu") ? 1.0 : Math.max(1.0, Arrays.stream(values).max().orElse(1.0));
+        StringBuilder points = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            double x = values.length == 1 ? width : (double) width * i / (values.length - 1);
+            double y = height - height * values[i] / max;
+            points.append(String.format(Locale.ROOT, "%.1f,%.1f ", x, y));
+        }
+        return points.toString().trim();
     }
 }
@@ -22,8 +22,12 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 package com.openkoda.core.configuration;
 
 import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Datasources for database-based multitenancy scenarios.
@@ -39,11 +43,57 @@ import java.util.List;
  * ...
  * datasources.list[2].name=secondary_2
  *
+ * Read replicas of the application datasource (spring.datasource.*) are used by read-only transactions
+ * (see {@link ReadReplicaRoutingDataSource}) and configured with
+ * datasources.replicas[0].jdbcUrl=jdbc:postgresql://replica:5432/openkoda
+ * datasources.replicas[0].username=postgres
+ * ...
+ * and routing with datasources.routing.max-lag-ms, datasources.routing.check-interval-ms, datasources.routing.sticky-seconds
+ *
  * More config settings can be applied
  * see <a href="https://github.com/brettwooldridge/HikariCP#gear-configuration-knobs-baby">https://github.com/brettwooldridge/HikariCP#gear-configuration-knobs-baby</a>
  * */
 public class Datasources {
 
+    /**
+     * Read replica routing settings
+     */
+    public static class Routing {
+        /**
+         * Replicas with larger replay lag are not used
+         */
+        public long maxLagMs = 5000;
+        public long checkIntervalMs = 5000;
+        /**
+         * Time after a read-write transaction during which the http session reads from the primary
+         */
+        public long stickySeconds = 5;
+
+        public long getMaxLagMs() {
+            return maxLagMs;
+        }
+
+        public void setMaxLagMs(long maxLagMs) {
+            this.maxLagMs = maxLagMs;
+        }
+
+        public long getCheckIntervalMs() {
+            return checkIntervalMs;
+        }
+
+        public void setCheckIntervalMs(long checkIntervalMs) {
+            this.checkIntervalMs = checkIntervalMs;
+        }
+
+        public long getStickySeconds() {
+            return stickySeconds;
+        }
+
+        public void setStickySeconds(long stickySeconds) {
+            this.stickySeconds = stickySeconds;
+        }
+    }
+
     public static class TenantDB {
         public String name;
         public HikariConfig config;
@@ -67,6 +117,27 @@ public class Datasources {
 
     public List<TenantDB> list;
 
+    public List<HikariConfig> replicas;
+
+    public Routing routing = new Routing();
+
+    /**
+     * Creates pools of the replicas and starts their health checks
+     */
+    static ReadReplicaRoutingDataSource replicaRouting(DataSource primary, String name, List<HikariConfig> replicas, Routing routing) {
+        Map<String, DataSource> replicaPools = new LinkedHashMap<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            HikariConfig replica = replicas.get(i);
+            String poolName = replica.getPoolName() != null ? replica.getPoolName() : name + "-replica-" + i;
+            replica.setPoolName(poolName);
+            replica.setReadOnly(true);
+            // a replica down on start-up must not stop the application, read-only transactions use the primary then
+            replica.setInitializationFailTimeout(-1);
+            replicaPools.put(poolName, new HikariDataSource(replica));
+        }
+        return new ReadReplicaRoutingDataSource(primary, replicaPools, routing.maxLagMs, routing.stickySeconds * 1000).start(routing.checkIntervalMs);
+    }
+
     public List<TenantDB> getList() {
         return list;
     }
@@ -74,4 +145,20 @@ public class Datasources {
     public void setList(List<TenantDB> list) {
         this.list = list;
     }
+
+    public List<HikariConfig> getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(List<HikariConfig> replicas) {
+        this.replicas = replicas;
+    }
+
+    public Routing getRouting() {
+        return routing;
+    }
+
+    public void setRouting(Routing routing) {
+        this.routing = routing;
+    }
 }
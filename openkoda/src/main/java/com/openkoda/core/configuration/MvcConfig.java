@@ -31,6 +31,7 @@ import com.openkoda.core.helper.ModulesInterceptor;
 import com.openkoda.core.helper.SlashEndingUrlInterceptor;
 import com.openkoda.core.helper.UrlHelper;
 import com.openkoda.core.multitenancy.QueryExecutor;
+import com.openkoda.core.profiler.ProfilerInterceptor;
 import com.openkoda.core.service.FrontendResourceService;
 import com.openkoda.model.MutableUserInOrganization;
 import com.openkoda.service.export.ClasspathComponentImportService;
@@ -92,6 +93,9 @@ public class MvcConfig implements URLConstants, WebMvcConfigurer  {
     @Inject
     private SlashEndingUrlInterceptor slashEndingUrlInterceptor;
 
+    @Inject
+    private ProfilerInterceptor profilerInterceptor;
+
     @Inject
     public ClasspathComponentImportService classpathComponentImportService;
 
@@ -107,6 +111,7 @@ public class MvcConfig implements URLConstants, WebMvcConfigurer  {
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(profilerInterceptor);
         registry.addInterceptor(modelEnricherInterceptor);
         registry.addInterceptor(modulesInterceptor);
         registry.addInterceptor(slashEndingUrlInterceptor);
@@ -0,0 +1,108 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.core.env.Environment;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.hibernate.cfg.AvailableSettings.CONNECTION_HANDLING;
+import static org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION;
+
+/**
+ * Routes read-only transactions of the application datasource to the read replicas configured with
+ * datasources.replicas, see {@link Datasources} and {@link ReadReplicaRoutingDataSource}.
+ * The routing datasource is created before {@link SessionContextConfig} wraps the datasource, so that replica
+ * connections get the session context too.
+ * <p>
+ * A connection is routed when Hibernate acquires it. With open-in-view one EntityManager serves all transactions of
+ * a request and Hibernate's default DELAYED_ACQUISITION_AND_HOLD keeps the connection of the first transaction, so
+ * a replica connection would serve later writes. With replicas configured the connection is released after each
+ * transaction instead, and every transaction is routed on its own.
+ */
+@Configuration
+public class ReadReplicaConfig {
+
+    /**
+     * Replaces the transaction manager of Spring Boot JPA auto-configuration, applying the same customizers
+     */
+    @Bean
+    public PlatformTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> transactionManagerCustomizers) {
+        ReadReplicaTransactionManager transactionManager = new ReadReplicaTransactionManager();
+        transactionManagerCustomizers.ifAvailable(customizers -> customizers.customize(transactionManager));
+        return transactionManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer readReplicaHibernatePropertiesCustomizer(Environment environment) {
+        boolean replicas = hasReplicas(bind(environment));
+        return props -> {
+            if (replicas) {
+                props.put(CONNECTION_HANDLING, DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+            }
+        };
+    }
+
+    @Bean
+    public static BeanPostProcessor readReplicaDataSourcePostProcessor(Environment environment) {
+        return new ReadReplicaPostProcessor(bind(environment));
+    }
+
+    static Datasources bind(Environment environment) {
+        return Binder.get(environment).bind("datasources", Datasources.class).orElseGet(Datasources::new);
+    }
+
+    static boolean hasReplicas(Datasources datasources) {
+        return datasources.replicas != null && !datasources.replicas.isEmpty();
+    }
+
+    static class ReadReplicaPostProcessor implements BeanPostProcessor, PriorityOrdered {
+
+        private final Datasources datasources;
+
+        ReadReplicaPostProcessor(Datasources datasources) {
+            this.datasources = datasources;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof HikariDataSource primary && hasReplicas(datasources)) {
+                return Datasources.replicaRouting(primary, "application", datasources.replicas, datasources.routing);
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.configuration;
+
+import com.openkoda.core.flow.LoggingComponent;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Routes connections of read-only transactions to read replicas of the primary database.</p>
+ * <p>A connection is taken from a replica when it is requested in a read-only transaction, see
+ * {@link ReadReplicaTransactionManager}, and neither of these is true:</p>
+ * <ul>
+ *     <li>the http session committed a read-write transaction in the last {@link Datasources.Routing#stickySeconds},
+ *     so that the user reads their own writes,</li>
+ *     <li>no replica is healthy, a replica is unhealthy when the lag check fails or its replay lag exceeds
+ *     {@link Datasources.Routing#maxLagMs}.</li>
+ * </ul>
+ * <p>Replicas are used round robin, a replica failing to hand out a connection is marked unhealthy until the next
+ * check and the connection is taken from the primary.</p>
+ */
+public class ReadReplicaRoutingDataSource extends DelegatingDataSource implements LoggingComponent {
+
+    static final String LAG_SQL = "SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+
+    /**
+     * Measures replication lag of a replica in milliseconds
+     */
+    @FunctionalInterface
+    interface LagProbe {
+        long lagMs(DataSource replica) throws SQLException;
+    }
+
+    /**
+     * Counters of one connection pool, pool sizes are -1 for pools other than Hikari
+     */
+    public record PoolStats(String name, boolean healthy, long lagMs, long connections, long failures,
+                            int active, int idle, int total, int waiting, int max) {}
+
+    /**
+     * @param readOnlyOnPrimary read-only connections taken from the primary, because of read-your-writes or no healthy replica
+     */
+    public record Stats(PoolStats primary, List<PoolStats> replicas, long readOnlyOnPrimary, long stickyReads) {}
+
+    private static final ThreadLocal<Boolean> readOnlyTransaction = new ThreadLocal<>();
+
+    private static final int MAX_STICKY_SESSIONS = 10_000;
+
+    private static class Replica {
+        final String name;
+        final DataSource dataSource;
+        final LongAdder connections = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        volatile boolean healthy = true;
+        volatile long lagMs;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    private final long maxLagMs;
+
+    private final long stickyMs;
+
+    /**
+     * Http session id -> epoch millis until which the session reads from the primary
+     */
+    private final Map<String, Long> stickySessions = new ConcurrentHashMap<>();
+
+    private final LagProbe lagProbe;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final LongAdder primaryConnections = new LongAdder();
+
+    private final LongAdder primaryFailures = new LongAdder();
+
+    private final LongAdder readOnlyOnPrimary = new LongAdder();
+
+    private final LongAdder stickyReads = new LongAdder();
+
+    private ScheduledExecutorService checker;
+
+    /**
+     * @param stickyMs how long an http session reads from the primary after a read-write commit, 0 disables it
+     */
+    public ReadReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, long maxLagMs, long stickyMs) {
+        this(primary, replicas, maxLagMs, stickyMs, ReadReplicaRoutingDataSource::queryLagMs);
+    }
+
+    ReadReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, long maxLagMs, long stickyMs, LagProbe lagProbe) {
+        super(primary);
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.maxLagMs = maxLagMs;
+        this.stickyMs = stickyMs;
+        this.lagProbe = lagProbe;
+    }
+
+    /**
+     * Starts checking health and lag of the replicas every checkIntervalMs
+     */
+    public ReadReplicaRoutingDataSource start(long checkIntervalMs) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("read-replica-check-");
+        threadFactory.setDaemon(true);
+        checker = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        checker.scheduleWithFixedDelay(this::checkReplicas, 0, checkIntervalMs, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    public void close() {
+        if (checker != null) {
+            checker.shutdownNow();
+        }
+        for (Replica r : replicas) {
+            if (r.dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    debug("[close] {}: {}", r.name, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets whether the physical transaction starting in the current thread is read-only
+     * @return previous value, to be restored with {@link #restoreReadOnly(Boolean)}
+     */
+    static Boolean setReadOnly(boolean readOnly) {
+        Boolean previous = readOnlyTransaction.get();
+        readOnlyTransaction.set(readOnly);
+        return previous;
+    }
+
+    static void restoreReadOnly(Boolean previous) {
+        if (previous == null) {
+            readOnlyTransaction.remove();
+        } else {
+            readOnlyTransaction.set(previous);
+        }
+    }
+
+    /**
+     * Makes the current http session read from the primary for the sticky period, called after a read-write commit
+     */
+    void markWritten() {
+        String session = currentSessionId();
+        if (session == null || stickyMs <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (stickySessions.size() > MAX_STICKY_SESSIONS) {
+            stickySessions.values().removeIf(until -> until < now);
+        }
+        stickySessions.put(session, now + stickyMs);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!isReadOnly()) {
+            return primaryConnection();
+        }
+        if (isSticky()) {
+            stickyReads.increment();
+            readOnlyOnPrimary.increment();
+            return primaryConnection();
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica r = replicas.get((start + i) % size);
+            if (r.healthy) {
+                try {
+                    Connection connection = r.dataSource.getConnection();
+                    r.connections.increment();
+                    return connection;
+                } catch (SQLException e) {
+                    r.failures.increment();
+                    r.healthy = false;
+                    warn("[getConnection] Replica {} unavailable, using primary: {}", r.name, e.getMessage());
+                }
+            }
+        }
+        readOnlyOnPrimary.increment();
+        return primaryConnection();
+    }
+
+    public Stats getStats() {
+        List<PoolStats> replicaStats = new ArrayList<>();
+        for (Replica r : replicas) {
+            replicaStats.add(poolStats(r.name, r.dataSource, r.healthy, r.lagMs, r.connections.sum(), r.failures.sum()));
+        }
+        DataSource primary = getTargetDataSource();
+        return new Stats(poolStats("primary", primary, true, 0, primaryConnections.sum(), primaryFailures.sum()),
+                replicaStats, readOnlyOnPrimary.sum(), stickyReads.sum());
+    }
+
+    void checkReplicas() {
+        for (Replica r : replicas) {
+            try {
+                r.lagMs = lagProbe.lagMs(r.dataSource);
+                boolean healthy = r.lagMs <= maxLagMs;
+                if (healthy != r.healthy) {
+                    info("[checkReplicas] Replica {} {}, lag {}ms", r.name, healthy ? "healthy" : "lagging", r.lagMs);
+                }
+                r.healthy = healthy;
+            } catch (SQLException | RuntimeException e) {
+                r.failures.increment();
+                if (r.healthy) {
+                    warn("[checkReplicas] Replica {} unavailable: {}", r.name, e.getMessage());
+                }
+                r.healthy = false;
+            }
+        }
+    }
+
+    private Connection primaryConnection() throws SQLException {
+        try {
+            Connection connection = obtainTargetDataSource().getConnection();
+            primaryConnections.increment();
+            return connection;
+        } catch (SQLException e) {
+            primaryFailures.increment();
+            throw e;
+        }
+    }
+
+    private static boolean isReadOnly() {
+        Boolean readOnly = readOnlyTransaction.get();
+        return readOnly != null ? readOnly : TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private boolean isSticky() {
+        String session = currentSessionId();
+        if (session == null) {
+            return false;
+        }
+        Long until = stickySessions.get(session);
+        return until != null && until >= System.currentTimeMillis();
+    }
+
+    private static String currentSessionId() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servletAttributes) {
+            HttpSession session = servletAttributes.getRequest().getSession(false);
+            return session == null ? null : session.getId();
+        }
+        return null;
+    }
+
+    private static long queryLagMs(DataSource replica) throws SQLException {
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(LAG_SQL)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private PoolStats poolStats(String name, DataSource dataSource, boolean healthy, long lagMs, long connections, long failures) {
+        try {
+            if (dataSource != null && dataSource.isWrapperFor(HikariDataSource.class)) {
+                HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+                HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+                if (pool != null) {
+                    return new PoolStats(hikari.getPoolName() == null ? name : hikari.getPoolName(), healthy, lagMs,
+                            connections, failures, pool.getActiveConnections(), pool.getIdleConnections(),
+                            pool.getTotalConnections(), pool.getThreadsAwaitingConnection(), hikari.getMaximumPoolSize());
+                }
+            }
+        } catch (SQLException e) {
+            debug("[poolStats] {}: {}", name, e.getMessage());
+        }
+        return new PoolStats(name, healthy, lagMs, connections, failures, -1, -1, -1, -1, -1);
+    }
+}
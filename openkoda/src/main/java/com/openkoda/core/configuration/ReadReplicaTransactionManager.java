@@ -0,0 +1,78 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.configuration;
+
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * <p>JPA transaction manager telling {@link ReadReplicaRoutingDataSource} whether the transaction being started is
+ * read-only.</p>
+ * <p>Hibernate takes the connection when the transaction begins, before Spring exposes the read-only flag with
+ * {@link org.springframework.transaction.support.TransactionSynchronizationManager#isCurrentTransactionReadOnly()},
+ * so the flag is set for the time of {@link #doBegin(Object, TransactionDefinition)}. A commit of a read-write
+ * transaction makes the http session read from the primary for a while.</p>
+ */
+public class ReadReplicaTransactionManager extends JpaTransactionManager {
+
+    private ReadReplicaRoutingDataSource routingDataSource;
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        routingDataSource = routingDataSource(getDataSource());
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        Boolean previous = ReadReplicaRoutingDataSource.setReadOnly(definition.isReadOnly());
+        try {
+            super.doBegin(transaction, definition);
+        } finally {
+            ReadReplicaRoutingDataSource.restoreReadOnly(previous);
+        }
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+        super.doCommit(status);
+        if (!status.isReadOnly() && routingDataSource != null) {
+            routingDataSource.markWritten();
+        }
+    }
+
+    /**
+     * @return the routing datasource, possibly wrapped (eg. by {@link SessionContextDataSource}), null without replicas
+     */
+    private static ReadReplicaRoutingDataSource routingDataSource(DataSource dataSource) {
+        try {
+            return dataSource != null && dataSource.isWrapperFor(ReadReplicaRoutingDataSource.class)
+                    ? dataSource.unwrap(ReadReplicaRoutingDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.configuration;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.orm.jpa.JpaTransactionManager;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps application datasources with {@link SessionContextDataSource}, and makes JPA transaction managers using them
+ * begin transactions with {@link SessionContextJpaDialect}
+ */
+@Configuration
+public class SessionContextConfig {
+
+    @Bean
+    public static BeanPostProcessor sessionContextDataSourcePostProcessor(Environment environment) {
+        String applicationName = environment.getProperty("sql.application-name", "openkoda");
+        boolean tagRequests = environment.getProperty("sql.application-name.request-id", Boolean.class, true);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof SessionContextDataSource)) {
+                    return new SessionContextDataSource(dataSource, applicationName, tagRequests);
+                }
+                // after initialization, as afterPropertiesSet takes the dialect of the EntityManagerFactory
+                if (bean instanceof JpaTransactionManager transactionManager
+                        && transactionManager.getDataSource() instanceof SessionContextDataSource sessionContextDataSource) {
+                    transactionManager.setJpaDialect(new SessionContextJpaDialect(sessionContextDataSource));
+                }
+                return bean;
+            }
+        };
+    }
+}
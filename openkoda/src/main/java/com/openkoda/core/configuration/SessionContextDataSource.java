@@ -0,0 +1,112 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.configuration;
+
+import com.openkoda.core.security.UserProvider;
+import com.openkoda.core.tracker.RequestIdHolder;
+import com.openkoda.model.common.ModelConstants;
+import org.apache.commons.lang3.StringUtils;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <p>Sets the current user id ({@link ModelConstants#USER_ID_SESSION_VARIABLE}) and the application_name tagged with
+ * the request id on every connection handed out, so that neither has to be part of the SQL text.</p>
+ * <p>Values last set on a physical connection are remembered, the statement is executed only when they change.
+ * Values set in a connection that is not in auto-commit mode are not remembered, as a rollback would revert them.</p>
+ * <p>A connection held by an EntityManager across transactions (open-in-view) is handed out once per request, while
+ * the authentication can change in between, so the context is also set when a transaction begins, see
+ * {@link SessionContextJpaDialect}.</p>
+ */
+public class SessionContextDataSource extends DelegatingDataSource {
+
+    static final String SET_CONTEXT_SQL = "SELECT set_config('" + ModelConstants.USER_ID_SESSION_VARIABLE + "', ?, false), "
+            + "set_config('application_name', ?, false)";
+
+    private final String applicationName;
+
+    private final boolean tagRequests;
+
+    private final Map<Object, String> appliedContexts = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public SessionContextDataSource(DataSource targetDataSource, String applicationName, boolean tagRequests) {
+        super(targetDataSource);
+        this.applicationName = applicationName;
+        this.tagRequests = tagRequests;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return applyContext(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return applyContext(super.getConnection(username, password));
+    }
+
+    Connection applyContext(Connection connection) throws SQLException {
+        try {
+            setContext(connection);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    /**
+     * Sets the user id and application name of the current thread on the connection, unless they are already set
+     */
+    void setContext(Connection connection) throws SQLException {
+        if (!connection.isWrapperFor(PGConnection.class)) {
+            return;
+        }
+        String userId = UserProvider.getUserIdOrNotExistingIdAsString();
+        String requestId = RequestIdHolder.getId();
+        String name = tagRequests && StringUtils.isNotEmpty(requestId) ? applicationName + ":" + requestId : applicationName;
+        String context = userId + "\0" + name;
+        Object physicalConnection = connection.unwrap(PGConnection.class);
+        boolean autoCommit = connection.getAutoCommit();
+        if (context.equals(appliedContexts.get(physicalConnection))) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(SET_CONTEXT_SQL)) {
+            statement.setString(1, userId);
+            statement.setString(2, name);
+            statement.execute();
+        }
+        if (autoCommit) {
+            appliedContexts.put(physicalConnection, context);
+        } else {
+            appliedContexts.remove(physicalConnection);
+        }
+    }
+}
@@ -21,17 +21,22 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 package com.openkoda.core.configuration;
 
+import com.openkoda.core.service.websocket.WebsocketSendBuffers;
+import jakarta.inject.Inject;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.TaskExecutorRegistration;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 
 import java.util.Map;
@@ -40,6 +45,9 @@ import static com.openkoda.controller.common.URLConstants._HTML;
 
 /**
  * Websockets configuration
+ * Client inbound, client outbound and broker channels run on executors sized with websocket.inbound.*,
+ * websocket.outbound.* and websocket.broker.* properties, so that sending a message returns as soon as it is queued.
+ * Writes to the browsers go through per-session send buffers of {@link WebsocketSendBuffers}.
  */
 @Configuration
 @EnableWebSocketMessageBroker
@@ -50,9 +58,83 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Value("${application.websocket.allowed-origins}")
     public String[] allowedOrigins;
 
+    @Inject
+    private WebsocketSendBuffers sendBuffers;
+
+    @Value("${websocket.inbound.core-pool-size:0}")
+    private int inboundCorePoolSize;
+
+    @Value("${websocket.inbound.max-pool-size:0}")
+    private int inboundMaxPoolSize;
+
+    @Value("${websocket.inbound.queue-capacity:0}")
+    private int inboundQueueCapacity;
+
+    @Value("${websocket.outbound.core-pool-size:0}")
+    private int outboundCorePoolSize;
+
+    @Value("${websocket.outbound.max-pool-size:0}")
+    private int outboundMaxPoolSize;
+
+    @Value("${websocket.outbound.queue-capacity:0}")
+    private int outboundQueueCapacity;
+
+    @Value("${websocket.broker.pool-size:1}")
+    private int brokerPoolSize;
+
+    @Value("${websocket.message-size-bytes:65536}")
+    private int messageSizeBytes;
+
+    /**
+     * The broker channel runs on its own executor, so that the thread sending a message does not fan it out to
+     * all subscriptions. The default single thread keeps the order of published messages.
+     */
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker(CHANNEL_PREFIX);
+        if (brokerPoolSize > 0) {
+            config.configureBrokerChannel().taskExecutor().corePoolSize(brokerPoolSize).maxPoolSize(brokerPoolSize);
+        }
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        configureExecutor(registration, inboundCorePoolSize, inboundMaxPoolSize, inboundQueueCapacity);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        configureExecutor(registration, outboundCorePoolSize, outboundMaxPoolSize, outboundQueueCapacity);
+    }
+
+    /**
+     * Send time and send buffer size limits of the transport are not set: Spring applies them in a session decorator
+     * around the buffered session of {@link WebsocketSendBuffers}, whose sends never block, so they could never trigger.
+     * The buffers enforce websocket.send.time-limit-ms and websocket.send.buffer-messages instead.
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setMessageSizeLimit(messageSizeBytes)
+                .addDecoratorFactory(sendBuffers::decorate);
+    }
+
+    /**
+     * Values not greater than 0 keep Spring defaults
+     */
+    private void configureExecutor(ChannelRegistration registration, int corePoolSize, int maxPoolSize, int queueCapacity) {
+        if (corePoolSize <= 0 && maxPoolSize <= 0 && queueCapacity <= 0) {
+            return;
+        }
+        TaskExecutorRegistration executor = registration.taskExecutor();
+        if (corePoolSize > 0) {
+            executor.corePoolSize(corePoolSize);
+        }
+        if (maxPoolSize > 0) {
+            executor.maxPoolSize(maxPoolSize);
+        }
+        if (queueCapacity > 0) {
+            executor.queueCapacity(queueCapacity);
+        }
     }
 
     /**
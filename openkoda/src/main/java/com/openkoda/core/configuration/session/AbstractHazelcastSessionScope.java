@@ -21,12 +21,25 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 package com.openkoda.core.configuration.session;
 
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.replicatedmap.ReplicatedMap;
 import com.openkoda.core.helper.ClusterHelper;
+import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import org.apache.commons.lang3.SerializationUtils;
 import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.SessionScope;
 
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 
 /**
@@ -37,17 +50,56 @@ import java.util.concurrent.TimeUnit;
  * If the application is standalone (ie. ClusterHelper.isCluster() == false),
  * then use standard http session instead.
  *
+ * In cluster the beans are served from a local near-cache. The replicated cache holds the version of each bean
+ * ({@link BeanVersion}) and its serialized fields under separate keys. A bean is replicated once at the end of each
+ * request it was used in, and only the fields whose serialized form changed are put, so that unchanged (eg. large)
+ * fields are not sent to other members again. The near-cache entry is used as long as its version matches
+ * the replicated one, otherwise the bean is rebuilt from the replicated fields. Each replicated field carries
+ * the version it was written with, so that a field not replicated to this member yet is detected.
+ *
  * Optionally a custom bean factory method (objectFactory) can be provided for creation of specialized beans.
- * Optionally a eviction time in seconds for hazelcast entries can be specified.
+ * Optionally a eviction time in seconds for hazelcast entries can be specified, counted from the last change.
  * @param <T>
  */
-public abstract class AbstractHazelcastSessionScope<T> extends SessionScope {
+public abstract class AbstractHazelcastSessionScope<T> extends SessionScope implements LoggingComponentWithRequestId {
 
     /**
      * Name of the Hazelcast cache storing sessions
      */
     public static final String CACHE_NAME = "HazelcastScope";
 
+    /**
+     * Separates the bean key and the field name in keys of replicated fields
+     */
+    static final String FIELD_SEPARATOR = "#";
+
+    private static final String DESTRUCTION_CALLBACK_PREFIX = "hazelcastScopeReplicate:";
+
+    private static final long SWEEP_INTERVAL_MS = 60_000;
+
+    private static final int FIELD_READ_ATTEMPTS = 10;
+
+    /**
+     * Counters of the scope, bytes are the sizes of serialized fields put to the replicated cache
+     */
+    public record Stats(long nearCacheHits, long nearCacheMisses, long replications, long replicatedBytes, long lastReplicatedBytes) {}
+
+    /**
+     * Replicated version of a bean together with the versions its fields were last written with
+     */
+    record BeanVersion(long version, Map<String, Long> fieldVersions) implements Serializable {}
+
+    /**
+     * @param version replicated version of the bean, 0 when not replicated yet, -1 when not all fields could be read
+     * @param fields serialized fields as last read or replicated
+     */
+    private record NearCacheEntry(Object bean, long version, Map<String, byte[]> fields, Map<String, Long> fieldVersions, long lastAccess) {
+        NearCacheEntry accessed() {
+            return new NearCacheEntry(bean, version, fields, fieldVersions, System.currentTimeMillis());
+        }
+    }
+
+
     /**
      * Custom ObjectFactory
      */
@@ -63,6 +115,18 @@ public abstract class AbstractHazelcastSessionScope<T> extends SessionScope {
      */
     private final long entryTTLInSeconds;
 
+    private final Map<String, NearCacheEntry> nearCache = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, List<Field>> replicatedFields = new ConcurrentHashMap<>();
+
+    private final LongAdder nearCacheHits = new LongAdder();
+    private final LongAdder nearCacheMisses = new LongAdder();
+    private final LongAdder replications = new LongAdder();
+    private final LongAdder replicatedBytes = new LongAdder();
+    private final AtomicLong lastReplicatedBytes = new AtomicLong();
+
+    private volatile long lastSweep = System.currentTimeMillis();
+
     /**
      * @param keyPrefix - prefix for keys in hazelcast cache
      * @param entryTTLInSeconds - optional entry eviction time in seconds (0 == no eviction)
@@ -76,27 +140,140 @@ public abstract class AbstractHazelcastSessionScope<T> extends SessionScope {
     public Object get(String s, ObjectFactory<?> objectFactory) {
 
         //if not cluster, use standard session scope
-        if (!ClusterHelper.isCluster()) {
+        if (!isCluster()) {
             Object result = super.get(s, objectFactory);
             return result;
         }
 
         String key = getEntryKey(s);
-        Object existingEntry = ClusterHelper.getHazelcastInstance().getReplicatedMap(CACHE_NAME).get(key);
+        ReplicatedMap<String, Object> cache = getCache();
+        sweepIfDue(cache);
+        BeanVersion version = (BeanVersion) cache.get(key);
+        NearCacheEntry entry = nearCache.get(key);
+
+        //if the local entry is up to date, return it
+        if (entry != null && version != null && entry.version() == version.version()) {
+            nearCacheHits.increment();
+            entry = entry.accessed();
+        } else {
+            //otherwise, create new bean and fill it with replicated fields if there are any
+            nearCacheMisses.increment();
+            Object bean = customObjectFactory == null ? objectFactory.getObject() : customObjectFactory.getObject();
+            entry = version == null
+                    ? new NearCacheEntry(bean, 0, Collections.emptyMap(), Collections.emptyMap(), System.currentTimeMillis())
+                    : read(cache, key, bean, version);
+        }
+        nearCache.put(key, entry);
+
+        //replicate changes at the end of the request
+        RequestContextHolder.currentRequestAttributes().registerDestructionCallback(
+                DESTRUCTION_CALLBACK_PREFIX + key, () -> replicate(key), RequestAttributes.SCOPE_REQUEST);
+        return entry.bean();
+    }
+
+    /**
+     * Fills the bean with replicated fields. A field that did not reach this member in the expected version
+     * is retried a few times, and if still missing the bean is returned with what was read and is read again
+     * on the next access.
+     */
+    private NearCacheEntry read(ReplicatedMap<String, Object> cache, String key, Object bean, BeanVersion version) {
+        Map<String, byte[]> fields = new HashMap<>();
+        boolean complete = true;
+        for (Field f : getReplicatedFields(bean.getClass())) {
+            Long expected = version.fieldVersions().get(f.getName());
+            if (expected == null) {
+                continue;
+            }
+            byte[] value = null;
+            for (int attempt = 0; attempt < FIELD_READ_ATTEMPTS; attempt++) {
+                value = (byte[]) cache.get(key + FIELD_SEPARATOR + f.getName());
+                if (value != null && versionOf(value) == expected) {
+                    break;
+                }
+                value = null;
+                sleep(attempt);
+            }
+            if (value == null) {
+                warn("[read] Field {} of {} not replicated in version {}", f.getName(), key, expected);
+                complete = false;
+                fields.put(f.getName(), SerializationUtils.serialize((Serializable) getField(f, bean)));
+                continue;
+            }
+            byte[] payload = payloadOf(value);
+            setField(f, bean, SerializationUtils.deserialize(payload));
+            fields.put(f.getName(), payload);
+        }
+        return new NearCacheEntry(bean, complete ? version.version() : -1, fields, version.fieldVersions(), System.currentTimeMillis());
+    }
+
+    private static void sleep(int attempt) {
+        try {
+            Thread.sleep(1L << Math.min(attempt, 5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static byte[] withVersion(long version, byte[] payload) {
+        return ByteBuffer.allocate(Long.BYTES + payload.length).putLong(version).put(payload).array();
+    }
 
-        //if entry already exists, return
-        if (existingEntry != null) {
-            return existingEntry;
+    static long versionOf(byte[] value) {
+        return ByteBuffer.wrap(value).getLong();
+    }
+
+    static byte[] payloadOf(byte[] value) {
+        return Arrays.copyOfRange(value, Long.BYTES, value.length);
+    }
+
+    /**
+     * Puts the fields of the bean changed since the last replication to the replicated cache, followed by a new version
+     * @return number of bytes put
+     */
+    long replicate(String key) {
+        NearCacheEntry entry = nearCache.get(key);
+        if (entry == null) {
+            return 0;
+        }
+        Map<String, byte[]> fields = new HashMap<>();
+        Map<String, byte[]> changed = new HashMap<>();
+        for (Field f : getReplicatedFields(entry.bean().getClass())) {
+            byte[] value = SerializationUtils.serialize((Serializable) getField(f, entry.bean()));
+            fields.put(f.getName(), value);
+            if (!Arrays.equals(value, entry.fields().get(f.getName()))) {
+                changed.put(f.getName(), value);
+            }
+        }
+        if (changed.isEmpty() && entry.version() != 0) {
+            return 0;
+        }
+
+        ReplicatedMap<String, Object> cache = getCache();
+        long version = getHazelcastInstance().getFlakeIdGenerator(CACHE_NAME).newId();
+        Map<String, Long> fieldVersions = new HashMap<>(entry.fieldVersions());
+        long bytes = 0;
+        for (Map.Entry<String, byte[]> e : changed.entrySet()) {
+            byte[] value = withVersion(version, e.getValue());
+            put(cache, key + FIELD_SEPARATOR + e.getKey(), value);
+            fieldVersions.put(e.getKey(), version);
+            bytes += value.length;
         }
+        put(cache, key, new BeanVersion(version, fieldVersions));
+        nearCache.put(key, new NearCacheEntry(entry.bean(), version, fields, fieldVersions, entry.lastAccess()));
 
-        //otherwise, create new entry and insert it into hazelcast
-        Object newEntry = customObjectFactory == null ? objectFactory.getObject() : customObjectFactory.getObject();
+        replications.increment();
+        replicatedBytes.add(bytes);
+        lastReplicatedBytes.set(bytes);
+        debug("[replicate] {} fields ({} bytes) of {}", changed.size(), bytes, key);
+        return bytes;
+    }
+
+    private void put(ReplicatedMap<String, Object> cache, String key, Object value) {
         if (entryTTLInSeconds > 0) {
-            ClusterHelper.getHazelcastInstance().getReplicatedMap(CACHE_NAME).put(key, newEntry, entryTTLInSeconds, TimeUnit.SECONDS);
+            cache.put(key, value, entryTTLInSeconds, TimeUnit.SECONDS);
         } else {
-            ClusterHelper.getHazelcastInstance().getReplicatedMap(CACHE_NAME).put(key, newEntry);
+            cache.put(key, value);
         }
-        return newEntry;
     }
 
     private String getEntryKey(String s) {
@@ -106,19 +283,100 @@ public abstract class AbstractHazelcastSessionScope<T> extends SessionScope {
     @Override
     public Object remove(String s) {
         //if not cluster, use standard session scope
-        if (!ClusterHelper.isCluster()) {
+        if (!isCluster()) {
             return super.remove(s);
         }
         String key = getEntryKey(s);
-        Object result = ClusterHelper.getHazelcastInstance().getReplicatedMap(CACHE_NAME).remove(key);
+        NearCacheEntry entry = nearCache.remove(key);
+        ReplicatedMap<String, Object> cache = getCache();
+        Object result = cache.remove(key);
+        if (entry != null) {
+            removeFields(cache, key, entry.bean().getClass());
+        }
+        return entry == null ? result : entry.bean();
+    }
+
+    /**
+     * Drops near-cache entries of beans removed or expired from the replicated cache together with their fields,
+     * and entries not used for longer than the TTL
+     */
+    private void sweepIfDue(ReplicatedMap<String, Object> cache) {
+        long now = System.currentTimeMillis();
+        if (now - lastSweep < SWEEP_INTERVAL_MS) {
+            return;
+        }
+        lastSweep = now;
+        nearCache.forEach((key, entry) -> {
+            boolean expired = !cache.containsKey(key);
+            if (expired || (entryTTLInSeconds > 0 && now - entry.lastAccess() > entryTTLInSeconds * 1000)) {
+                nearCache.remove(key);
+                if (expired) {
+                    removeFields(cache, key, entry.bean().getClass());
+                }
+            }
+        });
+    }
+
+    private void removeFields(ReplicatedMap<String, Object> cache, String key, Class<?> beanClass) {
+        for (Field f : getReplicatedFields(beanClass)) {
+            cache.remove(key + FIELD_SEPARATOR + f.getName());
+        }
+    }
+
+    /**
+     * @return non static, non transient fields of the bean class and its superclasses
+     */
+    private List<Field> getReplicatedFields(Class<?> beanClass) {
+        return replicatedFields.computeIfAbsent(beanClass, c -> {
+            List<Field> result = new ArrayList<>();
+            for (Class<?> k = c; k != null && k != Object.class; k = k.getSuperclass()) {
+                for (Field f : k.getDeclaredFields()) {
+                    if (!Modifier.isStatic(f.getModifiers()) && !Modifier.isTransient(f.getModifiers()) && !f.isSynthetic()) {
+                        f.setAccessible(true);
+                        result.add(f);
+                    }
+                }
+            }
+            return List.copyOf(result);
+        });
+    }
+
+    private static Object getField(Field f, Object bean) {
+        try {
+            return f.get(bean);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void setField(Field f, Object bean, Object value) {
+        try {
+            f.set(bean, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(nearCacheHits.sum(), nearCacheMisses.sum(), replications.sum(), replicatedBytes.sum(), lastReplicatedBytes.get());
+    }
+
+    protected boolean isCluster() {
+        return ClusterHelper.isCluster();
+    }
+
+    protected HazelcastInstance getHazelcastInstance() {
+        return ClusterHelper.getHazelcastInstance();
+    }
 
-        return result;
+    private ReplicatedMap<String, Object> getCache() {
+        return getHazelcastInstance().getReplicatedMap(CACHE_NAME);
     }
 
     @Override
     public void registerDestructionCallback(String s, Runnable runnable) {
         //if not cluster, use standard session scope
-        if (!ClusterHelper.isCluster()) {
+        if (!isCluster()) {
             super.registerDestructionCallback(s, runnable);
         }
     }
@@ -126,7 +384,7 @@ public abstract class AbstractHazelcastSessionScope<T> extends SessionScope {
     @Override
     public Object resolveContextualObject(String s) {
         //if not cluster, use standard session scope
-        if (!ClusterHelper.isCluster()) {
+        if (!isCluster()) {
             return super.resolveContextualObject(s);
         }
         return null;
@@ -33,6 +33,7 @@ import com.openkoda.core.form.ReflectionBasedEntityForm;
 import com.openkoda.core.helper.SpringProfilesHelper;
 import com.openkoda.core.lifecycle.BaseDatabaseInitializer;
 import com.openkoda.core.lifecycle.SearchViewCreator;
+import com.openkoda.core.lifecycle.StartupTimeline;
 import com.openkoda.core.multitenancy.MultitenancyService;
 import com.openkoda.core.repository.common.ProfileSettingsRepository;
 import com.openkoda.core.repository.common.ScopedSecureRepository;
@@ -184,20 +185,26 @@ public class BasicCustomisationService extends ComponentProvider implements Cust
     public void onApplicationStart() {
         try {
             UserProvider.setCronJobAuthentication();
-            SearchableRepositories.discoverSearchableRepositories();
-            services.dynamicEntityRegistration.registerDynamicRepositories(not(isInitializationProfile()));
-            initialDataLoader.loadInitialData(isInitializationProfile());
-            this.registerApplicationConsumers();
-            services.eventListener.registerEventClasses((Class<AbstractApplicationEvent>[]) getClasses(eventClasses));
-            services.eventListener.setAllAvailableAppEvents();
-            services.eventListener.setAllAvailableAppConsumers();
-            services.eventListener.registerAllEventListenersFromDb();
-            services.scheduler.scheduleAllFromDb();
-            services.form.loadAllFormsFromDb(not(isInitializationProfile()));
-            searchViewCreator.prepareSearchableRepositories();
-            for (Consumer<CustomisationService> c : onApplicationStartListeners) {
-                c.accept(this);
-            }
+            StartupTimeline.phase("Searchable repositories discovery", () -> {
+                SearchableRepositories.discoverSearchableRepositories();
+                services.dynamicEntityRegistration.registerDynamicRepositories(not(isInitializationProfile()));
+            });
+            StartupTimeline.phase("Initial data", () -> initialDataLoader.loadInitialData(isInitializationProfile()));
+            StartupTimeline.phase("Events, consumers and schedulers", () -> {
+                this.registerApplicationConsumers();
+                services.eventListener.registerEventClasses((Class<AbstractApplicationEvent>[]) getClasses(eventClasses));
+                services.eventListener.setAllAvailableAppEvents();
+                services.eventListener.setAllAvailableAppConsumers();
+                services.eventListener.registerAllEventListenersFromDb();
+                services.scheduler.scheduleAllFromDb();
+            });
+            StartupTimeline.phase("Forms", () -> services.form.loadAllFormsFromDb(not(isInitializationProfile())));
+            StartupTimeline.phase("Global search view", () -> searchViewCreator.prepareSearchableRepositories());
+            StartupTimeline.phase("Application start listeners", () -> {
+                for (Consumer<CustomisationService> c : onApplicationStartListeners) {
+                    c.accept(this);
+                }
+            });
             services.applicationEvent.emitEvent(ApplicationEvent.APPLICATION_STARTED, LocalDateTime.now());
         } finally {
             UserProvider.clearAuthentication();
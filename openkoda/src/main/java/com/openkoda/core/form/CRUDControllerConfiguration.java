@@ -24,6 +24,7 @@ package com.openkoda.core.form;
 import com.openkoda.controller.common.PageAttributes;
 import com.openkoda.core.flow.PageAttr;
 import com.openkoda.core.repository.common.ScopedSecureRepository;
+import com.openkoda.core.repository.pagination.CountMode;
 import com.openkoda.dto.OrganizationRelatedObject;
 import com.openkoda.model.MapEntity;
 import com.openkoda.model.Privilege;
@@ -79,6 +80,7 @@ public class CRUDControllerConfiguration<D extends OrganizationRelatedObject, E
         private String[] genericTableFields;
         private String[] filterFields;
         private Long organizationId;
+        private CountMode countMode;
 
         private CRUDControllerConfiguration(String key, FrontendMappingDefinition frontendMappingDefinition,
                                             ScopedSecureRepository<E> secureRepository,
@@ -198,6 +200,19 @@ public class CRUDControllerConfiguration<D extends OrganizationRelatedObject, E
                 return this;
         }
 
+        /**
+         * Sets how the total of the table view page is counted, see {@link CountMode}.
+         * When not set, <code>pagination.crud.count-mode</code> applies.
+         */
+        public CRUDControllerConfiguration<D, E, F> setCountMode(CountMode countMode) {
+                this.countMode = countMode;
+                return this;
+        }
+
+        public CountMode getCountMode() {
+                return countMode;
+        }
+
         public String[] getTableFormFieldNames() {
                 return genericTableFields;
         }
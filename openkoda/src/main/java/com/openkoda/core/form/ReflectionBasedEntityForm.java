@@ -28,6 +28,7 @@ import com.openkoda.core.security.OrganizationUser;
 import com.openkoda.core.security.UserProvider;
 import com.openkoda.model.common.SearchableOrganizationRelatedEntity;
 import com.openkoda.model.component.FrontendResource;
+import com.openkoda.repository.SecureEntityDictionaryRepository;
 import org.apache.commons.beanutils.BeanUtils;
 import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -211,7 +212,10 @@ public class ReflectionBasedEntityForm extends AbstractOrganizationRelatedEntity
         Map<String, Map> dictionaries = new HashMap<>();
         for (FrontendMappingFieldDefinition field : fd.fields) {
             if (field.datalistSupplier != null && !field.formBasedDatalistSupplier) {
-                dictionaries.put(field.datalistId, (Map) field.datalistSupplier.apply(null, dictionaryRepository));
+                Set<Object> values = datalistValues(fd, entities, fieldNames, field.datalistId);
+                if (values != null) {
+                    dictionaries.put(field.datalistId, (Map) SecureEntityDictionaryRepository.labelsOf(values, () -> field.datalistSupplier.apply(null, dictionaryRepository)));
+                }
             }
         }
 
@@ -243,6 +247,31 @@ public class ReflectionBasedEntityForm extends AbstractOrganizationRelatedEntity
         return result;
     }
 
+    /**
+     * @return values of the fields using the datalist, only these need descriptions, null when no field uses it
+     */
+    private static Set<Object> datalistValues(FrontendMappingDefinition fd, List<? extends SearchableOrganizationRelatedEntity> entities, String[] fieldNames, String datalistId) {
+        Set<Object> result = null;
+        for (String fieldName : fieldNames) {
+            FrontendMappingFieldDefinition f = fieldName.contains(".") ? null : fd.findField(fieldName);
+            if (f == null || !datalistId.equals(f.datalistId)) {
+                continue;
+            }
+            result = result == null ? new HashSet<>() : result;
+            for (SearchableOrganizationRelatedEntity se : entities) {
+                try {
+                    Object value = PropertyUtils.getProperty(se, fieldName);
+                    if (value != null) {
+                        result.add(value);
+                    }
+                } catch (Exception e) {
+                    LoggingComponent.debugLogger.debug("Could not read entity property", e);
+                }
+            }
+        }
+        return result;
+    }
+
     public static List<Object> calculateFieldValuesWithReadPrivileges(FrontendMappingDefinition fd, SearchableOrganizationRelatedEntity entity, String[] fieldNames, Map<String, Map> dictionaries,
             Map<String, Boolean> fieldColumnVisibility, boolean canReadAll) {
         if (fieldNames == null) {
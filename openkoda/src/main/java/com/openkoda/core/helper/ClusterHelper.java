@@ -42,6 +42,8 @@ public class ClusterHelper implements LoggingComponentWithRequestId {
 
     public static final String CLUSTER_EVENT_TOPIC = "clusterEvent";
 
+    public static final String CLUSTER_EVENT_BATCH_TOPIC = "clusterEventBatch";
+
     private static ClusterHelper instance;
 
     @Value("${hazelcast.members.commaSeparated:127.0.0.1}")
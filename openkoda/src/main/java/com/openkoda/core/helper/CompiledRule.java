@@ -0,0 +1,239 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.helper;
+
+import com.openkoda.dto.RuleDto;
+import com.openkoda.form.rule.LogicalOperator;
+import com.openkoda.form.rule.Operator;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.apache.commons.lang3.EnumUtils;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.CompoundExpression;
+import org.springframework.expression.spel.ast.InlineList;
+import org.springframework.expression.spel.ast.MethodReference;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
+
+import java.util.*;
+
+import static com.openkoda.core.helper.RuleSpelHelper.VALUE_APOSTROPHE;
+
+/**
+ * Rule text parsed once, together with everything derived from it: rule statements for {@link RuleDto}, SQL CASE
+ * fragment and a builder of the JPA predicate of the rule condition.
+ * Instances are immutable for their users and shared between threads through the cache in {@link RuleSpelHelper}.
+ */
+public class CompiledRule {
+
+    /**
+     * Builds the predicate of the rule condition for given query root
+     */
+    @FunctionalInterface
+    public interface PredicateBuilder {
+        Predicate toPredicate(Root<?> root, CriteriaBuilder cb);
+    }
+
+    private static final PredicateBuilder NO_MATCH = (root, cb) -> cb.disjunction();
+
+    /**
+     * Rules can read properties and call instance methods (eg. contains) of the row, but can't reference types,
+     * constructors or beans, nor assign values
+     */
+    private static final EvaluationContext ROW_CONTEXT = SimpleEvaluationContext.forReadOnlyDataBinding().withInstanceMethods().build();
+
+    private final String rule;
+    private final SpelExpressionParser parser;
+    private final SpelExpression expression;
+    private final ParseException parseException;
+    private final String selectPrefix;
+    private final PredicateBuilder predicateBuilder;
+
+    private record Statements(Map<Long, Map<RuleDto.StatementKey, Object>> ifStatements,
+                              Map<Long, Map<RuleDto.StatementKey, Object>> thenStatements,
+                              Map<Long, Map<RuleDto.StatementKey, Object>> elseStatements) {}
+
+    private volatile Statements statements;
+    private volatile SpelExpression condition;
+
+    CompiledRule(String rule, SpelExpressionParser parser) {
+        this.rule = rule;
+        this.parser = parser;
+        SpelExpression parsed = null;
+        ParseException error = null;
+        try {
+            parsed = parser.parseRaw(rule);
+        } catch (ParseException e) {
+            error = e;
+        }
+        this.expression = parsed;
+        this.parseException = error;
+        SpelNode ast = parsed != null ? parsed.getAST() : null;
+        this.selectPrefix = ast != null && ast.getChildCount() == 3 ? "SELECT CASE WHEN " + ast.getChild(0).toStringAST()
+                + " THEN " + ast.getChild(1).toStringAST()
+                + " ELSE " + ast.getChild(2).toStringAST() : null;
+        this.predicateBuilder = ast != null ? compilePredicate(conditionNode(ast)) : NO_MATCH;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+
+    public boolean isValid() {
+        return parseException == null;
+    }
+
+    /**
+     * @return parsed expression, compiled to bytecode by SpEL after it has been evaluated a number of times
+     * @throws ParseException when the rule is not a valid expression
+     */
+    public SpelExpression getExpression() {
+        if (parseException != null) {
+            throw parseException;
+        }
+        return expression;
+    }
+
+    /**
+     * @return "SELECT CASE WHEN ... FROM tableName" for if/then/else rule, empty string otherwise
+     */
+    public String getSelect(String tableName) {
+        getExpression();
+        return selectPrefix != null ? selectPrefix + " FROM " + tableName : "";
+    }
+
+    /**
+     * @return new RuleDto with copies of the statements parsed from the rule, so the caller can modify it
+     */
+    public RuleDto toRuleDto() {
+        Statements s = statements();
+        RuleDto ruleDto = new RuleDto();
+        ruleDto.setIfStatements(copy(s.ifStatements()));
+        ruleDto.setThenStatements(copy(s.thenStatements()));
+        if (s.elseStatements() != null) {
+            ruleDto.setElseStatements(copy(s.elseStatements()));
+        }
+        return ruleDto;
+    }
+
+    /**
+     * @return predicate of the rule condition (the "if" part of if/then/else rule, whole rule otherwise)
+     */
+    public Predicate toPredicate(Root<?> root, CriteriaBuilder cb) {
+        return predicateBuilder.toPredicate(root, cb);
+    }
+
+    /**
+     * Evaluates the rule condition against given object, used for filtering rows already in memory
+     */
+    public boolean matches(Object row) {
+        SpelExpression c = condition;
+        if (c == null) {
+            SpelNode ast = getExpression().getAST();
+            SpelNode conditionNode = conditionNode(ast);
+            c = condition = conditionNode == ast ? expression : parser.parseRaw(conditionNode.toStringAST());
+        }
+        return Boolean.TRUE.equals(c.getValue(ROW_CONTEXT, row, Boolean.class));
+    }
+
+    private Statements statements() {
+        Statements result = statements;
+        if (result == null) {
+            SpelNode ast = getExpression().getAST();
+            result = statements = new Statements(
+                    parseStatements(ast.getChild(0)),
+                    parseStatements(ast.getChild(1)),
+                    ast.getChild(2) != null ? parseStatements(ast.getChild(2)) : null);
+        }
+        return result;
+    }
+
+    private static Map<Long, Map<RuleDto.StatementKey, Object>> parseStatements(SpelNode node) {
+        return RuleSpelHelper.parse(0, new TreeMap<>(), null, "", Collections.emptyList(), null, node).getT1();
+    }
+
+    private static Map<Long, Map<RuleDto.StatementKey, Object>> copy(Map<Long, Map<RuleDto.StatementKey, Object>> statements) {
+        Map<Long, Map<RuleDto.StatementKey, Object>> result = new TreeMap<>();
+        statements.forEach((index, statement) -> result.put(index, new TreeMap<>(statement)));
+        return result;
+    }
+
+    private static SpelNode conditionNode(SpelNode ast) {
+        return ast.getChildCount() == 3 ? ast.getChild(0) : ast;
+    }
+
+    /**
+     * Translates the condition AST to predicate builder once, with the same semantics as
+     * {@link RuleSpelHelper#parse}: and/or, ==, !=, &gt;, &lt; on field and value, field.contains('value') as LIKE
+     * and {'a','b'}.contains(field) as IN. Other expressions match nothing.
+     */
+    private static PredicateBuilder compilePredicate(SpelNode ast) {
+        if (ast instanceof org.springframework.expression.spel.ast.Operator operator) {
+            String operatorName = operator.getOperatorName();
+            if (EnumUtils.isValidEnum(LogicalOperator.class, operatorName)) {
+                PredicateBuilder left = compilePredicate(operator.getLeftOperand());
+                PredicateBuilder right = compilePredicate(operator.getRightOperand());
+                return LogicalOperator.valueOf(operatorName) == LogicalOperator.and
+                        ? (root, cb) -> cb.and(left.toPredicate(root, cb), right.toPredicate(root, cb))
+                        : (root, cb) -> cb.or(left.toPredicate(root, cb), right.toPredicate(root, cb));
+            }
+            if (operator.getLeftOperand().getChildCount() == 0 && operator.getRightOperand().getChildCount() == 0) {
+                String field = operator.getLeftOperand().toStringAST();
+                String value = operator.getRightOperand().toStringAST().replaceAll(VALUE_APOSTROPHE, "");
+                Operator ruleOperator = Operator.fromString(operatorName);
+                if (ruleOperator == Operator.equals) {
+                    return (root, cb) -> cb.equal(root.get(field), value);
+                } else if (ruleOperator == Operator.notEquals) {
+                    return (root, cb) -> cb.notEqual(root.get(field), value);
+                } else if (ruleOperator == Operator.greaterThan) {
+                    return (root, cb) -> cb.greaterThan(root.<String>get(field), value);
+                } else if (ruleOperator == Operator.lessThan) {
+                    return (root, cb) -> cb.lessThan(root.<String>get(field), value);
+                }
+            }
+            return NO_MATCH;
+        }
+        if (ast instanceof CompoundExpression && ast.getChildCount() == 2
+                && ast.getChild(1) instanceof MethodReference method
+                && Operator.contains.name().equals(method.getName()) && method.getChildCount() == 1) {
+            SpelNode target = ast.getChild(0);
+            SpelNode argument = method.getChild(0);
+            if (target instanceof PropertyOrFieldReference field && target.getChildCount() == 0) {
+                String fieldName = field.getName();
+                String pattern = "%" + argument.toStringAST().replaceAll(VALUE_APOSTROPHE, "") + "%";
+                return (root, cb) -> cb.like(root.<String>get(fieldName), pattern);
+            }
+            if (target instanceof InlineList list && list.isConstant() && argument instanceof PropertyOrFieldReference) {
+                String fieldName = argument.toStringAST();
+                List<String> values = list.getConstantValue().stream()
+                        .map(o -> o.toString().replaceAll(VALUE_APOSTROPHE, "")).toList();
+                return (root, cb) -> root.get(fieldName).in(values);
+            }
+        }
+        return NO_MATCH;
+    }
+}
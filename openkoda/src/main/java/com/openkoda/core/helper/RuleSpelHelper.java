@@ -25,16 +25,17 @@ import com.openkoda.dto.RuleDto;
 import com.openkoda.form.rule.LogicalOperator;
 import com.openkoda.form.rule.Operator;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
 import org.apache.commons.lang3.EnumUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.ast.InlineList;
 import org.springframework.expression.spel.ast.MethodReference;
 import org.springframework.expression.spel.ast.PropertyOrFieldReference;
-import org.springframework.expression.spel.standard.SpelExpression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.stereotype.Component;
 import reactor.util.function.Tuple2;
@@ -43,6 +44,12 @@ import reactor.util.function.Tuples;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Conversion of if/then/else SpEL rules to {@link RuleDto}, SQL and JPA predicates.
+ * <p>Rules are parsed once with a shared parser in {@link SpelCompilerMode#MIXED} mode and kept as {@link CompiledRule}
+ * in a bounded LRU cache keyed by the rule text. Everything cached is derived from the text only, so a changed rule
+ * is a new cache entry and the entries never need to be invalidated.</p>
+ */
 @Component
 public class RuleSpelHelper {
 
@@ -51,6 +58,51 @@ public class RuleSpelHelper {
     public static final String VALUE_APOSTROPHE = "'";
     public static final String VALUE_REGEX = "^([a-zA-Z0-9,. _-]+)$";
     public static final String EMPTY_ELSE = "null";
+    public static final int MAX_CACHED_RULES = 1024;
+
+    private static final SpelExpressionParser parser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, RuleSpelHelper.class.getClassLoader()));
+
+    private static final Map<String, CompiledRule> compiledRules = Collections.synchronizedMap(
+            new LinkedHashMap<String, CompiledRule>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompiledRule> eldest) {
+                    return size() > MAX_CACHED_RULES;
+                }
+            });
+
+    /**
+     * @return rule parsed once and cached by its text
+     */
+    public static CompiledRule compile(String rule) {
+        CompiledRule result = compiledRules.get(rule);
+        if (result == null) {
+            result = new CompiledRule(rule, parser);
+            CompiledRule previous = compiledRules.putIfAbsent(rule, result);
+            if (previous != null) {
+                result = previous;
+            }
+        }
+        return result;
+    }
+
+    public static void invalidateAll() {
+        compiledRules.clear();
+    }
+
+    /**
+     * @return predicate of the rule condition, built without parsing the rule again
+     */
+    public static Predicate getPredicate(String rule, Root<?> root, CriteriaBuilder cb) {
+        return compile(rule).toPredicate(root, cb);
+    }
+
+    /**
+     * @return whether the rule condition is true for given object
+     */
+    public static boolean matches(String rule, Object row) {
+        return compile(rule).matches(row);
+    }
 
     public static String parseToString(RuleDto ruleDto) {
         if(ruleDto.getIfStatements().get(0L).get(RuleDto.StatementKey.Operator) != null
@@ -73,36 +125,15 @@ public class RuleSpelHelper {
             return ruleDto;
         }
 
-        SpelExpressionParser parser = new SpelExpressionParser();
-        SpelExpression exp = parser.parseRaw(rule);
-
-        ruleDto.setIfStatements(parse(0, new TreeMap<>(), null, "", Collections.emptyList(), null, exp.getAST().getChild(0)).getT1());
-        ruleDto.setThenStatements(parse(0, new TreeMap<>(), null, "", Collections.emptyList(), null, exp.getAST().getChild(1)).getT1());
-        if(exp.getAST().getChild(2) != null) {
-            ruleDto.setElseStatements(parse(0, new TreeMap<>(), null, "", Collections.emptyList(), null, exp.getAST().getChild(2)).getT1());
-        }
-
-        return ruleDto;
+        return compile(rule).toRuleDto();
     }
 
     public static boolean isRuleValid(String rule) {
-        SpelExpressionParser parser = new SpelExpressionParser();
-        try {
-            parser.parseExpression(rule);
-            return true;
-        } catch (ParseException e) {
-            return false;
-        }
+        return compile(rule).isValid();
     }
 
     public static String getSelect(String rule, String tableName) {
-        SpelExpressionParser parser = new SpelExpressionParser();
-        SpelExpression exp = parser.parseRaw(rule);
-        SpelNode ast = exp.getAST();
-        return ast.getChildCount() == 3 ? "SELECT CASE WHEN " + ast.getChild(0).toStringAST()
-                + " THEN " + ast.getChild(1).toStringAST()
-                + " ELSE " + ast.getChild(2).toStringAST() +
-                " FROM " + tableName : "";
+        return compile(rule).getSelect(tableName);
     }
 
     public static<R> Tuple2<Map<Long, Map<RuleDto.StatementKey, Object>>, Predicate> parse(long index, Map<Long, Map<RuleDto.StatementKey, Object>> ruleParts, Root<R> root, String fieldName, List<String> values, EntityManager entityManager, SpelNode ast) {
@@ -21,29 +21,26 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 package com.openkoda.core.helper;
 
-import com.openkoda.core.security.UserProvider;
-import com.openkoda.core.tracker.RequestIdHolder;
+import com.openkoda.core.profiler.Profiler;
 import com.openkoda.model.common.ModelConstants;
-import org.apache.commons.lang3.StringUtils;
 import org.hibernate.resource.jdbc.spi.StatementInspector;
 
+/**
+ * Replaces {@link ModelConstants#USER_ID_PLACEHOLDER} with the session variable set by
+ * {@link com.openkoda.core.configuration.SessionContextDataSource}, so that statement texts do not depend on the user
+ * or request and can be cached as prepared statements. Request id is passed as application_name instead of a comment.
+ */
 public class SqlCommentStatementInspector
         implements StatementInspector, ReadableCode{
 
     @Override
     public String inspect(String sql) {
 
+        Profiler.onStatement(sql);
         if (not(sql.contains(ModelConstants.USER_ID_PLACEHOLDER))) {
-            return includeRequestId(sql);
+            return sql;
         }
 
-        String userId = UserProvider.getUserIdOrNotExistingIdAsString();
-
-        return includeRequestId(sql.replaceAll(ModelConstants.USER_ID_PLACEHOLDER, userId));
-    }
-
-//    Includes request id of a current thread to sql statement as a comment at the end
-    private String includeRequestId(String sql) {
-        return StringUtils.isNotEmpty(RequestIdHolder.getId()) ? String.format("%s /*%s*/", sql, RequestIdHolder.getId()) : sql;
+        return sql.replace(ModelConstants.USER_ID_PLACEHOLDER, ModelConstants.USER_ID_SESSION_VARIABLE_SQL);
     }
-}
\ No newline at end of file
+}
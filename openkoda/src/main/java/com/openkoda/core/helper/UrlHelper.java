@@ -520,6 +520,14 @@ public class UrlHelper implements URLConstants, ReadableCode {
         return entityBase(SYSTEM_HEATH) + _VALIDATE;
     }
 
+    public String systemProfiler() {
+        return entityBase(SYSTEM_HEATH) + _PROFILER;
+    }
+
+    public String systemIndexes() {
+        return entityBase(SYSTEM_HEATH) + _INDEXES;
+    }
+
 //   AFFILIATION
 
     public String affiliationCodeAll(long orgId) {
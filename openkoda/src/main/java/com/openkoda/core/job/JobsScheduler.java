@@ -21,7 +21,9 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 package com.openkoda.core.job;
 
+import com.openkoda.core.service.system.SystemHealthSampler;
 import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import com.openkoda.service.organization.OrganizationPurgeService;
 import jakarta.inject.Inject;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -38,6 +40,8 @@ public class JobsScheduler implements LoggingComponentWithRequestId {
     @Inject PostMessagesToWebhookJob postMessagesToWebhookJob;
     @Inject SearchIndexUpdaterJob searchIndexUpdaterJob;
     @Inject SystemHealthAlertJob systemHealthAlertJob;
+    @Inject SystemHealthSampler systemHealthSampler;
+    @Inject OrganizationPurgeService organizationPurgeService;
 
     @Scheduled(initialDelay = 10000, fixedDelay = 5000)
     public void emailSenderJob() {
@@ -54,6 +58,16 @@ public class JobsScheduler implements LoggingComponentWithRequestId {
         searchIndexUpdaterJob.updateSearchIndexes();
     }
 
+    @Scheduled(initialDelay = 10000, fixedDelayString = "${system.health.sampler.interval-ms:15000}")
+    public void systemHealthSampler() {
+        systemHealthSampler.sample();
+    }
+
+    @Scheduled(initialDelay = 60000, fixedDelayString = "${organization.purge.resume-interval-ms:60000}")
+    public void organizationPurgeResumeJob() {
+        organizationPurgeService.resumePurges();
+    }
+
     @Scheduled(cron = "${scheduled.systemHealth.check:0 0 4 * * ?}")
     public void systemHealthAlertJob() {
         systemHealthAlertJob.checkSystem();
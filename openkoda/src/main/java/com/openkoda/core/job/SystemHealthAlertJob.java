@@ -22,18 +22,18 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 package com.openkoda.core.job;
 
 import com.openkoda.core.audit.SystemHealthStatus;
+import com.openkoda.core.service.system.SystemHealthSampler;
 import com.openkoda.core.service.system.SystemHealthStatusService;
 import com.openkoda.core.tracker.LoggingComponentWithRequestId;
 import jakarta.inject.Inject;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.util.Arrays;
-
 /**
  * Job checking system status.
  * Gets information such as ram usage, cpu usage and free disk space.
- * See also {@link SystemHealthStatusService}
+ * CPU usage is averaged over the samples history, so that a single spike does not raise an alert.
+ * See also {@link SystemHealthStatusService}, {@link SystemHealthSampler}
  */
 @Component
 public class SystemHealthAlertJob implements LoggingComponentWithRequestId {
@@ -58,7 +58,7 @@ public class SystemHealthAlertJob implements LoggingComponentWithRequestId {
     public void checkSystem() {
         debug("[checkSystem]");
         SystemHealthStatus systemHealthStatus = statHelper.statusNow();
-        double usedRam = ((double) systemHealthStatus.getTotalHeapMemory() / systemHealthStatus.getMaxHeapMemory()) * 100.0;
+        double usedRam = systemHealthStatus.getSample().heapUsedPercent();
         double totalSpace = (double) systemHealthStatus.getPartitions().stream()
                 .map(systemHealthStatus::getTotalSpace)
                 .reduce(Long::sum)
@@ -80,18 +80,21 @@ public class SystemHealthAlertJob implements LoggingComponentWithRequestId {
         } else {
             error("[checkSystem] Error occurred when calculating disk usage");
         }
-        if (systemHealthStatus.isSysstatEnabled()) {
-            double cpuUsage = getCpuUsage(systemHealthStatus);
-            if (cpuUsage > maxCpuUsagePercentageAllowed) {
-                error("[checkSystem] CPU usage is above allowed levels. Currently at {} ", cpuUsage);
-            }
+        double cpuUsage = getCpuUsage(systemHealthStatus);
+        if (cpuUsage > maxCpuUsagePercentageAllowed) {
+            error("[checkSystem] CPU usage is above allowed levels. Currently at {} ", cpuUsage);
+        }
+        int connectionsWaiting = systemHealthStatus.getSample().connectionsWaiting();
+        if (connectionsWaiting > 0) {
+            warn("[checkSystem] {} threads waiting for a database connection", connectionsWaiting);
         }
     }
 
     private double getCpuUsage(SystemHealthStatus systemHealthStatus) {
-        int cpuIndex = Arrays.asList(systemHealthStatus.getPidstatHeader()).indexOf("%CPU");
-        return systemHealthStatus.getPidstatData().stream()
-                .map(row -> Double.parseDouble(row[cpuIndex]))
-                .reduce(Double::sum).orElse(-1.0);
+        return systemHealthStatus.getHistory().stream()
+                .mapToDouble(SystemHealthSampler.Sample::processCpuLoad)
+                .filter(load -> load >= 0)
+                .average()
+                .orElse(0) * 100.0;
     }
 }
@@ -29,7 +29,7 @@ import com.openkoda.model.common.*;
 import com.openkoda.repository.SearchableRepositories;
 import com.openkoda.repository.SecureRepository;
 import jakarta.inject.Inject;
-import jakarta.persistence.EntityManager;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.annotations.Formula;
 import org.springframework.stereotype.Component;
@@ -37,6 +37,7 @@ import org.springframework.stereotype.Component;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import static com.openkoda.model.common.ModelConstants.*;
 
@@ -46,28 +47,39 @@ public class SearchViewCreator implements LoggingComponentWithRequestId {
     @Inject
     protected QueryExecutor queryExecutor;
 
+    /**
+     * (Re)creates global_search_view from the metadata of all searchable repositories.
+     * The hash of the view definition is stored as the comment of the view, DDL is skipped when the view already exists
+     * with the same hash.
+     */
     public void prepareSearchableRepositories() {
         debug("[prepareSearchableRepositories]");
-        String queryString = "";
-
-        if (not(SpringProfilesHelper.isInitializationProfile())) {
-            queryString = "DROP VIEW IF EXISTS global_search_view; ";
-        }
-
         Map<String, SecureRepository> repositories = SearchableRepositories.getSearchableRepositoriesWithEntityKeys();
-        EntityManager em = null;
 
         List<String> queries = new ArrayList<>(repositories.size());
-
-        StringBuilder sb = new StringBuilder();
-        for (Map.Entry<String, SecureRepository> r : repositories.entrySet()) {
+        for (Map.Entry<String, SecureRepository> r : new TreeMap<>(repositories).entrySet()) {
             SearchableRepositoryMetadata gsa = SearchableRepositories.getGlobalSearchableRepositoryAnnotation(r.getValue());
             Class c = gsa.entityClass();
             String tableName = SearchableRepositories.discoverTableName(c);
             queries.add(prepareSubquery(c, tableName, gsa));
         }
 
-        queryString += "CREATE OR REPLACE VIEW global_search_view AS " + StringUtils.join(queries, " union ");
+        String viewDefinition = "CREATE OR REPLACE VIEW global_search_view AS " + StringUtils.join(queries, " union ");
+        String hash = DigestUtils.md5Hex(viewDefinition);
+        if (not(SpringProfilesHelper.isInitializationProfile())) {
+            String currentHash = queryExecutor.runEntityManagerOperation(em -> (String) em.createNativeQuery(
+                    "SELECT obj_description(to_regclass('global_search_view'), 'pg_class')").getSingleResult());
+            if (hash.equals(currentHash)) {
+                debug("[prepareSearchableRepositories] global_search_view is up to date");
+                return;
+            }
+        }
+
+        String queryString = "";
+        if (not(SpringProfilesHelper.isInitializationProfile())) {
+            queryString = "DROP VIEW IF EXISTS global_search_view; ";
+        }
+        queryString += viewDefinition + "; COMMENT ON VIEW global_search_view IS '" + hash + "'";
 
         queryExecutor.runQueriesInTransaction(queryString);
 
@@ -0,0 +1,79 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.lifecycle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Durations of the application startup phases, from reading dynamic entities before the Spring context starts
+ * to the end of {@link com.openkoda.core.customisation.BasicCustomisationService#onApplicationStart()}.
+ * Phases are recorded in the order they finish, the report is printed to the console when the application started.
+ */
+public class StartupTimeline {
+
+    public record Phase(String name, long durationMillis) {}
+
+    private static final List<Phase> phases = Collections.synchronizedList(new ArrayList<>());
+
+    private static long startedAt = System.currentTimeMillis();
+
+    /**
+     * Starts a new timeline, forgetting phases recorded so far (e.g. on application restart)
+     */
+    public static void reset() {
+        phases.clear();
+        startedAt = System.currentTimeMillis();
+    }
+
+    public static void record(String name, long startMillis) {
+        phases.add(new Phase(name, System.currentTimeMillis() - startMillis));
+    }
+
+    public static void phase(String name, Runnable action) {
+        long start = System.currentTimeMillis();
+        try {
+            action.run();
+        } finally {
+            record(name, start);
+        }
+    }
+
+    public static List<Phase> getPhases() {
+        synchronized (phases) {
+            return List.copyOf(phases);
+        }
+    }
+
+    /**
+     * @return table with the duration of each phase and the total time since the timeline started
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase p : getPhases()) {
+            sb.append(String.format(" %-48s %8d ms%n", p.name(), p.durationMillis()));
+        }
+        sb.append(String.format(" %-48s %8d ms", "Total", System.currentTimeMillis() - startedAt));
+        return sb.toString();
+    }
+}
@@ -300,6 +300,25 @@ public class MultitenancyService implements LoggingComponentWithRequestId, Reada
         return true;
     }
 
+    /**
+     * Drops the schema renamed by {@link #markSchemaAsDeleted(long, int)}, with all its tables.
+     * If the application instance is configured for single schema multitenancy the function will do noop.
+     * @param organizationId organization id
+     * @param assignedDatasource datasource assigned to the organization
+     */
+    public boolean dropDeletedSchema(long organizationId, int assignedDatasource) {
+        if (not(isMultitenancy)) {
+            return false;
+        }
+        TenantResolver.setTenantedResource(new TenantResolver.TenantedResource(assignedDatasource));
+        debug("[dropDeletedSchema] org {} set tenanted resource to {}", organizationId, TenantResolver.getTenantedResource());
+
+        queryExecutor.runQueriesInTransaction(String.format("DROP SCHEMA IF EXISTS deleted_%d CASCADE;", organizationId));
+        debug("[dropDeletedSchema] org {} dropped schema deleted_{}", organizationId, organizationId);
+
+        return true;
+    }
+
     protected  <T> List<Future<T>> executeTasks(long timeoutInMilliseconds, boolean wait, List<Callable<T>> tasks) throws InterruptedException {
         debug("[executeTasks]");
         if (tasks == null || tasks.isEmpty()) {
@@ -0,0 +1,229 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.profiler;
+
+import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>In-process profiler collecting per-method latency histograms, SQL statement counts and times, and slow requests.</p>
+ * <p>Enabled when <code>profiler.sampling-rate</code> is greater than 0, which can be changed at runtime on the system
+ * health page. A sampled fraction of web requests (and of method calls made outside web requests) get method
+ * timings from {@link ProfilerAspect}, every request gets SQL counts from {@link ProfilerSessionEventListener}.
+ * When disabled, each profiled call costs a single volatile read.</p>
+ * <p>Method times are inclusive, a method calling another profiled method includes its time.</p>
+ */
+@Component("profiler")
+public class Profiler implements LoggingComponentWithRequestId {
+
+    public static final String SQL = "SQL statement";
+
+    public record MethodStatistics(String method, long count, double totalMs, double meanMs, double p50Ms, double p95Ms, double p99Ms, double maxMs) {}
+
+    public record SlowRequest(String request, LocalDateTime startedAt, long durationMs, boolean sampled, int sqlCount, double sqlMs,
+                              List<String> methods, List<String> statements) {}
+
+    public record Snapshot(boolean enabled, double samplingRate, LocalDateTime since, long requests,
+                           MethodStatistics sql, List<MethodStatistics> methods, List<SlowRequest> slowRequests) {}
+
+    private static final ThreadLocal<RequestProfile> currentRequest = new ThreadLocal<>();
+
+    private static volatile Profiler instance;
+
+    private volatile double samplingRate;
+
+    @Value("${profiler.slow-request.threshold-ms:2000}")
+    private long slowRequestThresholdMs;
+
+    @Value("${profiler.slow-requests.max:50}")
+    private int slowRequestsMax;
+
+    @Value("${profiler.methods.max:5000}")
+    private int methodsMax;
+
+    private final Map<String, LatencyHistogram> methods = new ConcurrentHashMap<>();
+    private volatile LatencyHistogram sql = new LatencyHistogram();
+    private final Deque<SlowRequest> slowRequests = new ArrayDeque<>();
+    private final LongAdder requests = new LongAdder();
+    private volatile LocalDateTime since = LocalDateTime.now();
+
+    public Profiler(@Value("${profiler.sampling-rate:0}") double samplingRate) {
+        this.samplingRate = Math.min(1, Math.max(0, samplingRate));
+    }
+
+    @PostConstruct
+    void init() {
+        instance = this;
+    }
+
+    public boolean isEnabled() {
+        return samplingRate > 0;
+    }
+
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+
+    /**
+     * Changes the fraction of requests (and method calls outside requests) with method timings, 0 disables the profiler
+     */
+    public void setSamplingRate(double samplingRate) {
+        info("[setSamplingRate] {}", samplingRate);
+        this.samplingRate = Math.min(1, Math.max(0, samplingRate));
+    }
+
+    /**
+     * Clears all collected statistics
+     */
+    public void reset() {
+        info("[reset]");
+        methods.clear();
+        sql = new LatencyHistogram();
+        requests.reset();
+        synchronized (slowRequests) {
+            slowRequests.clear();
+        }
+        since = LocalDateTime.now();
+    }
+
+    /**
+     * @return true when the current method call should be timed
+     */
+    public boolean shouldSample() {
+        double rate = samplingRate;
+        if (rate <= 0) {
+            return false;
+        }
+        RequestProfile request = currentRequest.get();
+        return request != null ? request.sampled : ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    public void recordMethod(String method, long nanos) {
+        LatencyHistogram histogram = methods.get(method);
+        if (histogram == null) {
+            if (methods.size() >= methodsMax) {
+                return;
+            }
+            histogram = methods.computeIfAbsent(method, k -> new LatencyHistogram());
+        }
+        histogram.recordNanos(nanos);
+        RequestProfile request = currentRequest.get();
+        if (request != null) {
+            request.method(method, nanos);
+        }
+    }
+
+    void startRequest(String name) {
+        if (isEnabled()) {
+            currentRequest.set(new RequestProfile(name, ThreadLocalRandom.current().nextDouble() < samplingRate));
+        }
+    }
+
+    void endRequest() {
+        RequestProfile request = currentRequest.get();
+        if (request == null) {
+            return;
+        }
+        currentRequest.remove();
+        requests.increment();
+        long durationMs = (System.nanoTime() - request.startNanos) / 1_000_000;
+        if (durationMs < slowRequestThresholdMs) {
+            return;
+        }
+        SlowRequest slowRequest = new SlowRequest(request.name, request.startedAt, durationMs, request.sampled,
+                request.sqlCount, request.sqlNanos / 1e6, request.topMethods(10), request.slowestStatements());
+        warn("[endRequest] Slow request {}: {} ms, {} SQL statements in {} ms, methods: {}, statements: {}",
+                request.name, durationMs, slowRequest.sqlCount(), Math.round(slowRequest.sqlMs()), slowRequest.methods(), slowRequest.statements());
+        synchronized (slowRequests) {
+            slowRequests.addFirst(slowRequest);
+            while (slowRequests.size() > slowRequestsMax) {
+                slowRequests.removeLast();
+            }
+        }
+    }
+
+    void clearRequest() {
+        currentRequest.remove();
+    }
+
+    /**
+     * Called by the statement inspector with the SQL of a statement about to be executed
+     */
+    public static void onStatement(String sql) {
+        RequestProfile request = currentRequest.get();
+        if (request != null) {
+            request.statement(sql);
+        }
+    }
+
+    static boolean isRecordingSql() {
+        Profiler profiler = instance;
+        return profiler != null && profiler.samplingRate > 0;
+    }
+
+    static void onStatementExecuted(long nanos) {
+        Profiler profiler = instance;
+        if (profiler == null) {
+            return;
+        }
+        profiler.sql.recordNanos(nanos);
+        RequestProfile request = currentRequest.get();
+        if (request != null) {
+            request.statementExecuted(nanos);
+        }
+    }
+
+    /**
+     * @param methodsLimit maximum number of methods, with the longest total time first
+     */
+    public Snapshot snapshot(int methodsLimit) {
+        List<MethodStatistics> methodStatistics = methods.entrySet().stream()
+                .map(e -> statistics(e.getKey(), e.getValue()))
+                .sorted(Comparator.comparingDouble(MethodStatistics::totalMs).reversed())
+                .limit(methodsLimit)
+                .toList();
+        List<SlowRequest> slow;
+        synchronized (slowRequests) {
+            slow = new ArrayList<>(slowRequests);
+        }
+        return new Snapshot(isEnabled(), samplingRate, since, requests.sum(), statistics(SQL, sql), methodStatistics, slow);
+    }
+
+    public Snapshot snapshot() {
+        return snapshot(Integer.MAX_VALUE);
+    }
+
+    private static MethodStatistics statistics(String method, LatencyHistogram h) {
+        long count = h.getCount();
+        double totalMs = h.getTotalMicros() / 1e3;
+        return new MethodStatistics(method, count, totalMs, count == 0 ? 0 : totalMs / count,
+                h.getPercentileMicros(50) / 1e3, h.getPercentileMicros(95) / 1e3, h.getPercentileMicros(99) / 1e3, h.getMaxMicros() / 1e3);
+    }
+}
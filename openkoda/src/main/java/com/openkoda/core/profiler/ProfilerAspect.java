@@ -0,0 +1,92 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.profiler;
+
+import jakarta.inject.Inject;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * <p>Timing advice for public methods of Openkoda components, recorded by {@link Profiler} for sampled calls only.</p>
+ * <p>Created only with <code>profiler.aspect.enabled=true</code>, as it makes Spring proxy all matching beans.
+ * Aggregators whose public fields are read directly (Services, Repositories, Controllers, ComponentProvider) are
+ * excluded, proxies do not carry field values.</p>
+ */
+@Aspect
+@Component
+@Order(2)
+@ConditionalOnProperty(name = "profiler.aspect.enabled", havingValue = "true")
+public class ProfilerAspect {
+
+    @Inject
+    private Profiler profiler;
+
+    @Pointcut("execution(public * com.openkoda.core.service..*.*(..))"
+            + " || execution(public * com.openkoda.core.controller..*.*(..))"
+            + " || execution(public * com.openkoda.core.customisation..*.*(..))"
+            + " || execution(public * com.openkoda.core.job..*.*(..))"
+            + " || execution(public * com.openkoda.core.audit..*.*(..))"
+            + " || execution(public * com.openkoda.core.lifecycle..*.*(..))"
+            + " || execution(public * com.openkoda.core.repository..*.*(..))"
+            + " || execution(public * com.openkoda.core.flow..*.*(..))"
+            + " || execution(public * com.openkoda.core.helper.JsonHelper.*(..))"
+            + " || execution(public * com.openkoda.core.helper.ModelEnricherInterceptor.*(..))"
+            + " || execution(public * com.openkoda.core.helper.NameHelper.*(..))"
+            + " || execution(public * com.openkoda.core.helper.PrivilegeHelper.*(..))"
+            + " || execution(public * com.openkoda.core.helper.RuleSpelHelper.*(..))"
+            + " || execution(public * com.openkoda.core.helper.UrlHelper.*(..))"
+            + " || execution(public * com.openkoda.core.helper.UserHelper.*(..))"
+            + " || execution(public * com.openkoda.repository..*.*(..))"
+            + " || execution(public * com.openkoda.service..*.*(..))"
+            + " || execution(public * com.openkoda.controller..*.*(..))"
+            + " || execution(public * com.openkoda.form..*.*(..))"
+            + " || execution(public * com.openkoda.integration..*.*(..))"
+            + " || execution(public * com.openkoda.uicomponent..*.*(..))")
+    public void openkodaComponents() {}
+
+    @Pointcut("within(com.openkoda.service.Services)"
+            + " || within(com.openkoda.repository.Repositories)"
+            + " || within(com.openkoda.repository.SecureRepositories)"
+            + " || within(com.openkoda.repository.UnsecureRepositories)"
+            + " || within(com.openkoda.controller.Controllers)"
+            + " || within(com.openkoda.controller.ComponentProvider)"
+            + " || within(com.openkoda.controller.DefaultComponentProvider)")
+    public void aggregators() {}
+
+    @Around("openkodaComponents() && !aggregators()")
+    public Object profile(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!profiler.shouldSample()) {
+            return joinPoint.proceed();
+        }
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            profiler.recordMethod(joinPoint.getSignature().toShortString(), System.nanoTime() - start);
+        }
+    }
+}
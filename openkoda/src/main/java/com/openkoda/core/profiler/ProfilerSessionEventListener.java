@@ -0,0 +1,61 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.profiler;
+
+import org.hibernate.engine.spi.SessionEventListener;
+
+/**
+ * <p>Reports JDBC statement and batch execution times to {@link Profiler}.</p>
+ * <p>Hibernate creates an instance for every session, see <code>hibernate.session.events.auto</code>.</p>
+ */
+public class ProfilerSessionEventListener implements SessionEventListener {
+
+    private transient long statementStart;
+
+    private transient long batchStart;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        statementStart = Profiler.isRecordingSql() ? System.nanoTime() : 0;
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        if (statementStart != 0) {
+            Profiler.onStatementExecuted(System.nanoTime() - statementStart);
+            statementStart = 0;
+        }
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        batchStart = Profiler.isRecordingSql() ? System.nanoTime() : 0;
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        if (batchStart != 0) {
+            Profiler.onStatementExecuted(System.nanoTime() - batchStart);
+            batchStart = 0;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.profiler;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Timings of a single request, used by one thread only. SQL is counted for every request while the profiler is
+ * enabled, method timings only for sampled requests.
+ */
+class RequestProfile {
+
+    private static final int SLOWEST_STATEMENTS = 5;
+    private static final int SQL_MAX_LENGTH = 300;
+
+    private record StatementTiming(String sql, long nanos) {}
+
+    final String name;
+    final boolean sampled;
+    final long startNanos = System.nanoTime();
+    final LocalDateTime startedAt = LocalDateTime.now();
+
+    int sqlCount;
+    long sqlNanos;
+    private String currentSql;
+    private final Map<String, long[]> methods = new HashMap<>();
+    private final PriorityQueue<StatementTiming> slowestStatements = new PriorityQueue<>(Comparator.comparingLong(StatementTiming::nanos));
+
+    RequestProfile(String name, boolean sampled) {
+        this.name = name;
+        this.sampled = sampled;
+    }
+
+    void statement(String sql) {
+        currentSql = sql;
+    }
+
+    void statementExecuted(long nanos) {
+        sqlCount++;
+        sqlNanos += nanos;
+        slowestStatements.offer(new StatementTiming(currentSql, nanos));
+        if (slowestStatements.size() > SLOWEST_STATEMENTS) {
+            slowestStatements.poll();
+        }
+    }
+
+    void method(String method, long nanos) {
+        long[] timing = methods.computeIfAbsent(method, k -> new long[2]);
+        timing[0]++;
+        timing[1] += nanos;
+    }
+
+    /**
+     * @return methods with the longest total (inclusive) time, formatted as "method: count x, total ms"
+     */
+    List<String> topMethods(int limit) {
+        return methods.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]))
+                .limit(limit)
+                .map(e -> String.format("%s: %dx, %.1f ms", e.getKey(), e.getValue()[0], e.getValue()[1] / 1e6))
+                .toList();
+    }
+
+    /**
+     * @return slowest statements, formatted as "ms: sql"
+     */
+    List<String> slowestStatements() {
+        return slowestStatements.stream()
+                .sorted(Comparator.comparingLong(StatementTiming::nanos).reversed())
+                .map(s -> String.format("%.1f ms: %s", s.nanos() / 1e6, StringUtils.abbreviate(s.sql(), SQL_MAX_LENGTH)))
+                .toList();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.repository.pagination;
+
+/**
+ * <p>How the total number of elements is obtained for a paginated query.</p>
+ *
+ * @see PageCount
+ * @see CountModeJpaRepository
+ */
+public enum CountMode {
+    /**
+     * Default Spring Data behaviour, count query executed for every page
+     */
+    EXACT,
+    /**
+     * No count query, one row more than the page size is fetched to know if there is a next page
+     */
+    SLICE,
+    /**
+     * Like {@link #SLICE}, but the total is estimated: exact when the result has up to
+     * <code>pagination.estimate.threshold</code> rows, otherwise taken from the planner statistics
+     * (pg_class.reltuples or EXPLAIN) for unfiltered queries and reported as a lower bound for filtered ones
+     */
+    ESTIMATED,
+    /**
+     * Exact count, cached per user, request path and filter parameters for <code>pagination.count.cache.ttl.seconds</code>
+     */
+    CACHED
+}
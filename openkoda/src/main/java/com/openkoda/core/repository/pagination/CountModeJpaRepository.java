@@ -0,0 +1,147 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.repository.pagination;
+
+import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Repository base class (see <code>repositoryBaseClass</code> in App) reading pages according to the
+ * {@link CountMode} of a {@link CountModePageable}. Any other Pageable is read exactly like in {@link SimpleJpaRepository}.</p>
+ * <p>SLICE and ESTIMATED fetch one row more than the page size instead of running the count query, so the last
+ * page and pages of small results still get an exact total.</p>
+ */
+public class CountModeJpaRepository<T, ID> extends SimpleJpaRepository<T, ID> implements LoggingComponentWithRequestId {
+
+    private static final Pattern EXPLAIN_ROWS = Pattern.compile("rows=(\\d+)");
+
+    private final EntityManager entityManager;
+
+    public CountModeJpaRepository(JpaEntityInformation<T, ?> entityInformation, EntityManager entityManager) {
+        super(entityInformation, entityManager);
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    protected <S extends T> Page<S> readPage(TypedQuery<S> query, Class<S> domainClass, Pageable pageable, @Nullable Specification<S> spec) {
+        CountMode countMode = CountModePageable.countMode(pageable);
+        if (countMode == CountMode.EXACT) {
+            return super.readPage(query, domainClass, pageable, spec);
+        }
+
+        query.setFirstResult((int) pageable.getOffset());
+        if (countMode == CountMode.CACHED) {
+            query.setMaxResults(pageable.getPageSize());
+            String countKey = ((CountModePageable) pageable).getCountKey();
+            return PageableExecutionUtils.getPage(query.getResultList(), pageable,
+                    () -> countKey == null ? exactCount(spec, domainClass) : PaginationHelper.cachedCount(domainClass, countKey, () -> exactCount(spec, domainClass)));
+        }
+
+        query.setMaxResults(pageable.getPageSize() + 1);
+        List<S> rows = query.getResultList();
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        List<S> content = hasNext ? new ArrayList<>(rows.subList(0, pageable.getPageSize())) : rows;
+        long seen = pageable.getOffset() + content.size();
+        if (!hasNext) {
+            return new CountModePage<>(content, pageable, seen, !content.isEmpty() || pageable.getOffset() == 0);
+        }
+        if (countMode == CountMode.SLICE) {
+            return new CountModePage<>(content, pageable, seen + 1, false);
+        }
+        return estimatedPage(content, domainClass, pageable, spec, seen);
+    }
+
+    private <S extends T> Page<S> estimatedPage(List<S> content, Class<S> domainClass, Pageable pageable, @Nullable Specification<S> spec, long seen) {
+        long threshold = PaginationHelper.estimateThreshold();
+        if (seen < threshold) {
+            TypedQuery<S> probe = getQuery(spec, domainClass, Sort.unsorted());
+            probe.setFirstResult((int) threshold);
+            probe.setMaxResults(1);
+            if (probe.getResultList().isEmpty()) {
+                return new CountModePage<>(content, pageable, exactCount(spec, domainClass), true);
+            }
+        }
+        long lowerBound = Math.max(seen + 1, threshold + 1);
+        long estimate = spec == null ? PaginationHelper.cachedEstimate(domainClass, () -> plannerEstimate(domainClass)) : -1;
+        debug("[estimatedPage] {} estimate {} lower bound {}", domainClass.getSimpleName(), estimate, lowerBound);
+        return new CountModePage<>(content, pageable, Math.max(estimate, lowerBound), false);
+    }
+
+    private <S extends T> long exactCount(@Nullable Specification<S> spec, Class<S> domainClass) {
+        long total = 0;
+        for (Long c : getCountQuery(spec, domainClass).getResultList()) {
+            total += c == null ? 0 : c;
+        }
+        return total;
+    }
+
+    /**
+     * @return row count of the entity table according to PostgreSQL statistics (pg_class.reltuples, or the EXPLAIN
+     * estimate for views and tables not analyzed yet), -1 if not available
+     */
+    private long plannerEstimate(Class<?> domainClass) {
+        String table = tableName(domainClass);
+        if (table == null) {
+            return -1;
+        }
+        try {
+            List<?> reltuples = entityManager.createNativeQuery("select cast(reltuples as bigint) from pg_class where oid = to_regclass(?1)")
+                    .setParameter(1, table)
+                    .getResultList();
+            if (!reltuples.isEmpty() && reltuples.get(0) instanceof Number n && n.longValue() > 0) {
+                return n.longValue();
+            }
+            for (Object line : entityManager.createNativeQuery("explain select 1 from " + table).getResultList()) {
+                Matcher m = EXPLAIN_ROWS.matcher(String.valueOf(line));
+                if (m.find()) {
+                    return Long.parseLong(m.group(1));
+                }
+            }
+        } catch (RuntimeException e) {
+            warn("[plannerEstimate] No estimate for {}: {}", table, e.getMessage());
+        }
+        return -1;
+    }
+
+    private String tableName(Class<?> domainClass) {
+        EntityPersister persister = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getRuntimeMetamodels().getMappingMetamodel().getEntityDescriptor(domainClass);
+        return persister instanceof AbstractEntityPersister p ? p.getTableName() : null;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.repository.pagination;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+/**
+ * <p>Page which total is not necessarily exact.</p>
+ * <p>When the total is not exact, it is either the estimate or the number of elements up to the current page plus
+ * one when there is a next page, so {@link #hasNext()} and the page numbers up to the next one stay correct.
+ * Pagination fragments use {@link PaginationHelper#isTotalExact} to hide navigation depending on the real page count.</p>
+ */
+public class CountModePage<T> extends PageImpl<T> {
+
+    private final boolean totalExact;
+
+    public CountModePage(List<T> content, Pageable pageable, long total, boolean totalExact) {
+        super(content, pageable, total);
+        this.totalExact = totalExact;
+    }
+
+    /**
+     * @return page with a total derived from the slice (number of elements up to the slice, plus one if there is a next slice)
+     */
+    public static <T> CountModePage<T> of(Slice<T> slice) {
+        Pageable pageable = slice.getPageable();
+        long seen = (pageable.isPaged() ? pageable.getOffset() : 0) + slice.getNumberOfElements();
+        return new CountModePage<>(slice.getContent(), pageable, slice.hasNext() ? seen + 1 : seen, !slice.hasNext());
+    }
+
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.repository.pagination;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.Objects;
+
+/**
+ * <p>{@link PageRequest} carrying the {@link CountMode} the page total should be obtained with.</p>
+ * <p>For {@link CountMode#CACHED} the count key identifies the cached count, it is built from the request
+ * (see {@link PaginationHelper#countKey}) so that it differs per user and per filter, but not per page or sort.</p>
+ */
+public class CountModePageable extends PageRequest {
+
+    private final CountMode countMode;
+
+    private final String countKey;
+
+    protected CountModePageable(int page, int size, Sort sort, CountMode countMode, String countKey) {
+        super(page, size, sort);
+        this.countMode = countMode;
+        this.countKey = countKey;
+    }
+
+    /**
+     * @return pageable with given count mode, or the pageable itself for {@link CountMode#EXACT} and unpaged requests
+     */
+    public static Pageable of(Pageable pageable, CountMode countMode, String countKey) {
+        if (countMode == null || countMode == CountMode.EXACT || pageable.isUnpaged()) {
+            return pageable;
+        }
+        return new CountModePageable(pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort(), countMode, countKey);
+    }
+
+    /**
+     * @return count mode of the pageable, {@link CountMode#EXACT} for any other Pageable
+     */
+    public static CountMode countMode(Pageable pageable) {
+        return pageable instanceof CountModePageable c ? c.countMode : CountMode.EXACT;
+    }
+
+    public CountMode getCountMode() {
+        return countMode;
+    }
+
+    public String getCountKey() {
+        return countKey;
+    }
+
+    @Override
+    public CountModePageable next() {
+        return withPage(getPageNumber() + 1);
+    }
+
+    @Override
+    public CountModePageable previous() {
+        return getPageNumber() == 0 ? this : withPage(getPageNumber() - 1);
+    }
+
+    @Override
+    public CountModePageable first() {
+        return withPage(0);
+    }
+
+    @Override
+    public CountModePageable withPage(int pageNumber) {
+        return new CountModePageable(pageNumber, getPageSize(), getSort(), countMode, countKey);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof CountModePageable c && super.equals(obj) && countMode == c.countMode && Objects.equals(countKey, c.countKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + countMode.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " count: " + countMode;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.repository.pagination;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * <p>Resolves {@link Pageable} parameters opted in with {@link PageCount} into {@link CountModePageable}.</p>
+ * <p>Page, size and sort are resolved by Spring Data's resolver, so the request parameters and their qualifier
+ * prefixes stay the same. Has to be registered before Spring Data's resolver.</p>
+ */
+public class CountModePageableArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final PageableHandlerMethodArgumentResolver delegate;
+
+    public CountModePageableArgumentResolver(PageableHandlerMethodArgumentResolver delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return Pageable.class.equals(parameter.getParameterType()) && findPageCount(parameter) != null;
+    }
+
+    @Override
+    public Pageable resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer, NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Pageable pageable = delegate.resolveArgument(parameter, mavContainer, webRequest, binderFactory);
+        CountMode countMode = findPageCount(parameter).value();
+        String countKey = null;
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        if (countMode == CountMode.CACHED && request != null) {
+            Qualifier qualifier = parameter.getParameterAnnotation(Qualifier.class);
+            countKey = PaginationHelper.countKey(request, qualifier == null ? null : qualifier.value());
+        }
+        return CountModePageable.of(pageable, countMode, countKey);
+    }
+
+    private static PageCount findPageCount(MethodParameter parameter) {
+        PageCount pageCount = parameter.getParameterAnnotation(PageCount.class);
+        return pageCount != null ? pageCount : AnnotatedElementUtils.findMergedAnnotation(parameter.getContainingClass(), PageCount.class);
+    }
+}
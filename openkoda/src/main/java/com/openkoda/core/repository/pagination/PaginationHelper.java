@@ -0,0 +1,127 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.repository.pagination;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.openkoda.core.security.UserProvider;
+import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>Pagination support for {@link CountMode}: keeps cached counts and planner estimates and is available in
+ * templates as <code>@pagination</code>.</p>
+ * <p>Static methods are used by {@link CountModeJpaRepository}, which is not a Spring bean. When the helper is not
+ * initialized (e.g. outside the application context), counts are not cached.</p>
+ */
+@Component("pagination")
+public class PaginationHelper implements LoggingComponentWithRequestId {
+
+    private static PaginationHelper instance;
+
+    @Value("${pagination.count.cache.ttl.seconds:30}")
+    private long countCacheTtlSeconds;
+
+    @Value("${pagination.count.cache.max-size:10000}")
+    private long countCacheMaxSize;
+
+    @Value("${pagination.estimate.threshold:1000}")
+    private long estimateThreshold;
+
+    private Cache<String, Long> counts;
+
+    @PostConstruct
+    void init() {
+        counts = CacheBuilder.newBuilder()
+                .maximumSize(countCacheMaxSize)
+                .expireAfterWrite(countCacheTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        instance = this;
+    }
+
+    /**
+     * @return true when the total of the page is exact, so the page count can be shown and navigated to
+     */
+    public boolean isTotalExact(Page<?> page) {
+        return !(page instanceof CountModePage<?> p) || p.isTotalExact();
+    }
+
+    /**
+     * Drops all cached counts and estimates
+     */
+    public void invalidate() {
+        debug("[invalidate]");
+        counts.invalidateAll();
+    }
+
+    /**
+     * @return count key for given request: current user, request path and all parameters except page, size and sort
+     * of the given qualifier
+     */
+    public static String countKey(HttpServletRequest request, String qualifier) {
+        String prefix = qualifier == null ? "" : qualifier + "_";
+        Set<String> excluded = Set.of(prefix + "page", prefix + "size", prefix + "sort");
+        StringBuilder key = new StringBuilder(UserProvider.getUserIdOrNotExistingIdAsString())
+                .append(' ').append(request.getRequestURI());
+        for (Map.Entry<String, String[]> e : new TreeMap<>(request.getParameterMap()).entrySet()) {
+            if (!excluded.contains(e.getKey())) {
+                key.append('&').append(e.getKey()).append('=').append(String.join(",", e.getValue()));
+            }
+        }
+        return DigestUtils.md5Hex(key.toString());
+    }
+
+    static long cachedCount(Class<?> domainClass, String countKey, LongSupplier count) {
+        return cached("count:" + domainClass.getName() + ":" + countKey, count);
+    }
+
+    static long cachedEstimate(Class<?> domainClass, LongSupplier estimate) {
+        return cached("estimate:" + domainClass.getName(), estimate);
+    }
+
+    static long estimateThreshold() {
+        return instance == null ? 1000 : instance.estimateThreshold;
+    }
+
+    private static long cached(String key, LongSupplier value) {
+        if (instance == null) {
+            return value.getAsLong();
+        }
+        try {
+            return instance.counts.get(key, value::getAsLong);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
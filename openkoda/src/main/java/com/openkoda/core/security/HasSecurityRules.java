@@ -73,6 +73,7 @@ public interface HasSecurityRules extends LoggingComponentWithRequestId {
 
     //Basic, single privilege based rules - can be directly used in @PreAuthorize
     String CHECK_IS_SPOOFED =                       "(principal.isSpoofed())";
+    String CHECK_IS_AUTHENTICATED =                 "isAuthenticated()";
     String CHECK_IS_THIS_USERID =                   "(principal.getUserId() == #userId)";
     String CHECK_CAN_READ_FRONTEND_RESOURCES =                     HAS_GLOBAL_PRIVILEGE_STRING_OPEN + _readFrontendResource + BB_STRING_CLOSE;
 //    String CHECK_CAN_READ_ORG_DATA =                HAS_GLOBAL_PRIVILEGE_STRING_OPEN + _readOrgData               + BB_STRING_CLOSE;
@@ -181,8 +181,10 @@ public class OrganizationUserDetailsService implements UserDetailsService, URLCo
     }
     
     @EventListener(classes = PrivilegeChangeEvent.class)
-    protected void onPrivilegesChanged( ) {
-        subscribedUsers.entrySet().stream().flatMap( e -> e.getValue().stream()).forEach( u -> {
+    protected void onPrivilegesChanged(PrivilegeChangeEvent event) {
+        subscribedUsers.entrySet().stream().flatMap( e -> e.getValue().stream())
+                .filter( u -> event.affects(((User)u.getV1()).getId()))
+                .forEach( u -> {
             debug("[onPrivilegesChanged] Privileges have changed, handling OrganizationUser {}", ((OrganizationUser)u.getV0()).getUsername());
             reloadUserByUsername((OrganizationUser)u.getV0(), (User)u.getV1());
             reloadUserByUsername(UserProvider.getFromContext().get(), (User)u.getV1());
@@ -0,0 +1,130 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service;
+
+import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import com.openkoda.model.common.LongIdEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.springframework.transaction.annotation.Propagation.REQUIRES_NEW;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inserts (and updates) large numbers of entities with JDBC batching.
+ * <p>
+ * Entities are persisted in chunks of <code>hibernate.jdbc.batch_size</code>. Each chunk is flushed as one batch per table
+ * (ids come from the pooled-lo sequences, see {@link com.openkoda.model.common.IdFamily}, so there is no round trip per row)
+ * and detached, so the persistence context does not grow with the number of rows. Other entities managed in the
+ * caller's transaction stay attached.
+ * <p>
+ * There are no privilege checks, same as with unsecure repositories.
+ */
+@Service
+public class BulkPersistService implements LoggingComponentWithRequestId {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    /**
+     * Persists new entities, in the current transaction if there is one
+     * @return number of persisted entities
+     */
+    @Transactional
+    public <T> int persistAll(Iterable<T> entities) {
+        debug("[persistAll]");
+        int chunkSize = Math.max(1, batchSize);
+        List<T> chunk = new ArrayList<>(chunkSize);
+        int count = 0;
+        for (T e : entities) {
+            entityManager.persist(e);
+            chunk.add(e);
+            if (chunk.size() == chunkSize) {
+                count += flushAndDetach(chunk);
+            }
+        }
+        count += flushAndDetach(chunk);
+        debug("[persistAll] {} entities persisted", count);
+        return count;
+    }
+
+    /**
+     * Persists new entities (without id) and merges the existing ones, in the current transaction if there is one
+     * @return number of saved entities
+     */
+    @Transactional
+    public <T extends LongIdEntity> int saveAll(Iterable<T> entities) {
+        debug("[saveAll]");
+        return save(entities);
+    }
+
+    /**
+     * Same as {@link #saveAll(Iterable)}, but always in a new transaction which commits (or rolls back) on its own,
+     * so a failure does not mark the caller's transaction rollback-only. The caller's transaction is suspended,
+     * so its uncommitted changes are not visible to the saved entities and rows it has locked must not be saved.
+     * @return number of saved entities
+     */
+    @Transactional(propagation = REQUIRES_NEW)
+    public <T extends LongIdEntity> int saveAllInNewTransaction(Iterable<T> entities) {
+        debug("[saveAllInNewTransaction]");
+        return save(entities);
+    }
+
+    private <T extends LongIdEntity> int save(Iterable<T> entities) {
+        int chunkSize = Math.max(1, batchSize);
+        List<Object> chunk = new ArrayList<>(chunkSize);
+        int count = 0;
+        for (T e : entities) {
+            if (e.getId() == null) {
+                entityManager.persist(e);
+                chunk.add(e);
+            } else {
+                chunk.add(entityManager.merge(e));
+            }
+            if (chunk.size() == chunkSize) {
+                count += flushAndDetach(chunk);
+            }
+        }
+        count += flushAndDetach(chunk);
+        debug("[saveAll] {} entities saved", count);
+        return count;
+    }
+
+    private <T> int flushAndDetach(List<T> chunk) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        entityManager.flush();
+        chunk.forEach(entityManager::detach);
+        int result = chunk.size();
+        chunk.clear();
+        return result;
+    }
+}
@@ -21,31 +21,78 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 package com.openkoda.core.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Service;
+import org.thymeleaf.IEngineConfiguration;
 import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.cache.StandardCacheManager;
 import org.thymeleaf.context.Context;
+import org.thymeleaf.exceptions.TemplateInputException;
 import org.thymeleaf.exceptions.TemplateProcessingException;
 import org.thymeleaf.templateresolver.StringTemplateResolver;
+import org.thymeleaf.templateresource.ITemplateResource;
+import org.thymeleaf.templateresource.StringTemplateResource;
 
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.openkoda.controller.common.PageAttributes.errorMessage;
 
 @Service
 public class ThymeleafService implements LoggingComponentWithRequestId {
 
+    /**
+     * Counters of the string template engine used by {@link #prepareContentForHtml(String, Map)}.
+     * @param renders number of prepareContentForHtml calls that processed a template
+     * @param parses number of templates parsed, ie. renders that missed the cache
+     * @param invalidRenders number of renders answered from the invalid templates cache
+     * @param cachedTemplates number of parsed templates currently cached
+     * @param invalidTemplates number of invalid templates currently cached
+     */
+    public record StringTemplateCacheStatistics(long renders, long parses, long invalidRenders, int cachedTemplates, long invalidTemplates) {}
+
+    private record PendingTemplate(String key, String content) {}
+
     private TemplateEngine templateEngine;
-    private StringTemplateResolver stringTemplateResolver;
 
-    public ThymeleafService(TemplateEngine templateEngine, StringTemplateResolver stringTemplateResolver) {
+    /**
+     * Long-lived engine for templates given as strings. Templates are resolved by the hash of their content
+     * (see {@link HashedStringTemplateResolver}), so the engine template cache holds each distinct content parsed once.
+     */
+    private final TemplateEngine stringTemplateEngine;
+    private final StandardCacheManager stringTemplateCacheManager;
+    private final ThreadLocal<PendingTemplate> pendingTemplate = new ThreadLocal<>();
+
+    /**
+     * Parsing error messages of templates which could not be parsed, by content hash
+     */
+    private final Cache<String, String> invalidTemplates;
+
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder parses = new LongAdder();
+    private final LongAdder invalidRenders = new LongAdder();
+
+    public ThymeleafService(TemplateEngine templateEngine, StringTemplateResolver stringTemplateResolver,
+                            @Value("${thymeleaf.string-template.cache.max-size:500}") int stringTemplateCacheMaxSize) {
         this.templateEngine = templateEngine;
-        this.stringTemplateResolver = stringTemplateResolver;
-//        templateEngine.addTemplateResolver(stringTemplateResolver);
+
+        HashedStringTemplateResolver resolver = new HashedStringTemplateResolver();
+        resolver.setTemplateMode(stringTemplateResolver.getTemplateMode());
+        resolver.setCacheable(true);
+        stringTemplateCacheManager = new StandardCacheManager();
+        stringTemplateCacheManager.setTemplateCacheMaxSize(stringTemplateCacheMaxSize);
+        stringTemplateEngine = new TemplateEngine();
+        stringTemplateEngine.setTemplateResolver(resolver);
+        stringTemplateEngine.setCacheManager(stringTemplateCacheManager);
+        invalidTemplates = CacheBuilder.newBuilder().maximumSize(Math.max(1, stringTemplateCacheMaxSize / 10)).build();
     }
 
     public String prepareContent(String templateName, Map<String, Object> model) {
@@ -65,6 +112,11 @@ public class ThymeleafService implements LoggingComponentWithRequestId {
         return result;
     }
 
+    /**
+     * Processes the html given as a string. The parsed template is cached by the hash of the html, and the parsing
+     * error message of an invalid html is cached as well, so repeated renders of the same html are not parsed again.
+     * @return processed html or error message when the html could not be processed
+     */
     public String prepareContentForHtml(String html, Map<String, Object> model) {
         debug("[prepareContentForHtml]");
         if(model.containsKey(errorMessage.name)) {
@@ -72,20 +124,77 @@ public class ThymeleafService implements LoggingComponentWithRequestId {
         } else if(StringUtils.isBlank(html)) {
             return StringUtils.EMPTY;
         }
-        TemplateEngine stringTemplateEngine = new TemplateEngine();
-        stringTemplateEngine.addTemplateResolver(stringTemplateResolver);
-        final Context ctx = new Context(LocaleContextHolder.getLocale());
-
-        for (Map.Entry<String, Object> entry : model.entrySet()) {
-            ctx.setVariable(entry.getKey(), entry.getValue());
+        renders.increment();
+        String key = templateKey(html);
+        String invalidTemplateMessage = invalidTemplates.getIfPresent(key);
+        if (invalidTemplateMessage != null) {
+            invalidRenders.increment();
+            return invalidTemplateMessage;
         }
-        stringTemplateEngine.getTemplateResolvers();
+
+        final Context ctx = new Context(LocaleContextHolder.getLocale());
+        ctx.setVariables(model);
+        pendingTemplate.set(new PendingTemplate(key, html));
         try {
-            return stringTemplateEngine.process(html, ctx);
+            return stringTemplateEngine.process(key, ctx);
+        } catch (TemplateInputException e) {
+            String message = errorMessage(e);
+            warn("[prepareContentForHtml] Invalid template {}: {}", key, message);
+            invalidTemplates.put(key, message);
+            return message;
         } catch (TemplateProcessingException e) {
-            return e.getCause().getMessage();
+            return errorMessage(e);
+        } finally {
+            pendingTemplate.remove();
         }
     }
 
+    /**
+     * Removes the html from the parsed and invalid template caches
+     */
+    public void evictStringTemplate(String html) {
+        debug("[evictStringTemplate]");
+        String key = templateKey(html);
+        stringTemplateEngine.clearTemplateCacheFor(key);
+        invalidTemplates.invalidate(key);
+    }
+
+    /**
+     * Removes all parsed and invalid templates from the caches
+     */
+    public void clearStringTemplateCache() {
+        debug("[clearStringTemplateCache]");
+        stringTemplateEngine.clearTemplateCache();
+        invalidTemplates.invalidateAll();
+    }
+
+    public StringTemplateCacheStatistics getStringTemplateCacheStatistics() {
+        return new StringTemplateCacheStatistics(renders.sum(), parses.sum(), invalidRenders.sum(),
+                stringTemplateCacheManager.getTemplateCache().size(), invalidTemplates.size());
+    }
+
+    private static String templateKey(String html) {
+        return DigestUtils.sha256Hex(html);
+    }
+
+    private static String errorMessage(TemplateProcessingException e) {
+        return e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+    }
 
+    /**
+     * Resolves the template which is being processed by its content hash. Any other template name (eg. of an
+     * included fragment) resolves to the name itself, like with plain {@link StringTemplateResolver}.
+     */
+    private class HashedStringTemplateResolver extends StringTemplateResolver {
+
+        @Override
+        protected ITemplateResource computeTemplateResource(IEngineConfiguration configuration, String ownerTemplate, String template, Map<String, Object> templateResolutionAttributes) {
+            PendingTemplate pending = pendingTemplate.get();
+            if (pending != null && pending.key().equals(template)) {
+                parses.increment();
+                return new StringTemplateResource(pending.content());
+            }
+            return super.computeTemplateResource(configuration, ownerTemplate, template, templateResolutionAttributes);
+        }
+    }
 }
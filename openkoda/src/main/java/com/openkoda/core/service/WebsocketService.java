@@ -21,17 +21,33 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 package com.openkoda.core.service;
 
+import com.hazelcast.core.HazelcastInstance;
 import com.openkoda.core.configuration.WebSocketConfig;
 import com.openkoda.core.helper.ReadableCode;
+import com.openkoda.core.service.websocket.WebsocketRelay;
+import com.openkoda.core.service.websocket.WebsocketSendBuffers;
 import com.openkoda.core.tracker.LoggingComponentWithRequestId;
 import com.openkoda.model.User;
 import com.openkoda.repository.user.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Sends message to Websocket channel.
@@ -47,16 +63,95 @@ import java.util.Map;
  * For user channel:
  * - on client side subscribe to channel eg. '/user/queue/user-notifications'
  * - on server/sender side, use sendToUserChannel with channelName == '/queue/user-notifications'
+ *
+ * Messages to channels starting with one of websocket.coalesce.channels are coalesced: within websocket.coalesce.window-ms
+ * only the latest payload per channel and user is sent.
+ * With websocket.relay=hazelcast messages are relayed to all cluster members, see {@link WebsocketRelay}.
  */
 @Service
 public class WebsocketService implements ReadableCode, LoggingComponentWithRequestId {
 
+    public static final String WEBSOCKET_RELAY_TOPIC = "websocketRelay";
+
+    /**
+     * @param sessions send buffers of the websocket sessions of this member
+     * @param coalesced messages replaced by a newer payload before they were sent
+     * @param relayed messages published to the cluster
+     * @param inboundQueue tasks waiting in the clientInbound executor
+     * @param outboundQueue tasks waiting in the clientOutbound executor
+     * @param brokerQueue tasks waiting in the broker channel executor
+     */
+    public record Stats(WebsocketSendBuffers.Stats sessions, long coalesced, long relayed,
+                        int inboundQueue, int outboundQueue, int brokerQueue) {}
+
+    private record Destination(String user, String channelName) {}
+
+    private record Pending(Object payload, Map<String, Object> headers) {}
+
     @Inject
     private SimpMessagingTemplate messagingTemplate;
 
     @Inject
     private UserRepository userRepository;
 
+    @Inject
+    private WebsocketSendBuffers sendBuffers;
+
+    @Autowired(required = false)
+    private HazelcastInstance hazelcastInstance;
+
+    @Autowired @Lazy @Qualifier("clientInboundChannelExecutor")
+    private ThreadPoolTaskExecutor inboundExecutor;
+
+    @Autowired @Lazy @Qualifier("clientOutboundChannelExecutor")
+    private ThreadPoolTaskExecutor outboundExecutor;
+
+    @Autowired @Lazy @Qualifier("brokerChannelExecutor")
+    private ThreadPoolTaskExecutor brokerExecutor;
+
+    @Value("${websocket.coalesce.channels:}")
+    private String[] coalescedChannels;
+
+    @Value("${websocket.coalesce.window-ms:100}")
+    private long coalesceWindowMs;
+
+    @Value("${websocket.relay:local}")
+    private String relayMode;
+
+    private final Map<Destination, Pending> coalesced = new LinkedHashMap<>();
+
+    private final LongAdder coalescedCount = new LongAdder();
+
+    private ScheduledExecutorService coalescer;
+
+    private WebsocketRelay relay;
+
+    @PostConstruct
+    void init() {
+        if ("hazelcast".equalsIgnoreCase(relayMode)) {
+            if (hazelcastInstance != null) {
+                relay = new WebsocketRelay(hazelcastInstance, WEBSOCKET_RELAY_TOPIC, messagingTemplate).start();
+            } else {
+                warn("[init] websocket.relay=hazelcast, but there is no Hazelcast instance, messages are sent locally");
+            }
+        }
+        if (coalescedChannels.length > 0 && coalesceWindowMs > 0) {
+            coalescer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("websocket-coalesce-"));
+            coalescer.scheduleWithFixedDelay(this::flushCoalesced, coalesceWindowMs, coalesceWindowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        if (coalescer != null) {
+            coalescer.shutdown();
+            flushCoalesced();
+        }
+        if (relay != null) {
+            relay.close();
+        }
+    }
+
     private void checkChannelName(String channelName) {
         if (not(StringUtils.startsWith(channelName, WebSocketConfig.CHANNEL_PREFIX))) {
             warn("[WebsocketService] Probably wrong broadcast channel name: {}", channelName);
@@ -64,53 +159,102 @@ public class WebsocketService implements ReadableCode, LoggingComponentWithReque
     }
 
     public boolean sendToChannel(String channelName, Object payload) {
-        checkChannelName(channelName);
-        messagingTemplate.convertAndSend(channelName, payload);
-        return true;
+        return sendToChannel(channelName, payload, null);
     }
 
     public boolean sendToChannel(String channelName, Object payload, Map<String, Object> headers) {
         checkChannelName(channelName);
-        messagingTemplate.convertAndSend(channelName, payload, headers);
+        send(null, channelName, payload, headers);
         return true;
     }
 
     public boolean sendToUserChannel(String userEmail, String channelName, Object payload) {
-        checkChannelName(channelName);
-        messagingTemplate.convertAndSendToUser(userEmail, channelName, payload);
-        return true;
+        return sendToUserChannel(userEmail, channelName, payload, null);
     }
 
     public boolean sendToUserChannel(Long userId, String channelName, Object payload) {
-        checkChannelName(channelName);
-        String userEmail = userRepository.findUserEmailByUserId(userId);
-        sendToUserChannel(userEmail, channelName, payload);
-        return true;
+        return sendToUserChannel(userId, channelName, payload, null);
     }
 
     public boolean sendToUserChannel(User user, String channelName, Object payload) {
-        checkChannelName(channelName);
-        sendToUserChannel(user.getEmail(), channelName, payload);
-        return true;
+        return sendToUserChannel(user, channelName, payload, null);
     }
 
     public boolean sendToUserChannel(String userEmail, String channelName, Object payload, Map<String, Object> headers) {
         checkChannelName(channelName);
-        messagingTemplate.convertAndSendToUser(userEmail, channelName, payload, headers);
+        if (userEmail == null) {
+            warn("[sendToUserChannel] No user for channel {}", channelName);
+            return false;
+        }
+        send(userEmail, channelName, payload, headers);
         return true;
     }
 
     public boolean sendToUserChannel(Long userId, String channelName, Object payload, Map<String, Object> headers) {
         checkChannelName(channelName);
         String userEmail = userRepository.findUserEmailByUserId(userId);
-        sendToUserChannel(userEmail, channelName, payload, headers);
-        return true;
+        return sendToUserChannel(userEmail, channelName, payload, headers);
     }
 
     public boolean sendToUserChannel(User user, String channelName, Object payload, Map<String, Object> headers) {
         checkChannelName(channelName);
-        sendToUserChannel(user.getEmail(), channelName, payload, headers);
-        return true;
+        return sendToUserChannel(user.getEmail(), channelName, payload, headers);
+    }
+
+    /**
+     * @return websocket session buffers, coalescing, relay and channel executor counters of this member
+     */
+    public Stats getStats() {
+        return new Stats(sendBuffers.getStats(), coalescedCount.sum(), relay == null ? 0 : relay.getPublished(),
+                queueSize(inboundExecutor), queueSize(outboundExecutor), queueSize(brokerExecutor));
+    }
+
+    private void send(String userEmail, String channelName, Object payload, Map<String, Object> headers) {
+        if (coalescer != null && StringUtils.startsWithAny(channelName, coalescedChannels)) {
+            synchronized (coalesced) {
+                if (coalesced.put(new Destination(userEmail, channelName), new Pending(payload, headers)) != null) {
+                    coalescedCount.increment();
+                }
+            }
+            return;
+        }
+        deliver(userEmail, channelName, payload, headers);
+    }
+
+    private void deliver(String userEmail, String channelName, Object payload, Map<String, Object> headers) {
+        if (relay != null) {
+            relay.publish(userEmail, channelName, payload, headers);
+        } else if (userEmail == null) {
+            messagingTemplate.convertAndSend(channelName, payload, headers);
+        } else {
+            messagingTemplate.convertAndSendToUser(userEmail, channelName, payload, headers);
+        }
+    }
+
+    private void flushCoalesced() {
+        Map<Destination, Pending> batch;
+        synchronized (coalesced) {
+            if (coalesced.isEmpty()) {
+                return;
+            }
+            batch = new LinkedHashMap<>(coalesced);
+            coalesced.clear();
+        }
+        batch.forEach((d, p) -> {
+            try {
+                deliver(d.user(), d.channelName(), p.payload(), p.headers());
+            } catch (RuntimeException e) {
+                error(e, "[flushCoalesced] Error sending to {}", d.channelName());
+            }
+        });
+    }
+
+    private int queueSize(ThreadPoolTaskExecutor executor) {
+        try {
+            return executor.getThreadPoolExecutor().getQueue().size();
+        } catch (RuntimeException e) {
+            return 0;
+        }
     }
 
 }
@@ -29,26 +29,87 @@ import java.io.Serializable;
  * Currently there are two relevant areas:
  * - Schedulers
  * - EventListeners
+ * - Forms
+ * - ServerJs autocomplete index
  *
  * The third potential stateful configuration area could be Logs, but it't not critical
+ *
+ * Events are published in batches ({@link ClusterEventBatch}) by {@link ClusterEventBus}, the version orders events
+ * of the same component published by different members.
  */
 public class ClusterEvent implements Serializable {
 
     public enum EventType {
         SCHEDULER_ADD, SCHEDULER_REMOVE, SCHEDULER_RELOAD,
         EVENT_LISTENER_ADD, EVENT_LISTENER_REMOVE, EVENT_LISTENER_RELOAD,
-        FORM_ADD, FORM_REMOVE, FORM_RELOAD
+        FORM_ADD, FORM_REMOVE, FORM_RELOAD,
+        SERVER_JS_RELOAD, SERVER_JS_REMOVE;
+
+        /**
+         * Kind of the component the event is about, eg. SCHEDULER
+         */
+        public final String component = name().substring(0, name().lastIndexOf('_'));
+
+        public boolean isAdd() {
+            return name().endsWith("_ADD");
+        }
+
+        public boolean isRemove() {
+            return name().endsWith("_REMOVE");
+        }
+
+        public EventType reload() {
+            return valueOf(component + "_RELOAD");
+        }
     }
 
     public final EventType eventType;
     public final long id;
 
+    /**
+     * Cluster-wide version of the change, 0 when the event is not versioned
+     */
+    public final long version;
+
     /**
      * ClusterEvent class constructor
      */
     public ClusterEvent(EventType eventType, long id) {
+        this(eventType, id, 0);
+    }
+
+    public ClusterEvent(EventType eventType, long id, long version) {
         this.eventType = eventType;
         this.id = id;
+        this.version = version;
+    }
+
+    /**
+     * @return key of the component the event is about, events with the same key are coalesced
+     */
+    public String key() {
+        return eventType.component + ":" + id;
+    }
+
+    /**
+     * Combines this event with the next event of the same component into one with the same effect.
+     * Listeners re-read the component from database, so only the last removal or the need to (re)load matters.
+     */
+    public ClusterEvent coalesce(ClusterEvent next) {
+        EventType type;
+        if (next.eventType.isRemove()) {
+            type = next.eventType;
+        } else if (eventType.isAdd()) {
+            type = eventType;
+        } else {
+            type = next.eventType.reload();
+        }
+        return new ClusterEvent(type, next.id, Math.max(version, next.version));
+    }
+
+    @Override
+    public String toString() {
+        return eventType + " " + id + " v" + version;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.event;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Coalesced {@link ClusterEvent}s published by one cluster member in a single Hazelcast message
+ */
+public class ClusterEventBatch implements Serializable {
+
+    /**
+     * Id of the publishing member
+     */
+    public final String origin;
+
+    /**
+     * Publication time in epoch millis, used to measure propagation lag
+     */
+    public final long publishedAt;
+
+    public final List<ClusterEvent> events;
+
+    public ClusterEventBatch(String origin, long publishedAt, List<ClusterEvent> events) {
+        this.origin = origin;
+        this.publishedAt = publishedAt;
+        this.events = events;
+    }
+}
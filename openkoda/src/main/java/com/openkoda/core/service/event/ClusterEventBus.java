@@ -0,0 +1,237 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.event;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.flakeidgen.FlakeIdGenerator;
+import com.hazelcast.topic.ITopic;
+import com.hazelcast.topic.Message;
+import com.hazelcast.topic.MessageListener;
+import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * <p>Control plane propagating {@link ClusterEvent}s over the Hazelcast cluster.</p>
+ * <p>Publishing never blocks the caller: events are put in an outgoing buffer where the events of the same component
+ * are coalesced, and the buffer is published every window as one {@link ClusterEventBatch} message (split when it
+ * exceeds the maximum batch size). Every event gets a cluster-wide version from a Hazelcast flake id generator.</p>
+ * <p>Received batches are queued by the Hazelcast event thread and applied by a single thread of this member, in order
+ * of arrival. Events with a version not newer than the last one applied for the component are dropped as stale, the
+ * rest is coalesced over all queued batches and passed to the applier as one list, so that it can read all affected
+ * components from database at once.</p>
+ */
+public class ClusterEventBus implements MessageListener<ClusterEventBatch>, LoggingComponentWithRequestId {
+
+    /**
+     * Counters of the bus, lag is measured between publication of a batch and the start of its application
+     */
+    public record Stats(long published, long coalesced, long messages, long received, long stale, long applied,
+                        long lastLagMs, long maxLagMs, double avgLagMs) {}
+
+    private final ITopic<ClusterEventBatch> topic;
+
+    private final FlakeIdGenerator versions;
+
+    private final String origin;
+
+    private final long windowMs;
+
+    private final int maxBatch;
+
+    private final Consumer<List<ClusterEvent>> applier;
+
+    private final Map<String, ClusterEvent> outgoing = new LinkedHashMap<>();
+
+    private final BlockingQueue<ClusterEventBatch> incoming = new LinkedBlockingQueue<>();
+
+    /**
+     * Last applied version per component key, accessed only by the applier thread
+     */
+    private final Map<String, Long> appliedVersions = new HashMap<>();
+
+    private final ScheduledExecutorService publisher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("cluster-event-publisher-"));
+
+    private final ExecutorService applierThread = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("cluster-event-applier-"));
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder lagSamples = new LongAdder();
+    private final LongAdder lagTotalMs = new LongAdder();
+    private final AtomicLong lastLagMs = new AtomicLong();
+    private final AtomicLong maxLagMs = new AtomicLong();
+
+    private volatile UUID registration;
+
+    public ClusterEventBus(HazelcastInstance hazelcastInstance, String topicName, long windowMs, int maxBatch,
+                           Consumer<List<ClusterEvent>> applier) {
+        this.topic = hazelcastInstance.getTopic(topicName);
+        this.versions = hazelcastInstance.getFlakeIdGenerator(topicName);
+        this.origin = hazelcastInstance.getCluster().getLocalMember().getUuid().toString();
+        this.windowMs = windowMs;
+        this.maxBatch = maxBatch;
+        this.applier = applier;
+    }
+
+    public ClusterEventBus start() {
+        debug("[start] window {}ms", windowMs);
+        registration = topic.addMessageListener(this);
+        publisher.scheduleWithFixedDelay(this::flush, windowMs, windowMs, TimeUnit.MILLISECONDS);
+        applierThread.execute(this::applyLoop);
+        return this;
+    }
+
+    /**
+     * Publishes buffered events and stops the bus, events received later are not applied
+     */
+    public void close() {
+        debug("[close]");
+        publisher.shutdown();
+        try {
+            publisher.awaitTermination(windowMs + 1000, TimeUnit.MILLISECONDS);
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (registration != null) {
+                topic.removeMessageListener(registration);
+            }
+            applierThread.shutdownNow();
+        }
+    }
+
+    /**
+     * Buffers the event for publication with the next batch
+     */
+    public boolean publish(ClusterEvent.EventType eventType, long id) {
+        ClusterEvent event = new ClusterEvent(eventType, id, versions.newId());
+        int size;
+        synchronized (outgoing) {
+            ClusterEvent previous = outgoing.remove(event.key());
+            if (previous != null) {
+                event = previous.coalesce(event);
+                coalesced.increment();
+            }
+            outgoing.put(event.key(), event);
+            size = outgoing.size();
+        }
+        published.increment();
+        if (size >= maxBatch && !publisher.isShutdown()) {
+            publisher.execute(this::flush);
+        }
+        return true;
+    }
+
+    public Stats getStats() {
+        long samples = lagSamples.sum();
+        return new Stats(published.sum(), coalesced.sum(), messages.sum(), received.sum(), stale.sum(), applied.sum(),
+                lastLagMs.get(), maxLagMs.get(), samples == 0 ? 0 : (double) lagTotalMs.sum() / samples);
+    }
+
+    @Override
+    public void onMessage(Message<ClusterEventBatch> message) {
+        incoming.add(message.getMessageObject());
+    }
+
+    void flush() {
+        List<ClusterEvent> events;
+        synchronized (outgoing) {
+            if (outgoing.isEmpty()) {
+                return;
+            }
+            events = new ArrayList<>(outgoing.values());
+            outgoing.clear();
+        }
+        try {
+            for (int i = 0; i < events.size(); i += maxBatch) {
+                List<ClusterEvent> chunk = new ArrayList<>(events.subList(i, Math.min(events.size(), i + maxBatch)));
+                topic.publish(new ClusterEventBatch(origin, System.currentTimeMillis(), chunk));
+                messages.increment();
+            }
+            debug("[flush] {} events published", events.size());
+        } catch (RuntimeException e) {
+            error(e, "[flush] Could not publish {} cluster events", events.size());
+        }
+    }
+
+    private void applyLoop() {
+        List<ClusterEventBatch> batches = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batches.add(incoming.take());
+                incoming.drainTo(batches);
+                List<ClusterEvent> events = coalesceReceived(batches, System.currentTimeMillis());
+                if (!events.isEmpty()) {
+                    applier.accept(events);
+                    applied.add(events.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                error(e, "[applyLoop] Could not apply cluster events");
+            } finally {
+                batches.clear();
+            }
+        }
+    }
+
+    /**
+     * @return events of the batches coalesced per component, without the stale ones
+     */
+    List<ClusterEvent> coalesceReceived(List<ClusterEventBatch> batches, long now) {
+        Map<String, ClusterEvent> result = new LinkedHashMap<>();
+        for (ClusterEventBatch batch : batches) {
+            recordLag(now - batch.publishedAt);
+            for (ClusterEvent event : batch.events) {
+                received.increment();
+                String key = event.key();
+                if (event.version != 0) {
+                    Long appliedVersion = appliedVersions.get(key);
+                    if (appliedVersion != null && appliedVersion >= event.version) {
+                        stale.increment();
+                        continue;
+                    }
+                    appliedVersions.put(key, event.version);
+                }
+                result.merge(key, event, ClusterEvent::coalesce);
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    private void recordLag(long lagMs) {
+        long lag = Math.max(0, lagMs);
+        lastLagMs.set(lag);
+        maxLagMs.accumulateAndGet(lag, Math::max);
+        lagTotalMs.add(lag);
+        lagSamples.increment();
+    }
+}
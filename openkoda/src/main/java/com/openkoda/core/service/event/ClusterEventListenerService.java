@@ -25,13 +25,31 @@ import com.hazelcast.topic.Message;
 import com.hazelcast.topic.MessageListener;
 import com.openkoda.core.service.form.FormService;
 import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import com.openkoda.model.common.ComponentEntity;
+import com.openkoda.model.component.Form;
+import com.openkoda.model.component.Scheduler;
+import com.openkoda.model.component.ServerJs;
+import com.openkoda.model.component.event.EventListenerEntry;
+import com.openkoda.repository.Repositories;
+import com.openkoda.service.autocomplete.WebendpointAutocompleteIndex;
 import jakarta.inject.Inject;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
 /**
  * Listener service listening to Hazelcast messages to propagate state changes over the application cluster.
  * It is only used in 'hazelcast' profile.
+ * Batches of {@link ClusterEventBus} are applied with {@link #apply(List)}, single events of the legacy topic
+ * with {@link #onMessage(Message)}.
  * See {@link ClusterEventSenderService}
  */
 @Service
@@ -46,6 +64,12 @@ public class ClusterEventListenerService implements MessageListener<ClusterEvent
     @Inject @Lazy
     private FormService formService;
 
+    @Inject @Lazy
+    private WebendpointAutocompleteIndex webendpointAutocompleteIndex;
+
+    @Inject @Lazy
+    private Repositories repositories;
+
     @Override
     //TODO Rule 2.1: public method must not return void - it's implementation of an interface so can't change the signature of the method
     public void onMessage(Message<ClusterEvent> message) {
@@ -61,9 +85,89 @@ public class ClusterEventListenerService implements MessageListener<ClusterEvent
             case FORM_ADD: formService.addForm(m.id); break;
             case FORM_RELOAD: formService.reloadForm(m.id); break;
             case FORM_REMOVE: formService.removeForm(m.id); break;
+            case SERVER_JS_RELOAD: webendpointAutocompleteIndex.reload(m.id); break;
+            case SERVER_JS_REMOVE: webendpointAutocompleteIndex.remove(m.id); break;
         }
 
     }
 
+    /**
+     * Applies coalesced cluster events. Components to add or reload are read from database with one query per kind
+     * of component, the ones no longer in database are removed.
+     */
+    public boolean apply(List<ClusterEvent> events) {
+        debug("[apply] {} events", events.size());
+        Map<String, List<ClusterEvent>> byComponent = events.stream()
+                .collect(groupingBy(e -> e.eventType.component, LinkedHashMap::new, toList()));
+        byComponent.forEach((component, componentEvents) -> {
+            try {
+                switch (component) {
+                    case "SCHEDULER" -> {
+                        Map<Long, Scheduler> loaded = load(repositories.unsecure.scheduler, componentEvents);
+                        for (ClusterEvent e : componentEvents) {
+                            Scheduler s = loaded.get(e.id);
+                            if (s == null) {
+                                schedulerService.remove(e.id);
+                            } else {
+                                schedulerService.reload(s);
+                            }
+                        }
+                    }
+                    case "EVENT_LISTENER" -> {
+                        Map<Long, EventListenerEntry> loaded = load(repositories.unsecure.eventListener, componentEvents);
+                        for (ClusterEvent e : componentEvents) {
+                            EventListenerEntry l = loaded.get(e.id);
+                            if (l == null) {
+                                eventListenerService.unregisterEventListener(e.id);
+                            } else {
+                                eventListenerService.reload(l);
+                            }
+                        }
+                    }
+                    case "FORM" -> {
+                        Map<Long, Form> loaded = load(repositories.unsecure.form, componentEvents);
+                        for (ClusterEvent e : componentEvents) {
+                            Form f = loaded.get(e.id);
+                            if (e.eventType.isRemove()) {
+                                formService.removeForm(e.id);
+                            } else if (f == null) {
+                                debug("[apply] Form {} not found", e.id);
+                            } else if (e.eventType.isAdd()) {
+                                formService.addForm(f);
+                            } else {
+                                formService.reloadForm(f);
+                            }
+                        }
+                    }
+                    case "SERVER_JS" -> {
+                        Map<Long, ServerJs> loaded = load(repositories.unsecure.serverJs, componentEvents);
+                        for (ClusterEvent e : componentEvents) {
+                            ServerJs js = loaded.get(e.id);
+                            if (js == null) {
+                                webendpointAutocompleteIndex.remove(e.id);
+                            } else {
+                                webendpointAutocompleteIndex.update(js.getId(), js.getName(), js.getOrganizationId(), js.getCode());
+                            }
+                        }
+                    }
+                    default -> warn("[apply] Unknown component {}", component);
+                }
+            } catch (RuntimeException e) {
+                error(e, "[apply] Could not apply {} events of {}", componentEvents.size(), component);
+            }
+        });
+        return true;
+    }
 
+    /**
+     * @return components to add or reload read with one query, by id
+     */
+    private <T extends ComponentEntity> Map<Long, T> load(JpaRepository<T, Long> repository, List<ClusterEvent> events) {
+        List<Long> ids = events.stream().filter(e -> !e.eventType.isRemove()).map(e -> e.id).toList();
+        Map<Long, T> result = new HashMap<>();
+        if (!ids.isEmpty()) {
+            repository.findAllById(ids).forEach(c -> result.put(c.getId(), c));
+        }
+        return result;
+    }
 }
@@ -21,7 +21,14 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 package com.openkoda.core.service.event;
 
+import com.hazelcast.core.HazelcastInstance;
 import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import static com.openkoda.core.helper.ClusterHelper.*;
@@ -30,91 +37,109 @@ import static com.openkoda.core.service.event.ClusterEvent.EventType.*;
 /**
  * Service that sends specific events to hazelcast cluster in order to propagate the local application state
  * to the whole cluster.
+ * Events are published asynchronously and coalesced per component by {@link ClusterEventBus}, the methods return
+ * as soon as the event is buffered.
  * See: {@link ClusterEventListenerService}
  */
 @Service
 public class ClusterEventSenderService implements LoggingComponentWithRequestId {
 
+    @Autowired(required = false)
+    private HazelcastInstance hazelcastInstance;
+
+    @Inject @Lazy
+    private ClusterEventListenerService clusterEventListenerService;
+
+    @Value("${cluster.events.window-ms:100}")
+    private long windowMs;
+
+    @Value("${cluster.events.max-batch:500}")
+    private int maxBatch;
+
+    private ClusterEventBus bus;
+
+    @PostConstruct
+    void init() {
+        if (hazelcastInstance != null) {
+            bus = new ClusterEventBus(hazelcastInstance, CLUSTER_EVENT_BATCH_TOPIC, windowMs, maxBatch,
+                    events -> clusterEventListenerService.apply(events)).start();
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        if (bus != null) {
+            bus.close();
+        }
+    }
+
+    /**
+     * @return counters and propagation lag of the cluster event bus, null when not in cluster
+     */
+    public ClusterEventBus.Stats getStats() {
+        return bus == null ? null : bus.getStats();
+    }
+
 
     public boolean loadScheduler(long schedulerId) {
         debug("[loadScheduler] {}", schedulerId);
-        if(isCluster()) {
-            getHazelcastInstance().getTopic(CLUSTER_EVENT_TOPIC).publish(new ClusterEvent(SCHEDULER_ADD, schedulerId));
-            return true;
-        }
-        return false;
+        return publish(SCHEDULER_ADD, schedulerId);
     }
 
     public boolean reloadScheduler(long schedulerId) {
         debug("[reloadScheduler] {}", schedulerId);
-        if(isCluster()) {
-            getHazelcastInstance().getTopic(CLUSTER_EVENT_TOPIC).publish(new ClusterEvent(SCHEDULER_RELOAD, schedulerId));
-            return true;
-        }
-        return false;
+        return publish(SCHEDULER_RELOAD, schedulerId);
     }
 
     public boolean removeScheduler(long schedulerId) {
         debug("[removeScheduler] {}", schedulerId);
-        if(isCluster()) {
-            getHazelcastInstance().getTopic(CLUSTER_EVENT_TOPIC).publish(new ClusterEvent(SCHEDULER_REMOVE, schedulerId));
-            return true;
-        }
-        return false;
+        return publish(SCHEDULER_REMOVE, schedulerId);
     }
 
     public boolean loadEventListener(long eventListenerId) {
         debug("[loadEventListener] {}", eventListenerId);
-        if(isCluster()) {
-            getHazelcastInstance().getTopic(CLUSTER_EVENT_TOPIC).publish(new ClusterEvent(EVENT_LISTENER_ADD, eventListenerId));
-            return true;
-        }
-        return false;
+        return publish(EVENT_LISTENER_ADD, eventListenerId);
     }
 
     public boolean reloadEventListener(long eventListenerId) {
         debug("[reloadEventListener] {}", eventListenerId);
-        if(isCluster()) {
-            getHazelcastInstance().getTopic(CLUSTER_EVENT_TOPIC).publish(new ClusterEvent(EVENT_LISTENER_RELOAD, eventListenerId));
-            return true;
-        }
-        return false;
+        return publish(EVENT_LISTENER_RELOAD, eventListenerId);
     }
 
     public boolean removeEventListener(long eventListenerId) {
         debug("[removeEventListener] {}", eventListenerId);
-        if(isCluster()) {
-            getHazelcastInstance().getTopic(CLUSTER_EVENT_TOPIC).publish(new ClusterEvent(EVENT_LISTENER_REMOVE, eventListenerId));
-            return true;
-        }
-        return false;
+        return publish(EVENT_LISTENER_REMOVE, eventListenerId);
     }
 
     public boolean loadForm(long formId) {
-        debug("[loadEventListener] {}", formId);
-        if(isCluster()) {
-            getHazelcastInstance().getTopic(CLUSTER_EVENT_TOPIC).publish(new ClusterEvent(FORM_ADD, formId));
-            return true;
-        }
-        return false;
+        debug("[loadForm] {}", formId);
+        return publish(FORM_ADD, formId);
     }
 
     public boolean reloadForm(long formId) {
-        debug("[reloadEventListener] {}", formId);
-        if(isCluster()) {
-            getHazelcastInstance().getTopic(CLUSTER_EVENT_TOPIC).publish(new ClusterEvent(FORM_RELOAD, formId));
-            return true;
-        }
-        return false;
+        debug("[reloadForm] {}", formId);
+        return publish(FORM_RELOAD, formId);
     }
 
     public boolean removeForm(long formId) {
-        debug("[removeEventListener] {}", formId);
-        if(isCluster()) {
-            getHazelcastInstance().getTopic(CLUSTER_EVENT_TOPIC).publish(new ClusterEvent(FORM_REMOVE, formId));
-            return true;
+        debug("[removeForm] {}", formId);
+        return publish(FORM_REMOVE, formId);
+    }
+
+    public boolean reloadServerJs(long serverJsId) {
+        debug("[reloadServerJs] {}", serverJsId);
+        return publish(SERVER_JS_RELOAD, serverJsId);
+    }
+
+    public boolean removeServerJs(long serverJsId) {
+        debug("[removeServerJs] {}", serverJsId);
+        return publish(SERVER_JS_REMOVE, serverJsId);
+    }
+
+    private boolean publish(ClusterEvent.EventType eventType, long id) {
+        if (isCluster() && bus != null) {
+            return bus.publish(eventType, id);
         }
         return false;
     }
-
 }
@@ -283,6 +283,16 @@ public class EventListenerService extends ComponentProvider implements HasSecuri
         return loadFromDb(eventListenerEntryId);
     }
 
+    /**
+     * Unregisters given event listener if registered and registers it again, used when the entry
+     * was already read from database, eg. for a batch of cluster events
+     */
+    public boolean reload(EventListenerEntry eventListenerEntry) {
+        debug("[reload] eventListenerEntryId: {}", eventListenerEntry.getId());
+        unregisterEventListener(eventListenerEntry.getId());
+        return registerListener(eventListenerEntry);
+    }
+
     /**
      * This method loads an event listener from the database by its ID and registers it in the application as a listener.
      * @see EventListenerService#registerListener(EventListenerEntry)
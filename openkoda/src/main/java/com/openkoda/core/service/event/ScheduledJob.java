@@ -0,0 +1,175 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.event;
+
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.TriggerContext;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.scheduling.support.CronTrigger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Registration of a single {@link com.openkoda.model.component.Scheduler} in {@link SchedulerService}.</p>
+ * <p>It is the trigger of the job: cron executions are shifted by a fixed offset of the job, so that jobs sharing
+ * a cron expression do not all start in the same second. The offset is never more than half of the shortest interval
+ * between executions of the cron expression.</p>
+ * <p>It also prevents overlapping runs of the job and tracks trigger lateness and run duration.</p>
+ */
+public class ScheduledJob implements Trigger {
+
+    /**
+     * Executions of the cron expression, from a fixed point in time, checked for the shortest interval between them
+     */
+    private static final int SAMPLED_EXECUTIONS = 100;
+
+    private static final LocalDateTime SAMPLE_START = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    /**
+     * Counters of a job, lateness is the delay between the planned and the actual trigger time
+     */
+    public record Stats(long schedulerId, String cronExpression, long offsetMs, boolean running, long runs,
+                        long overlapsSkipped, long rejected, long lastLatenessMs, long maxLatenessMs,
+                        long lastDurationMs, long maxDurationMs, double avgDurationMs, Instant plannedAt) {}
+
+    final long schedulerId;
+
+    final String cronExpression;
+
+    final long offsetMs;
+
+    private final CronTrigger cron;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile Instant plannedAt;
+
+    private volatile ScheduledFuture<?> future;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder overlapsSkipped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalDurationMs = new LongAdder();
+    private final AtomicLong lastLatenessMs = new AtomicLong();
+    private final AtomicLong maxLatenessMs = new AtomicLong();
+    private final AtomicLong lastDurationMs = new AtomicLong();
+    private final AtomicLong maxDurationMs = new AtomicLong();
+
+    ScheduledJob(long schedulerId, String cronExpression, long spreadMs) {
+        this.schedulerId = schedulerId;
+        this.cronExpression = cronExpression;
+        this.cron = new CronTrigger(cronExpression);
+        this.offsetMs = offset(schedulerId, cronExpression, spreadMs);
+    }
+
+    /**
+     * @return offset of the job within the spread window, depends only on the scheduler id and the cron expression,
+     * so it is the same on every node and after restart
+     */
+    static long offset(long schedulerId, String cronExpression, long spreadMs) {
+        if (spreadMs <= 0) {
+            return 0;
+        }
+        long window = Math.min(spreadMs, minInterval(CronExpression.parse(cronExpression)) / 2);
+        return window <= 0 ? 0 : Math.floorMod(schedulerId * 0x9E3779B97F4A7C15L, window);
+    }
+
+    /**
+     * @return shortest interval in ms between {@link #SAMPLED_EXECUTIONS} executions following {@link #SAMPLE_START},
+     * Long.MAX_VALUE when the expression has fewer than two executions
+     */
+    static long minInterval(CronExpression expression) {
+        long result = Long.MAX_VALUE;
+        LocalDateTime previous = expression.next(SAMPLE_START);
+        for (int i = 1; i < SAMPLED_EXECUTIONS && previous != null; i++) {
+            LocalDateTime next = expression.next(previous);
+            if (next != null) {
+                result = Math.min(result, Duration.between(previous, next).toMillis());
+            }
+            previous = next;
+        }
+        return result;
+    }
+
+    @Override
+    public Instant nextExecution(TriggerContext triggerContext) {
+        Instant next = cron.nextExecution(triggerContext);
+        plannedAt = next == null ? null : next.plusMillis(offsetMs);
+        return plannedAt;
+    }
+
+    void setFuture(ScheduledFuture<?> future) {
+        this.future = future;
+    }
+
+    boolean cancel() {
+        return future == null || future.cancel(false) || future.isDone();
+    }
+
+    boolean isDone() {
+        return future != null && future.isDone();
+    }
+
+    /**
+     * Records the trigger and marks the job running
+     * @return false when the previous run has not finished yet
+     */
+    boolean tryStart() {
+        Instant planned = plannedAt;
+        if (planned != null) {
+            long lateness = Math.max(0, System.currentTimeMillis() - planned.toEpochMilli());
+            lastLatenessMs.set(lateness);
+            maxLatenessMs.accumulateAndGet(lateness, Math::max);
+        }
+        if (!running.compareAndSet(false, true)) {
+            overlapsSkipped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    void rejected() {
+        rejected.increment();
+        running.set(false);
+    }
+
+    void finished(long durationMs) {
+        runs.increment();
+        totalDurationMs.add(durationMs);
+        lastDurationMs.set(durationMs);
+        maxDurationMs.accumulateAndGet(durationMs, Math::max);
+        running.set(false);
+    }
+
+    Stats getStats() {
+        long count = runs.sum();
+        return new Stats(schedulerId, cronExpression, offsetMs, running.get(), count, overlapsSkipped.sum(), rejected.sum(),
+                lastLatenessMs.get(), maxLatenessMs.get(), lastDurationMs.get(), maxDurationMs.get(),
+                count == 0 ? 0 : (double) totalDurationMs.sum() / count, plannedAt);
+    }
+}
@@ -27,22 +27,28 @@ import com.openkoda.core.security.HasSecurityRules;
 import com.openkoda.core.tracker.RequestIdHolder;
 import com.openkoda.dto.system.ScheduledSchedulerDto;
 import com.openkoda.model.component.Scheduler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.TaskScheduler;
-import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.*;
 
 /**
  * Service for performing any actions related to scheduling.
  * It allows to  register any new {@link Scheduler}, do the re-scheduling operation and removing already scheduled tasks.
+ * The shared task scheduler only triggers the jobs, job bodies run on a separate bounded pool, a job is skipped
+ * when its previous run is still in progress. See {@link ScheduledJob} for start spreading and job metrics.
  *
  * @author Martyna Litkowska (mlitkowska@stratoflow.com)
  * @since 2019-03-20
@@ -54,10 +60,21 @@ public class SchedulerService extends ComponentProvider implements HasSecurityRu
     /**
      * Map stores currently scheduled tasks which makes it possible to remove them later (switch jobs off) when needed.
      */
-    private Map<Long, ScheduledFuture> currentlyScheduled = new HashMap<>();
+    private final Map<Long, ScheduledJob> currentlyScheduled = new ConcurrentHashMap<>();
 
     private final TaskScheduler taskScheduler;
 
+    @Value("${scheduler.jobs.pool-size:10}")
+    private int jobsPoolSize;
+
+    @Value("${scheduler.jobs.queue-capacity:1000}")
+    private int jobsQueueCapacity;
+
+    @Value("${scheduler.spread-ms:0}")
+    private long spreadMs;
+
+    private ThreadPoolExecutor jobExecutor;
+
     @Inject
     private ClusterEventSenderService clusterEventSenderService;
 
@@ -66,6 +83,36 @@ public class SchedulerService extends ComponentProvider implements HasSecurityRu
         this.taskScheduler = taskScheduler;
     }
 
+    @PostConstruct
+    void init() {
+        jobExecutor = new ThreadPoolExecutor(jobsPoolSize, jobsPoolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(jobsQueueCapacity), new CustomizableThreadFactory("scheduler-job-"));
+        jobExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobExecutor.shutdown();
+    }
+
+    /**
+     * @return metrics of currently scheduled jobs, by scheduler id
+     */
+    public List<ScheduledJob.Stats> getScheduledJobsStats() {
+        prune();
+        return currentlyScheduled.values().stream()
+                .map(ScheduledJob::getStats)
+                .sorted(Comparator.comparingLong(ScheduledJob.Stats::schedulerId))
+                .toList();
+    }
+
+    /**
+     * Drops jobs that will not be triggered anymore
+     */
+    private void prune() {
+        currentlyScheduled.values().removeIf(ScheduledJob::isDone);
+    }
+
     /**
      * This method retrieves all Scheduler objects from the database using repositories.unsecure.scheduler.findAll(),
      * and schedules each of them using the schedule method.
@@ -139,6 +186,17 @@ public class SchedulerService extends ComponentProvider implements HasSecurityRu
         return false;
     }
 
+    /**
+     * Removes the schedule of given scheduler if present and schedules it again, used when the scheduler
+     * was already read from database, eg. for a batch of cluster events
+     * @see SchedulerService#schedule(Scheduler)
+     */
+    public boolean reload(Scheduler scheduler) {
+        debug("[reload] {}", scheduler.getId());
+        remove(scheduler.getId());
+        return schedule(scheduler);
+    }
+
     /**
      * This method remove schedule and schedule new one
      * @return if the removal is unsuccessful, the method returns false, indicating that the rescheduling failed.
@@ -172,11 +230,13 @@ public class SchedulerService extends ComponentProvider implements HasSecurityRu
                             scheduler.isAsync(),
                     LocalDateTime.now());
 
-            currentlyScheduled.put(scheduler.getId(),
-                    taskScheduler.schedule(
-                            new SchedulerTask(schedulerDto), new CronTrigger(scheduler.getCronExpression())
-                    )
-            );
+            ScheduledJob job = new ScheduledJob(scheduler.getId(), scheduler.getCronExpression(), spreadMs);
+            job.setFuture(taskScheduler.schedule(new SchedulerTask(schedulerDto, job), job));
+            ScheduledJob previous = currentlyScheduled.put(scheduler.getId(), job);
+            if (previous != null) {
+                previous.cancel();
+            }
+            prune();
             return true;
         }
         return false;
@@ -189,12 +249,12 @@ public class SchedulerService extends ComponentProvider implements HasSecurityRu
      */
     @PreAuthorize(CHECK_CAN_MANAGE_EVENT_LISTENERS)
     public boolean remove(Long schedulerId) {
-        ScheduledFuture scheduledFuture = currentlyScheduled.get(schedulerId);
+        ScheduledJob job = currentlyScheduled.get(schedulerId);
         debug("Removing scheduled task for scheduler ID {}", schedulerId);
-        if (scheduledFuture != null) {
-            if (scheduledFuture.cancel(false)) {
+        if (job != null) {
+            if (job.cancel()) {
                 debug("Scheduled task for scheduler ID {} removed", schedulerId);
-                currentlyScheduled.remove(schedulerId);
+                currentlyScheduled.remove(schedulerId, job);
                 return true;
             }
         }
@@ -204,27 +264,52 @@ public class SchedulerService extends ComponentProvider implements HasSecurityRu
     /**
      * Class used only for wrapping event emission in a Runnable implementation.
      * ScheduledTask is created while registering any new {@link Scheduler}.
+     * It runs on the task scheduler thread and only hands the emission over to the job pool.
      */
     public class SchedulerTask implements Runnable {
 
         private ScheduledSchedulerDto executedScheduler;
 
-        SchedulerTask(ScheduledSchedulerDto executedScheduler) {
+        private final ScheduledJob job;
+
+        SchedulerTask(ScheduledSchedulerDto executedScheduler, ScheduledJob job) {
             this.executedScheduler = executedScheduler;
+            this.job = job;
         }
 
         @Override
         public void run() {
-            MDC.put(RequestIdHolder.PARAM_CRON_JOB_ID, RequestIdHolder.generate());
             if (executedScheduler.onMasterOnly && not(ClusterHelper.isMaster())) {
                 debug("[SchedulerTask] {}, not master, skipping.", executedScheduler.notificationMessage());
                 return;
             }
-            debug("[SchedulerTask] {}", executedScheduler.notificationMessage());
-            if (!executedScheduler.isAsync()) {
-                services.applicationEvent.emitEvent(ApplicationEvent.SCHEDULER_EXECUTED, executedScheduler);
-            } else {
-                services.applicationEvent.emitEventAsync(ApplicationEvent.SCHEDULER_EXECUTED, executedScheduler);
+            if (!job.tryStart()) {
+                warn("[SchedulerTask] {}, previous run of scheduler {} still in progress, skipping.", executedScheduler.notificationMessage(), job.schedulerId);
+                return;
+            }
+            try {
+                jobExecutor.execute(this::emit);
+            } catch (RejectedExecutionException e) {
+                job.rejected();
+                warn("[SchedulerTask] {}, job pool full, skipping scheduler {}.", executedScheduler.notificationMessage(), job.schedulerId);
+            }
+        }
+
+        private void emit() {
+            long start = System.currentTimeMillis();
+            try {
+                MDC.put(RequestIdHolder.PARAM_CRON_JOB_ID, RequestIdHolder.generate());
+                debug("[SchedulerTask] {}", executedScheduler.notificationMessage());
+                if (!executedScheduler.isAsync()) {
+                    services.applicationEvent.emitEvent(ApplicationEvent.SCHEDULER_EXECUTED, executedScheduler);
+                } else {
+                    services.applicationEvent.emitEventAsync(ApplicationEvent.SCHEDULER_EXECUTED, executedScheduler);
+                }
+            } catch (RuntimeException e) {
+                error(e, "[SchedulerTask] Scheduler {} failed", job.schedulerId);
+            } finally {
+                job.finished(System.currentTimeMillis() - start);
+                MDC.remove(RequestIdHolder.PARAM_CRON_JOB_ID);
             }
         }
 
@@ -40,13 +40,14 @@ import com.openkoda.model.component.FrontendResource;
 import com.openkoda.model.component.ServerJs;
 import com.openkoda.repository.SecureRepositoryWrapper;
 import jakarta.inject.Inject;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 import static com.openkoda.core.helper.NameHelper.toEntityKey;
@@ -55,6 +56,10 @@ import static com.openkoda.core.service.FrontendResourceService.frontendResource
 /**
  * Service provides any {@link Form} entity related actions
  * It allows to register any new {@link Form}, do the reload of the updated {@link Form} and remove already registered forms.
+ * <p>
+ * Evaluated {@link FrontendMappingDefinition}s are cached by form id together with a hash of the form name, privileges and code,
+ * so the JS evaluation runs only when one of them changes. {@link #loadAllFormsFromDb(boolean)} evaluates the changed forms
+ * in parallel, registers the whole batch only when all of them evaluated, and skips forms registered with the same settings.
  */
 @Service
 public class FormService extends ComponentProvider implements HasSecurityRules {
@@ -64,6 +69,36 @@ public class FormService extends ComponentProvider implements HasSecurityRules {
 
     @Inject
     private MultitenancyService multitenancyService;
+
+    /**
+     * Number of threads evaluating form definitions in {@link #loadAllFormsFromDb(boolean)}, 0 means number of processors
+     */
+    @Value("${form.bootstrap.threads:0}")
+    private int bootstrapThreads;
+
+    @Value("${form.bootstrap.timeout-seconds:300}")
+    private long bootstrapTimeoutSeconds;
+
+    record CompiledForm(String hash, FrontendMappingDefinition definition) {}
+
+    private final Map<Long, CompiledForm> compiledForms = new ConcurrentHashMap<>();
+
+    /**
+     * Form id -> {@link #registrationHash(Form)} of the currently registered version
+     */
+    private final Map<Long, String> registeredForms = new ConcurrentHashMap<>();
+
+    /**
+     * Definitions evaluated before the Spring context started, when dynamic entity descriptors were generated,
+     * keyed by {@link #definitionHash(Form)}. Each one is taken over by the first compilation of its form.
+     */
+    private static final Map<String, FrontendMappingDefinition> precompiledDefinitions = new ConcurrentHashMap<>();
+
+    /**
+     * Guards registration, so that a batch from {@link #loadAllFormsFromDb(boolean)} is not interleaved with single form changes
+     */
+    private final Object registrationLock = new Object();
+
     /**
      * Unregister and register the updated form again
      * @param formId
@@ -72,9 +107,19 @@ public class FormService extends ComponentProvider implements HasSecurityRules {
     public boolean reloadForm(Long formId) {
         debug("[reloadForm]");
         Form form = repositories.unsecure.form.findOne(formId);
-        if(form != null) {
-            if(unregisterForm(form)) {
-                return registerForm(form);
+        return form != null && reloadForm(form);
+    }
+
+    /**
+     * Unregister and register the form already read from database
+     * @param form
+     * @return boolean result
+     */
+    public boolean reloadForm(Form form) {
+        FrontendMappingDefinition definition = compile(form);
+        synchronized (registrationLock) {
+            if (unregisterForm(form)) {
+                return registerForm(form, definition);
             }
         }
         return false;
@@ -88,10 +133,19 @@ public class FormService extends ComponentProvider implements HasSecurityRules {
     public boolean addForm(Long formId) {
         debug("[addForm]");
         Form form = repositories.unsecure.form.findOne(formId);
-        if(form != null) {
-            return registerForm(form);
+        return form != null && addForm(form);
+    }
+
+    /**
+     * Register the form already read from database
+     * @param form
+     * @return boolean result
+     */
+    public boolean addForm(Form form) {
+        FrontendMappingDefinition definition = compile(form);
+        synchronized (registrationLock) {
+            return registerForm(form, definition);
         }
-        return false;
     }
 
     /**
@@ -103,13 +157,18 @@ public class FormService extends ComponentProvider implements HasSecurityRules {
         debug("[removeForm]");
         Form form = repositories.unsecure.form.findOne(formId);
         if(form != null) {
-            return unregisterForm(form);
+            compiledForms.remove(formId);
+            synchronized (registrationLock) {
+                return unregisterForm(form);
+            }
         }
         return false;
     }
 
     /**
-     * Load all form entities from database and register each of them
+     * Load all form entities from database and register each of them.
+     * Forms registered with unchanged settings are skipped, definitions of changed forms are evaluated in parallel
+     * and registered only when all evaluations succeeded.
      *  @param proceed indicates, whether the setup procedure should actually happen
      */
     public void loadAllFormsFromDb(boolean proceed) {
@@ -118,7 +177,14 @@ public class FormService extends ComponentProvider implements HasSecurityRules {
             return;
         }
         List<Form> all = repositories.unsecure.form.findAll();
-        all.forEach(this::registerForm);
+        List<Form> changed = all.stream()
+                .filter(f -> not(registrationHash(f).equals(registeredForms.get(f.getId()))))
+                .toList();
+        Map<Long, FrontendMappingDefinition> definitions = compileAll(changed);
+        synchronized (registrationLock) {
+            changed.forEach(f -> registerForm(f, definitions.get(f.getId())));
+        }
+        debug("[loadFormsFromDb] {} forms, {} registered, {} unchanged", all.size(), changed.size(), all.size() - changed.size());
         if(MultitenancyService.isMultitenancy()) {
             multitenancyService.addTenantedTables(all.stream().map(Form::getTableName).collect(Collectors.toList()));
         }
@@ -163,6 +229,20 @@ public class FormService extends ComponentProvider implements HasSecurityRules {
         return reloadForm(formId);
     }
 
+    /**
+     * Keeps definitions of the forms already evaluated outside of the application context, so that
+     * {@link #loadAllFormsFromDb(boolean)} does not evaluate them again
+     * @param definitions form name -> definition
+     */
+    public static void addPrecompiledDefinitions(List<Form> forms, Map<String, FrontendMappingDefinition> definitions) {
+        for (Form f : forms) {
+            FrontendMappingDefinition definition = definitions.get(f.getName());
+            if (definition != null) {
+                precompiledDefinitions.put(definitionHash(f), definition);
+            }
+        }
+    }
+
     public static FrontendMappingDefinition getFrontendMappingDefinition(Form form) {
         return getFrontendMappingDefinition(form.getName(), form.getReadPrivilegeAsString(), form.getWritePrivilegeAsString(), form.getCode());
     }
@@ -176,18 +256,104 @@ public class FormService extends ComponentProvider implements HasSecurityRules {
         return new ServerJSRunner().evaluateServerJs(serverJs, model, null, FrontendMappingDefinition.class);
     }
 
-    private boolean registerForm(Form form) {
+    /**
+     * Evaluates definitions of given forms, in parallel when there is more than one form to evaluate.
+     * Definitions cached for the same name, privileges and code are reused.
+     * @return form id -> definition
+     * @throws RuntimeException when any of the definitions failed to evaluate
+     */
+    Map<Long, FrontendMappingDefinition> compileAll(List<Form> forms) {
+        debug("[compileAll] {} forms", forms.size());
+        Map<Long, FrontendMappingDefinition> result = new HashMap<>(forms.size());
+        List<Form> toEvaluate = new ArrayList<>();
+        for (Form f : forms) {
+            CompiledForm cached = compiledForms.get(f.getId());
+            FrontendMappingDefinition precompiled;
+            if (cached != null && cached.hash().equals(definitionHash(f))) {
+                result.put(f.getId(), cached.definition());
+            } else if ((precompiled = precompiledDefinitions.remove(definitionHash(f))) != null) {
+                compiledForms.put(f.getId(), new CompiledForm(definitionHash(f), precompiled));
+                result.put(f.getId(), precompiled);
+            } else {
+                toEvaluate.add(f);
+            }
+        }
+        if (toEvaluate.size() <= 1) {
+            toEvaluate.forEach(f -> result.put(f.getId(), compile(f)));
+            return result;
+        }
+
+        int threads = Math.min(toEvaluate.size(), bootstrapThreads > 0 ? bootstrapThreads : Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("form-bootstrap-"));
+        try {
+            List<Callable<FrontendMappingDefinition>> tasks = toEvaluate.stream()
+                    .map(f -> (Callable<FrontendMappingDefinition>) () -> compile(f))
+                    .toList();
+            List<Future<FrontendMappingDefinition>> futures = executor.invokeAll(tasks, bootstrapTimeoutSeconds, TimeUnit.SECONDS);
+            for (int i = 0; i < futures.size(); i++) {
+                result.put(toEvaluate.get(i).getId(), futures.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted when evaluating form definitions", e);
+        } catch (ExecutionException | CancellationException e) {
+            error("[compileAll] Form definitions not registered: {}", e.getMessage());
+            throw new RuntimeException("Error when evaluating form definitions", e.getCause() != null ? e.getCause() : e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * @return definition of the form, evaluated only when its name, privileges or code changed since the last evaluation
+     */
+    FrontendMappingDefinition compile(Form form) {
+        String hash = definitionHash(form);
+        CompiledForm cached = compiledForms.get(form.getId());
+        if (cached != null && cached.hash().equals(hash)) {
+            return cached.definition();
+        }
+        FrontendMappingDefinition definition = precompiledDefinitions.remove(hash);
+        if (definition == null) {
+            definition = evaluate(form);
+        }
+        compiledForms.put(form.getId(), new CompiledForm(hash, definition));
+        return definition;
+    }
+
+    FrontendMappingDefinition evaluate(Form form) {
+        return getFrontendMappingDefinition(form);
+    }
+
+    static String definitionHash(Form form) {
+        return DigestUtils.sha256Hex(String.join("\0",
+                StringUtils.defaultString(form.getName()),
+                StringUtils.defaultString(form.getReadPrivilegeAsString()),
+                StringUtils.defaultString(form.getWritePrivilegeAsString()),
+                StringUtils.defaultString(form.getCode())));
+    }
+
+    /**
+     * @return hash of everything {@link #registerForm(Form, FrontendMappingDefinition)} depends on
+     */
+    static String registrationHash(Form form) {
+        return DigestUtils.sha256Hex(String.join("\0",
+                definitionHash(form),
+                String.valueOf(form.isRegisterAsAuditable()),
+                String.valueOf(form.isRegisterHtmlCrudController()),
+                String.valueOf(form.isRegisterApiCrudController()),
+                StringUtils.defaultString(form.getTableColumns()),
+                StringUtils.defaultString(form.getFilterColumns()),
+                StringUtils.defaultString(form.getTableView())));
+    }
+
+    private boolean registerForm(Form form, FrontendMappingDefinition formFieldDefinitionBuilder) {
         debug("[registerForm]");
 
         ScopedSecureRepository<?> repository = services.data.getRepository(toEntityKey(form.getName()), SecurityScope.USER);
 
         if(((SecureRepositoryWrapper) repository).isSet()) {
-            FrontendMappingDefinition formFieldDefinitionBuilder = getFrontendMappingDefinition(
-                    form.getName(),
-                    form.getReadPrivilegeAsString(),
-                    form.getWritePrivilegeAsString(),
-                    form.getCode());
-
             services.customisation.registerFrontendMapping(formFieldDefinitionBuilder, repository);
             AbstractForm.markDirty(form.getName());
             SearchableRepositoryMetadata repositoryMetadata = repository.getSearchableRepositoryMetadata();
@@ -208,6 +374,7 @@ public class FormService extends ComponentProvider implements HasSecurityRules {
             if (form.isRegisterApiCrudController()) {
                 services.customisation.registerApiCrudController(formFieldDefinitionBuilder, repository, form.getReadPrivilege(), form.getWritePrivilege());
             }
+            registeredForms.put(form.getId(), registrationHash(form));
             return true;
         }
         return false;
@@ -215,6 +382,7 @@ public class FormService extends ComponentProvider implements HasSecurityRules {
 
     private boolean unregisterForm(Form form) {
         debug("[unregisterForm]");
+        registeredForms.remove(form.getId());
         multitenancyService.removeTenantedTables(Collections.singletonList(form.getTableName()));
         services.customisation.unregisterFrontendMapping(form.getName());
         services.customisation.unregisterHtmlCrudController(form.getName().toLowerCase());
@@ -0,0 +1,104 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.http;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * <p>Collects items per key and hands them over in batches.</p>
+ * <p>A batch is flushed when it reaches {@code maxBatchSize} or {@code windowMillis} after its first item
+ * arrived, whichever comes first. With {@code windowMillis} of 0 every item is flushed immediately as a single
+ * element batch.</p>
+ */
+public class CoalescingBuffer<K, T> {
+
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final BiConsumer<K, List<T>> flush;
+
+    private final Map<K, List<T>> pending = new HashMap<>();
+
+    public CoalescingBuffer(long windowMillis, int maxBatchSize, ScheduledExecutorService scheduler, BiConsumer<K, List<T>> flush) {
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.scheduler = scheduler;
+        this.flush = flush;
+    }
+
+    public void add(K key, T item) {
+        if (windowMillis <= 0 || maxBatchSize == 1) {
+            flush.accept(key, List.of(item));
+            return;
+        }
+        List<T> full = null;
+        synchronized (pending) {
+            List<T> batch = pending.get(key);
+            if (batch == null) {
+                List<T> newBatch = batch = new ArrayList<>();
+                pending.put(key, newBatch);
+                scheduler.schedule(() -> flush(key, newBatch), windowMillis, TimeUnit.MILLISECONDS);
+            }
+            batch.add(item);
+            if (batch.size() >= maxBatchSize) {
+                full = pending.remove(key);
+            }
+        }
+        if (full != null) {
+            flush.accept(key, full);
+        }
+    }
+
+    /**
+     * Flushes all pending batches immediately
+     */
+    public void flushAll() {
+        Map<K, List<T>> toFlush;
+        synchronized (pending) {
+            toFlush = new HashMap<>(pending);
+            pending.clear();
+        }
+        toFlush.forEach(flush);
+    }
+
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.values().stream().mapToInt(List::size).sum();
+        }
+    }
+
+    private void flush(K key, List<T> batch) {
+        synchronized (pending) {
+            if (pending.get(key) != batch) {
+                return;
+            }
+            pending.remove(key);
+        }
+        flush.accept(key, batch);
+    }
+}
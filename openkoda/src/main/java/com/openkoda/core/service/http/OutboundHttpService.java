@@ -0,0 +1,354 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.http;
+
+import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * <p>Shared facility for calls to external HTTP APIs (integrations, OAuth token exchanges).</p>
+ * <p>All clients share one pool of keep-alive connections. Every named client (eg. "jira", "github") has its own:</p>
+ * <ul>
+ *     <li>connect, read and pool-wait timeouts,</li>
+ *     <li>bulkhead limiting concurrent calls, so one slow remote cannot take all connections and threads,</li>
+ *     <li>circuit breaker refusing calls for a while after consecutive failures,</li>
+ *     <li>retry policy with exponential backoff and full jitter,</li>
+ *     <li>bounded executor for work that should not run on the caller's thread.</li>
+ * </ul>
+ * <p>Settings are read from {@code outbound.http.<client>.<setting>}, falling back to
+ * {@code outbound.http.default.<setting>} and then to the defaults in this class.</p>
+ */
+@Service
+public class OutboundHttpService implements LoggingComponentWithRequestId {
+
+    public static final String DEFAULT = "default";
+    private static final String PROPERTY_PREFIX = "outbound.http.";
+
+    @Value("${outbound.http.pool.max-total:200}")
+    private int poolMaxTotal;
+
+    @Value("${outbound.http.pool.max-per-route:20}")
+    private int poolMaxPerRoute;
+
+    @Value("${outbound.http.pool.idle-timeout.seconds:30}")
+    private long poolIdleTimeoutSeconds;
+
+    @Value("${outbound.http.pool.time-to-live.seconds:300}")
+    private long poolTimeToLiveSeconds;
+
+    @Inject
+    private Environment environment;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    private ScheduledExecutorService scheduler;
+
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+
+    /**
+     * Settings and state of a single named client
+     */
+    static class Client {
+        final String name;
+        final CloseableHttpClient httpClient;
+        final RestTemplate restTemplate;
+        final Semaphore bulkhead;
+        final long bulkheadWaitMillis;
+        final CircuitBreaker circuitBreaker;
+        final int maxAttempts;
+        final long backoffMillis;
+        final long maxBackoffMillis;
+        final ThreadPoolExecutor executor;
+
+        Client(String name, CloseableHttpClient httpClient, int maxConcurrent, long bulkheadWaitMillis, CircuitBreaker circuitBreaker,
+               int maxAttempts, long backoffMillis, long maxBackoffMillis, ThreadPoolExecutor executor) {
+            this.name = name;
+            this.httpClient = httpClient;
+            this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+            this.bulkhead = new Semaphore(maxConcurrent);
+            this.bulkheadWaitMillis = bulkheadWaitMillis;
+            this.circuitBreaker = circuitBreaker;
+            this.maxAttempts = maxAttempts;
+            this.backoffMillis = backoffMillis;
+            this.maxBackoffMillis = maxBackoffMillis;
+            this.executor = executor;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(poolMaxTotal)
+                .setMaxConnPerRoute(poolMaxPerRoute)
+                .setConnectionTimeToLive(TimeValue.ofSeconds(poolTimeToLiveSeconds))
+                .build();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("outbound-http-scheduler-"));
+        scheduler.scheduleWithFixedDelay(() -> {
+            connectionManager.closeExpired();
+            connectionManager.closeIdle(TimeValue.ofSeconds(poolIdleTimeoutSeconds));
+        }, poolIdleTimeoutSeconds, poolIdleTimeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+        for (Client c : clients.values()) {
+            c.executor.shutdown();
+            try {
+                c.httpClient.close();
+            } catch (IOException e) {
+                warn("[shutdown] Closing client {} failed", c.name);
+            }
+        }
+        connectionManager.close();
+    }
+
+    /**
+     * @return pooled RestTemplate with timeouts of the given client. Calls made directly with it bypass bulkhead,
+     * circuit breaker and retries.
+     */
+    public RestTemplate restTemplate(String clientName) {
+        return client(clientName).restTemplate;
+    }
+
+    /**
+     * Executes an idempotent call, see {@link #execute(String, boolean, Function)}
+     */
+    public <T> T execute(String clientName, Function<RestTemplate, T> call) {
+        return execute(clientName, true, call);
+    }
+
+    /**
+     * <p>Executes the call within the bulkhead and circuit breaker of the given client.</p>
+     * <p>Idempotent calls are retried on I/O errors, 5xx and 429 responses. Non-idempotent calls are retried only when
+     * the request surely was not processed: the connection could not be established or the response was 429 or 503.</p>
+     *
+     * @throws OutboundCallRejectedException when the circuit is open or the bulkhead is full
+     * @throws RestClientException when the call failed and retries (if any) were exhausted
+     */
+    public <T> T execute(String clientName, boolean idempotent, Function<RestTemplate, T> call) {
+        Client client = client(clientName);
+        if (!client.circuitBreaker.tryAcquirePermission()) {
+            throw new OutboundCallRejectedException("Circuit breaker of " + clientName + " is open");
+        }
+        Boolean remoteFailure = null;
+        try {
+            acquireBulkhead(client);
+            try {
+                for (int attempt = 1; ; attempt++) {
+                    try {
+                        T result = call.apply(client.restTemplate);
+                        remoteFailure = false;
+                        return result;
+                    } catch (RestClientException e) {
+                        if (!isRemoteFailure(e)) {
+                            remoteFailure = false;
+                            throw e;
+                        }
+                        if (attempt >= client.maxAttempts || !isRetryable(e, idempotent)) {
+                            remoteFailure = true;
+                            throw e;
+                        }
+                        long delay = backoff(client, attempt, e);
+                        debug("[execute] {} attempt {} failed ({}), retrying in {} ms", clientName, attempt, e.getMessage(), delay);
+                        Thread.sleep(delay);
+                    }
+                }
+            } finally {
+                client.bulkhead.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OutboundCallRejectedException("Interrupted while calling " + clientName);
+        } finally {
+            if (remoteFailure == null) {
+                client.circuitBreaker.onIgnored();
+            } else if (remoteFailure) {
+                client.circuitBreaker.onFailure();
+            } else {
+                client.circuitBreaker.onSuccess();
+            }
+        }
+    }
+
+    /**
+     * <p>Runs the task on the bounded executor of the given client, off the caller's thread.
+     * Failures are logged.</p>
+     *
+     * @return false if the task was rejected because the client's queue is full
+     */
+    public boolean submit(String clientName, Callable<?> task) {
+        Client client = client(clientName);
+        try {
+            client.executor.execute(() -> {
+                try {
+                    task.call();
+                } catch (Exception e) {
+                    error(e, "[submit] Task of {} failed", clientName);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            error("[submit] Queue of {} is full, task rejected", clientName);
+            return false;
+        }
+    }
+
+    /**
+     * Creates a buffer coalescing items per key into batches, window and batch size can be overridden with
+     * {@code outbound.http.<client>.coalesce.window-ms} and {@code outbound.http.<client>.coalesce.max-batch-size}.
+     * Flushed batches are processed on the client's executor.
+     */
+    public <K, T> CoalescingBuffer<K, T> coalescingBuffer(String clientName, long windowMillis, int maxBatchSize, BiConsumer<K, List<T>> flush) {
+        long window = longProperty(clientName, "coalesce.window-ms", windowMillis);
+        int batchSize = Math.min(maxBatchSize, intProperty(clientName, "coalesce.max-batch-size", maxBatchSize));
+        return new CoalescingBuffer<>(window, batchSize, scheduler,
+                (key, batch) -> submit(clientName, () -> {
+                    flush.accept(key, batch);
+                    return null;
+                }));
+    }
+
+    public CircuitBreaker.State getCircuitState(String clientName) {
+        return client(clientName).circuitBreaker.getState();
+    }
+
+    public int getQueueSize(String clientName) {
+        return client(clientName).executor.getQueue().size();
+    }
+
+    private Client client(String clientName) {
+        return clients.computeIfAbsent(StringUtils.defaultIfBlank(clientName, DEFAULT), this::createClient);
+    }
+
+    private Client createClient(String name) {
+        debug("[createClient] {}", name);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(longProperty(name, "connect-timeout-ms", 5000)))
+                .setResponseTimeout(Timeout.ofMilliseconds(longProperty(name, "read-timeout-ms", 15000)))
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(longProperty(name, "pool-wait-timeout-ms", 2000)))
+                .build();
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(requestConfig)
+                .disableAutomaticRetries()
+                .build();
+        int threads = intProperty(name, "async.threads", 2);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(intProperty(name, "async.queue-capacity", 500)),
+                new CustomizableThreadFactory("outbound-http-" + name + "-"), new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return new Client(name, httpClient,
+                intProperty(name, "max-concurrent", 10),
+                longProperty(name, "bulkhead-wait-ms", 1000),
+                new CircuitBreaker(intProperty(name, "circuit.failure-threshold", 5), longProperty(name, "circuit.open-ms", 30000)),
+                Math.max(1, intProperty(name, "retry.max-attempts", 3)),
+                longProperty(name, "retry.backoff-ms", 200),
+                longProperty(name, "retry.max-backoff-ms", 5000),
+                executor);
+    }
+
+    private void acquireBulkhead(Client client) throws InterruptedException {
+        if (!client.bulkhead.tryAcquire(client.bulkheadWaitMillis, TimeUnit.MILLISECONDS)) {
+            throw new OutboundCallRejectedException("Too many concurrent calls to " + client.name);
+        }
+    }
+
+    /**
+     * 4xx responses (other than 429) mean the remote works and rejected the request, they do not count as failures
+     */
+    static boolean isRemoteFailure(RestClientException e) {
+        if (e instanceof HttpStatusCodeException s) {
+            return s.getStatusCode().is5xxServerError() || s.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        return e instanceof ResourceAccessException;
+    }
+
+    static boolean isRetryable(RestClientException e, boolean idempotent) {
+        if (idempotent) {
+            return true;
+        }
+        if (e instanceof HttpStatusCodeException s) {
+            int status = s.getStatusCode().value();
+            return status == HttpStatus.TOO_MANY_REQUESTS.value() || status == HttpStatus.SERVICE_UNAVAILABLE.value();
+        }
+        Throwable cause = e.getCause();
+        return cause instanceof ConnectException || cause instanceof ConnectTimeoutException
+                || cause instanceof NoRouteToHostException || cause instanceof UnknownHostException;
+    }
+
+    /**
+     * Exponential backoff with full jitter, Retry-After header (in seconds) is respected up to the maximum backoff
+     */
+    static long backoff(Client client, int attempt, RestClientException e) {
+        if (e instanceof HttpStatusCodeException s && s.getResponseHeaders() != null) {
+            String retryAfter = s.getResponseHeaders().getFirst("Retry-After");
+            if (StringUtils.isNumeric(retryAfter)) {
+                return Math.min(client.maxBackoffMillis, Long.parseLong(retryAfter) * 1000);
+            }
+        }
+        long cap = Math.min(client.maxBackoffMillis, client.backoffMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    private int intProperty(String clientName, String key, int defaultValue) {
+        return environment.getProperty(PROPERTY_PREFIX + clientName + "." + key, Integer.class,
+                environment.getProperty(PROPERTY_PREFIX + DEFAULT + "." + key, Integer.class, defaultValue));
+    }
+
+    private long longProperty(String clientName, String key, long defaultValue) {
+        return environment.getProperty(PROPERTY_PREFIX + clientName + "." + key, Long.class,
+                environment.getProperty(PROPERTY_PREFIX + DEFAULT + "." + key, Long.class, defaultValue));
+    }
+}
@@ -23,22 +23,23 @@ package com.openkoda.core.service.pdf;
 
 import com.openkoda.core.tracker.LoggingComponentWithRequestId;
 import jakarta.inject.Inject;
-import org.jsoup.Jsoup;
-import org.jsoup.parser.Parser;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Service;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
-import org.xhtmlrenderer.pdf.ITextRenderer;
 
-import java.io.*;
-import java.util.Collections;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Map;
 
 /**
  *
  * <p>Create a pdf file</p>
+ * <p>Rendering itself is delegated to {@link PdfRenderingService}</p>
  *
  * @author Arkadiusz Drysch (adrysch@stratoflow.com)
  *
@@ -58,6 +59,9 @@ public class PdfConstructor implements LoggingComponentWithRequestId {
     @Inject
     private TemplateEngine templateEngine;
 
+    @Inject
+    private PdfRenderingService pdfRenderingService;
+
     private Context getContext() {
         debug("[getContext]");
         return new Context(LocaleContextHolder.getLocale());
@@ -78,8 +82,7 @@ public class PdfConstructor implements LoggingComponentWithRequestId {
     /**
      * <p>Create a pdf file with separate pages for each model provided</p>
      * <p>When models is null or empty, the template will be fed with empty model and one pdf will be generated</p>
-     * @return true when successful
-     * @throws Exception otherwise.
+     * @return pdf content
      */
     public byte[] writeDocumentToByteArray(String templateName, Map<String, Object> ... models) {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -90,49 +93,28 @@ public class PdfConstructor implements LoggingComponentWithRequestId {
     /**
      * <p>Create a pdf file with separate pages for each model provided</p>
      * <p>When models is null or empty, the template will be fed with empty model and one pdf will be generated</p>
-     * @return true when successful
-     * @throws Exception otherwise.
+     * <p>The document is rendered to a temporary file deleted when the returned stream is closed</p>
+     * @return stream with pdf content
      */
     public InputStream writeDocumentToStream(String templateName, Map<String, Object> ... models) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        writeDocumentToOutputStream(templateName, baos, models);
-        return new ByteArrayInputStream(baos.toByteArray());
+        debug("[writeDocumentToStream] {}", templateName);
+        try {
+            return pdfRenderingService.renderToStream(templateName, models);
+        } catch (Exception e) {
+            error(e, "Error generating pdf for template {} and models {} ", templateName, models);
+            return new ByteArrayInputStream(new byte[0]);
+        }
     }
 
     /**
-     * <p>Create a pdf file with separate pages for each model provided</p>
+     * <p>Create a pdf file with separate pages for each model provided and write it directly to the output stream</p>
      * <p>When models is null or empty, the template will be fed with empty model and one pdf will be generated</p>
      * @return true when successful
-     * @throws Exception otherwise.
      */
     public boolean writeDocumentToOutputStream(String templateName, OutputStream os, Map<String, Object> ... models) {
-        debug("[writeDocumentToStream] {}", templateName);
+        debug("[writeDocumentToOutputStream] {}", templateName);
         try {
-
-
-            ITextRenderer renderer = new ITextRenderer();
-//            renderer.getFontResolver().addFont(fontPath, BaseFont.IDENTITY_H, BaseFont.NOT_EMBEDDED);
-            Map<String, Object> firstModel = models == null || models.length == 0 ? Collections.emptyMap() : models[0];
-            String htmlContent = prepareContent(templateName, firstModel);
-            // we need to create the target PDF
-            // we'll create one page per input string, but we call layout for the first
-            String html = Jsoup.parse(htmlContent, "", Parser.xmlParser()).html();
-
-            renderer.setDocumentFromString(html);
-            renderer.layout();
-            renderer.createPDF(os, false);
-
-            //creating next pages
-            for (int i = 1; i < models.length; i++) {
-                String nextContent = prepareContent(templateName, models[i]);
-                String nextHtml = Jsoup.parse(nextContent, "", Parser.xmlParser()).html();
-                renderer.setDocumentFromString(nextHtml);
-                renderer.layout();
-                renderer.writeNextDocument();
-            }
-            // complete the PDF
-            renderer.finishPDF();
-
+            pdfRenderingService.render(templateName, os, models);
         } catch (Exception e) {
             error(e, "Error generating pdf for template {} and models {} ", templateName, models);
         } finally {
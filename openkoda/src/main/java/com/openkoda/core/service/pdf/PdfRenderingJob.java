@@ -0,0 +1,185 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.pdf;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>State of an asynchronous pdf generation started with {@link PdfRenderingService#startJob}</p>
+ * <p>Progress is counted in rendered models, each model being one document appended to the result pdf</p>
+ * <p>Status changes are atomic, so a job cancelled while running is never reported as done. Once the pdf is being
+ * stored, the job can no longer be cancelled. The job is visible only to the user and organization that started it.</p>
+ */
+public class PdfRenderingJob {
+
+    public enum Status {
+        QUEUED, RUNNING, STORING, DONE, FAILED, CANCELLED
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String templateName;
+    private final String fileName;
+    private final Long organizationId;
+    private final Long userId;
+    private final int total;
+    private final AtomicInteger rendered = new AtomicInteger();
+    private final LocalDateTime createdOn = LocalDateTime.now();
+    private volatile LocalDateTime finishedOn;
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.QUEUED);
+    private volatile Long fileId;
+    private volatile String error;
+
+    PdfRenderingJob(String templateName, String fileName, Long organizationId, Long userId, int total) {
+        this.templateName = templateName;
+        this.fileName = fileName;
+        this.organizationId = organizationId;
+        this.userId = userId;
+        this.total = total;
+    }
+
+    /**
+     * @return false if the job was cancelled before it started
+     */
+    boolean start() {
+        return status.compareAndSet(Status.QUEUED, Status.RUNNING);
+    }
+
+    void modelRendered() {
+        rendered.incrementAndGet();
+    }
+
+    /**
+     * @return false if the job was cancelled, then the pdf must not be stored
+     */
+    boolean storing() {
+        return status.compareAndSet(Status.RUNNING, Status.STORING);
+    }
+
+    void done(Long fileId) {
+        this.fileId = fileId;
+        finish(Status.STORING, Status.DONE);
+    }
+
+    void failed(String error) {
+        this.error = error;
+        for (Status s = status.get(); !isFinished(s); s = status.get()) {
+            if (finish(s, Status.FAILED)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Requests cancellation, the job stops before rendering the next model
+     * @return true if the job was still queued or running
+     */
+    public boolean cancel() {
+        for (Status s = status.get(); s == Status.QUEUED || s == Status.RUNNING; s = status.get()) {
+            if (finish(s, Status.CANCELLED)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean finish(Status expected, Status status) {
+        if (!this.status.compareAndSet(expected, status)) {
+            return false;
+        }
+        this.finishedOn = LocalDateTime.now();
+        return true;
+    }
+
+    private static boolean isFinished(Status status) {
+        return status == Status.DONE || status == Status.FAILED || status == Status.CANCELLED;
+    }
+
+    public boolean isFinished() {
+        return isFinished(status.get());
+    }
+
+    public boolean isCancelled() {
+        return status.get() == Status.CANCELLED;
+    }
+
+    /**
+     * @return true if the job was started by the user in the organization
+     */
+    boolean isOwnedBy(Long organizationId, Long userId) {
+        return Objects.equals(this.organizationId, organizationId) && Objects.equals(this.userId, userId);
+    }
+
+    /**
+     * @return progress in percent
+     */
+    public int getProgress() {
+        return total == 0 ? 100 : rendered.get() * 100 / total;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTemplateName() {
+        return templateName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public Long getOrganizationId() {
+        return organizationId;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getRendered() {
+        return rendered.get();
+    }
+
+    public LocalDateTime getCreatedOn() {
+        return createdOn;
+    }
+
+    public LocalDateTime getFinishedOn() {
+        return finishedOn;
+    }
+
+    public Status getStatus() {
+        return status.get();
+    }
+
+    public Long getFileId() {
+        return fileId;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
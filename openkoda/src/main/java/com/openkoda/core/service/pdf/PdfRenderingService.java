@@ -0,0 +1,376 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.pdf;
+
+import com.itextpdf.text.pdf.BaseFont;
+import com.openkoda.core.flow.TransactionalExecutor;
+import com.openkoda.core.multitenancy.TenantResolver;
+import com.openkoda.core.service.FileService;
+import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import com.openkoda.model.file.File;
+import com.openkoda.repository.file.FileRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import org.jsoup.Jsoup;
+import org.jsoup.helper.W3CDom;
+import org.jsoup.parser.Parser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.w3c.dom.Document;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * <p>Renders pdf documents on a bounded pool of worker threads.</p>
+ * <p>Every worker keeps its own {@link ITextRenderer}, so fonts registered on the renderer and resources cached by its
+ * user agent (stylesheets, images) are loaded once per worker instead of once per document. Thymeleaf processing
+ * happens on the worker as well, the calling thread only waits for the result (or not at all for jobs).</p>
+ * <p>The worker runs with the caller's security context, tenant and locale, so templates and repositories see the same
+ * user as the caller. Request attributes are passed only when the caller waits for the result, a job may outlive
+ * the request.</p>
+ * <p>When the queue is full new work is rejected with {@link RejectedExecutionException}.</p>
+ */
+@Service
+public class PdfRenderingService implements LoggingComponentWithRequestId {
+
+    @Value("${base.url:http://localhost:8080}")
+    private String baseUrl;
+
+    @Value("${pdf.render.threads:4}")
+    private int threads;
+
+    @Value("${pdf.render.queue.capacity:100}")
+    private int queueCapacity;
+
+    @Value("${pdf.render.timeout.seconds:600}")
+    private long timeoutSeconds;
+
+    @Value("${pdf.render.jobs.retention.minutes:60}")
+    private long jobsRetentionMinutes;
+
+    @Value("${pdf.render.fonts:}")
+    private String[] fontPaths;
+
+    @Inject
+    private TemplateEngine templateEngine;
+
+    @Inject
+    private FileService fileService;
+
+    @Inject
+    private FileRepository fileRepository;
+
+    @Inject
+    private TransactionalExecutor transactionalExecutor;
+
+    private ThreadPoolExecutor executor;
+
+    private final ThreadLocal<ITextRenderer> renderers = ThreadLocal.withInitial(this::createRenderer);
+
+    private final Map<String, PdfRenderingJob> jobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    private void init() {
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("pdf-render-"), new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * <p>Renders the pdf directly into given output stream, one document per model.</p>
+     * <p>The stream is not closed.</p>
+     */
+    @SafeVarargs
+    public final void render(String templateName, OutputStream os, Map<String, Object>... models) {
+        debug("[render] {}", templateName);
+        Locale locale = LocaleContextHolder.getLocale();
+        await(executor.submit(withCallerContext(() -> {
+            renderDocument(templateName, locale, os, models, null);
+            return null;
+        }, true)));
+    }
+
+    /**
+     * <p>Renders the pdf into a temporary file and returns a stream reading it. The file is deleted when the stream
+     * is closed, so the document is never kept in memory as a whole.</p>
+     */
+    @SafeVarargs
+    public final InputStream renderToStream(String templateName, Map<String, Object>... models) {
+        debug("[renderToStream] {}", templateName);
+        Path tmp = renderToTemporaryFile(templateName, models);
+        try {
+            return Files.newInputStream(tmp, StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Renders the pdf and stores it with {@link FileService} as a new {@link File} entity
+     */
+    @SafeVarargs
+    public final File renderToFile(String templateName, String fileName, Long organizationId, Map<String, Object>... models) {
+        debug("[renderToFile] {} {}", templateName, fileName);
+        Path tmp = renderToTemporaryFile(templateName, models);
+        try {
+            return storeFile(tmp, fileName, organizationId);
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    /**
+     * <p>Starts asynchronous generation of a (possibly large) pdf stored as {@link File} when finished.</p>
+     * <p>Progress can be followed with {@link #getJob(String, Long, Long)} by the same user in the same organization.</p>
+     * @param userId user starting the job, null for background jobs
+     */
+    public PdfRenderingJob startJob(String templateName, String fileName, Long organizationId, Long userId, List<Map<String, Object>> models) {
+        debug("[startJob] {} {} models {}", templateName, fileName, models.size());
+        removeExpiredJobs();
+        PdfRenderingJob job = new PdfRenderingJob(templateName, fileName, organizationId, userId, models.size());
+        @SuppressWarnings("unchecked")
+        Map<String, Object>[] modelsArray = models.toArray(new Map[0]);
+        Locale locale = LocaleContextHolder.getLocale();
+        jobs.put(job.getId(), job);
+        try {
+            executor.submit(withCallerContext(() -> {
+                runJob(job, locale, organizationId, modelsArray);
+                return null;
+            }, false));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * @return the job, null when not found or started by another user or in another organization
+     */
+    public PdfRenderingJob getJob(String jobId, Long organizationId, Long userId) {
+        PdfRenderingJob job = jobs.get(jobId);
+        return job != null && job.isOwnedBy(organizationId, userId) ? job : null;
+    }
+
+    public boolean cancelJob(String jobId, Long organizationId, Long userId) {
+        PdfRenderingJob job = getJob(jobId, organizationId, userId);
+        return job != null && job.cancel();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getCompletedTaskCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    private void runJob(PdfRenderingJob job, Locale locale, Long organizationId, Map<String, Object>[] models) {
+        if (!job.start()) {
+            return;
+        }
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile("pdf-job-", ".pdf");
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                renderDocument(job.getTemplateName(), locale, os, models, job);
+            }
+            if (job.storing()) {
+                job.done(storeFile(tmp, job.getFileName(), organizationId).getId());
+            }
+        } catch (CancellationException e) {
+            debug("[runJob] job {} cancelled", job.getId());
+        } catch (Exception e) {
+            error(e, "[runJob] Error generating pdf for template {} in job {}", job.getTemplateName(), job.getId());
+            job.failed(e.getMessage());
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    private Path renderToTemporaryFile(String templateName, Map<String, Object>[] models) {
+        Locale locale = LocaleContextHolder.getLocale();
+        return await(executor.submit(withCallerContext(() -> {
+            Path tmp = Files.createTempFile("pdf-", ".pdf");
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                renderDocument(templateName, locale, os, models, null);
+            } catch (Exception e) {
+                deleteQuietly(tmp);
+                throw e;
+            }
+            return tmp;
+        }, true)));
+    }
+
+    /**
+     * Wraps the task so that it runs with the security context and tenant of the calling thread, and with its request
+     * attributes when given. The worker's thread locals are cleared afterwards.
+     */
+    <T> Callable<T> withCallerContext(Callable<T> task, boolean withRequestAttributes) {
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        TenantResolver.TenantedResource tenantedResource = TenantResolver.getTenantedResource();
+        RequestAttributes requestAttributes = withRequestAttributes ? RequestContextHolder.getRequestAttributes() : null;
+        return () -> {
+            SecurityContextHolder.setContext(securityContext);
+            TenantResolver.setTenantedResource(tenantedResource);
+            RequestContextHolder.setRequestAttributes(requestAttributes);
+            try {
+                return task.call();
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+                TenantResolver.setTenantedResource(null);
+                SecurityContextHolder.clearContext();
+            }
+        };
+    }
+
+    private void renderDocument(String templateName, Locale locale, OutputStream os, Map<String, Object>[] models, PdfRenderingJob job) throws Exception {
+        ITextRenderer renderer = renderers.get();
+        boolean success = false;
+        try {
+            Map<String, Object> firstModel = models == null || models.length == 0 ? Collections.emptyMap() : models[0];
+            // we'll create one document per model, but we call layout for the first
+            renderer.setDocument(toDocument(prepareContent(templateName, locale, firstModel)), null);
+            renderer.layout();
+            renderer.createPDF(os, false);
+            if (job != null) {
+                job.modelRendered();
+            }
+
+            //creating next pages
+            for (int i = 1; models != null && i < models.length; i++) {
+                if (job != null && job.isCancelled()) {
+                    throw new CancellationException();
+                }
+                renderer.setDocument(toDocument(prepareContent(templateName, locale, models[i])), null);
+                renderer.layout();
+                renderer.writeNextDocument();
+                if (job != null) {
+                    job.modelRendered();
+                }
+            }
+            // complete the PDF
+            renderer.finishPDF();
+            success = true;
+        } finally {
+            if (!success) {
+                //renderer may be left in inconsistent state, next render on this thread gets a fresh one
+                renderers.remove();
+            }
+        }
+    }
+
+    private String prepareContent(String templateName, Locale locale, Map<String, Object> model) {
+        final Context ctx = new Context(locale);
+        ctx.setVariable("baseUrl", baseUrl);
+        for (Map.Entry<String, Object> entry : model.entrySet()) {
+            ctx.setVariable(entry.getKey(), entry.getValue());
+        }
+        return templateEngine.process(templateName, ctx);
+    }
+
+    private Document toDocument(String htmlContent) {
+        return new W3CDom().fromJsoup(Jsoup.parse(htmlContent, "", Parser.xmlParser()));
+    }
+
+    private ITextRenderer createRenderer() {
+        debug("[createRenderer] {}", Thread.currentThread().getName());
+        ITextRenderer renderer = new ITextRenderer();
+        for (String fontPath : fontPaths) {
+            try {
+                renderer.getFontResolver().addFont(fontPath, BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
+            } catch (Exception e) {
+                error(e, "[createRenderer] Could not register font {}", fontPath);
+            }
+        }
+        return renderer;
+    }
+
+    private File storeFile(Path pdf, String fileName, Long organizationId) {
+        return (File) transactionalExecutor.executeInTransaction(() -> {
+            try (InputStream is = Files.newInputStream(pdf)) {
+                File f = fileService.saveAndPrepareFileEntity(organizationId, UUID.randomUUID().toString(), fileName, Files.size(pdf), fileName, is);
+                return fileRepository.saveAndFlush(f);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private void removeExpiredJobs() {
+        LocalDateTime expired = LocalDateTime.now().minusMinutes(jobsRetentionMinutes);
+        jobs.values().removeIf(j -> j.getFinishedOn() != null && j.getFinishedOn().isBefore(expired));
+    }
+
+    private <T> T await(Future<T> future) {
+        try {
+            return future.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RuntimeException("Pdf rendering timed out after " + timeoutSeconds + "s", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                warn("[deleteQuietly] Could not delete {}", path);
+            }
+        }
+    }
+}
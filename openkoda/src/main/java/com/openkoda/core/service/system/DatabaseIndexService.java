@@ -0,0 +1,458 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.system;
+
+import com.openkoda.controller.ComponentProvider;
+import com.openkoda.core.customisation.CoreSettledEvent;
+import com.openkoda.core.customisation.FrontendMapping;
+import com.openkoda.core.customisation.FrontendMappingMap;
+import com.openkoda.core.form.FieldType;
+import com.openkoda.core.form.FrontendMappingFieldDefinition;
+import com.openkoda.core.multitenancy.MultitenancyService;
+import com.openkoda.model.common.OrganizationRelatedEntity;
+import com.openkoda.model.component.Form;
+import com.openkoda.model.notification.Notification;
+import com.openkoda.model.task.Task;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.ManyToOneType;
+import org.hibernate.type.Type;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static com.openkoda.core.helper.NameHelper.toColumnName;
+import static com.openkoda.model.common.ModelConstants.ORGANIZATION_ID;
+import static com.openkoda.model.common.ModelConstants.UPDATED_ON;
+
+/**
+ * Provisions indexes that the application needs, but which are not declared on the entities.
+ * <p>Required indexes are derived from:</p>
+ * <ul>
+ *     <li>JPA metadata - the columns of all many-to-one associations,</li>
+ *     <li><code>organization_id</code> of every {@link OrganizationRelatedEntity}, filtered by each secure specification,</li>
+ *     <li>dynamic forms - <code>organization_id</code>, <code>updated_on</code> and the many-to-one/organization select columns of the form table,</li>
+ *     <li>a few hand picked columns, see {@link #CORE_INDEXES}.</li>
+ * </ul>
+ * <p>A required index is missing when no valid index of the table starts with its columns. Missing indexes are
+ * created with <code>CREATE INDEX CONCURRENTLY</code>, so that tables stay writable, in public schema and, when
+ * multitenancy is on, in every tenant schema that has the table. Provisioning runs on startup (in background) when
+ * <code>db.indexes.auto-provision</code> is set, and on demand from the system health page.</p>
+ * <p>{@link #advise()} combines the missing indexes with sequential scan statistics from <code>pg_stat_user_tables</code>.</p>
+ */
+@Service
+public class DatabaseIndexService extends ComponentProvider {
+
+    /**
+     * Identifier length limit of PostgreSQL
+     */
+    static final int MAX_IDENTIFIER_LENGTH = 63;
+
+    static final String INDEX_NAME_PREFIX = "okx_";
+
+    /**
+     * Columns used by queries, which can't be derived from the mapping. Columns of one entry form a composite index.
+     */
+    private static final Map<Class<?>, List<List<String>>> CORE_INDEXES = Map.of(
+            Task.class, List.of(List.of("state", "start_after"), List.of(UPDATED_ON)),
+            Notification.class, List.of(List.of(UPDATED_ON))
+    );
+
+    private static final String COLUMNS_QUERY = """
+            SELECT n.nspname, c.relname, a.attname
+            FROM pg_class c
+            JOIN pg_namespace n ON n.oid = c.relnamespace
+            JOIN pg_attribute a ON a.attrelid = c.oid AND a.attnum > 0 AND NOT a.attisdropped
+            WHERE c.relkind IN ('r', 'p') AND (n.nspname = 'public' OR n.nspname LIKE ?)""";
+
+    private static final String INDEXES_QUERY = """
+            SELECT n.nspname, c.relname, ic.relname, i.indisvalid,
+                   array_to_string(array(SELECT a.attname FROM unnest(i.indkey) WITH ORDINALITY k(attnum, ord)
+                       JOIN pg_attribute a ON a.attrelid = c.oid AND a.attnum = k.attnum ORDER BY k.ord), ',')
+            FROM pg_index i
+            JOIN pg_class c ON c.oid = i.indrelid
+            JOIN pg_class ic ON ic.oid = i.indexrelid
+            JOIN pg_namespace n ON n.oid = c.relnamespace
+            WHERE n.nspname = 'public' OR n.nspname LIKE ?""";
+
+    /**
+     * Invalid index left by a failed concurrent build. An index being built concurrently is invalid as well, so indexes
+     * on tables where any backend (possibly on another node) is building an index are skipped.
+     */
+    private static final String INVALID_INDEX_QUERY = """
+            SELECT 1 FROM pg_index i
+            JOIN pg_class ic ON ic.oid = i.indexrelid
+            JOIN pg_namespace n ON n.oid = ic.relnamespace
+            WHERE n.nspname = ? AND ic.relname = ? AND NOT i.indisvalid
+            AND NOT EXISTS (SELECT 1 FROM pg_stat_progress_create_index p WHERE p.index_relid = i.indexrelid OR p.relid = i.indrelid)""";
+
+    private static final String SCAN_STATS_QUERY = """
+            SELECT schemaname, relname, seq_scan, seq_tup_read, coalesce(idx_scan, 0), n_live_tup
+            FROM pg_stat_user_tables
+            WHERE n_live_tup >= ? AND (schemaname = 'public' OR schemaname LIKE ?)
+            ORDER BY seq_tup_read DESC
+            LIMIT ?""";
+
+    /**
+     * Index the application needs on a table, independent of the schema
+     */
+    public record RequiredIndex(String table, List<String> columns, String source) {
+        public String name() {
+            return indexName(table, columns);
+        }
+    }
+
+    /**
+     * Required index, which does not exist in given schema
+     */
+    public record MissingIndex(String schema, String table, List<String> columns, String source, String name) {
+        public String ddl() {
+            return "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + quoted(name) + " ON " + quoted(schema) + "." + quoted(table)
+                    + " (" + columns.stream().map(DatabaseIndexService::quoted).collect(Collectors.joining(", ")) + ")";
+        }
+    }
+
+    /**
+     * Sequential scan statistics of a table, <code>seqTupRead</code> is the number of rows read by sequential scans
+     */
+    public record TableScanStats(String schema, String table, long seqScan, long seqTupRead, long idxScan, long liveTuples, int missingIndexes) {
+        public double seqScanRatio() {
+            long scans = seqScan + idxScan;
+            return scans == 0 ? 0 : (double) seqScan / scans;
+        }
+    }
+
+    public record ProvisioningResult(int created, int failed, long durationMs, long finishedAt) {}
+
+    public record Advice(List<TableScanStats> tables, List<MissingIndex> missingIndexes, ProvisioningResult lastProvisioning, boolean provisioning) {}
+
+    @Autowired
+    private DataSource dataSource;
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @Inject
+    private FrontendMappingMap frontendMappingMap;
+
+    @Value("${db.indexes.auto-provision:false}")
+    private boolean autoProvision;
+
+    @Value("${db.indexes.advisor.min-rows:1000}")
+    private long advisorMinRows;
+
+    @Value("${db.indexes.advisor.max-tables:30}")
+    private int advisorMaxTables;
+
+    private final AtomicBoolean provisioning = new AtomicBoolean();
+
+    private volatile ProvisioningResult lastProvisioning;
+
+    @EventListener(CoreSettledEvent.class)
+    public void onCoreSettled() {
+        if (autoProvision) {
+            debug("[onCoreSettled] Starting index provisioning");
+            startProvisioning();
+        }
+    }
+
+    /**
+     * @return indexes required by entities and dynamic forms, deduplicated by table and columns
+     */
+    public Collection<RequiredIndex> getRequiredIndexes() {
+        debug("[getRequiredIndexes]");
+        Map<String, RequiredIndex> result = new LinkedHashMap<>();
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        sessionFactory.getRuntimeMetamodels().getMappingMetamodel().forEachEntityDescriptor(persister -> {
+            if (persister instanceof AbstractEntityPersister p) {
+                addEntityIndexes(p, result);
+            }
+        });
+        for (Form form : repositories.unsecure.form.findAll()) {
+            addFormIndexes(form, result);
+        }
+        return result.values();
+    }
+
+    /**
+     * @return required indexes which do not exist in public schema and, with multitenancy, in tenant schemas
+     */
+    public List<MissingIndex> getMissingIndexes() {
+        debug("[getMissingIndexes]");
+        Collection<RequiredIndex> required = getRequiredIndexes();
+        try (Connection c = dataSource.getConnection()) {
+            return findMissing(c, required);
+        } catch (SQLException e) {
+            error(e, "[getMissingIndexes] Error reading database catalog");
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Creates all missing indexes in a background thread, as a concurrent build of an index on a big table takes long.
+     * The progress is reported by {@link #advise()}.
+     * @return false when provisioning is already running
+     */
+    public boolean startProvisioning() {
+        if (!provisioning.compareAndSet(false, true)) {
+            debug("[startProvisioning] Provisioning already in progress");
+            return false;
+        }
+        new CustomizableThreadFactory("index-provisioning-").newThread(this::provision).start();
+        return true;
+    }
+
+    /**
+     * Creates all missing indexes, one at a time and each concurrently, in the calling thread, which is blocked until
+     * all indexes are built. Does nothing when provisioning is already running.
+     * @return result of the run, or the result of the last run when provisioning is in progress
+     */
+    public ProvisioningResult provisionMissingIndexes() {
+        if (!provisioning.compareAndSet(false, true)) {
+            debug("[provisionMissingIndexes] Provisioning already in progress");
+            return lastProvisioning;
+        }
+        return provision();
+    }
+
+    private ProvisioningResult provision() {
+        long start = System.currentTimeMillis();
+        int created = 0, failed = 0;
+        try (Connection c = dataSource.getConnection()) {
+            c.setAutoCommit(true);
+            List<MissingIndex> missing = findMissing(c, getRequiredIndexes());
+            info("[provision] {} indexes to create", missing.size());
+            for (MissingIndex m : missing) {
+                try (Statement s = c.createStatement()) {
+                    s.execute(m.ddl());
+                    created++;
+                } catch (SQLException e) {
+                    failed++;
+                    warn("[provision] Could not create {} on {}.{}: {}", m.name(), m.schema(), m.table(), e.getMessage());
+                    dropInvalid(c, m);
+                }
+            }
+        } catch (SQLException e) {
+            error(e, "[provision] Error provisioning indexes");
+        } finally {
+            lastProvisioning = new ProvisioningResult(created, failed, System.currentTimeMillis() - start, System.currentTimeMillis());
+            provisioning.set(false);
+        }
+        info("[provision] {} created, {} failed in {}ms", created, failed, lastProvisioning.durationMs());
+        return lastProvisioning;
+    }
+
+    /**
+     * @return tables with most rows read by sequential scans, together with all missing indexes
+     */
+    public Advice advise() {
+        debug("[advise]");
+        List<MissingIndex> missing = getMissingIndexes();
+        Map<String, Integer> missingPerTable = new HashMap<>();
+        for (MissingIndex m : missing) {
+            missingPerTable.merge(m.schema() + "." + m.table(), 1, Integer::sum);
+        }
+        List<TableScanStats> tables = new ArrayList<>();
+        try (Connection c = dataSource.getConnection();
+             PreparedStatement ps = c.prepareStatement(SCAN_STATS_QUERY)) {
+            ps.setLong(1, advisorMinRows);
+            ps.setString(2, tenantSchemaPattern());
+            ps.setInt(3, advisorMaxTables);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String schema = rs.getString(1), table = rs.getString(2);
+                    tables.add(new TableScanStats(schema, table, rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getLong(6),
+                            missingPerTable.getOrDefault(schema + "." + table, 0)));
+                }
+            }
+        } catch (SQLException e) {
+            error(e, "[advise] Error reading table statistics");
+        }
+        return new Advice(tables, missing, lastProvisioning, provisioning.get());
+    }
+
+    /**
+     * Builds index name unique for the table and columns, shortened with a hash when longer than the identifier limit
+     */
+    static String indexName(String table, List<String> columns) {
+        String name = INDEX_NAME_PREFIX + table + "_" + String.join("_", columns);
+        if (name.length() <= MAX_IDENTIFIER_LENGTH) {
+            return name;
+        }
+        String hash = DigestUtils.md5Hex(name).substring(0, 8);
+        return name.substring(0, MAX_IDENTIFIER_LENGTH - hash.length() - 1) + "_" + hash;
+    }
+
+    /**
+     * Compares required indexes with the catalog. An index covers a required one when its leading columns are the
+     * required columns, in the same order.
+     */
+    static List<MissingIndex> missing(Collection<RequiredIndex> required, Map<String, Set<String>> tableColumns, Map<String, List<List<String>>> tableIndexes) {
+        List<MissingIndex> result = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> table : tableColumns.entrySet()) {
+            String schema = StringUtils.substringBefore(table.getKey(), ".");
+            String tableName = StringUtils.substringAfter(table.getKey(), ".");
+            List<List<String>> indexes = tableIndexes.getOrDefault(table.getKey(), Collections.emptyList());
+            for (RequiredIndex r : required) {
+                if (r.table().equals(tableName)
+                        && table.getValue().containsAll(r.columns())
+                        && indexes.stream().noneMatch(i -> i.size() >= r.columns().size() && i.subList(0, r.columns().size()).equals(r.columns()))) {
+                    result.add(new MissingIndex(schema, tableName, r.columns(), r.source(), r.name()));
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<MissingIndex> findMissing(Connection c, Collection<RequiredIndex> required) throws SQLException {
+        Set<String> requiredTables = new HashSet<>();
+        required.forEach(r -> requiredTables.add(r.table()));
+        Map<String, Set<String>> tableColumns = new TreeMap<>();
+        try (PreparedStatement ps = c.prepareStatement(COLUMNS_QUERY)) {
+            ps.setString(1, tenantSchemaPattern());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (requiredTables.contains(rs.getString(2))) {
+                        tableColumns.computeIfAbsent(rs.getString(1) + "." + rs.getString(2), k -> new HashSet<>()).add(rs.getString(3));
+                    }
+                }
+            }
+        }
+        Map<String, List<List<String>>> tableIndexes = new HashMap<>();
+        try (PreparedStatement ps = c.prepareStatement(INDEXES_QUERY)) {
+            ps.setString(1, tenantSchemaPattern());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    // an invalid index is left by a failed concurrent build, it is not used by queries
+                    if (rs.getBoolean(4)) {
+                        tableIndexes.computeIfAbsent(rs.getString(1) + "." + rs.getString(2), k -> new ArrayList<>())
+                                .add(List.of(rs.getString(5).split(",")));
+                    }
+                }
+            }
+        }
+        return missing(required, tableColumns, tableIndexes);
+    }
+
+    /**
+     * Drops the index left invalid by a failed build, unless it is still being built
+     */
+    private void dropInvalid(Connection c, MissingIndex m) {
+        try (PreparedStatement ps = c.prepareStatement(INVALID_INDEX_QUERY)) {
+            ps.setString(1, m.schema());
+            ps.setString(2, m.name());
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    debug("[dropInvalid] No invalid {}.{} to drop", m.schema(), m.name());
+                    return;
+                }
+            }
+            try (Statement s = c.createStatement()) {
+                s.execute("DROP INDEX CONCURRENTLY IF EXISTS " + quoted(m.schema()) + "." + quoted(m.name()));
+            }
+        } catch (SQLException e) {
+            warn("[dropInvalid] Could not drop {}.{}: {}", m.schema(), m.name(), e.getMessage());
+        }
+    }
+
+    private void addEntityIndexes(AbstractEntityPersister p, Map<String, RequiredIndex> result) {
+        String table = unqualified(p.getTableName());
+        Class<?> entityClass = p.getMappedClass();
+        if (OrganizationRelatedEntity.class.isAssignableFrom(entityClass)) {
+            add(result, table, List.of(ORGANIZATION_ID), entityClass.getSimpleName());
+        }
+        String[] propertyNames = p.getPropertyNames();
+        Type[] propertyTypes = p.getPropertyTypes();
+        for (int i = 0; i < propertyNames.length; i++) {
+            if (propertyTypes[i] instanceof ManyToOneType) {
+                String[] columns = p.getPropertyColumnNames(i);
+                if (columns != null && columns.length > 0 && Arrays.stream(columns).allMatch(Objects::nonNull)) {
+                    add(result, table, Arrays.stream(columns).map(DatabaseIndexService::unquoted).toList(), entityClass.getSimpleName() + "." + propertyNames[i]);
+                }
+            }
+        }
+        CORE_INDEXES.forEach((c, indexes) -> {
+            if (c.equals(entityClass)) {
+                indexes.forEach(columns -> add(result, table, columns, entityClass.getSimpleName()));
+            }
+        });
+    }
+
+    private void addFormIndexes(Form form, Map<String, RequiredIndex> result) {
+        String table = form.getTableName();
+        if (StringUtils.isBlank(table)) {
+            return;
+        }
+        String source = "Form " + form.getName();
+        add(result, table, List.of(ORGANIZATION_ID), source);
+        add(result, table, List.of(UPDATED_ON), source);
+        FrontendMapping mapping = frontendMappingMap.get(form.getName());
+        if (mapping == null) {
+            return;
+        }
+        for (FrontendMappingFieldDefinition f : mapping.definition().getDbTypeFields()) {
+            if (f.getType() == FieldType.many_to_one || f.getType() == FieldType.organization_select) {
+                add(result, table, List.of(toColumnName(f.getName())), source + "." + f.getName());
+            }
+        }
+    }
+
+    private static void add(Map<String, RequiredIndex> result, String table, List<String> columns, String source) {
+        result.putIfAbsent(table + ":" + String.join(",", columns), new RequiredIndex(table, columns, source));
+    }
+
+    /**
+     * @return pattern of tenant schema names, matching none when multitenancy is off
+     */
+    private static String tenantSchemaPattern() {
+        return MultitenancyService.isMultitenancy() ? "org\\_%" : "";
+    }
+
+    private static String unqualified(String tableName) {
+        return unquoted(StringUtils.substringAfterLast("." + tableName, "."));
+    }
+
+    static String quoted(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String unquoted(String identifier) {
+        return StringUtils.strip(identifier, "\"`");
+    }
+}
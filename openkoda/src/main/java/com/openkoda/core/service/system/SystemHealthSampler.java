@@ -0,0 +1,267 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.system;
+
+import com.openkoda.core.configuration.ReadReplicaRoutingDataSource;
+import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import com.sun.management.UnixOperatingSystemMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.*;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Samples JVM, process and connection pool metrics in-process, without starting any child processes.
+ * <p>
+ * Metrics come from the platform MXBeans ({@link OperatingSystemMXBean}, {@link ThreadMXBean}, {@link MemoryPoolMXBean},
+ * {@link GarbageCollectorMXBean}), Hikari pool MXBeans and, on Linux, <code>/proc/self</code>.
+ * {@link #sample()} is run on a fixed delay by {@link com.openkoda.core.job.JobsScheduler} and keeps the samples in a bounded
+ * ring buffer, so that the system health page and {@link com.openkoda.core.job.SystemHealthAlertJob} read the latest sample
+ * and its history instead of measuring on their own thread.
+ */
+@Component
+public class SystemHealthSampler implements LoggingComponentWithRequestId {
+
+    public static final long UNKNOWN = -1;
+
+    private static final Path PROC_STATUS = Path.of("/proc/self/status");
+    private static final Path PROC_IO = Path.of("/proc/self/io");
+
+    public record ConnectionPool(String name, int active, int idle, int total, int waiting, int max) {}
+
+    public record DiskSpace(String path, long free, long total) {}
+
+    /**
+     * One sample. CPU loads are fractions between 0 and 1, memory in bytes, GC and IO values since the previous sample.
+     * {@link #UNKNOWN} (or a negative load) when the value is not available on this platform.
+     */
+    public record Sample(long timestamp,
+                         double processCpuLoad, double systemCpuLoad, double systemLoadAverage, int availableProcessors,
+                         long heapUsed, long heapCommitted, long heapMax, long nonHeapUsed, Map<String, Long> memoryPoolsUsed,
+                         long physicalMemoryTotal, long physicalMemoryFree, long residentMemory,
+                         long openFileDescriptors, long maxFileDescriptors,
+                         int threads, int daemonThreads, int peakThreads, int deadlockedThreads,
+                         long gcCount, long gcTimeMs, long ioReadBytes, long ioWriteBytes,
+                         List<ConnectionPool> connectionPools, List<DiskSpace> disks) {
+
+        public double heapUsedPercent() {
+            return heapMax > 0 ? 100.0 * heapUsed / heapMax : UNKNOWN;
+        }
+
+        public int connectionsWaiting() {
+            return connectionPools.stream().mapToInt(ConnectionPool::waiting).sum();
+        }
+    }
+
+    private final ObjectProvider<DataSource> dataSources;
+
+    private final Sample[] samples;
+
+    private int next = 0;
+
+    private int size = 0;
+
+    private long lastGcCount = UNKNOWN;
+    private long lastGcTime = UNKNOWN;
+    private long lastIoRead = UNKNOWN;
+    private long lastIoWrite = UNKNOWN;
+
+    public SystemHealthSampler(ObjectProvider<DataSource> dataSources,
+                               @Value("${system.health.sampler.history-size:240}") int historySize) {
+        this.dataSources = dataSources;
+        this.samples = new Sample[Math.max(1, historySize)];
+    }
+
+    /**
+     * Takes a sample and adds it to the history, the oldest sample is dropped when the history is full
+     */
+    public synchronized Sample sample() {
+        Sample s = measure();
+        samples[next] = s;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+        return s;
+    }
+
+    /**
+     * @return the latest sample, taken now if there is none yet
+     */
+    public synchronized Sample latest() {
+        return size == 0 ? sample() : samples[(next - 1 + samples.length) % samples.length];
+    }
+
+    /**
+     * @return samples from the oldest to the latest
+     */
+    public synchronized List<Sample> history() {
+        List<Sample> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(samples[(next - size + i + samples.length) % samples.length]);
+        }
+        return result;
+    }
+
+    public int getCapacity() {
+        return samples.length;
+    }
+
+    private Sample measure() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        double processCpuLoad = UNKNOWN;
+        double systemCpuLoad = UNKNOWN;
+        long physicalTotal = UNKNOWN;
+        long physicalFree = UNKNOWN;
+        long openFds = UNKNOWN;
+        long maxFds = UNKNOWN;
+        if (os instanceof com.sun.management.OperatingSystemMXBean sunOs) {
+            processCpuLoad = sunOs.getProcessCpuLoad();
+            systemCpuLoad = sunOs.getCpuLoad();
+            physicalTotal = sunOs.getTotalMemorySize();
+            physicalFree = sunOs.getFreeMemorySize();
+        }
+        if (os instanceof UnixOperatingSystemMXBean unixOs) {
+            openFds = unixOs.getOpenFileDescriptorCount();
+            maxFds = unixOs.getMaxFileDescriptorCount();
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        Map<String, Long> pools = new LinkedHashMap<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.isValid()) {
+                pools.put(pool.getName(), pool.getUsage().getUsed());
+            }
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long[] deadlocked = threads.findDeadlockedThreads();
+
+        long gcCount = 0;
+        long gcTime = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcTime += Math.max(0, gc.getCollectionTime());
+        }
+        long gcCountDelta = lastGcCount == UNKNOWN ? 0 : gcCount - lastGcCount;
+        long gcTimeDelta = lastGcTime == UNKNOWN ? 0 : gcTime - lastGcTime;
+        lastGcCount = gcCount;
+        lastGcTime = gcTime;
+
+        Map<String, Long> io = readProcFile(PROC_IO, ": ");
+        long ioRead = io.getOrDefault("read_bytes", UNKNOWN);
+        long ioWrite = io.getOrDefault("write_bytes", UNKNOWN);
+        long ioReadDelta = ioRead == UNKNOWN || lastIoRead == UNKNOWN ? UNKNOWN : ioRead - lastIoRead;
+        long ioWriteDelta = ioWrite == UNKNOWN || lastIoWrite == UNKNOWN ? UNKNOWN : ioWrite - lastIoWrite;
+        lastIoRead = ioRead;
+        lastIoWrite = ioWrite;
+
+        return new Sample(System.currentTimeMillis(),
+                processCpuLoad, systemCpuLoad, os.getSystemLoadAverage(), os.getAvailableProcessors(),
+                heap.getUsed(), heap.getCommitted(), heap.getMax(), memory.getNonHeapMemoryUsage().getUsed(), pools,
+                physicalTotal, physicalFree, readProcFile(PROC_STATUS, ":").getOrDefault("VmRSS", UNKNOWN),
+                openFds, maxFds,
+                threads.getThreadCount(), threads.getDaemonThreadCount(), threads.getPeakThreadCount(), deadlocked == null ? 0 : deadlocked.length,
+                gcCountDelta, gcTimeDelta, ioReadDelta, ioWriteDelta,
+                connectionPools(), disks());
+    }
+
+    private List<ConnectionPool> connectionPools() {
+        List<ConnectionPool> result = new ArrayList<>();
+        dataSources.orderedStream().forEach(ds -> {
+            try {
+                if (ds.isWrapperFor(HikariDataSource.class)) {
+                    HikariDataSource hikari = ds.unwrap(HikariDataSource.class);
+                    HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+                    if (pool != null) {
+                        result.add(new ConnectionPool(hikari.getPoolName(), pool.getActiveConnections(), pool.getIdleConnections(),
+                                pool.getTotalConnections(), pool.getThreadsAwaitingConnection(), hikari.getMaximumPoolSize()));
+                    }
+                }
+                if (ds.isWrapperFor(ReadReplicaRoutingDataSource.class)) {
+                    for (ReadReplicaRoutingDataSource.PoolStats replica : ds.unwrap(ReadReplicaRoutingDataSource.class).getStats().replicas()) {
+                        if (replica.total() >= 0) {
+                            result.add(new ConnectionPool(replica.name(), replica.active(), replica.idle(), replica.total(),
+                                    replica.waiting(), replica.max()));
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                debug("[connectionPools] {}", e.getMessage());
+            }
+        });
+        return result;
+    }
+
+    private List<DiskSpace> disks() {
+        List<DiskSpace> result = new ArrayList<>();
+        for (Path root : FileSystems.getDefault().getRootDirectories()) {
+            File rootFile = root.toFile();
+            result.add(new DiskSpace(rootFile.getPath(), rootFile.getFreeSpace(), rootFile.getTotalSpace()));
+        }
+        return result;
+    }
+
+    /**
+     * Reads numeric values of a <code>/proc</code> key-value file, sizes given in kB are returned in bytes
+     * @return empty map when the file is not available
+     */
+    static Map<String, Long> readProcFile(Path file, String separator) {
+        if (!Files.isReadable(file)) {
+            return Collections.emptyMap();
+        }
+        try (Stream<String> lines = Files.lines(file)) {
+            return parseProcLines(lines, separator);
+        } catch (IOException | UncheckedIOException e) {
+            return Collections.emptyMap();
+        }
+    }
+
+    static Map<String, Long> parseProcLines(Stream<String> lines, String separator) {
+        Map<String, Long> result = new HashMap<>();
+        lines.forEach(line -> {
+            int i = line.indexOf(separator);
+            if (i <= 0) {
+                return;
+            }
+            String[] value = line.substring(i + separator.length()).trim().split("\\s+");
+            try {
+                long v = Long.parseLong(value[0]);
+                result.put(line.substring(0, i).trim(), value.length > 1 && "kB".equals(value[1]) ? v * 1024 : v);
+            } catch (NumberFormatException e) {
+                //not a numeric entry
+            }
+        });
+        return result;
+    }
+}
@@ -23,170 +23,96 @@ package com.openkoda.core.service.system;
 
 import com.openkoda.core.audit.SystemHealthStatus;
 import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import jakarta.inject.Inject;
 import jakarta.persistence.*;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.FileSystems;
-import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class provides methods to fill System Statuses with data from database and system.
+ * System metrics are read from {@link SystemHealthSampler}, database log settings are cached for
+ * <code>system.health.db-settings.refresh-ms</code>.
  */
 @Service
 public class SystemHealthStatusService implements LoggingComponentWithRequestId {
 
-    @Value("${system.cat.executable:cat}")
-    private String catExecutable;
-    @Value("${system.apt.executable:apt}")
-    private String aptExecutable;
-    @Value("${system.pidstat.executable:pidstat}")
-    private String pidstatExecutable;
+    private static final String LOG_STATEMENT = "log_statement";
+    private static final String LOG_MIN_DURATION_STATEMENT = "log_min_duration_statement";
+
     @PersistenceUnit
     EntityManagerFactory entityManagerFactory;
 
-    public static boolean isWindows = System.getProperty("os.name").toLowerCase().startsWith("windows");
+    @Inject
+    SystemHealthSampler sampler;
+
+    @Value("${system.health.db-settings.refresh-ms:300000}")
+    private long dbSettingsRefreshMs;
+
+    private volatile Map<String, String> dbSettings;
+
+    private volatile long dbSettingsReadAt;
 
     public SystemHealthStatus statusNow() {
         debug("[statusNow]");
         SystemHealthStatus status = new SystemHealthStatus();
-        status.setMaxHeapMemory(Runtime.getRuntime().maxMemory());
-        status.setFreeHeapMemory(Runtime.getRuntime().freeMemory());
-        status.setTotalHeapMemory(Runtime.getRuntime().totalMemory());
-        for (Path root : FileSystems.getDefault().getRootDirectories()) {
-            File rootFile = root.toFile();
-            status.setDiskSpace(rootFile.getPath(), rootFile.getFreeSpace(), rootFile.getTotalSpace());
-
-        }
-        status.setDbLogStatement(getLogStatement());
-        status.setLogMinDurationStatement(getLogMinDurationStatement());
-        if (isWindows) {
-            status.setIsWindows(true);
-            return status;
+        SystemHealthSampler.Sample sample = sampler.latest();
+        status.setSample(sample);
+        status.setHistory(sampler.history());
+        status.setMaxHeapMemory(sample.heapMax());
+        status.setTotalHeapMemory(sample.heapCommitted());
+        status.setFreeHeapMemory(sample.heapCommitted() - sample.heapUsed());
+        for (SystemHealthSampler.DiskSpace disk : sample.disks()) {
+            status.setDiskSpace(disk.path(), disk.free(), disk.total());
         }
-        if (!isSysstatInstalled()) {
-            status.setSysstatInstalled(false);
-            return status;
-        }
-        status.setSysstatInstalled(true);
-        if (!isSysstatEnabled()) {
-            status.setSysstatEnabled(false);
-            return status;
-        }
-        status.setSysstatEnabled(true);
-        status.setPidstatData(getPidstatRows());
+        Map<String, String> settings = getDbSettings();
+        status.setDbLogStatement(settings.get(LOG_STATEMENT));
+        status.setLogMinDurationStatement(settings.get(LOG_MIN_DURATION_STATEMENT));
         return status;
     }
 
-    private List<String[]> getPidstatRows() {
-        debug("[getPidstatRows]");
-        List<String[]> cells = new ArrayList<>();
-        try {
-            ProcessBuilder processBuilder = new ProcessBuilder(pidstatExecutable, "-urd", "-h");
-            Process p = processBuilder.start();
-            p.waitFor();
-            String pidstat = IOUtils.toString(p.getInputStream());
-            String errors = IOUtils.toString(p.getErrorStream());
-            if (StringUtils.isNotBlank(errors)) {
-                error("Error during running pidstat: \n{}", errors);
-            }
-            List<String> lines = Arrays.asList(pidstat.split("\\n"));
-            lines = lines.subList(2, lines.size());
-            for (String s : lines) {
-                String[] tmp = s.split("\\s+");
-                String firstElem = tmp[0] + " " + tmp[1];
-                tmp = Arrays.copyOfRange(tmp, 1, tmp.length);
-                tmp[0] = firstElem;
-                cells.add(tmp);
-            }
-        } catch (IOException | InterruptedException e) {
-            error("Error during getting pidstat data", e);
-        }
-        return cells;
-    }
-
     public String getLogMinDurationStatement() {
         debug("[getLogMinDurationStatement]");
-        String result;
-        EntityManager em = null;
-        try {
-            em = entityManagerFactory.createEntityManager();
-            em.setFlushMode(FlushModeType.AUTO);
-            EntityTransaction transaction = em.getTransaction();
-            transaction.begin();
-            result = (String) em.createNativeQuery("SELECT setting FROM pg_settings WHERE name = 'log_min_duration_statement'").getSingleResult();
-            transaction.commit();
-            em.close();
-        } finally {
-            if (em != null && em.isOpen()) {
-                em.close();
-                em = null;
-            }
-        }
-        return result;
+        return readDbSettings().get(LOG_MIN_DURATION_STATEMENT);
     }
 
     public String getLogStatement() {
         debug("[getLogStatement]");
-        String result;
+        return readDbSettings().get(LOG_STATEMENT);
+    }
+
+    private Map<String, String> getDbSettings() {
+        Map<String, String> result = dbSettings;
+        if (result == null || System.currentTimeMillis() - dbSettingsReadAt > dbSettingsRefreshMs) {
+            result = readDbSettings();
+        }
+        return result;
+    }
+
+    private Map<String, String> readDbSettings() {
+        debug("[readDbSettings]");
+        Map<String, String> result = new HashMap<>();
         EntityManager em = null;
         try {
             em = entityManagerFactory.createEntityManager();
             em.setFlushMode(FlushModeType.AUTO);
             EntityTransaction transaction = em.getTransaction();
             transaction.begin();
-            result = (String) em.createNativeQuery("SELECT setting FROM pg_settings WHERE name = 'log_statement'").getSingleResult();
+            List<Object[]> rows = em.createNativeQuery("SELECT name, setting FROM pg_settings WHERE name IN ('" + LOG_STATEMENT + "', '" + LOG_MIN_DURATION_STATEMENT + "')").getResultList();
             transaction.commit();
-            em.close();
+            for (Object[] row : rows) {
+                result.put((String) row[0], (String) row[1]);
+            }
         } finally {
             if (em != null && em.isOpen()) {
                 em.close();
-                em = null;
             }
         }
+        dbSettings = result;
+        dbSettingsReadAt = System.currentTimeMillis();
         return result;
     }
-
-    public boolean isSysstatInstalled() {
-        debug("[isSysstatInstalled]");
-        if (isWindows) {
-            return false;
-        }
-        try {
-            ProcessBuilder pBuilder = new ProcessBuilder(aptExecutable, "list", "--installed", "sysstat");
-            Process p = pBuilder.start();
-            p.waitFor();
-            String aptSysstat = IOUtils.toString(p.getInputStream());
-            debug("[isSysstatInstalled] output: {}", aptSysstat);
-            if (aptSysstat.contains("sysstat")) {
-                return true;
-            }
-        } catch (Exception e) {
-            error(e,"Error occurred when trying to determine availability of sysstat");
-        }
-        return false;
-    }
-
-    private boolean isSysstatEnabled() {
-        debug("[isSysstatEnabled]");
-        try {
-            ProcessBuilder pBuilder = new ProcessBuilder(catExecutable, "/etc/default/sysstat");
-            Process p = pBuilder.start();
-            p.waitFor();
-            String sysstat = IOUtils.toString(p.getInputStream());
-            if (sysstat.contains("ENABLED=\"true\"")) {
-                return true;
-            }
-        } catch (IOException | InterruptedException e) {
-            error("Error occurred when trying to check if sysstat enabled", e);
-        }
-        return false;
-    }
 }
@@ -0,0 +1,220 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.websocket;
+
+import com.openkoda.core.flow.LoggingComponent;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>WebSocket session with a bounded send buffer drained by a writer thread.</p>
+ * <p>{@link #sendMessage(WebSocketMessage)} only appends the message to the buffer, so neither the broker nor the
+ * clientOutbound threads ever wait for a slow browser. Messages are written in order by one writer task per session,
+ * which yields the writer thread after a number of messages so that a large backlog does not starve other sessions.</p>
+ * <p>When the buffer of a slow consumer is full, the session is handled according to {@link OverflowPolicy}. A session
+ * with a write in progress for longer than the send time limit is always closed, as its write occupies a writer thread.
+ * The write itself ends when the container's blocking send timeout expires (see {@link WebsocketSendBuffers}).</p>
+ */
+public class BufferedWebSocketSession extends WebSocketSessionDecorator implements LoggingComponent {
+
+    public enum OverflowPolicy {
+        /**
+         * Drop the oldest buffered message
+         */
+        DROP,
+        /**
+         * Close the session with {@link CloseStatus#SESSION_NOT_RELIABLE}
+         */
+        DISCONNECT
+    }
+
+    static final int MESSAGES_PER_DRAIN = 64;
+
+    private final Deque<WebSocketMessage<?>> buffer = new ArrayDeque<>();
+
+    private final int bufferLimit;
+
+    private final long sendTimeLimitMs;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final Executor writer;
+
+    private final Executor closer;
+
+    private final WebsocketSendBuffers.Counters counters;
+
+    /**
+     * Guarded by buffer, true when a writer task is scheduled or running
+     */
+    private boolean writing;
+
+    private volatile long sendStartedAt;
+
+    private final AtomicBoolean closing = new AtomicBoolean();
+
+    BufferedWebSocketSession(WebSocketSession session, int bufferLimit, long sendTimeLimitMs, OverflowPolicy overflowPolicy,
+                             Executor writer, Executor closer, WebsocketSendBuffers.Counters counters) {
+        super(session);
+        this.bufferLimit = bufferLimit;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.overflowPolicy = overflowPolicy;
+        this.writer = writer;
+        this.closer = closer;
+        this.counters = counters;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (closing.get()) {
+            return;
+        }
+        if (isSendTimeLimitExceeded(System.currentTimeMillis())) {
+            disconnect();
+            return;
+        }
+        boolean schedule = false;
+        boolean disconnect = false;
+        synchronized (buffer) {
+            if (buffer.size() >= bufferLimit && overflowPolicy == OverflowPolicy.DISCONNECT) {
+                disconnect = true;
+            } else {
+                if (buffer.size() >= bufferLimit) {
+                    buffer.pollFirst();
+                    counters.dropped.increment();
+                }
+                buffer.addLast(message);
+                if (!writing) {
+                    writing = schedule = true;
+                }
+            }
+        }
+        if (disconnect) {
+            disconnect();
+        } else if (schedule) {
+            writer.execute(this::drain);
+        }
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        closed();
+        super.close(status);
+    }
+
+    /**
+     * @return number of messages waiting for the writer
+     */
+    public int getBufferSize() {
+        synchronized (buffer) {
+            return buffer.size();
+        }
+    }
+
+    /**
+     * @return true when the buffer is at least half full or a write takes longer than slowThresholdMs
+     */
+    public boolean isSlow(long now, long slowThresholdMs) {
+        long started = sendStartedAt;
+        return getBufferSize() >= bufferLimit / 2 || (started > 0 && now - started > slowThresholdMs);
+    }
+
+    /**
+     * Closes the session when its current write takes longer than the send time limit
+     */
+    void checkSendTimeLimit(long now) {
+        if (isSendTimeLimitExceeded(now)) {
+            disconnect();
+        }
+    }
+
+    /**
+     * Stops writing, called when the session is closed by either side
+     */
+    void closed() {
+        closing.set(true);
+        synchronized (buffer) {
+            buffer.clear();
+        }
+    }
+
+    private boolean isSendTimeLimitExceeded(long now) {
+        long started = sendStartedAt;
+        return started > 0 && now - started > sendTimeLimitMs;
+    }
+
+    private void disconnect() {
+        if (!closing.compareAndSet(false, true)) {
+            return;
+        }
+        closed();
+        counters.disconnected.increment();
+        debug("[disconnect] Slow consumer {}", getId());
+        closer.execute(() -> {
+            try {
+                getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException | RuntimeException e) {
+                debug("[disconnect] Could not close session {}: {}", getId(), e.getMessage());
+            }
+        });
+    }
+
+    private void drain() {
+        for (int i = 0; i < MESSAGES_PER_DRAIN; i++) {
+            WebSocketMessage<?> message;
+            synchronized (buffer) {
+                message = buffer.pollFirst();
+                if (message == null || closing.get()) {
+                    writing = false;
+                    return;
+                }
+            }
+            sendStartedAt = System.currentTimeMillis();
+            try {
+                getDelegate().sendMessage(message);
+                counters.sent.increment();
+            } catch (IOException | RuntimeException e) {
+                debug("[drain] Could not send to session {}: {}", getId(), e.getMessage());
+                if (System.currentTimeMillis() - sendStartedAt >= sendTimeLimitMs) {
+                    disconnect();
+                } else {
+                    closed();
+                }
+                synchronized (buffer) {
+                    writing = false;
+                }
+                return;
+            } finally {
+                sendStartedAt = 0;
+            }
+        }
+        writer.execute(this::drain);
+    }
+}
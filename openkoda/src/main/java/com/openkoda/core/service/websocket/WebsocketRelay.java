@@ -0,0 +1,119 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.websocket;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.topic.ITopic;
+import com.hazelcast.topic.Message;
+import com.hazelcast.topic.MessageListener;
+import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.util.StringUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Relays websocket messages to all members of the Hazelcast cluster.</p>
+ * <p>With the simple broker every member knows only its own websocket sessions, so a message sent on one member would
+ * not reach the browsers connected to the others. The relay converts the payload to bytes once, publishes it on a
+ * Hazelcast topic and every member, including the sender, hands it to its local broker.</p>
+ */
+public class WebsocketRelay implements MessageListener<WebsocketRelayMessage>, LoggingComponentWithRequestId {
+
+    private final ITopic<WebsocketRelayMessage> topic;
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private final LongAdder published = new LongAdder();
+
+    private final LongAdder received = new LongAdder();
+
+    private volatile UUID registration;
+
+    public WebsocketRelay(HazelcastInstance hazelcastInstance, String topicName, SimpMessagingTemplate messagingTemplate) {
+        this.topic = hazelcastInstance.getTopic(topicName);
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    public WebsocketRelay start() {
+        debug("[start] topic {}", topic.getName());
+        registration = topic.addMessageListener(this);
+        return this;
+    }
+
+    public void close() {
+        if (registration != null) {
+            topic.removeMessageListener(registration);
+        }
+    }
+
+    /**
+     * Publishes the message to all members, user is null for broadcast channels
+     */
+    public void publish(String user, String destination, Object payload, Map<String, Object> headers) {
+        org.springframework.messaging.Message<?> converted = messagingTemplate.getMessageConverter().toMessage(payload, null);
+        if (converted == null || !(converted.getPayload() instanceof byte[] bytes)) {
+            warn("[publish] Can't convert payload {} for {}", payload == null ? null : payload.getClass(), destination);
+            return;
+        }
+        Object contentType = converted.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        Map<String, String> nativeHeaders = new HashMap<>();
+        if (headers != null) {
+            headers.forEach((k, v) -> nativeHeaders.put(k, v == null ? null : v.toString()));
+        }
+        topic.publishAsync(new WebsocketRelayMessage(user, destination, bytes,
+                contentType == null ? null : contentType.toString(), nativeHeaders));
+        published.increment();
+    }
+
+    @Override
+    public void onMessage(Message<WebsocketRelayMessage> message) {
+        WebsocketRelayMessage m = message.getMessageObject();
+        received.increment();
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        if (m.contentType != null) {
+            accessor.setContentType(MimeType.valueOf(m.contentType));
+        }
+        m.nativeHeaders.forEach(accessor::setNativeHeader);
+        accessor.setLeaveMutable(true);
+        String destination = m.user == null ? m.destination
+                : messagingTemplate.getUserDestinationPrefix() + StringUtils.replace(m.user, "/", "%2F")
+                + (m.destination.startsWith("/") ? m.destination : "/" + m.destination);
+        messagingTemplate.send(destination, MessageBuilder.createMessage(m.payload, accessor.getMessageHeaders()));
+    }
+
+    public long getPublished() {
+        return published.sum();
+    }
+
+    public long getReceived() {
+        return received.sum();
+    }
+}
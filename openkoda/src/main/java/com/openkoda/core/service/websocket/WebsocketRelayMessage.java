@@ -0,0 +1,52 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.websocket;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Websocket message converted to bytes on the sending cluster member and relayed to all members over Hazelcast
+ */
+public class WebsocketRelayMessage implements Serializable {
+
+    /**
+     * Recipient user, null for broadcast channels
+     */
+    public final String user;
+
+    public final String destination;
+
+    public final byte[] payload;
+
+    public final String contentType;
+
+    public final Map<String, String> nativeHeaders;
+
+    public WebsocketRelayMessage(String user, String destination, byte[] payload, String contentType, Map<String, String> nativeHeaders) {
+        this.user = user;
+        this.destination = destination;
+        this.payload = payload;
+        this.contentType = contentType;
+        this.nativeHeaders = nativeHeaders;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.websocket;
+
+import com.openkoda.core.flow.LoggingComponent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import jakarta.websocket.Session;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.NativeWebSocketSession;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Per-session send buffers of websocket connections.</p>
+ * <p>{@link #decorate(WebSocketHandler)} is registered as the decorator factory of the websocket transport, so every
+ * session handed to the STOMP handler is a {@link BufferedWebSocketSession}. Writes to the browsers run on a fixed pool
+ * of writer threads, the broker and clientOutbound threads only append to the session buffers.</p>
+ * <p>Writes are blocking. A write to a stalled browser holds its writer thread until the container gives up on it,
+ * closing the session does not interrupt it. So the blocking send timeout of the container is set to
+ * websocket.send.time-limit-ms for every session: the write fails once the time limit is exceeded and the writer
+ * thread moves on to other sessions.</p>
+ */
+@Component
+public class WebsocketSendBuffers implements LoggingComponent {
+
+    /**
+     * User property of the Tomcat session with the timeout of blocking writes in milliseconds (20 s by default)
+     */
+    static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    /**
+     * Counters shared by all buffered sessions
+     */
+    static class Counters {
+        final LongAdder sent = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final LongAdder disconnected = new LongAdder();
+    }
+
+    /**
+     * @param sessions open websocket sessions
+     * @param bufferedMessages messages waiting in all session buffers
+     * @param maxSessionBuffer the largest session buffer
+     * @param slowConsumers sessions with a half full buffer or a write slower than websocket.send.slow-threshold-ms
+     * @param sent messages written to the browsers
+     * @param dropped messages dropped from full buffers by the DROP overflow policy
+     * @param disconnected sessions closed by the DISCONNECT overflow policy or the send time limit
+     */
+    public record Stats(int sessions, long bufferedMessages, int maxSessionBuffer, int slowConsumers,
+                        long sent, long dropped, long disconnected) {}
+
+    @Value("${websocket.send.buffer-messages:1000}")
+    int bufferLimit;
+
+    @Value("${websocket.send.time-limit-ms:10000}")
+    long sendTimeLimitMs;
+
+    @Value("${websocket.send.slow-threshold-ms:1000}")
+    long slowThresholdMs;
+
+    @Value("${websocket.send.overflow:DROP}")
+    BufferedWebSocketSession.OverflowPolicy overflowPolicy;
+
+    @Value("${websocket.send.threads:0}")
+    int writerThreads;
+
+    private final Map<String, BufferedWebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    private final Counters counters = new Counters();
+
+    private ExecutorService writer;
+
+    private ExecutorService closer;
+
+    private ScheduledExecutorService watchdog;
+
+    @PostConstruct
+    public void start() {
+        int threads = writerThreads > 0 ? writerThreads : 2 * Runtime.getRuntime().availableProcessors();
+        writer = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("websocket-writer-"));
+        closer = Executors.newCachedThreadPool(new CustomizableThreadFactory("websocket-close-"));
+        long checkPeriodMs = Math.max(100, Math.min(1000, sendTimeLimitMs / 2));
+        watchdog = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("websocket-watchdog-"));
+        watchdog.scheduleWithFixedDelay(this::checkSendTimeLimits, checkPeriodMs, checkPeriodMs, TimeUnit.MILLISECONDS);
+        debug("[start] {} writer threads, buffer {} messages, overflow {}", threads, bufferLimit, overflowPolicy);
+    }
+
+    @PreDestroy
+    public void close() {
+        watchdog.shutdownNow();
+        writer.shutdownNow();
+        closer.shutdown();
+        try {
+            closer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wraps the websocket handler so that it receives buffered sessions
+     */
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                super.afterConnectionEstablished(register(session));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                unregister(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    public Stats getStats() {
+        long now = System.currentTimeMillis();
+        long buffered = 0;
+        int max = 0;
+        int slow = 0;
+        for (BufferedWebSocketSession s : sessions.values()) {
+            int size = s.getBufferSize();
+            buffered += size;
+            max = Math.max(max, size);
+            if (s.isSlow(now, slowThresholdMs)) {
+                slow++;
+            }
+        }
+        return new Stats(sessions.size(), buffered, max, slow,
+                counters.sent.sum(), counters.dropped.sum(), counters.disconnected.sum());
+    }
+
+    /**
+     * Closes sessions blocked in a write, also when no new messages are sent to them
+     */
+    void checkSendTimeLimits() {
+        long now = System.currentTimeMillis();
+        for (BufferedWebSocketSession s : sessions.values()) {
+            s.checkSendTimeLimit(now);
+        }
+    }
+
+    BufferedWebSocketSession register(WebSocketSession session) {
+        if (session instanceof NativeWebSocketSession nativeSession) {
+            Session container = nativeSession.getNativeSession(Session.class);
+            if (container != null) {
+                container.getUserProperties().put(BLOCKING_SEND_TIMEOUT, sendTimeLimitMs);
+            }
+        }
+        BufferedWebSocketSession buffered = new BufferedWebSocketSession(session, bufferLimit, sendTimeLimitMs,
+                overflowPolicy, writer, closer, counters);
+        sessions.put(session.getId(), buffered);
+        return buffered;
+    }
+
+    void unregister(String sessionId) {
+        BufferedWebSocketSession buffered = sessions.remove(sessionId);
+        if (buffered != null) {
+            buffered.closed();
+        }
+    }
+}
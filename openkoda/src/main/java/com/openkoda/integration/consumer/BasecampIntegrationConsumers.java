@@ -28,10 +28,13 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+
+import static com.openkoda.integration.service.IntegrationService.BASECAMP;
 
 /**
- * Consumers for Basecamp integration
+ * Consumers for Basecamp integration.
+ * To-Dos are posted on the Basecamp client executor of {@link com.openkoda.core.service.http.OutboundHttpService}.
  */
 @Service
 public class BasecampIntegrationConsumers extends IntegrationComponentProvider {
@@ -39,8 +42,6 @@ public class BasecampIntegrationConsumers extends IntegrationComponentProvider {
     @Value("${api.basecamp.post.message:https://3.basecampapi.com/%s/buckets/%s/todolists/%s/todos.json}")
     public String BASECAMP_POST_TODO_URL;
 
-    private RestTemplate restTemplate = new RestTemplate();
-
     public void postBasecampToDo(NotificationDto notification) throws Exception {
         debug("[postBasecampToDo]");
         if (!services.notification.isOrganization(notification)) {
@@ -50,17 +51,35 @@ public class BasecampIntegrationConsumers extends IntegrationComponentProvider {
         if(!notification.getPropagate()){
             return;
         }
+        services.outboundHttp.submit(BASECAMP, () -> {
+            postToDo(notification, true);
+            return null;
+        });
+    }
+
+    private void postToDo(NotificationDto notification, boolean retryUnauthorized) throws Exception {
+        debug("[postToDo]");
         IntegrationModuleOrganizationConfiguration organizationConfig
                 = integrationService.getOrganizationConfiguration(notification.getOrganizationId());
         if (StringUtils.isEmpty(organizationConfig.getBasecampAccessToken())) {
             warn("[postBasecampToDo] Missing Access Token.");
             return;
         }
+        String accessToken = integrationService.getBasecampAccessToken(organizationConfig);
         String requestUrl = prepareBasecampToDoUrl(organizationConfig);
         String toDoRequest = prepareToDoData(notification.getMessage());
-        HttpEntity<String> entity = new HttpEntity<>(toDoRequest, prepareHeaders(organizationConfig.getBasecampAccessToken()));
-        ResponseEntity<String> response = restTemplate.exchange(requestUrl, HttpMethod.POST, entity, String.class);
-        handleBasecampError(response, notification);
+        HttpEntity<String> entity = new HttpEntity<>(toDoRequest, prepareHeaders(accessToken));
+        try {
+            ResponseEntity<String> response = services.outboundHttp.execute(BASECAMP, false,
+                    restTemplate -> restTemplate.exchange(requestUrl, HttpMethod.POST, entity, String.class));
+            integrationService.handleResponseError(response, "[postBasecampToDo] Error while posting message. Code: {}. Error: {}");
+        } catch (HttpClientErrorException.Unauthorized e) {
+            if (retryUnauthorized && integrationService.refreshBasecampToken(notification.getOrganizationId())) {
+                postToDo(notification, false);
+            } else {
+                throw e;
+            }
+        }
     }
 
     private String prepareBasecampToDoUrl(IntegrationModuleOrganizationConfiguration organizationConfig) {
@@ -94,15 +113,4 @@ public class BasecampIntegrationConsumers extends IntegrationComponentProvider {
         headers.set(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
         return headers;
     }
-
-    private void handleBasecampError(ResponseEntity response, NotificationDto notification) throws Exception {
-        debug("[handleBasecampError]");
-        if (response.getStatusCode().equals(HttpStatus.UNAUTHORIZED)) {
-            if (integrationService.refreshBasecampToken(notification.getOrganizationId())) {
-                postBasecampToDo(notification);
-            }
-        } else {
-            integrationService.handleResponseError(response, "[postBasecampToDo] Error while posting message. Code: {}. Error: {}");
-        }
-    }
 }
@@ -31,10 +31,13 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+
+import static com.openkoda.integration.service.IntegrationService.GITHUB;
 
 /**
- * This class contains consumers that cooperates with GitHub
+ * This class contains consumers that cooperates with GitHub.
+ * Issues are created on the GitHub client executor of {@link com.openkoda.core.service.http.OutboundHttpService},
+ * not on the thread emitting the notification.
  */
 @Service
 public class GitHubIntegrationConsumers extends IntegrationComponentProvider {
@@ -42,7 +45,6 @@ public class GitHubIntegrationConsumers extends IntegrationComponentProvider {
     @Value("${api.github.create.issue:https://api.github.com/repos/%s/%s/issues}")
     private String GITHUB_CREATE_ISSUE_API;
     private final String GITHUB_ISSUE_TITLE = "notification.github.title";
-    private RestTemplate restTemplate = new RestTemplate();
     private static final String GITHUB_ISSUE_JSON = "{" +
             "\"title\":\"%s\"," +
             "\"body\":\"%s\"" +
@@ -57,6 +59,14 @@ public class GitHubIntegrationConsumers extends IntegrationComponentProvider {
         if(!notification.getPropagate()){
             return;
         }
+        services.outboundHttp.submit(GITHUB, () -> {
+            createGitHubIssue(notification);
+            return null;
+        });
+    }
+
+    private void createGitHubIssue(NotificationDto notification) throws Exception {
+        debug("[createGitHubIssue]");
         IntegrationModuleOrganizationConfiguration integrationConfiguration
                 = integrationService.getInnerOrganizationConfig(notification.getOrganizationId());
         String repoName = integrationConfiguration.getGitHubRepoName();
@@ -70,7 +80,8 @@ public class GitHubIntegrationConsumers extends IntegrationComponentProvider {
         String message = integrationService.prepareJsonString(notification.getMessage());
         String issueRequest = String.format(GITHUB_ISSUE_JSON, messages.get(GITHUB_ISSUE_TITLE), message);
         HttpEntity<String> entity = new HttpEntity<>(issueRequest, headers);
-        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, entity, String.class);
+        ResponseEntity<String> response = services.outboundHttp.execute(GITHUB, false,
+                restTemplate -> restTemplate.exchange(url, HttpMethod.POST, entity, String.class));
         integrationService.handleResponseError(response, "[createGitHubIssueFromOrgNotification] Error while creating new Issue. Code: {}. Error: {}");
     }
 
@@ -22,16 +22,31 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 package com.openkoda.integration.consumer;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.openkoda.core.service.http.CoalescingBuffer;
 import com.openkoda.dto.NotificationDto;
 import com.openkoda.integration.controller.IntegrationComponentProvider;
 import com.openkoda.integration.model.configuration.IntegrationModuleGlobalConfiguration;
 import com.openkoda.integration.model.configuration.IntegrationModuleOrganizationConfiguration;
+import com.openkoda.integration.service.IntegrationCache;
+import jakarta.annotation.PostConstruct;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.HttpClientErrorException;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.openkoda.integration.service.IntegrationService.JIRA;
+
+/**
+ * <p>Consumers creating Jira issues from notifications.</p>
+ * <p>Notifications are coalesced per organization (see {@code outbound.http.jira.coalesce.window-ms}) and created
+ * with a single bulk request on the Jira client executor of {@link com.openkoda.core.service.http.OutboundHttpService}.
+ * Access token, cloud, project and issue type ids are cached in {@link IntegrationCache}, the token is refreshed
+ * only when it is about to expire.</p>
+ */
 @Service
 public class JiraIntegrationConsumers extends IntegrationComponentProvider {
 
@@ -46,6 +61,9 @@ public class JiraIntegrationConsumers extends IntegrationComponentProvider {
             "    }" +
             "  }" +
             "}";
+    /** Jira accepts up to 50 issues in one bulk create request */
+    private static final int JIRA_BULK_MAX_ISSUES = 50;
+    private static final long JIRA_COALESCE_WINDOW_MILLIS = 1000;
     @Value("${api.jira.refresh.token:https://auth.atlassian.com/oauth/token}")
     private String JIRA_REFRESH_TOKEN_API;
     @Value("${api.jira.get.cloudId:https://api.atlassian.com/oauth/token/accessible-resources}")
@@ -56,13 +74,21 @@ public class JiraIntegrationConsumers extends IntegrationComponentProvider {
     private String JIRA_GET_ISSUE_TYPES_API;
     @Value("${api.jira.create.issue:https://api.atlassian.com/ex/jira/%s/rest/api/2/issue}")
     private String JIRA_CREATE_ISSUE_API;
+    @Value("${api.jira.create.issue.bulk:https://api.atlassian.com/ex/jira/%s/rest/api/2/issue/bulk}")
+    private String JIRA_CREATE_ISSUE_BULK_API;
     private static final String JIRA_REFRESH_TOKEN_JSON = "{" +
             "\"grant_type\":\"refresh_token\"," +
             "\"client_id\":\"%s\"," +
             "\"client_secret\":\"%s\"," +
             "\"refresh_token\":\"%s\"" +
             "}";
-    private RestTemplate restTemplate = new RestTemplate();
+
+    private CoalescingBuffer<Long, NotificationDto> notificationBuffer;
+
+    @PostConstruct
+    void init() {
+        notificationBuffer = services.outboundHttp.coalescingBuffer(JIRA, JIRA_COALESCE_WINDOW_MILLIS, JIRA_BULK_MAX_ISSUES, this::createJiraIssues);
+    }
 
     public void createJiraIssueFromOrgNotification(NotificationDto notification) throws Exception {
         debug("[createJiraIssueFromOrgNotification]");
@@ -73,22 +99,39 @@ public class JiraIntegrationConsumers extends IntegrationComponentProvider {
         if(!notification.getPropagate()){
             return;
         }
-        IntegrationModuleOrganizationConfiguration configuration
-                = integrationService.getOrganizationConfiguration(notification.getOrganizationId());
-        String refreshToken = configuration.getJiraRefreshToken();
-        if (StringUtils.isBlank(refreshToken)) {
-            warn("[createJiraIssueFromOrgNotification] Jira token not found, try to reconnect.");
-            return;
+        notificationBuffer.add(notification.getOrganizationId(), notification);
+    }
+
+    private void createJiraIssues(Long organizationId, List<NotificationDto> notifications) {
+        debug("[createJiraIssues] {} issues for org {}", notifications.size(), organizationId);
+        try {
+            IntegrationModuleOrganizationConfiguration configuration
+                    = integrationService.getOrganizationConfiguration(organizationId);
+            if (StringUtils.isBlank(configuration.getJiraRefreshToken())) {
+                warn("[createJiraIssueFromOrgNotification] Jira token not found, try to reconnect.");
+                return;
+            }
+            IntegrationModuleGlobalConfiguration globalConfiguration = integrationService.getGlobalConfiguration();
+            String token = integrationCache.getToken(JIRA, organizationId, () -> refreshToken(configuration, globalConfiguration));
+            String organizationName = configuration.getJiraOrganizationName();
+            String cloudId = integrationCache.getLookup(JIRA, organizationId, "cloud:" + organizationName,
+                    () -> getCloudId(token, organizationName));
+            String projectName = configuration.getJiraProjectName();
+            String projectId = integrationCache.getLookup(JIRA, organizationId, "project:" + cloudId + "/" + projectName,
+                    () -> getProjectId(token, cloudId, projectName));
+            String issueTypeId = integrationCache.getLookup(JIRA, organizationId, "issuetype:" + cloudId + "/Task",
+                    () -> getIssueTypeId(token, cloudId, "Task"));
+            if (notifications.size() == 1) {
+                createJiraIssue(notifications.get(0), token, cloudId, projectId, issueTypeId);
+            } else {
+                createJiraIssuesBulk(notifications, token, cloudId, projectId, issueTypeId);
+            }
+        } catch (HttpClientErrorException e) {
+            integrationCache.invalidate(JIRA, organizationId);
+            error(e, "[createJiraIssues] Jira rejected request for org {}. Code: {}. Error: {}", organizationId, e.getStatusCode(), e.getResponseBodyAsString());
+        } catch (Exception e) {
+            error(e, "[createJiraIssues] Creating {} issues for org {} failed", notifications.size(), organizationId);
         }
-        refreshToken(configuration, integrationService.getGlobalConfiguration());
-        String token = configuration.getJiraToken();
-        String organizationName = configuration.getJiraOrganizationName();
-        String cloudId = getCloudId(token, organizationName);
-        String projectName = configuration.getJiraProjectName();
-        String projectId = getProjectId(token, cloudId, projectName);
-        String issueTypeId = getIssueTypeId(token, cloudId, "Task");
-
-        createJiraIssue(notification, token, cloudId, projectId, issueTypeId);
     }
 
     private void createJiraIssue(NotificationDto notification, String token, String cloudId, String projectId, String issueTypeId) throws Exception {
@@ -98,10 +141,29 @@ public class JiraIntegrationConsumers extends IntegrationComponentProvider {
         String issueRequestJson = prepareJiraIssueRequest(notification, projectId, issueTypeId);
         HttpEntity<String> entity = new HttpEntity<>(issueRequestJson, headers);
         String createIssueUrl = prepareCreateIssueUrl(cloudId);
-        ResponseEntity<JsonNode> response = restTemplate.exchange(createIssueUrl, HttpMethod.POST, entity, JsonNode.class);
+        ResponseEntity<JsonNode> response = services.outboundHttp.execute(JIRA, false,
+                restTemplate -> restTemplate.exchange(createIssueUrl, HttpMethod.POST, entity, JsonNode.class));
         integrationService.handleResponseError(response, "[createJiraIssueFromOrgNotification] Error when creating issue. Code: {}. Error: {}");
     }
 
+    private void createJiraIssuesBulk(List<NotificationDto> notifications, String token, String cloudId, String projectId, String issueTypeId) throws Exception {
+        debug("[createJiraIssuesBulk] {}", notifications.size());
+        HttpHeaders headers = prepareAuthorizationHeader(token);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String bulkRequestJson = notifications.stream()
+                .map(n -> prepareJiraIssueRequest(n, projectId, issueTypeId))
+                .collect(Collectors.joining(",", "{\"issueUpdates\": [", "]}"));
+        HttpEntity<String> entity = new HttpEntity<>(bulkRequestJson, headers);
+        String createIssuesUrl = String.format(JIRA_CREATE_ISSUE_BULK_API, cloudId);
+        ResponseEntity<JsonNode> response = services.outboundHttp.execute(JIRA, false,
+                restTemplate -> restTemplate.exchange(createIssuesUrl, HttpMethod.POST, entity, JsonNode.class));
+        integrationService.handleResponseError(response, "[createJiraIssuesBulk] Error when creating issues. Code: {}. Error: {}");
+        JsonNode errors = response.getBody() == null ? null : response.getBody().get("errors");
+        if (errors != null && errors.size() > 0) {
+            error("[createJiraIssuesBulk] {} of {} issues not created. Errors: {}", errors.size(), notifications.size(), errors);
+        }
+    }
+
     private String prepareCreateIssueUrl(String cloudId) {
         return String.format(JIRA_CREATE_ISSUE_API, cloudId);
     }
@@ -111,14 +173,15 @@ public class JiraIntegrationConsumers extends IntegrationComponentProvider {
         return String.format(JIRA_CREATE_ISSUE_REQUEST_JSON, "New notification from Jira", jsonMessage, issueTypeId, projectId);
     }
 
-    private void refreshToken(IntegrationModuleOrganizationConfiguration config, IntegrationModuleGlobalConfiguration globalConfig) throws Exception {
+    private IntegrationCache.Token refreshToken(IntegrationModuleOrganizationConfiguration config, IntegrationModuleGlobalConfiguration globalConfig) throws Exception {
         debug("[refreshToken]");
         String refreshToken = config.getJiraRefreshToken();
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         String refreshRequest = String.format(JIRA_REFRESH_TOKEN_JSON, globalConfig.jiraClientId, globalConfig.jiraClientSecret, refreshToken);
         HttpEntity<String> entity = new HttpEntity<>(refreshRequest, headers);
-        ResponseEntity<JsonNode> response = restTemplate.exchange(JIRA_REFRESH_TOKEN_API, HttpMethod.POST, entity, JsonNode.class);
+        ResponseEntity<JsonNode> response = services.outboundHttp.execute(JIRA, false,
+                restTemplate -> restTemplate.exchange(JIRA_REFRESH_TOKEN_API, HttpMethod.POST, entity, JsonNode.class));
         integrationService.handleResponseError(response, "[refreshToken] Error during refresh of token. Code: {}. Error: {}");
         if (!response.getBody().has("access_token")) {
             error("[refreshToken] There is no access token. Body: \n{}", response.getBody().asText());
@@ -126,7 +189,11 @@ public class JiraIntegrationConsumers extends IntegrationComponentProvider {
         }
         String accessToken = response.getBody().get("access_token").asText();
         config.setJiraToken(accessToken);
+        if (response.getBody().hasNonNull("refresh_token")) {
+            config.setJiraRefreshToken(response.getBody().get("refresh_token").asText());
+        }
         repositories.unsecure.integration.save(config);
+        return new IntegrationCache.Token(accessToken, response.getBody().path("expires_in").asLong());
     }
 
     private String getIssueTypeId(String token, String cloudId, String taskType) throws Exception {
@@ -134,7 +201,8 @@ public class JiraIntegrationConsumers extends IntegrationComponentProvider {
         HttpHeaders headers = prepareAuthorizationHeader(token);
         String getIssueTypesUrl = String.format(JIRA_GET_ISSUE_TYPES_API, cloudId);
         HttpEntity entity = new HttpEntity(headers);
-        ResponseEntity<JsonNode> response = restTemplate.exchange(getIssueTypesUrl, HttpMethod.GET, entity, JsonNode.class);
+        ResponseEntity<JsonNode> response = services.outboundHttp.execute(JIRA,
+                restTemplate -> restTemplate.exchange(getIssueTypesUrl, HttpMethod.GET, entity, JsonNode.class));
         integrationService.handleResponseError(response, "[getIssueTypeId] Error when accessing issue type Id. Code: {}. Error: {}");
         for (JsonNode issueType : response.getBody()) {
             String name = issueType.get("name").asText();
@@ -151,7 +219,8 @@ public class JiraIntegrationConsumers extends IntegrationComponentProvider {
         HttpHeaders headers = prepareAuthorizationHeader(token);
         String getProjectUrl = String.format(JIRA_GET_PROJECT_LIST_API, cloudId);
         HttpEntity entity = new HttpEntity(headers);
-        ResponseEntity<JsonNode> response = restTemplate.exchange(getProjectUrl, HttpMethod.GET, entity, JsonNode.class);
+        ResponseEntity<JsonNode> response = services.outboundHttp.execute(JIRA,
+                restTemplate -> restTemplate.exchange(getProjectUrl, HttpMethod.GET, entity, JsonNode.class));
         integrationService.handleResponseError(response, "[getProjectId] Error when accessing project Id. Code: {}. Error: {}");
         for (JsonNode project : response.getBody()) {
             String name = project.get("name").asText();
@@ -180,7 +249,8 @@ public class JiraIntegrationConsumers extends IntegrationComponentProvider {
     private ResponseEntity<JsonNode> requestCloudId(String token) {
         HttpHeaders headers = prepareAuthorizationHeader(token);
         HttpEntity entity = new HttpEntity(headers);
-        return restTemplate.exchange(JIRA_GET_CLOUDID_API, HttpMethod.GET, entity, JsonNode.class);
+        return services.outboundHttp.execute(JIRA,
+                restTemplate -> restTemplate.exchange(JIRA_GET_CLOUDID_API, HttpMethod.GET, entity, JsonNode.class));
     }
 
     private HttpHeaders prepareAuthorizationHeader(String token) {
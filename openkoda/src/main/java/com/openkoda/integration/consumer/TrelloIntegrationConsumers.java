@@ -30,13 +30,17 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.social.support.URIBuilder;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.HttpClientErrorException;
 
 import java.util.List;
 import java.util.Map;
 
+import static com.openkoda.integration.service.IntegrationService.TRELLO;
+
 /**
- * This class contains consumers that cooperates with Trello
+ * This class contains consumers that cooperates with Trello.
+ * Cards are created on the Trello client executor of {@link com.openkoda.core.service.http.OutboundHttpService},
+ * ids of the configured board and list are cached in {@link com.openkoda.integration.service.IntegrationCache}.
  */
 @Service
 public class TrelloIntegrationConsumers extends IntegrationComponentProvider {
@@ -51,7 +55,6 @@ public class TrelloIntegrationConsumers extends IntegrationComponentProvider {
     private String TRELLO_CREATE_LIST_API;
     @Value("${api.trello.create.card:https://api.trello.com/1/cards}")
     private String TRELLO_CREATE_CARD_API;
-    private RestTemplate restTemplate = new RestTemplate();
 
     public void createTrelloCardFromOrgNotification(NotificationDto notification) throws Exception {
         debug("[createTrelloCardFromOrgNotification]");
@@ -62,6 +65,14 @@ public class TrelloIntegrationConsumers extends IntegrationComponentProvider {
         if(!notification.getPropagate()){
             return;
         }
+        services.outboundHttp.submit(TRELLO, () -> {
+            createTrelloCard(notification);
+            return null;
+        });
+    }
+
+    private void createTrelloCard(NotificationDto notification) throws Exception {
+        debug("[createTrelloCard]");
         IntegrationModuleOrganizationConfiguration integrationConfiguration
                 = integrationService.getInnerOrganizationConfig(notification.getOrganizationId());
         String apiKey = integrationConfiguration.getTrelloApiKey();
@@ -74,6 +85,19 @@ public class TrelloIntegrationConsumers extends IntegrationComponentProvider {
             warn("[createTrelloCardFromOrgNotification] Trello configuration is invalid: lack of board/list name.");
             return;
         }
+        String listId = integrationCache.getLookup(TRELLO, notification.getOrganizationId(),
+                "list:" + integrationConfiguration.getTrelloBoardName() + "/" + integrationConfiguration.getTrelloListName(),
+                () -> getOrCreateListId(integrationConfiguration));
+        try {
+            createNotificationCard(integrationConfiguration, listId, notification);
+        } catch (HttpClientErrorException e) {
+            integrationCache.invalidate(TRELLO, notification.getOrganizationId());
+            throw e;
+        }
+    }
+
+    private String getOrCreateListId(IntegrationModuleOrganizationConfiguration integrationConfiguration) throws Exception {
+        debug("[getOrCreateListId]");
         String boardId = getBoardId(integrationConfiguration);
         String listId;
         if (StringUtils.isBlank(boardId)) {
@@ -85,7 +109,7 @@ public class TrelloIntegrationConsumers extends IntegrationComponentProvider {
                 listId = createList(integrationConfiguration, boardId);
             }
         }
-        createNotificationCard(integrationConfiguration, listId, notification);
+        return listId;
     }
 
     private String getBoardId(IntegrationModuleOrganizationConfiguration config) throws Exception {
@@ -94,7 +118,8 @@ public class TrelloIntegrationConsumers extends IntegrationComponentProvider {
                 .queryParam("fields", "name")
                 .queryParam("key", config.getTrelloApiKey())
                 .queryParam("token", config.getTrelloApiToken());
-        ResponseEntity<List> response = restTemplate.getForEntity(builder.build(), List.class);
+        ResponseEntity<List> response = services.outboundHttp.execute(TRELLO,
+                restTemplate -> restTemplate.getForEntity(builder.build(), List.class));
         integrationService.handleResponseError(response, "[getBoardId] Error while checking data integrity. Code: {}. Error: {}");
         List<Map<String, String>> boards = (List<Map<String, String>>) response.getBody();
         return boards.stream().filter(board -> board.get("name").equals(config.getTrelloBoardName()))
@@ -110,7 +135,8 @@ public class TrelloIntegrationConsumers extends IntegrationComponentProvider {
                 .queryParam("fields", "lists")
                 .queryParam("key", config.getTrelloApiKey())
                 .queryParam("token", config.getTrelloApiToken());
-        ResponseEntity<JsonNode> response = restTemplate.getForEntity(builder.build(), JsonNode.class);
+        ResponseEntity<JsonNode> response = services.outboundHttp.execute(TRELLO,
+                restTemplate -> restTemplate.getForEntity(builder.build(), JsonNode.class));
         integrationService.handleResponseError(response, "[getBoardId] Error while checking data integrity. Code: {}. Error: {}");
         JsonNode lists = response.getBody();
         for (JsonNode list : lists.get("lists")) {
@@ -128,7 +154,8 @@ public class TrelloIntegrationConsumers extends IntegrationComponentProvider {
                 .queryParam("defaultLists", "false")
                 .queryParam("key", config.getTrelloApiKey())
                 .queryParam("token", config.getTrelloApiToken());
-        ResponseEntity<JsonNode> response = restTemplate.postForEntity(builder.build(), null, JsonNode.class);
+        ResponseEntity<JsonNode> response = services.outboundHttp.execute(TRELLO, false,
+                restTemplate -> restTemplate.postForEntity(builder.build(), null, JsonNode.class));
         integrationService.handleResponseError(response, "[createBoard] Error while creating new Board. Code: {}. Error: {}");
         return response.getBody().get("id").asText();
     }
@@ -140,7 +167,8 @@ public class TrelloIntegrationConsumers extends IntegrationComponentProvider {
                 .queryParam("idBoard", boardId)
                 .queryParam("key", config.getTrelloApiKey())
                 .queryParam("token", config.getTrelloApiToken());
-        ResponseEntity<JsonNode> response = restTemplate.postForEntity(builder.build(), null, JsonNode.class);
+        ResponseEntity<JsonNode> response = services.outboundHttp.execute(TRELLO, false,
+                restTemplate -> restTemplate.postForEntity(builder.build(), null, JsonNode.class));
         integrationService.handleResponseError(response, "[createBoard] Error while creating new Board. Code: {}. Error: {}");
         return response.getBody().get("id").asText();
     }
@@ -154,7 +182,8 @@ public class TrelloIntegrationConsumers extends IntegrationComponentProvider {
                 .queryParam("desc", notification.getMessage())
                 .queryParam("key", config.getTrelloApiKey())
                 .queryParam("token", config.getTrelloApiToken());
-        ResponseEntity<JsonNode> response = restTemplate.postForEntity(builder.build(), null, JsonNode.class);
+        ResponseEntity<JsonNode> response = services.outboundHttp.execute(TRELLO, false,
+                restTemplate -> restTemplate.postForEntity(builder.build(), null, JsonNode.class));
         integrationService.handleResponseError(response, "[createBoard] Error while creating new Board. Code: {}. Error: {}");
 
     }
@@ -22,6 +22,7 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 package com.openkoda.integration.controller;
 
 import com.openkoda.controller.ComponentProvider;
+import com.openkoda.integration.service.IntegrationCache;
 import com.openkoda.integration.service.IntegrationService;
 import com.openkoda.integration.service.IntegrationUrlHelper;
 import jakarta.inject.Inject;
@@ -37,4 +38,7 @@ public class IntegrationComponentProvider extends ComponentProvider {
     @Inject
     public IntegrationUrlHelper integrationUrlHelper;
 
+    @Inject
+    public IntegrationCache integrationCache;
+
 }
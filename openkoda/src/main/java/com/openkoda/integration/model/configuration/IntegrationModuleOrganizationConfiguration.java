@@ -27,6 +27,8 @@ import com.openkoda.model.common.ModelConstants;
 import com.openkoda.model.common.OrganizationRelatedEntity;
 import jakarta.persistence.*;
 import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import static com.openkoda.model.common.ModelConstants.*;
 
@@ -47,7 +49,7 @@ public class IntegrationModuleOrganizationConfiguration implements OrganizationR
     }
 
     @Id
-    @SequenceGenerator(name = ORGANIZATION_RELATED_ID_GENERATOR, sequenceName = ORGANIZATION_RELATED_ID_GENERATOR, initialValue = ModelConstants.INITIAL_ORGANIZATION_RELATED_VALUE, allocationSize = 10)
+    @GenericGenerator(name = ORGANIZATION_RELATED_ID_GENERATOR, strategy = POOLED_LO_SEQUENCE_GENERATOR, parameters = @Parameter(name = ID_FAMILY_PARAM, value = ORGANIZATION_RELATED_ID_GENERATOR))
     @GeneratedValue(generator = ORGANIZATION_RELATED_ID_GENERATOR, strategy = GenerationType.SEQUENCE)
     private Long id;
 
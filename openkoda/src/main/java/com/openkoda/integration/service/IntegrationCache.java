@@ -0,0 +1,131 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.integration.service;
+
+import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Per organization cache of integration OAuth access tokens and of identifiers looked up in remote systems
+ * (Jira cloud/project ids, Trello board/list ids).</p>
+ * <p>Access tokens are refreshed ahead of their expiry, and only by one thread per organization and integration,
+ * instead of on every notification. Entries are local to the node.</p>
+ */
+@Component
+public class IntegrationCache implements LoggingComponentWithRequestId {
+
+    private static final String TOKEN = "token";
+
+    /**
+     * Access token as returned by the OAuth token endpoint
+     */
+    public record Token(String accessToken, long expiresInSeconds) {}
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws Exception;
+    }
+
+    private record Entry(String value, long validUntil) {}
+
+    @Value("${integration.oauth.token.refresh-ahead.seconds:300}")
+    private long refreshAheadSeconds;
+
+    @Value("${integration.oauth.token.default-lifetime.seconds:3600}")
+    private long defaultTokenLifetimeSeconds;
+
+    @Value("${integration.lookup.ttl.seconds:3600}")
+    private long lookupTtlSeconds;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    /**
+     * @return cached access token, or a new one obtained with {@code refresh} if there is none or it expires soon;
+     * null if {@code refresh} returned null
+     */
+    public String getToken(String integration, Long organizationId, Loader<Token> refresh) throws Exception {
+        return get(key(integration, organizationId, TOKEN), () -> {
+            debug("[getToken] refreshing {} token for org {}", integration, organizationId);
+            Token token = refresh.load();
+            return token == null ? null : toEntry(token);
+        });
+    }
+
+    public void putToken(String integration, Long organizationId, Token token) {
+        entries.put(key(integration, organizationId, TOKEN), toEntry(token));
+    }
+
+    /**
+     * @return cached value of a remote lookup, null results are not cached
+     */
+    public String getLookup(String integration, Long organizationId, String name, Loader<String> loader) throws Exception {
+        return get(key(integration, organizationId, name), () -> {
+            String value = loader.load();
+            return value == null ? null : new Entry(value, System.currentTimeMillis() + lookupTtlSeconds * 1000);
+        });
+    }
+
+    /**
+     * Drops the token and all lookups of the integration for the organization, eg. after 401 or 404 response
+     */
+    public void invalidate(String integration, Long organizationId) {
+        debug("[invalidate] {} {}", integration, organizationId);
+        String prefix = key(integration, organizationId, "");
+        entries.keySet().removeIf(k -> k.startsWith(prefix));
+    }
+
+    private String get(String key, Loader<Entry> loader) throws Exception {
+        Entry e = entries.get(key);
+        if (e != null && System.currentTimeMillis() < e.validUntil()) {
+            return e.value();
+        }
+        synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+            e = entries.get(key);
+            if (e != null && System.currentTimeMillis() < e.validUntil()) {
+                return e.value();
+            }
+            e = loader.load();
+            if (e == null) {
+                entries.remove(key);
+                return null;
+            }
+            entries.put(key, e);
+            return e.value();
+        }
+    }
+
+    private Entry toEntry(Token token) {
+        long lifetime = token.expiresInSeconds() > 0 ? token.expiresInSeconds() : defaultTokenLifetimeSeconds;
+        long validFor = Math.max(lifetime / 2, lifetime - refreshAheadSeconds);
+        return new Entry(token.accessToken(), System.currentTimeMillis() + validFor * 1000);
+    }
+
+    private static String key(String integration, Long organizationId, String name) {
+        return integration + ':' + organizationId + ':' + name;
+    }
+}
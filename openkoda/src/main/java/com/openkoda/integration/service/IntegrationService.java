@@ -48,7 +48,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.RestClientException;
 
 /**
  * Service providing some functionality for the integration module
@@ -60,6 +60,11 @@ public class IntegrationService extends IntegrationComponentProvider {
     private IntegrationModuleGlobalConfiguration integrationGlobalConfiguration;
 
     public static final String SHA3_256 = "SHA3-256";
+    /** names of the {@link com.openkoda.core.service.http.OutboundHttpService} clients used by the integrations */
+    public static final String GITHUB = "github";
+    public static final String JIRA = "jira";
+    public static final String TRELLO = "trello";
+    public static final String BASECAMP = "basecamp";
     public static final String GITHUB_TOKEN_REQUEST_JSON = "{" +
             "\"client_id\":\"%s\"," +
             "\"client_secret\":\"%s\"," +
@@ -145,8 +150,8 @@ public class IntegrationService extends IntegrationComponentProvider {
         String tokenRequest = prepareGithubTokenRequest(temporaryCode);
         HttpHeaders headers = getHttpHeadersOfApplicationJson();
         HttpEntity<String> request = new HttpEntity<>(tokenRequest, headers);
-        RestTemplate restTemplate = new RestTemplate();
-        ResponseEntity<JsonNode> response = restTemplate.postForEntity(GITHUB_AUTHORIZE_TOKEN_API, request, JsonNode.class);
+        ResponseEntity<JsonNode> response = services.outboundHttp.execute(GITHUB, false,
+                restTemplate -> restTemplate.postForEntity(GITHUB_AUTHORIZE_TOKEN_API, request, JsonNode.class));
         handleResponseError(response, "[getGitHubToken] Error during authorization of new token. Code: {}. Error: {}");
         JsonNode body = response.getBody();
         if (body.has("error") || !body.has("access_token")) {
@@ -161,11 +166,11 @@ public class IntegrationService extends IntegrationComponentProvider {
 
     public void getJiraToken(Long orgId, String temporaryCode) throws Exception {
         debug("[getJiraToken]");
-        RestTemplate restTemplate = new RestTemplate();
         String tokenRequest = prepareJiraTokenRequest(temporaryCode, orgId);
         HttpHeaders headers = getHttpHeadersOfApplicationJson();
         HttpEntity<String> request = new HttpEntity<>(tokenRequest, headers);
-        ResponseEntity<JsonNode> response = restTemplate.postForEntity(JIRA_AUTHORIZE_TOKEN_API, request, JsonNode.class);
+        ResponseEntity<JsonNode> response = services.outboundHttp.execute(JIRA, false,
+                restTemplate -> restTemplate.postForEntity(JIRA_AUTHORIZE_TOKEN_API, request, JsonNode.class));
         handleResponseError(response, "[getGitHubToken] Error during authorization of new token. Code: {}. Error: {}");
         JsonNode body = response.getBody();
         if (body.has("error") || !body.has("access_token")) {
@@ -177,6 +182,8 @@ public class IntegrationService extends IntegrationComponentProvider {
         String jiraRefreshToken = body.get("refresh_token").asText();
         configuration.setJiraRefreshToken(jiraRefreshToken);
         repositories.unsecure.integration.save(configuration);
+        integrationCache.invalidate(JIRA, orgId);
+        integrationCache.putToken(JIRA, orgId, new IntegrationCache.Token(jiraToken, body.path("expires_in").asLong()));
     }
 
     private String prepareGithubTokenRequest(String temporaryCode) {
@@ -205,8 +212,8 @@ public class IntegrationService extends IntegrationComponentProvider {
         HttpHeaders headers = new HttpHeaders();
         headers.set("Accept", MediaType.APPLICATION_JSON_VALUE);
         HttpEntity<String> request = new HttpEntity<>(headers);
-        RestTemplate restTemplate = new RestTemplate();
-        ResponseEntity<JsonNode> response = restTemplate.postForEntity(tokenRequestUrl, request, JsonNode.class);
+        ResponseEntity<JsonNode> response = services.outboundHttp.execute(BASECAMP, false,
+                restTemplate -> restTemplate.postForEntity(tokenRequestUrl, request, JsonNode.class));
         handleResponseError(response, "[getBasecampToken] Error during authorization of new token. Code: {}. Error: {}");
         JsonNode body = response.getBody();
         if (body.has("error") || !body.has("access_token")) {
@@ -218,28 +225,51 @@ public class IntegrationService extends IntegrationComponentProvider {
             String basecampRefreshToken = body.get("refresh_token").textValue();
             configuration.setBasecampRefreshToken(basecampRefreshToken);
             repositories.unsecure.integration.save(configuration);
+            integrationCache.putToken(BASECAMP, orgId, new IntegrationCache.Token(basecampAccessToken, body.path("expires_in").asLong()));
         }
     }
 
     public boolean refreshBasecampToken(Long orgId) throws Exception {
         debug("[refreshBasecampToken]");
-        IntegrationModuleOrganizationConfiguration configuration = integrationService.getOrganizationConfiguration(orgId);
-        String tokenRequestUrl = prepareBasecampRefreshTokenRequestUrl(configuration.getBasecampRefreshToken(), orgId);
+        integrationCache.invalidate(BASECAMP, orgId);
+        return getBasecampAccessToken(getOrganizationConfiguration(orgId)) != null;
+    }
+
+    /**
+     * @return Basecamp access token of the organization, refreshed (once per token lifetime) with the stored refresh token
+     */
+    public String getBasecampAccessToken(IntegrationModuleOrganizationConfiguration configuration) throws Exception {
+        debug("[getBasecampAccessToken]");
+        if (StringUtils.isBlank(configuration.getBasecampRefreshToken())) {
+            return configuration.getBasecampAccessToken();
+        }
+        try {
+            String token = integrationCache.getToken(BASECAMP, configuration.getOrganizationId(), () -> requestBasecampAccessToken(configuration));
+            return StringUtils.defaultIfBlank(token, configuration.getBasecampAccessToken());
+        } catch (RestClientException e) {
+            warn("[getBasecampAccessToken] Refresh failed, using stored token: {}", e.getMessage());
+            return configuration.getBasecampAccessToken();
+        }
+    }
+
+    private IntegrationCache.Token requestBasecampAccessToken(IntegrationModuleOrganizationConfiguration configuration) throws Exception {
+        debug("[requestBasecampAccessToken]");
+        String tokenRequestUrl = prepareBasecampRefreshTokenRequestUrl(configuration.getBasecampRefreshToken(), configuration.getOrganizationId());
         HttpHeaders headers = new HttpHeaders();
         headers.set("Accept", MediaType.APPLICATION_JSON_VALUE);
         HttpEntity<String> request = new HttpEntity<>(headers);
-        RestTemplate restTemplate = new RestTemplate();
-        ResponseEntity<JsonNode> response = restTemplate.postForEntity(tokenRequestUrl, request, JsonNode.class);
+        ResponseEntity<JsonNode> response = services.outboundHttp.execute(BASECAMP,
+                restTemplate -> restTemplate.postForEntity(tokenRequestUrl, request, JsonNode.class));
         handleResponseError(response, "[refreshBasecampToken] Error during authorization of new token. Code: {}. Error: {}");
         JsonNode body = response.getBody();
         if (body.has("error") || !body.has("access_token")) {
             error("[getBasecampToken] Error: {}", body.has("error") ? body.get("error").asText() : "There is no access token");
-            return false;
+            return null;
         }
         String basecampAccessToken = body.get("access_token").asText();
         configuration.setBasecampAccessToken(basecampAccessToken);
         repositories.unsecure.integration.save(configuration);
-        return true;
+        return new IntegrationCache.Token(basecampAccessToken, body.path("expires_in").asLong());
     }
 
     public IntegrationModuleOrganizationConfiguration getOrganizationConfiguration(Long organizationId) {
@@ -299,6 +329,7 @@ public class IntegrationService extends IntegrationComponentProvider {
 
     public void cleanOrgConfig(String application, Long orgId) {
         IntegrationModuleOrganizationConfiguration configuration = getOrganizationConfiguration(orgId);
+        integrationCache.invalidate(StringUtils.removeStart(application, "/"), orgId);
         switch (application) {
             case IntegrationURLConstants._TRELLO:
                 configuration.setTrelloApiToken(null);
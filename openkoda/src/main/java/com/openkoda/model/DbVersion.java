@@ -4,6 +4,8 @@ import com.openkoda.model.common.AuditableEntity;
 import com.openkoda.model.common.ModelConstants;
 import com.openkoda.model.common.TimestampedEntity;
 import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 @Entity
 public class DbVersion extends TimestampedEntity implements AuditableEntity, Comparable<DbVersion> {
@@ -11,7 +13,7 @@ public class DbVersion extends TimestampedEntity implements AuditableEntity, Com
     private static final long serialVersionUID = -5528831881473946144L;
 
     @Id
-    @SequenceGenerator(name = GLOBAL_ID_GENERATOR, sequenceName = GLOBAL_ID_GENERATOR, initialValue = ModelConstants.INITIAL_GLOBAL_VALUE, allocationSize = 10)
+    @GenericGenerator(name = GLOBAL_ID_GENERATOR, strategy = POOLED_LO_SEQUENCE_GENERATOR, parameters = @Parameter(name = ID_FAMILY_PARAM, value = GLOBAL_ID_GENERATOR))
     @GeneratedValue(generator = ModelConstants.GLOBAL_ID_GENERATOR, strategy = GenerationType.SEQUENCE)
     private Long id;
     
@@ -4,6 +4,8 @@ import com.openkoda.model.common.AuditableEntity;
 import com.openkoda.model.common.ModelConstants;
 import com.openkoda.model.common.TimestampedEntity;
 import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import jakarta.validation.constraints.NotNull;
 
 import java.util.Collection;
@@ -12,7 +14,7 @@ import java.util.Collection;
 @Table(uniqueConstraints = @UniqueConstraint(columnNames = {"table_name"}))
 public class DynamicEntity extends TimestampedEntity implements AuditableEntity {
     @Id
-    @SequenceGenerator(name = GLOBAL_ID_GENERATOR, sequenceName = GLOBAL_ID_GENERATOR, initialValue = ModelConstants.INITIAL_GLOBAL_VALUE, allocationSize = 10)
+    @GenericGenerator(name = GLOBAL_ID_GENERATOR, strategy = POOLED_LO_SEQUENCE_GENERATOR, parameters = @Parameter(name = ID_FAMILY_PARAM, value = GLOBAL_ID_GENERATOR))
     @GeneratedValue(generator = ModelConstants.GLOBAL_ID_GENERATOR, strategy = GenerationType.SEQUENCE)
     private Long id;
     @NotNull
@@ -29,6 +29,12 @@ public class DynamicEntityCsvImportRow extends OpenkodaEntity {
     @Column
     private String entityKey;
 
+    /**
+     * Validation errors of the line, null when valid
+     */
+    @Column(length = 1000)
+    private String validationErrors;
+
     @JdbcTypeCode(SqlTypes.JSON)
     @Column(columnDefinition = "jsonb")
     private Map<String, Object> content = Map.of();
@@ -73,6 +79,14 @@ public class DynamicEntityCsvImportRow extends OpenkodaEntity {
         this.entityKey = entityKey;
     }
 
+    public String getValidationErrors() {
+        return validationErrors;
+    }
+
+    public void setValidationErrors(String validationErrors) {
+        this.validationErrors = validationErrors;
+    }
+
     public Map<String, Object> getContent() {
         return content;
     }
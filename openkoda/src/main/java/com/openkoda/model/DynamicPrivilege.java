@@ -4,6 +4,8 @@ import com.openkoda.model.common.*;
 import jakarta.persistence.*;
 import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.format.annotation.DateTimeFormat;
 
@@ -23,7 +25,7 @@ public class DynamicPrivilege implements PrivilegeBase, SearchableEntity, LongId
     private static final long serialVersionUID = -4712574897029645493L;
 
     @Id
-    @SequenceGenerator(name = GLOBAL_ID_GENERATOR, sequenceName = GLOBAL_ID_GENERATOR, initialValue = ModelConstants.INITIAL_GLOBAL_VALUE, allocationSize = 10)
+    @GenericGenerator(name = GLOBAL_ID_GENERATOR, strategy = POOLED_LO_SEQUENCE_GENERATOR, parameters = @Parameter(name = ID_FAMILY_PARAM, value = GLOBAL_ID_GENERATOR))
     @GeneratedValue(generator = ModelConstants.GLOBAL_ID_GENERATOR, strategy = GenerationType.SEQUENCE)
     private Long id;
     
@@ -3,6 +3,8 @@ package com.openkoda.model;
 import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.openkoda.model.common.AuditableEntity;
@@ -19,7 +21,6 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.OneToOne;
-import jakarta.persistence.SequenceGenerator;
 
 @Entity
 @DynamicUpdate
@@ -28,7 +29,7 @@ public class EmailConfig extends TimestampedEntity implements AuditableEntity, E
     private static final long serialVersionUID = -2214746736070137804L;
 
     @Id
-    @SequenceGenerator(name = GLOBAL_ID_GENERATOR, sequenceName = GLOBAL_ID_GENERATOR, initialValue = ModelConstants.INITIAL_GLOBAL_VALUE, allocationSize = 10)
+    @GenericGenerator(name = GLOBAL_ID_GENERATOR, strategy = POOLED_LO_SEQUENCE_GENERATOR, parameters = @Parameter(name = ID_FAMILY_PARAM, value = GLOBAL_ID_GENERATOR))
     @GeneratedValue(generator = ModelConstants.GLOBAL_ID_GENERATOR, strategy = GenerationType.SEQUENCE)
     private Long id;
     
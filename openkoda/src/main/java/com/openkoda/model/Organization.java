@@ -29,6 +29,8 @@ import jakarta.persistence.*;
 import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -46,8 +48,7 @@ public class Organization extends TimestampedEntity implements AuditableEntity,
     public static final String REFERENCE_FORMULA = "(id)";
 
     @Id
-    @SequenceGenerator(name = ORGANIZATION_ID_GENERATOR, sequenceName = ORGANIZATION_ID_GENERATOR,
-            initialValue = ModelConstants.INITIAL_ORGANIZATION_VALUE, allocationSize = 1)
+    @GenericGenerator(name = ORGANIZATION_ID_GENERATOR, strategy = POOLED_LO_SEQUENCE_GENERATOR, parameters = @Parameter(name = ID_FAMILY_PARAM, value = ORGANIZATION_ID_GENERATOR))
     @GeneratedValue(generator = ModelConstants.ORGANIZATION_ID_GENERATOR, strategy = GenerationType.SEQUENCE)
     private Long id;
 
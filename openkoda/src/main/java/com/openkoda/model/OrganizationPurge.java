@@ -0,0 +1,138 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.model;
+
+import com.openkoda.model.common.TimestampedEntity;
+import jakarta.persistence.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the background removal of an organization's data, see {@link com.openkoda.service.organization.OrganizationPurgeService}.
+ * The organization is referenced by <code>purged_organization_id</code>, as the purge deletes rows of every table
+ * with an <code>organization_id</code> column.
+ */
+@Entity
+public class OrganizationPurge extends TimestampedEntity {
+
+    public enum Status {
+        PENDING, RUNNING, CANCELLED, FAILED, DONE
+    }
+
+    @Id
+    @GenericGenerator(name = GLOBAL_ID_GENERATOR, strategy = POOLED_LO_SEQUENCE_GENERATOR, parameters = @Parameter(name = ID_FAMILY_PARAM, value = GLOBAL_ID_GENERATOR))
+    @GeneratedValue(generator = GLOBAL_ID_GENERATOR, strategy = GenerationType.SEQUENCE)
+    private Long id;
+
+    @Column(name = "purged_organization_id", nullable = false)
+    private Long purgedOrganizationId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status = Status.PENDING;
+
+    /**
+     * Table being purged, null before the first batch and after the purge finished
+     */
+    @Column
+    private String currentTable;
+
+    @Column
+    private int tablesDone;
+
+    @Column
+    private int tablesTotal;
+
+    @Column
+    private long rowsDeleted;
+
+    /**
+     * Set by the node running the purge after each batch, a running purge without recent heartbeat is taken over
+     * when purges are resumed
+     */
+    @Column(columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private LocalDateTime heartbeatOn;
+
+    @Column(columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private LocalDateTime finishedOn;
+
+    @Column(length = 1000)
+    private String error;
+
+    public OrganizationPurge() {
+    }
+
+    public OrganizationPurge(Long purgedOrganizationId) {
+        this.purgedOrganizationId = purgedOrganizationId;
+    }
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    public Long getPurgedOrganizationId() {
+        return purgedOrganizationId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getCurrentTable() {
+        return currentTable;
+    }
+
+    public int getTablesDone() {
+        return tablesDone;
+    }
+
+    public int getTablesTotal() {
+        return tablesTotal;
+    }
+
+    public long getRowsDeleted() {
+        return rowsDeleted;
+    }
+
+    public LocalDateTime getHeartbeatOn() {
+        return heartbeatOn;
+    }
+
+    public LocalDateTime getFinishedOn() {
+        return finishedOn;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -27,6 +27,7 @@ import jakarta.persistence.*;
 import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.Formula;
 import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.format.annotation.DateTimeFormat;
 
@@ -49,7 +50,7 @@ import static com.openkoda.model.common.ModelConstants.*;
 public abstract class Role implements SearchableEntity, LongIdEntity, AuditableEntity, Serializable, EntityWithRequiredPrivilege {
 
     @Id
-    @SequenceGenerator(name = GLOBAL_ID_GENERATOR, sequenceName = GLOBAL_ID_GENERATOR, initialValue = ModelConstants.INITIAL_GLOBAL_VALUE, allocationSize = 10)
+    @GenericGenerator(name = GLOBAL_ID_GENERATOR, strategy = POOLED_LO_SEQUENCE_GENERATOR, parameters = @Parameter(name = ID_FAMILY_PARAM, value = GLOBAL_ID_GENERATOR))
     @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="IdOrGenerated")
     @GenericGenerator(name="IdOrGenerated", strategy="com.openkoda.core.customisation.UseIdOrGenerate")
     private Long id;
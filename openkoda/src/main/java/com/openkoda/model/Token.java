@@ -27,6 +27,8 @@ import com.openkoda.model.common.TimestampedEntity;
 import jakarta.persistence.*;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import java.security.SecureRandom;
 import java.time.LocalDateTime;
@@ -100,7 +102,7 @@ public class Token extends TimestampedEntity implements AuditableEntity {
     }
 
     @Id
-    @SequenceGenerator(name = GLOBAL_ID_GENERATOR, sequenceName = GLOBAL_ID_GENERATOR, initialValue = INITIAL_GLOBAL_VALUE, allocationSize = 10)
+    @GenericGenerator(name = GLOBAL_ID_GENERATOR, strategy = POOLED_LO_SEQUENCE_GENERATOR, parameters = @Parameter(name = ID_FAMILY_PARAM, value = GLOBAL_ID_GENERATOR))
     @GeneratedValue(generator = GLOBAL_ID_GENERATOR, strategy = GenerationType.SEQUENCE)
     private Long id;
 
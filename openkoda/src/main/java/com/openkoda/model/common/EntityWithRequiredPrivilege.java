@@ -25,7 +25,8 @@ package com.openkoda.model.common;
  * Interface that can be implemented by @{@link jakarta.persistence.Entity} in order to provide
  * required read/write privilege. <br/>
  * A special token that can be used in the native query is {@code ModelConstants.USER_ID_PLACEHOLDER} that
- * is replaced with id of the user querying the db.<br/>
+ * is replaced with the session variable holding id of the user querying the db
+ * ({@code ModelConstants.USER_ID_SESSION_VARIABLE_SQL}), so the statement text does not depend on the user.<br/>
  * Typical implementation: <br/>
  * <pre>{@code
  * @Entity Class Person implements EntityWithRequiredPrivilege {
@@ -0,0 +1,78 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.model.common;
+
+import static com.openkoda.model.common.ModelConstants.*;
+
+/**
+ * Families of entities sharing one id sequence.
+ * Number of ids allocated with one sequence call is configured per family with
+ * <code>openkoda.id.allocation.&lt;property&gt;</code> Hibernate setting
+ * (<code>spring.jpa.properties.openkoda.id.allocation.&lt;property&gt;</code> in application properties).
+ * The sequence INCREMENT BY has to match it, this is aligned on startup by {@link com.openkoda.JDBCApp}.
+ */
+public enum IdFamily {
+
+    GLOBAL("global", GLOBAL_ID_GENERATOR, "seq_global_id", INITIAL_GLOBAL_VALUE, 50),
+    ORGANIZATION("organization", ORGANIZATION_ID_GENERATOR, "seq_organization_id", INITIAL_ORGANIZATION_VALUE, 1),
+    ORGANIZATION_RELATED("organization-related", ORGANIZATION_RELATED_ID_GENERATOR, "seq_organization_related_id", INITIAL_ORGANIZATION_RELATED_VALUE, 50);
+
+    public static final String ALLOCATION_SETTING_PREFIX = "openkoda.id.allocation.";
+
+    public final String property;
+    public final String generatorName;
+    public final String sequenceName;
+    public final int initialValue;
+    public final int defaultAllocationSize;
+
+    IdFamily(String property, String generatorName, String sequenceName, int initialValue, int defaultAllocationSize) {
+        this.property = property;
+        this.generatorName = generatorName;
+        this.sequenceName = sequenceName;
+        this.initialValue = initialValue;
+        this.defaultAllocationSize = defaultAllocationSize;
+    }
+
+    public String getAllocationSetting() {
+        return ALLOCATION_SETTING_PREFIX + property;
+    }
+
+    /**
+     * @param configuredValue value of {@link #getAllocationSetting()}, may be null
+     * @return allocation size, at least 1
+     */
+    public int getAllocationSize(Object configuredValue) {
+        if (configuredValue == null || configuredValue.toString().isBlank()) {
+            return defaultAllocationSize;
+        }
+        return Math.max(1, Integer.parseInt(configuredValue.toString().trim()));
+    }
+
+    public static IdFamily byGeneratorName(String generatorName) {
+        for (IdFamily f : values()) {
+            if (f.generatorName.equals(generatorName)) {
+                return f;
+            }
+        }
+        throw new IllegalArgumentException("Unknown id family " + generatorName);
+    }
+}
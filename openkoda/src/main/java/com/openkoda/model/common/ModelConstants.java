@@ -39,6 +39,10 @@ public interface ModelConstants {
    String ORGANIZATION_ID_GENERATOR = "seqOrganizationId";
    String ORGANIZATION_RELATED_ID_GENERATOR = "seqOrganizationRelatedId";
    String MASS_ID_GENERATOR = "massGlobalId";
+   /** Id generator implementation for {@link IdFamily} sequences, see {@link PooledLoSequenceGenerator} */
+   String POOLED_LO_SEQUENCE_GENERATOR = "com.openkoda.model.common.PooledLoSequenceGenerator";
+   /** Generator parameter with the name of the {@link IdFamily} generator, eg. {@link #GLOBAL_ID_GENERATOR} */
+   String ID_FAMILY_PARAM = "id_family";
 
    /** Constant <code>simpleDateFormat</code> */
    SimpleDateFormat simpleDateFormat = new SimpleDateFormat( "dd/MM/yy" );
@@ -65,6 +69,8 @@ public interface ModelConstants {
    int INITIAL_ORGANIZATION_RELATED_VALUE = 120150;
 
    String USER_ID_PLACEHOLDER = "##userId##";
+   String USER_ID_SESSION_VARIABLE = "openkoda.user_id";
+   String USER_ID_SESSION_VARIABLE_SQL = "CAST(NULLIF(current_setting('" + USER_ID_SESSION_VARIABLE + "', true), '') AS bigint)";
    String REQUIRED_PRIVILEGE_COLUMN = "required_privilege";
    String REQUIRED_PRIVILEGE = "requiredPrivilege";
    String REQUIRED_READ_PRIVILEGE = "requiredReadPrivilege";
@@ -0,0 +1,57 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.model.common;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Sequence generator of the {@link IdFamily} given in {@link ModelConstants#ID_FAMILY_PARAM} parameter.
+ * <p>
+ * Ids are allocated with the pooled-lo optimizer: each sequence call returns the first id of a block of
+ * allocation size ids, which are then assigned in memory. Values taken from the sequence outside of Hibernate
+ * (eg. <code>nextval('seq_global_id')</code> in SQL) stay unique, as each of them is the start of a block nobody else uses.
+ * Sequence name and initial value come from the family, allocation size from the
+ * <code>openkoda.id.allocation.&lt;family&gt;</code> setting.
+ */
+public class PooledLoSequenceGenerator extends SequenceStyleGenerator {
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        IdFamily family = IdFamily.byGeneratorName(parameters.getProperty(ModelConstants.ID_FAMILY_PARAM));
+        int allocationSize = family.getAllocationSize(
+                serviceRegistry.getService(ConfigurationService.class).getSettings().get(family.getAllocationSetting()));
+        parameters.setProperty(SEQUENCE_PARAM, family.generatorName);
+        parameters.setProperty(INITIAL_PARAM, String.valueOf(family.initialValue));
+        parameters.setProperty(INCREMENT_PARAM, String.valueOf(allocationSize));
+        parameters.setProperty(OPT_PARAM, allocationSize > 1
+                ? StandardOptimizerDescriptor.POOLED_LO.getExternalName()
+                : StandardOptimizerDescriptor.NONE.getExternalName());
+        super.configure(type, parameters, serviceRegistry);
+    }
+}
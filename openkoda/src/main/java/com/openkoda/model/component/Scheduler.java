@@ -29,6 +29,8 @@ import com.openkoda.model.common.ModelConstants;
 import jakarta.persistence.*;
 import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 /**
  * Model entity which allows to store the database schedulers registered in Application. Therefore, all of them
@@ -44,7 +46,7 @@ public class Scheduler extends ComponentEntity {
     public static final String REFERENCE_FORMULA = DEFAULT_ORGANIZATION_RELATED_REFERENCE_FIELD_FORMULA;
 
     @Id
-    @SequenceGenerator(name = ORGANIZATION_RELATED_ID_GENERATOR, sequenceName = ORGANIZATION_RELATED_ID_GENERATOR, initialValue = ModelConstants.INITIAL_ORGANIZATION_RELATED_VALUE, allocationSize = 10)
+    @GenericGenerator(name = ORGANIZATION_RELATED_ID_GENERATOR, strategy = POOLED_LO_SEQUENCE_GENERATOR, parameters = @Parameter(name = ID_FAMILY_PARAM, value = ORGANIZATION_RELATED_ID_GENERATOR))
     @GeneratedValue(generator = ModelConstants.ORGANIZATION_RELATED_ID_GENERATOR, strategy = GenerationType.SEQUENCE)
     private Long id;
 
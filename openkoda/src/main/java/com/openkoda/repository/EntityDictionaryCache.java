@@ -0,0 +1,127 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.repository;
+
+import com.openkoda.model.common.ModelConstants;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.hibernate.annotations.Formula;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Entity dictionaries of {@link SecureEntityDictionaryRepository} cached per entity class and per key built from the
+ * description formula, tenant and privileges of the user, as the secure predicate depends only on them.
+ * When a formula of the entity or the description formula references {@link ModelConstants#USER_ID_PLACEHOLDER},
+ * the key also contains the user id.
+ * <p>Entries of a class are dropped when an entity of that class is written, see
+ * {@link com.openkoda.core.audit.PropertyChangeInterceptor}. A dictionary read while the class was invalidated is not
+ * stored, so the cache never keeps data older than the last write. Entries also expire after ttl, which bounds the
+ * staleness of writes made on other nodes of the cluster.</p>
+ */
+class EntityDictionaryCache {
+
+    static final int MAX_ENTRIES_PER_ENTITY = 256;
+
+    private record Entry(Map<Object, String> dictionary, long expiresAt) {}
+
+    private final Map<Class<?>, Map<String, Entry>> entries = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, Long> versions = new ConcurrentHashMap<>();
+
+    private static final Map<Class<?>, Boolean> userDependentClasses = new ConcurrentHashMap<>();
+
+    /**
+     * @param userId id of the user, only for dictionaries that are {@link #isUserDependent}, null otherwise
+     * @return key of the dictionary, same for all users with the same privileges in the same tenant
+     */
+    static String key(String descriptionFormula, Long organizationId, Long userId, Collection<String> globalPrivileges, Collection<String> organizationPrivileges) {
+        String prefix = descriptionFormula + "\0" + organizationId + "\0" + (userId != null ? userId : "") + "\0";
+        if (globalPrivileges == null) {
+            return prefix + "anonymous";
+        }
+        return prefix + DigestUtils.md5Hex(
+                String.join(",", new TreeSet<>(globalPrivileges)) + "\0" + String.join(",", new TreeSet<>(organizationPrivileges)));
+    }
+
+    /**
+     * @return true when the dictionary depends on the user, not only on privileges, ie. the description formula or
+     * a {@link Formula} of the entity (eg. its required read privilege) references the user id placeholder
+     */
+    static boolean isUserDependent(Class<?> entityClass, String descriptionFormula) {
+        if (descriptionFormula != null && descriptionFormula.contains(ModelConstants.USER_ID_PLACEHOLDER)) {
+            return true;
+        }
+        return userDependentClasses.computeIfAbsent(entityClass, EntityDictionaryCache::hasUserFormula);
+    }
+
+    private static boolean hasUserFormula(Class<?> entityClass) {
+        for (Class<?> c = entityClass; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                Formula formula = f.getAnnotation(Formula.class);
+                if (formula != null && formula.value().contains(ModelConstants.USER_ID_PLACEHOLDER)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return version of the class to pass to {@link #put}, read before the dictionary is queried
+     */
+    long version(Class<?> entityClass) {
+        return versions.getOrDefault(entityClass, 0L);
+    }
+
+    Map<Object, String> get(Class<?> entityClass, String key, long now) {
+        Map<String, Entry> classEntries = entries.get(entityClass);
+        Entry e = classEntries != null ? classEntries.get(key) : null;
+        return e != null && e.expiresAt() > now ? e.dictionary() : null;
+    }
+
+    /**
+     * Stores the dictionary unless the class has been invalidated since {@link #version} was read
+     */
+    void put(Class<?> entityClass, String key, long version, Map<Object, String> dictionary, long expiresAt) {
+        Map<String, Entry> classEntries = entries.computeIfAbsent(entityClass, k -> new ConcurrentHashMap<>());
+        if (classEntries.size() >= MAX_ENTRIES_PER_ENTITY) {
+            classEntries.clear();
+        }
+        classEntries.put(key, new Entry(dictionary, expiresAt));
+        if (version(entityClass) != version) {
+            classEntries.remove(key);
+        }
+    }
+
+    void invalidate(Collection<Class<?>> entityClasses) {
+        for (Class<?> c : entityClasses) {
+            versions.merge(c, 1L, Long::sum);
+            entries.remove(c);
+        }
+    }
+
+    void invalidateAll() {
+        invalidate(new ArrayList<>(entries.keySet()));
+    }
+}
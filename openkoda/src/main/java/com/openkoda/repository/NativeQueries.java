@@ -8,6 +8,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.jdbc.datasource.init.ScriptUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.sql.DataSource;
@@ -64,7 +65,10 @@ public class NativeQueries {
                         tablename  = :tableName)""";
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * Runs the query in its own read-only transaction, so that an invalid query does not abort the caller's transaction
+     */
+    @Transactional(readOnly = true, propagation = Propagation.REQUIRES_NEW)
     public List<LinkedHashMap<String, Object>> runReadOnly(String query) {
         Query q1 = entityManager.createNativeQuery(StringUtils.substringBefore(query,";"));
         NativeQueryImpl nativeQuery = (NativeQueryImpl) q1;
@@ -24,10 +24,14 @@ package com.openkoda.repository;
 import com.openkoda.controller.ComponentProvider;
 import com.openkoda.core.flow.Tuple;
 import com.openkoda.core.form.AbstractForm;
+import com.openkoda.core.helper.ClusterHelper;
 import com.openkoda.core.helper.JsonHelper;
+import com.openkoda.core.helper.NameHelper;
 import com.openkoda.core.helper.PrivilegeHelper;
 import com.openkoda.core.multitenancy.TenantResolver;
 import com.openkoda.core.security.HasSecurityRules;
+import com.openkoda.core.security.OrganizationUser;
+import com.openkoda.core.security.UserProvider;
 import com.openkoda.core.tracker.DebugLogsDecoratorWithRequestId;
 import com.openkoda.dto.file.FileDto;
 import com.openkoda.form.rule.LogicalOperator;
@@ -49,7 +53,12 @@ import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Query;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.Nullable;
 import org.json.JSONArray;
@@ -58,11 +67,17 @@ import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static com.openkoda.controller.common.URLConstants._AUTOCOMPLETE;
+import static com.openkoda.controller.common.URLConstants._DICTIONARY;
+import static com.openkoda.controller.common.URLConstants._HTML;
 import static com.openkoda.core.form.FormFieldDefinitionBuilderStart.DATALIST_PREFIX;
 import static com.openkoda.model.file.File.toFileDto;
 
@@ -81,6 +96,33 @@ public class SecureEntityDictionaryRepository extends ComponentProvider implemen
     @PersistenceContext
     private EntityManager em;
 
+    @Value("${dictionary.typeahead.threshold:1000}")
+    private int typeaheadThreshold;
+
+    @Value("${dictionary.cache.ttl-seconds:60}")
+    private long cacheTtlSeconds;
+
+    /**
+     * Key of the typeahead url in dictionaries too large to be sent whole
+     */
+    public static final String TYPEAHEAD_KEY = "__typeahead";
+
+    /**
+     * Name of the cluster map with typeahead sources, so that a typeahead url works on any node of the cluster
+     */
+    static final String TYPEAHEAD_SOURCES_MAP = "dictionaryTypeaheadSources";
+
+    private record DictionarySource(String entityKey, String descriptionFormula) implements Serializable {}
+
+    private static final Map<String, DictionarySource> typeaheadSources = new ConcurrentHashMap<>();
+
+    private static final EntityDictionaryCache dictionaryCache = new EntityDictionaryCache();
+
+    /**
+     * Ids of the entities whose descriptions are read by {@link #labelsOf}
+     */
+    private static final ThreadLocal<Collection<Long>> labelIds = new ThreadLocal<>();
+
     private static SecureEntityDictionaryRepository instance;
 
     protected Map<String, Object> commonDictionaries = new HashMap<>();
@@ -122,31 +164,202 @@ public class SecureEntityDictionaryRepository extends ComponentProvider implemen
         String customDescriptionFormula = null;
         return dictionary(gsa, customDescriptionFormula);
     }
+    /**
+     * Dictionary of entities visible to the current user, id -> description.
+     * Secure predicate and id/description projection run in one query and the result is cached per user privileges,
+     * see {@link EntityDictionaryCache}. Dictionaries larger than dictionary.typeahead.threshold contain only the first
+     * entries and the url of the paged search under {@link #TYPEAHEAD_KEY}, see {@link #typeahead}, as they are sent
+     * to form dropdowns. Descriptions of table values are read with {@link #labelsOf}.
+     */
     public <T extends SearchableEntity> Map dictionary(SearchableRepositoryMetadata gsa, @Nullable String customDescriptionFormula) {
         if (gsa == null) {
             warn("SearchableRepository for entity key not found");
             return Collections.emptyMap();
         }
 
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Long> q = cb.createQuery(Long.class).distinct(true);
-        Root root = q.from(gsa.entityClass());
-        q.select(root.get(ID));
         Long organizationId = TenantResolver.getTenantedResource().organizationId;
-        q.where(toSecurePredicate((r, query, c) -> organizationId == null || !isOrganizationRelated(r.getModel().getJavaType())? c.conjunction() : c.equal(r.get("organizationId"), organizationId),null, root, q, cb, SecurityScope.USER));
-        List<Long> result = em.createQuery(q).getResultList();
-        String tableName = SearchableRepositories.discoverTableName(gsa.entityClass());
-        String descriptionFormula = customDescriptionFormula != null ? "(''||COALESCE(" + customDescriptionFormula + ",''))" : "id";
-        Query query = em.createNativeQuery("select id, " + descriptionFormula + " from " +  tableName + " where id in (:ids) order by " + descriptionFormula);
-        query.setParameter("ids", result);
-        List<Object[]> r = query.getResultList();
+        Collection<Long> ids = labelIds.get();
+        if (ids != null) {
+            return ids.isEmpty() ? Collections.emptyMap()
+                    : dictionaryPage(gsa, customDescriptionFormula, organizationId, ids, null, 0, ids.size());
+        }
+        Class<?> entityClass = gsa.entityClass();
+        Optional<OrganizationUser> user = UserProvider.getFromContext();
+        Long userId = EntityDictionaryCache.isUserDependent(entityClass, customDescriptionFormula)
+                ? user.map(OrganizationUser::getUserId).orElse(null) : null;
+        String cacheKey = EntityDictionaryCache.key(customDescriptionFormula, organizationId, userId,
+                user.map(OrganizationUser::getGlobalPrivileges).orElse(null),
+                user.map(OrganizationUser::getOrganizationWithPrivilegePairs).orElse(null));
+        long now = System.currentTimeMillis();
+        Map<Object, String> cached = dictionaryCache.get(entityClass, cacheKey, now);
+        if (cached != null) {
+            return cached;
+        }
+
+        long version = dictionaryCache.version(entityClass);
+        Map<Object, String> page = dictionaryPage(gsa, customDescriptionFormula, organizationId, null, null, 0, typeaheadThreshold + 1);
+        Map<Object, String> result = page;
+        if (page.size() > typeaheadThreshold) {
+            debug("[dictionary] More than {} {} entities, returning typeahead", typeaheadThreshold, gsa.entityKey());
+            result = new LinkedHashMap<>(typeaheadThreshold + 1);
+            Iterator<Map.Entry<Object, String>> it = page.entrySet().iterator();
+            for (int i = 0; i < typeaheadThreshold; i++) {
+                Map.Entry<Object, String> e = it.next();
+                result.put(e.getKey(), e.getValue());
+            }
+            result.put(TYPEAHEAD_KEY, typeaheadUrl(gsa, customDescriptionFormula, organizationId));
+        }
+        result = Collections.unmodifiableMap(result);
+        if (cacheTtlSeconds > 0) {
+            dictionaryCache.put(entityClass, cacheKey, version, result, now + cacheTtlSeconds * 1000);
+        }
+        return result;
+    }
+
+    /**
+     * Page of entities for the typeahead url returned by {@link #dictionary(SearchableRepositoryMetadata, String)}
+     * @param token identifies the entity and description formula, so the formula never comes from the request
+     * @param id when not null, returns only the entity with this id (eg. value already selected in the form)
+     * @param search fragment of the description, case insensitive
+     * @return id -> description, null when the token is not known
+     */
+    public Map<Object, String> typeahead(String token, Long organizationId, Long id, String search, int page, int size) {
+        DictionarySource source = typeaheadSources.get(token);
+        if (source == null && ClusterHelper.isCluster()) {
+            source = clusterTypeaheadSources().get(token);
+            if (source != null) {
+                typeaheadSources.putIfAbsent(token, source);
+            }
+        }
+        if (source == null) {
+            return null;
+        }
+        int pageSize = Math.max(1, Math.min(size, typeaheadThreshold));
+        return dictionaryPage(SearchableRepositories.getSearchableRepositoryMetadata(source.entityKey()),
+                source.descriptionFormula(), organizationId, id == null ? null : List.of(id), StringUtils.trimToNull(search), Math.max(page, 0) * pageSize, pageSize);
+    }
+
+    /**
+     * Runs the datalist supplier so that the entity dictionaries it reads contain descriptions of the given ids only,
+     * all of them (no typeahead) and not cached. Used to show descriptions of the values on a page of a table.
+     * Dictionaries which are not entity dictionaries (eg. enums) are not affected.
+     * @param ids values of the fields using the datalist, values which are not ids are skipped
+     */
+    public static <T> T labelsOf(Collection<?> ids, Supplier<T> datalistSupplier) {
+        Collection<Long> previous = labelIds.get();
+        labelIds.set(ids.stream().filter(Number.class::isInstance).map(id -> ((Number) id).longValue())
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        try {
+            return datalistSupplier.get();
+        } finally {
+            if (previous == null) {
+                labelIds.remove();
+            } else {
+                labelIds.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Drops cached dictionaries of given entity classes. Called after entities are written through the entity manager,
+     * see {@link com.openkoda.core.audit.PropertyChangeInterceptor}; bulk statements which bypass it call it themselves.
+     */
+    public static void invalidateDictionaries(Collection<Class<?>> entityClasses) {
+        dictionaryCache.invalidate(entityClasses);
+    }
 
-        Map<Object, String> res = new LinkedHashMap<>(r.size());
-        for (Object[] t : r) {
-            res.put(t[0], t[1]+"");
+    /**
+     * Secure entity dictionary in a single query. When the description formula is not a column of the entity, its
+     * value can only be computed by native sql, then the ids are selected first and bound as one array parameter.
+     */
+    private Map<Object, String> dictionaryPage(SearchableRepositoryMetadata gsa, @Nullable String customDescriptionFormula,
+                                              Long organizationId, Collection<Long> ids, String search, int offset, int limit) {
+        if (gsa == null) {
+            return Collections.emptyMap();
+        }
+        Class entityClass = gsa.entityClass();
+        String descriptionAttribute = customDescriptionFormula == null ? ID : descriptionAttribute(entityClass, customDescriptionFormula);
+
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        if (descriptionAttribute == null) {
+            CriteriaQuery<Long> idQuery = cb.createQuery(Long.class).distinct(true);
+            Root idRoot = idQuery.from(entityClass);
+            idQuery.select(idRoot.get(ID)).where(securePredicate(idRoot, idQuery, cb, organizationId, ids));
+            List<Long> visibleIds = em.createQuery(idQuery).getResultList();
+            if (visibleIds.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            String descriptionFormula = "(''||COALESCE(" + customDescriptionFormula + ",''))";
+            Query query = em.createNativeQuery("select id, " + descriptionFormula + " from " + SearchableRepositories.discoverTableName(entityClass)
+                    + " where id = any(cast(string_to_array(:ids, ',') as bigint[]))"
+                    + (search != null ? " and lower(" + descriptionFormula + ") like :search escape '\\'" : "")
+                    + " order by " + descriptionFormula + " offset :offset limit :limit");
+            query.setParameter("ids", visibleIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+            if (search != null) {
+                query.setParameter("search", likePattern(search));
+            }
+            query.setParameter("offset", offset);
+            query.setParameter("limit", limit);
+            return toDictionary(query.getResultList());
+        }
+
+        CriteriaQuery<Object[]> q = cb.createQuery(Object[].class).distinct(true);
+        Root root = q.from(entityClass);
+        Predicate where = securePredicate(root, q, cb, organizationId, ids);
+        Expression<String> description = cb.coalesce(root.get(descriptionAttribute).as(String.class), "");
+        if (search != null) {
+            where = cb.and(where, cb.like(cb.lower(description), likePattern(search), '\\'));
+        }
+        q.multiselect(root.get(ID), description).where(where)
+                .orderBy(cb.asc(customDescriptionFormula == null ? root.get(ID) : description));
+        return toDictionary(em.createQuery(q).setFirstResult(offset).setMaxResults(limit).getResultList());
+    }
+
+    private Predicate securePredicate(Root root, CriteriaQuery<?> q, CriteriaBuilder cb, Long organizationId, Collection<Long> ids) {
+        Predicate result = toSecurePredicate((r, query, c) -> organizationId == null || !isOrganizationRelated(r.getModel().getJavaType())? c.conjunction() : c.equal(r.get("organizationId"), organizationId),null, root, q, cb, SecurityScope.USER);
+        return ids != null ? cb.and(result, root.get(ID).in(ids)) : result;
+    }
+
+    /**
+     * @return name of the basic attribute of the entity mapped to the formula when it is a single column, null otherwise
+     */
+    private String descriptionAttribute(Class<?> entityClass, String descriptionFormula) {
+        String column = descriptionFormula.trim();
+        if (!column.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+            return null;
+        }
+        for (SingularAttribute<?, ?> a : em.getMetamodel().entity(entityClass).getSingularAttributes()) {
+            if (a.getPersistentAttributeType() == Attribute.PersistentAttributeType.BASIC
+                    && (a.getName().equals(column) || NameHelper.toColumnName(a.getName()).equals(column))) {
+                return a.getName();
+            }
         }
-        return res;
+        return null;
+    }
+
+    private String typeaheadUrl(SearchableRepositoryMetadata gsa, String customDescriptionFormula, Long organizationId) {
+        String token = DigestUtils.md5Hex(gsa.entityKey() + "\0" + customDescriptionFormula);
+        DictionarySource source = new DictionarySource(gsa.entityKey(), customDescriptionFormula);
+        if (typeaheadSources.putIfAbsent(token, source) == null && ClusterHelper.isCluster()) {
+            clusterTypeaheadSources().putIfAbsent(token, source);
+        }
+        return _HTML + _AUTOCOMPLETE + _DICTIONARY + "/" + token + (organizationId != null ? "?organizationId=" + organizationId : "");
+    }
 
+    private static Map<String, DictionarySource> clusterTypeaheadSources() {
+        return ClusterHelper.getHazelcastInstance().getMap(TYPEAHEAD_SOURCES_MAP);
+    }
+
+    private static String likePattern(String search) {
+        return "%" + search.toLowerCase().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    private static Map<Object, String> toDictionary(List<Object[]> rows) {
+        Map<Object, String> result = new LinkedHashMap<>(rows.size());
+        for (Object[] t : rows) {
+            result.put(t[0], t[1] + "");
+        }
+        return result;
     }
 
     public <T extends SearchableEntity> Map dictionary(Class<T> entityClass, String labelField) {
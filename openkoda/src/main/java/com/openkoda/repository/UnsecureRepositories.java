@@ -27,6 +27,7 @@ import com.openkoda.repository.event.SchedulerRepository;
 import com.openkoda.repository.file.FileRepository;
 import com.openkoda.repository.notifications.NotificationRepository;
 import com.openkoda.repository.notifications.ReadNotificationRepository;
+import com.openkoda.repository.organization.OrganizationPurgeRepository;
 import com.openkoda.repository.organization.OrganizationRepository;
 import com.openkoda.repository.task.EmailRepository;
 import com.openkoda.repository.task.HttpRequestTaskRepository;
@@ -77,6 +78,7 @@ public class UnsecureRepositories {
 
 //    OTHER
     @Inject public OrganizationRepository organization;
+    @Inject public OrganizationPurgeRepository organizationPurge;
     @Inject public AuditRepository audit;
     @Inject public FrontendResourceRepository frontendResource;
     @Inject public ControllerEndpointRepository controllerEndpoint;
@@ -22,9 +22,13 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 package com.openkoda.repository.notifications;
 
 import com.openkoda.core.repository.common.UnsecuredFunctionalRepositoryWithLongId;
+import com.openkoda.core.repository.pagination.CountMode;
+import com.openkoda.core.repository.pagination.CountModePage;
+import com.openkoda.core.repository.pagination.CountModePageable;
 import com.openkoda.model.notification.Notification;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -32,6 +36,14 @@ import java.util.Set;
 
 public interface NotificationRepository extends UnsecuredFunctionalRepositoryWithLongId<Notification> {
 
+    String NOTIFICATIONS_QUERY = "SELECT new com.openkoda.repository.notifications.NotificationKeeper(n, rn.notificationId) FROM Notification n " +
+            "LEFT JOIN n.readNotifications rn WHERE " +
+            "NOT((n.hiddenFromAuthor = TRUE) AND (:userId = n.createdBy.createdById)) AND" +
+            "(((n.organizationId IS NULL AND n.userId=:userId) OR " +
+            "(n.userId IS NULL AND n.organizationId IN :organizationIds) OR " +
+            "(n.userId IS NULL AND n.organizationId IS NULL)) " +
+            ") ORDER BY rn.notificationId DESC, n.id DESC";
+
     /**
      * <p>findAll</p>
      * <p>Returns new object NotificationKeeper which is holding a pair of Notification object and Notification id from ReadNotifications</p>
@@ -42,13 +54,24 @@ public interface NotificationRepository extends UnsecuredFunctionalRepositoryWit
      * <p>Additionally we check priviliges</p>
      * <p>Return Page of NotificationKeeper ordered so Unread notifications (the ones with null value of rn.notificationId) come 1st</p>
      */
-    @Query("SELECT new com.openkoda.repository.notifications.NotificationKeeper(n, rn.notificationId) FROM Notification n " +
-            "LEFT JOIN n.readNotifications rn WHERE " +
-            "NOT((n.hiddenFromAuthor = TRUE) AND (:userId = n.createdBy.createdById)) AND" +
-            "(((n.organizationId IS NULL AND n.userId=:userId) OR " +
-            "(n.userId IS NULL AND n.organizationId IN :organizationIds) OR " +
-            "(n.userId IS NULL AND n.organizationId IS NULL)) " +
-            ") ORDER BY rn.notificationId DESC, n.id DESC")
+    @Query(NOTIFICATIONS_QUERY)
     Page<NotificationKeeper> findAll(@Param("userId") Long userId, @Param("organizationIds") Set<Long> organizationIds, Pageable pageable);
 
+    /**
+     * <p>Same as {@link #findAll(Long, Set, Pageable)}, but without the count query</p>
+     */
+    @Query(NOTIFICATIONS_QUERY)
+    Slice<NotificationKeeper> findSlice(@Param("userId") Long userId, @Param("organizationIds") Set<Long> organizationIds, Pageable pageable);
+
+    /**
+     * <p>Page of notifications according to the {@link CountMode} of the pageable. Any mode other than EXACT is read
+     * as a slice, see {@link CountModePage#of(Slice)}.</p>
+     */
+    default Page<NotificationKeeper> findPage(Long userId, Set<Long> organizationIds, Pageable pageable) {
+        if (CountModePageable.countMode(pageable) == CountMode.EXACT) {
+            return findAll(userId, organizationIds, pageable);
+        }
+        return CountModePage.of(findSlice(userId, organizationIds, pageable));
+    }
+
 }
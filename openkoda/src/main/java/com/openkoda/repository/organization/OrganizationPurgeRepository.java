@@ -0,0 +1,95 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.repository.organization;
+
+import com.openkoda.model.OrganizationPurge;
+import com.openkoda.model.OrganizationPurge.Status;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * State of organization purges. Updates are conditional on the status, so that a purge cancelled in the meantime
+ * (on any node) is noticed by the thread running it.
+ */
+@Repository
+public interface OrganizationPurgeRepository extends JpaRepository<OrganizationPurge, Long> {
+
+    OrganizationPurge findFirstByPurgedOrganizationIdAndStatusNot(Long purgedOrganizationId, Status status);
+
+    OrganizationPurge findFirstByPurgedOrganizationIdOrderByIdDesc(Long purgedOrganizationId);
+
+    List<OrganizationPurge> findByStatusIn(Collection<Status> statuses);
+
+    @Query("select p from OrganizationPurge p order by p.id desc limit 50")
+    List<OrganizationPurge> findRecent();
+
+    /**
+     * Takes a pending purge, or a running one whose node stopped sending heartbeats
+     * @return 1 when the purge was claimed
+     */
+    @Modifying
+    @Transactional
+    @Query("update OrganizationPurge p set p.status = :running, p.heartbeatOn = :now, p.error = null where p.id = :id " +
+            "and (p.status = :pending or (p.status = :running and (p.heartbeatOn is null or p.heartbeatOn < :staleBefore)))")
+    int claim(@Param("id") long id, @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore,
+              @Param("pending") Status pending, @Param("running") Status running);
+
+    /**
+     * @return 0 when the purge is not running anymore
+     */
+    @Modifying
+    @Transactional
+    @Query("update OrganizationPurge p set p.currentTable = :currentTable, p.tablesDone = :tablesDone, p.tablesTotal = :tablesTotal, " +
+            "p.rowsDeleted = :rowsDeleted, p.heartbeatOn = :now where p.id = :id and p.status = :running")
+    int progress(@Param("id") long id, @Param("currentTable") String currentTable, @Param("tablesDone") int tablesDone,
+                 @Param("tablesTotal") int tablesTotal, @Param("rowsDeleted") long rowsDeleted, @Param("now") LocalDateTime now,
+                 @Param("running") Status running);
+
+    @Modifying
+    @Transactional
+    @Query("update OrganizationPurge p set p.status = :status, p.currentTable = null, p.finishedOn = :now, p.error = :error " +
+            "where p.id = :id and p.status = :running")
+    int finish(@Param("id") long id, @Param("status") Status status, @Param("error") String error, @Param("now") LocalDateTime now,
+               @Param("running") Status running);
+
+    /**
+     * Returns a running purge to pending, so that it is claimed again without waiting for its heartbeat to get stale
+     */
+    @Modifying
+    @Transactional
+    @Query("update OrganizationPurge p set p.status = :pending, p.heartbeatOn = null where p.id = :id and p.status = :running")
+    int release(@Param("id") long id, @Param("pending") Status pending, @Param("running") Status running);
+
+    @Modifying
+    @Transactional
+    @Query("update OrganizationPurge p set p.status = :cancelled, p.finishedOn = :now where p.id = :id and p.status in :active")
+    int cancel(@Param("id") long id, @Param("now") LocalDateTime now, @Param("cancelled") Status cancelled,
+               @Param("active") Collection<Status> active);
+}
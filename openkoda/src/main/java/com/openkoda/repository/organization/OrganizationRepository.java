@@ -62,7 +62,8 @@ public interface OrganizationRepository extends UnsecuredFunctionalRepositoryWit
     @Query("select id from Organization o")
     Stream<Long> findAllIdsAsStream();
 
-    @Query("select o.id from Organization o where o.name not like '(disabled)%'")
+    @Query("select o.id from Organization o where o.name not like '(disabled)%' and o.id not in (select p.purgedOrganizationId from OrganizationPurge p " +
+            "where p.status in (com.openkoda.model.OrganizationPurge.Status.PENDING, com.openkoda.model.OrganizationPurge.Status.RUNNING, com.openkoda.model.OrganizationPurge.Status.DONE))")
     List<Long> findActiveOrganizationIdsAsList();
     boolean existsById(Long id);
 
@@ -0,0 +1,51 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.repository.specifications;
+
+import com.openkoda.core.helper.ReadableCode;
+import com.openkoda.model.Organization;
+import com.openkoda.model.OrganizationPurge;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+import static com.openkoda.model.OrganizationPurge.Status.*;
+
+public class OrganizationSpecifications implements ReadableCode {
+
+    static final List<OrganizationPurge.Status> PURGED = List.of(PENDING, RUNNING, DONE);
+
+    /**
+     * Excludes organizations being removed or removed, their data is deleted in background by the organization purge.
+     * Organizations with a cancelled or failed purge stay visible.
+     */
+    public static Specification<Organization> notPurged() {
+        return (root, query, cb) -> {
+            Subquery<Long> purged = query.subquery(Long.class);
+            Root<OrganizationPurge> purge = purged.from(OrganizationPurge.class);
+            purged.select(purge.get("purgedOrganizationId")).where(purge.get("status").in(PURGED));
+            return cb.not(root.get("id").in(purged));
+        };
+    }
+}
@@ -0,0 +1,292 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.repository.user;
+
+import com.openkoda.core.audit.IpService;
+import com.openkoda.core.audit.PropertyChangeInterceptor;
+import com.openkoda.core.security.OrganizationUser;
+import com.openkoda.core.security.UserProvider;
+import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import com.openkoda.core.tracker.RequestIdHolder;
+import com.openkoda.model.User;
+import com.openkoda.model.UserRole;
+import com.openkoda.model.common.IdFamily;
+import jakarta.inject.Inject;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * Set-based modifications of roles in an organization, each one a single statement regardless of the number of users.
+ * Global organization roles can be changed in many organizations at once, given as pairs of organization id and role name.
+ * <p>Statements bypass Hibernate, so {@link com.openkoda.core.audit.AuditInterceptor} does not see them. Instead, each
+ * statement writes audit rows for all user roles it added or removed, with the description the interceptor would
+ * produce. Statements run on the connection of the current transaction, and cached {@link UserRole} dictionaries are
+ * dropped when it completes.</p>
+ */
+@Repository
+public class UserRoleBulkRepository implements LoggingComponentWithRequestId {
+
+    /**
+     * Who made the change, written to the audit rows
+     */
+    public record AuditInfo(Long userId, String userRoleIds, String ipAddress, String requestId) {}
+
+    private static final String PARAMS = """
+            WITH params AS (SELECT CAST(? AS bigint) AS organization_id, CAST(? AS varchar[]) AS role_names,
+                                   CAST(? AS bigint) AS audit_user_id, CAST(? AS varchar) AS audit_user_role_ids,
+                                   CAST(? AS varchar) AS ip_address, CAST(? AS varchar) AS request_id),
+            """;
+
+    private static final String AUDIT = """
+            audited AS (
+                INSERT INTO audit (user_id, user_role_ids, entity_name, entity_key, operation, severity, entity_id, organization_id, change, ip_address, request_id)
+                SELECT p.audit_user_id, p.audit_user_role_ids, 'UserRole', 'User Role', '%s', 'INFO', changed.id, changed.organization_id, %s,
+                       p.ip_address, p.request_id
+                FROM changed CROSS JOIN params p LEFT JOIN users u ON u.id = changed.user_id
+            )
+            SELECT changed.user_id FROM changed""";
+
+    private static final String ADDED = AUDIT.formatted("ADD", """
+            'User Role created with:<br/>' || coalesce('<b>User Id</b> ' || changed.user_id || '<br/>', '')
+                       || '<b>Role Id</b> ' || changed.role_id || '<br/><b>Organization Id</b> ' || changed.organization_id || '<br/>'""");
+
+    private static final String REMOVED = AUDIT.formatted("DELETE", """
+            'User RoleDeleted User Role ' || coalesce(u.email, 'N/A') || ':' || changed.role_name || '@' || changed.organization_id""");
+
+    private static final String REMOVE_USER_ROLES = PARAMS + """
+            changed AS (
+                DELETE FROM users_roles ur USING roles r, params p
+                WHERE ur.role_id = r.id AND r.name = ANY (p.role_names) AND ur.organization_id = p.organization_id AND ur.user_id IS NOT NULL
+                RETURNING ur.id, ur.user_id, ur.role_id, ur.organization_id, r.name AS role_name
+            ),
+            """ + REMOVED;
+
+    /**
+     * Pairs of organization id and role name of global organization roles, with the same audit parameters as {@link #PARAMS}
+     */
+    private static final String PAIRS = """
+            WITH pairs AS (SELECT * FROM unnest(CAST(? AS bigint[]), CAST(? AS varchar[])) AS t(organization_id, role_name)),
+            params AS (SELECT CAST(? AS bigint) AS audit_user_id, CAST(? AS varchar) AS audit_user_role_ids,
+                              CAST(? AS varchar) AS ip_address, CAST(? AS varchar) AS request_id),
+            """;
+
+    private static final String REMOVE_GLOBAL_ROLES = PAIRS + """
+            changed AS (
+                DELETE FROM users_roles ur USING roles r, pairs
+                WHERE ur.role_id = r.id AND r.name = pairs.role_name AND ur.organization_id = pairs.organization_id AND ur.user_id IS NULL
+                RETURNING ur.id, ur.user_id, ur.role_id, ur.organization_id, r.name AS role_name
+            ),
+            """ + REMOVED;
+
+    private static final String ADD_USER_ROLES = PARAMS + """
+            changed AS (
+                INSERT INTO users_roles (id, user_id, role_id, organization_id)
+                SELECT nextval('%1$s'), member.user_id, r.id, p.organization_id
+                FROM params p
+                JOIN (SELECT DISTINCT organization_id, user_id FROM users_roles WHERE user_id IS NOT NULL) member ON member.organization_id = p.organization_id
+                JOIN roles r ON r.name = ANY (p.role_names)
+                WHERE NOT EXISTS (SELECT 1 FROM users_roles ur WHERE ur.user_id = member.user_id AND ur.role_id = r.id AND ur.organization_id = p.organization_id)
+                ON CONFLICT DO NOTHING
+                RETURNING id, user_id, role_id, organization_id
+            ),
+            """.formatted(IdFamily.ORGANIZATION_RELATED.sequenceName) + ADDED;
+
+    private static final String ADD_GLOBAL_ROLES = PAIRS + """
+            changed AS (
+                INSERT INTO users_roles (id, user_id, role_id, organization_id)
+                SELECT nextval('%1$s'), NULL, r.id, pair.organization_id
+                FROM (SELECT DISTINCT organization_id, role_name FROM pairs) pair
+                JOIN roles r ON r.name = pair.role_name
+                WHERE NOT EXISTS (SELECT 1 FROM users_roles ur WHERE ur.user_id IS NULL AND ur.role_id = r.id AND ur.organization_id = pair.organization_id)
+                RETURNING id, user_id, role_id, organization_id
+            ),
+            """.formatted(IdFamily.ORGANIZATION_RELATED.sequenceName) + ADDED;
+
+    private static final String FIND_GLOBAL_ORGANIZATION_ROLES = "SELECT name FROM roles WHERE type = 'GLOBAL_ORG'";
+
+    private static final String FIND_GLOBAL_ROLE_NAMES = """
+            SELECT ur.organization_id, r.name FROM users_roles ur JOIN roles r ON r.id = ur.role_id
+            WHERE ur.user_id IS NULL AND ur.organization_id = ANY (CAST(? AS bigint[]))""";
+
+    @Inject
+    private DataSource dataSource;
+
+    @Inject
+    private IpService ipService;
+
+    /**
+     * @return audit info of the user of the current request (empty for background jobs)
+     */
+    public AuditInfo currentAuditInfo() {
+        Optional<OrganizationUser> user = UserProvider.getFromContext();
+        return new AuditInfo(
+                user.map(OrganizationUser::getUser).map(User::getId).orElse(null),
+                user.map(u -> String.valueOf(u.getRolesInfo())).orElse(""),
+                ipService.getCurrentUserIpAddress(),
+                RequestIdHolder.getId());
+    }
+
+    /**
+     * Removes roles with given names from all users of the organization, global roles of the organization are kept
+     * @return ids of users who lost a role, one per removed user role
+     */
+    public List<Long> removeUserRoles(long organizationId, Collection<String> roleNames, AuditInfo audit) throws SQLException {
+        debug("[removeUserRoles] org {} roles {}", organizationId, roleNames);
+        return run(REMOVE_USER_ROLES, organizationId, roleNames, audit);
+    }
+
+    /**
+     * Adds roles with given names to every user having any role in the organization, unless the user has it already
+     * @return ids of users who got a role, one per added user role
+     */
+    public List<Long> addUserRoles(long organizationId, Collection<String> roleNames, AuditInfo audit) throws SQLException {
+        debug("[addUserRoles] org {} roles {}", organizationId, roleNames);
+        return run(ADD_USER_ROLES, organizationId, roleNames, audit);
+    }
+
+    /**
+     * Removes global organization roles (roles of the organization not assigned to a user) with given names
+     * @return number of removed roles
+     */
+    public int removeGlobalRoles(long organizationId, Collection<String> roleNames, AuditInfo audit) throws SQLException {
+        debug("[removeGlobalRoles] org {} roles {}", organizationId, roleNames);
+        return removeGlobalRoles(Collections.nCopies(roleNames.size(), organizationId), new ArrayList<>(roleNames), audit);
+    }
+
+    /**
+     * Adds global organization roles with given names, unless the organization has them already
+     * @return number of added roles
+     */
+    public int addGlobalRoles(long organizationId, Collection<String> roleNames, AuditInfo audit) throws SQLException {
+        debug("[addGlobalRoles] org {} roles {}", organizationId, roleNames);
+        return addGlobalRoles(Collections.nCopies(roleNames.size(), organizationId), new ArrayList<>(roleNames), audit);
+    }
+
+    /**
+     * Removes global organization roles given as pairs: organizationIds[i] and roleNames[i], in any number of organizations
+     * @return number of removed roles
+     */
+    public int removeGlobalRoles(List<Long> organizationIds, List<String> roleNames, AuditInfo audit) throws SQLException {
+        debug("[removeGlobalRoles] {} roles", roleNames.size());
+        return roleNames.isEmpty() ? 0 : runPairs(REMOVE_GLOBAL_ROLES, organizationIds, roleNames, audit);
+    }
+
+    /**
+     * Adds global organization roles given as pairs: organizationIds[i] and roleNames[i], in any number of organizations.
+     * Roles the organization has already are skipped.
+     * @return number of added roles
+     */
+    public int addGlobalRoles(List<Long> organizationIds, List<String> roleNames, AuditInfo audit) throws SQLException {
+        debug("[addGlobalRoles] {} roles", roleNames.size());
+        return roleNames.isEmpty() ? 0 : runPairs(ADD_GLOBAL_ROLES, organizationIds, roleNames, audit);
+    }
+
+    /**
+     * @return names of all roles which can be assigned as global organization roles
+     */
+    public Set<String> findGlobalOrganizationRoleNames() throws SQLException {
+        Set<String> result = new HashSet<>();
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try (PreparedStatement ps = connection.prepareStatement(FIND_GLOBAL_ORGANIZATION_ROLES);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                result.add(rs.getString(1));
+            }
+            return result;
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    /**
+     * @return organization id -> names of global organization roles of the organization, for organizations having any
+     */
+    public Map<Long, Set<String>> findGlobalRoleNames(Collection<Long> organizationIds) throws SQLException {
+        debug("[findGlobalRoleNames] {} organizations", organizationIds.size());
+        Map<Long, Set<String>> result = new HashMap<>();
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try (PreparedStatement ps = connection.prepareStatement(FIND_GLOBAL_ROLE_NAMES)) {
+            ps.setArray(1, connection.createArrayOf("bigint", organizationIds.toArray()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.computeIfAbsent(rs.getLong(1), k -> new HashSet<>()).add(rs.getString(2));
+                }
+            }
+            return result;
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private int runPairs(String sql, List<Long> organizationIds, List<String> roleNames, AuditInfo audit) throws SQLException {
+        PropertyChangeInterceptor.entityClassModified(UserRole.class);
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setArray(1, connection.createArrayOf("bigint", organizationIds.toArray()));
+            ps.setArray(2, connection.createArrayOf("varchar", roleNames.toArray()));
+            setAudit(ps, 3, audit);
+            int result = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result++;
+                }
+            }
+            return result;
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private List<Long> run(String sql, long organizationId, Collection<String> roleNames, AuditInfo audit) throws SQLException {
+        PropertyChangeInterceptor.entityClassModified(UserRole.class);
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setLong(1, organizationId);
+            ps.setArray(2, connection.createArrayOf("varchar", roleNames.toArray()));
+            setAudit(ps, 3, audit);
+            List<Long> result = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.add(rs.getObject(1, Long.class));
+                }
+            }
+            return result;
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private void setAudit(PreparedStatement ps, int firstIndex, AuditInfo audit) throws SQLException {
+        ps.setObject(firstIndex, audit.userId(), Types.BIGINT);
+        ps.setString(firstIndex + 1, audit.userRoleIds());
+        ps.setString(firstIndex + 2, audit.ipAddress());
+        ps.setString(firstIndex + 3, audit.requestId());
+    }
+}
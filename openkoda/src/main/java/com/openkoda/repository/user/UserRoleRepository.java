@@ -68,6 +68,14 @@ public interface UserRoleRepository extends UnsecuredFunctionalRepositoryWithLon
     @Query("delete from UserRole dbUserRole where " + CHECK_CAN_MANAGE_USER_ROLES_JPQL + " AND dbUserRole.userId IS NULL AND dbUserRole.organizationId = :organization_id AND dbUserRole.roleId IN (select r.id from Role r where r.name IN :role_names) ")
     int deleteUserRoleByOrganizationIdAndRoleName(@Param("organization_id") Long aLong, @Param("role_names") Set<String> roleNames);
 
+    /**
+     * Revokes all roles in the organization, used when the organization is being removed
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from UserRole dbUserRole where dbUserRole.organizationId = :organization_id")
+    int deleteAllInOrganization(@Param("organization_id") Long organizationId);
+
     @Modifying
     int deleteByRoleIdAndUserIdAndOrganizationId(long roleId, long userId, long organizationId);
 
@@ -26,6 +26,7 @@ import com.openkoda.core.customisation.ServerJSRunner;
 import com.openkoda.core.flow.TransactionalExecutor;
 import com.openkoda.core.helper.UrlHelper;
 import com.openkoda.core.multitenancy.TenantResolver;
+import com.openkoda.core.profiler.Profiler;
 import com.openkoda.core.security.RunAsService;
 import com.openkoda.core.service.*;
 import com.openkoda.core.service.email.EmailConstructor;
@@ -36,18 +37,24 @@ import com.openkoda.core.service.event.ClusterEventSenderService;
 import com.openkoda.core.service.event.EventListenerService;
 import com.openkoda.core.service.event.SchedulerService;
 import com.openkoda.core.service.form.FormService;
+import com.openkoda.core.service.http.OutboundHttpService;
 import com.openkoda.core.service.module.ModuleService;
 import com.openkoda.core.service.pdf.PdfConstructor;
+import com.openkoda.core.service.pdf.PdfRenderingService;
+import com.openkoda.core.service.system.DatabaseIndexService;
 import com.openkoda.core.service.system.DatabaseValidationService;
 import com.openkoda.core.service.system.SystemHealthStatusService;
+import com.openkoda.service.autocomplete.WebendpointAutocompleteIndex;
 import com.openkoda.service.captcha.CaptchaService;
 import com.openkoda.service.csv.CsvService;
+import com.openkoda.service.csv.DynamicEntityCsvImportService;
 import com.openkoda.service.dynamicentity.DynamicEntityRegistrationService;
 import com.openkoda.service.dynamicentity.DynamicEntityService;
 import com.openkoda.service.export.ComponentExportService;
 import com.openkoda.service.export.ZipComponentImportService;
 import com.openkoda.service.notification.NotificationService;
 import com.openkoda.service.openai.ChatGPTService;
+import com.openkoda.service.organization.OrganizationPurgeService;
 import com.openkoda.service.organization.OrganizationService;
 import com.openkoda.service.user.*;
 import com.openkoda.uicomponent.JsParser;
@@ -68,6 +75,7 @@ public class Services {
     @Inject public RoleService role;
     @Inject public BasicPrivilegeService privilege;
     @Inject public OrganizationService organization;
+    @Inject public OrganizationPurgeService organizationPurge;
     @Inject public TransactionalExecutor transactionalExecutor;
     @Inject public EmailSender email;
     @Inject public EmailConstructor emailConstructor;
@@ -86,9 +94,12 @@ public class Services {
     @Inject public EmailService emailService;
     @Inject public LogConfigService logConfig;
     @Inject public PdfConstructor pdfConstructor;
+    @Inject public PdfRenderingService pdfRendering;
+    @Inject public OutboundHttpService outboundHttp;
     @Inject public NotificationService notification;
     @Inject public SystemHealthStatusService systemStatus;
     @Inject public DatabaseValidationService databaseValidationService;
+    @Inject public DatabaseIndexService databaseIndex;
     @Inject public ApiKeyService apiKey;
     @Inject public ClusterEventSenderService clusterEventSender;
     @Inject public ThymeleafService thymeleaf;
@@ -99,6 +110,7 @@ public class Services {
     @Inject public FrontendMappingDefinitionService frontendMappingDefinition;
     @Inject public WebsocketService websocket;
     @Inject public UserRoleService userRole;
+    @Inject public UserRoleReconciliationService userRoleReconciliation;
     @Inject public LiveDataServices data;
     @Inject public UtilServices util;
     @Inject public CustomisationService customisation;
@@ -110,5 +122,9 @@ public class Services {
     @Inject public JsParser jsParser;
     @Inject public DynamicEntityService dynamicEntity;
     @Inject public CsvService csv;
+    @Inject public DynamicEntityCsvImportService csvImport;
     @Inject public ChatGPTService chatGPTService;
+    @Inject public WebendpointAutocompleteIndex webendpointAutocompleteIndex;
+    @Inject public Profiler profiler;
+    @Inject public BulkPersistService bulkPersist;
 }
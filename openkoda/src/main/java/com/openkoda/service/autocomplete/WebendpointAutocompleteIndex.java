@@ -0,0 +1,300 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.service.autocomplete;
+
+import com.openkoda.core.helper.ClusterHelper;
+import com.openkoda.core.security.OrganizationUser;
+import com.openkoda.core.security.UserProvider;
+import com.openkoda.model.component.ServerJs;
+import com.openkoda.uicomponent.live.LiveComponentProvider;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import static com.openkoda.model.PrivilegeNames._canReadBackend;
+import static java.util.Arrays.stream;
+import static java.util.Collections.unmodifiableNavigableMap;
+
+/**
+ * In-memory index backing the webendpoint code editor autocomplete.
+ * <p>
+ * Service suggestions are derived with reflection over {@link LiveComponentProvider} once, when the bean is created.
+ * Function signatures of {@link ServerJs} are parsed once per code version (keyed by id and code hash) and kept
+ * up to date on ServerJs save and delete (see {@link ServerJsAutocompleteEntityListener}), propagated over the cluster
+ * with SERVER_JS_RELOAD/SERVER_JS_REMOVE events.
+ * The complete response is materialized once per index version together with its ETag.
+ * <p>
+ * The index holds all ServerJs, the responses are filtered with the read privilege of ServerJs, as the secure
+ * repository does: a user with global {@link com.openkoda.model.PrivilegeNames#_canReadBackend} gets the shared
+ * response, other users get the ServerJs of organizations where they have the privilege.
+ */
+@Service
+public class WebendpointAutocompleteIndex extends GenericAutocompleteService {
+
+    static final String[] MODEL_KEYS = {"organizationEntityId", "userEntityId"};
+
+    record ServerJsEntry(long id, String name, Long organizationId, String codeHash, List<String> functions) {}
+
+    /**
+     * Response and its ETag built from the entries of given index version
+     */
+    record Snapshot(WebendpointAutocompleteResponse response, String etag, long version) {}
+
+    private final Map<Long, ServerJsEntry> serverJsEntries = new ConcurrentHashMap<>();
+
+    private NavigableMap<String, String> servicesSuggestions = Collections.emptyNavigableMap();
+
+    private String servicesSuggestionsHash = "";
+
+    /**
+     * Incremented after every change of the entries, a snapshot of an older version is rebuilt
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile boolean serverJsLoaded = false;
+
+    private volatile Snapshot snapshot;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        super.afterPropertiesSet();
+        TreeMap<String, String> suggestions = new TreeMap<>();
+        stream(LiveComponentProvider.class.getDeclaredFields())
+                .forEach(f -> suggestions.putAll(getSuggestionsAndDocumentation(getExposedMethods(f.getType().getName()), f.getName())));
+        servicesSuggestions = unmodifiableNavigableMap(suggestions);
+        servicesSuggestionsHash = DigestUtils.md5Hex(String.join("\n", suggestions.keySet()));
+        debug("[afterPropertiesSet] {} service suggestions indexed", suggestions.size());
+    }
+
+    /**
+     * @return autocomplete response with the ServerJs readable by the current user
+     */
+    public WebendpointAutocompleteResponse getResponse() {
+        return getUserSnapshot().response();
+    }
+
+    /**
+     * @return ETag of the current user's response, changes whenever any readable ServerJs name or code changes
+     */
+    public String getETag() {
+        return getUserSnapshot().etag();
+    }
+
+    /**
+     * @return service suggestions (with documentation) starting with given prefix
+     */
+    public SortedMap<String, String> getServicesSuggestions(String prefix) {
+        if (StringUtils.isEmpty(prefix)) {
+            return servicesSuggestions;
+        }
+        return servicesSuggestions.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * @return ServerJs names starting with given prefix, sorted
+     */
+    public List<String> getImportSuggestions(String prefix) {
+        Predicate<ServerJsEntry> readable = readableBy(UserProvider.getFromContext().orElse(null));
+        return getEntries().stream()
+                .filter(readable)
+                .map(ServerJsEntry::name)
+                .filter(n -> n != null && (prefix == null || n.startsWith(prefix)))
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Updates index entry for given ServerJs after the current transaction commits.
+     * In cluster mode the change is published to all members, otherwise it is applied locally.
+     */
+    public void updateClusterAware(ServerJs serverJs) {
+        debug("[updateClusterAware] {}", serverJs.getId());
+        final long id = serverJs.getId();
+        final String name = serverJs.getName();
+        final Long organizationId = serverJs.getOrganizationId();
+        final String code = serverJs.getCode();
+        afterCommit(() -> {
+            if (ClusterHelper.isCluster()) {
+                services.clusterEventSender.reloadServerJs(id);
+            } else {
+                update(id, name, organizationId, code);
+            }
+        });
+    }
+
+    /**
+     * Removes index entry for given ServerJs after the current transaction commits.
+     */
+    public void removeClusterAware(long serverJsId) {
+        debug("[removeClusterAware] {}", serverJsId);
+        afterCommit(() -> {
+            if (ClusterHelper.isCluster()) {
+                services.clusterEventSender.removeServerJs(serverJsId);
+            } else {
+                remove(serverJsId);
+            }
+        });
+    }
+
+    /**
+     * Re-reads the ServerJs from database and updates its index entry
+     */
+    public boolean reload(long serverJsId) {
+        debug("[reload] {}", serverJsId);
+        ServerJs serverJs = repositories.unsecure.serverJs.findOne(serverJsId);
+        if (serverJs == null) {
+            return remove(serverJsId);
+        }
+        return update(serverJs.getId(), serverJs.getName(), serverJs.getOrganizationId(), serverJs.getCode());
+    }
+
+    public boolean update(long id, String name, Long organizationId, String code) {
+        debug("[update] {}", id);
+        if (!serverJsLoaded) {
+            return false;
+        }
+        String codeHash = DigestUtils.md5Hex(StringUtils.defaultString(code));
+        ServerJsEntry existing = serverJsEntries.get(id);
+        List<String> functions = existing != null && existing.codeHash().equals(codeHash)
+                ? existing.functions()
+                : parseFunctions(code);
+        serverJsEntries.put(id, new ServerJsEntry(id, name, organizationId, codeHash, functions));
+        version.incrementAndGet();
+        return true;
+    }
+
+    public boolean remove(long id) {
+        debug("[remove] {}", id);
+        if (serverJsEntries.remove(id) != null) {
+            version.incrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * Drops all ServerJs entries, they are lazily loaded again on the next request
+     */
+    public void invalidate() {
+        debug("[invalidate]");
+        synchronized (serverJsEntries) {
+            serverJsLoaded = false;
+            serverJsEntries.clear();
+            version.incrementAndGet();
+        }
+    }
+
+    private Collection<ServerJsEntry> getEntries() {
+        if (!serverJsLoaded) {
+            synchronized (serverJsEntries) {
+                if (!serverJsLoaded) {
+                    debug("[getEntries] loading all ServerJs");
+                    for (ServerJs s : repositories.unsecure.serverJs.findAll()) {
+                        String code = StringUtils.defaultString(s.getCode());
+                        serverJsEntries.put(s.getId(), new ServerJsEntry(s.getId(), s.getName(), s.getOrganizationId(), DigestUtils.md5Hex(code), parseFunctions(code)));
+                    }
+                    serverJsLoaded = true;
+                }
+            }
+        }
+        return serverJsEntries.values();
+    }
+
+    private Snapshot getUserSnapshot() {
+        OrganizationUser user = UserProvider.getFromContext().orElse(null);
+        if (user != null && user.hasGlobalPrivilege(_canReadBackend)) {
+            return getSnapshot();
+        }
+        return buildSnapshot(readableBy(user), version.get());
+    }
+
+    /**
+     * @return shared snapshot with all ServerJs. A snapshot built while the entries changed carries the version read
+     * before the build, so it is not used after the change.
+     */
+    Snapshot getSnapshot() {
+        Snapshot result = snapshot;
+        long current = version.get();
+        if (result == null || result.version() != current) {
+            result = buildSnapshot(e -> true, current);
+            snapshot = result;
+        }
+        return result;
+    }
+
+    Snapshot buildSnapshot(Predicate<ServerJsEntry> filter, long version) {
+        debug("[buildSnapshot]");
+        List<ServerJsEntry> entries = getEntries().stream()
+                .filter(e -> e.name() != null)
+                .filter(filter)
+                .sorted(Comparator.comparing(ServerJsEntry::name).thenComparing(ServerJsEntry::id))
+                .toList();
+        Map<String, List<String>> serverJsSuggestions = new LinkedHashMap<>();
+        StringBuilder etagSource = new StringBuilder(servicesSuggestionsHash);
+        for (ServerJsEntry e : entries) {
+            serverJsSuggestions.putIfAbsent(e.name(), e.functions());
+            etagSource.append('\n').append(e.name()).append(':').append(e.codeHash());
+        }
+        WebendpointAutocompleteResponse response = new WebendpointAutocompleteResponse();
+        response.setServicesSuggestions(servicesSuggestions);
+        response.setModelKeys(MODEL_KEYS);
+        response.setImportSuggestions(serverJsSuggestions.keySet().toArray(String[]::new));
+        response.setServerJsSuggestions(serverJsSuggestions);
+        return new Snapshot(response, "\"" + DigestUtils.md5Hex(etagSource.toString()) + "\"", version);
+    }
+
+    /**
+     * Same rule as the secure repository applies with the read privilege of {@link ServerJs}
+     */
+    static Predicate<ServerJsEntry> readableBy(OrganizationUser user) {
+        if (user == null) {
+            return e -> false;
+        }
+        if (user.hasGlobalPrivilege(_canReadBackend)) {
+            return e -> true;
+        }
+        return e -> e.organizationId() != null && user.hasOrgPrivilege(_canReadBackend, e.organizationId());
+    }
+
+    private List<String> parseFunctions(String code) {
+        return StringUtils.isEmpty(code) ? Collections.emptyList() : List.copyOf(services.jsParser.getFunctions(code));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.service.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Progress of one csv import, see {@link DynamicEntityCsvImportService}.
+ */
+public class CsvImportProgress {
+
+    public enum Phase {STAGING, PROMOTING, DONE, FAILED}
+
+    private final long uploadId;
+    private final String entityKey;
+    private Phase phase = Phase.STAGING;
+    private long linesStaged;
+    private long linesValid;
+    private long linesInvalid;
+    private long linesImported;
+    private final List<String> ignoredColumns = new ArrayList<>();
+    private final List<String> errors = new ArrayList<>();
+    private String failure;
+
+    CsvImportProgress(long uploadId, String entityKey) {
+        this.uploadId = uploadId;
+        this.entityKey = entityKey;
+    }
+
+    public long getUploadId() {
+        return uploadId;
+    }
+
+    public String getEntityKey() {
+        return entityKey;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public long getLinesStaged() {
+        return linesStaged;
+    }
+
+    public long getLinesValid() {
+        return linesValid;
+    }
+
+    public long getLinesInvalid() {
+        return linesInvalid;
+    }
+
+    public long getLinesImported() {
+        return linesImported;
+    }
+
+    public List<String> getIgnoredColumns() {
+        return ignoredColumns;
+    }
+
+    /**
+     * @return validation errors of the first invalid lines, "line: errors"
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    void staged(long lines, long valid, long invalid) {
+        linesStaged += lines;
+        linesValid += valid;
+        linesInvalid += invalid;
+    }
+
+    void promoting() {
+        phase = Phase.PROMOTING;
+    }
+
+    void imported(long lines) {
+        linesImported += lines;
+    }
+
+    void done() {
+        phase = Phase.DONE;
+    }
+
+    void failed(String failure) {
+        this.phase = Phase.FAILED;
+        this.failure = failure;
+    }
+
+    @Override
+    public String toString() {
+        return switch (phase) {
+            case STAGING -> String.format("Read %d lines, %d valid, %d invalid", linesStaged, linesValid, linesInvalid);
+            case PROMOTING -> String.format("Imported %d of %d valid lines", linesImported, linesValid);
+            case DONE -> String.format("Imported %d lines, %d invalid lines skipped", linesImported, linesInvalid);
+            case FAILED -> String.format("Import failed after %d lines: %s", linesStaged, failure);
+        };
+    }
+}
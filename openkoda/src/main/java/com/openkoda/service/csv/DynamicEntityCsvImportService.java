@@ -0,0 +1,356 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.service.csv;
+
+import com.openkoda.core.form.FieldDbType;
+import com.openkoda.core.form.FieldType;
+import com.openkoda.core.form.FrontendMappingDefinition;
+import com.openkoda.core.form.FrontendMappingFieldDefinition;
+import com.openkoda.core.helper.JsonHelper;
+import com.openkoda.core.security.OrganizationUser;
+import com.openkoda.core.security.UserProvider;
+import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import com.openkoda.model.common.IdFamily;
+import jakarta.inject.Inject;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.sql.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static com.openkoda.controller.common.URLConstants.LOWERCASE_NUMERIC_UNDERSCORE_REGEXP;
+import static com.openkoda.core.helper.NameHelper.toColumnName;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Imports a csv file into the table of a dynamic entity.
+ * <p>
+ * The file is parsed as a stream and staged in batches of <code>csv.import.batch-size</code> lines into
+ * {@link com.openkoda.model.DynamicEntityCsvImportRow} (one jsonb document per line) with <code>COPY FROM STDIN</code>.
+ * Each staged batch is validated with one UPDATE against the column types of the form fields
+ * ({@link FieldDbType}, see {@link #STAGING_DDL}) and committed, so the staged
+ * lines and their validation errors are visible while the file is still being read.
+ * Valid lines are then promoted with one <code>INSERT ... SELECT</code> per batch, all in one transaction, and removed
+ * from staging. Invalid lines stay staged with their errors.
+ * <p>
+ * Form field and form validators written in Java are not evaluated, only types, lengths and referenced organizations.
+ */
+@Service
+public class DynamicEntityCsvImportService implements LoggingComponentWithRequestId {
+
+    static final String STAGING_TABLE = "dynamic_entity_csv_import_row";
+
+    private static final String COPY_SQL = "COPY " + STAGING_TABLE
+            + " (upload_id, line_number, entity_key, organization_id, content) FROM STDIN WITH (FORMAT csv)";
+
+    private static final CSVFormat CSV_FORMAT = CSVFormat.DEFAULT.builder()
+            .setHeader()
+            .setSkipHeaderRecord(true)
+            .setIgnoreEmptyLines(true)
+            .setTrim(true)
+            .build();
+
+    private static final String KEY_REGEXP = "[A-Za-z0-9_]+";
+
+    /**
+     * Database objects used by the import, created on first use as the schema can also be created by Hibernate.
+     * Staged lines are written with COPY, so their ids come from the column default (a whole pooled-lo block per line).
+     * csv_import_is_valid is true when the value is empty or can be cast to the column type.
+     */
+    private static final String STAGING_DDL = """
+            ALTER TABLE %1$s ALTER COLUMN id SET DEFAULT nextval('%2$s');
+            CREATE INDEX IF NOT EXISTS idx_%1$s_upload ON %1$s USING btree (upload_id, line_number);
+            CREATE OR REPLACE FUNCTION csv_import_is_valid(val text, type_name text) RETURNS boolean AS $$
+            BEGIN
+                IF val IS NULL OR val = '' THEN
+                    RETURN true;
+                END IF;
+                CASE type_name
+                    WHEN 'bigint' THEN PERFORM val::bigint;
+                    WHEN 'numeric' THEN PERFORM val::numeric;
+                    WHEN 'boolean' THEN PERFORM val::boolean;
+                    WHEN 'date' THEN PERFORM val::date;
+                    WHEN 'timestamp with time zone' THEN PERFORM val::timestamptz;
+                    WHEN 'time with time zone' THEN PERFORM val::timetz;
+                    ELSE RETURN true;
+                END CASE;
+                RETURN true;
+            EXCEPTION WHEN others THEN
+                RETURN false;
+            END;
+            $$ LANGUAGE plpgsql STABLE;
+            """.formatted(STAGING_TABLE, IdFamily.ORGANIZATION_RELATED.sequenceName);
+
+    /**
+     * Form field mapped to a csv column
+     */
+    record Column(String key, String name, FieldType fieldType) {
+        FieldDbType dbType() {
+            return fieldType.getDbType();
+        }
+
+        boolean isVarchar() {
+            return "varchar".equals(dbType().getColumnType());
+        }
+
+        String value() {
+            return "content->>'" + key + "'";
+        }
+    }
+
+    @Inject
+    private DataSource dataSource;
+
+    @Value("${csv.import.batch-size:10000}")
+    private int batchSize;
+
+    @Value("${csv.import.max-reported-errors:100}")
+    private int maxReportedErrors;
+
+    private volatile boolean stagingReady;
+
+    /**
+     * Imports csv with a header line, header names are matched with form field names or their column names
+     *
+     * @param csv csv content, read once
+     * @param entityKey key of the frontend mapping
+     * @param tableName table of the dynamic entity
+     * @param overwrite when true, existing rows of the organization are removed in the promotion transaction
+     * @param listener notified after each staged and promoted batch
+     * @return final progress, in {@link CsvImportProgress.Phase#FAILED} phase when nothing was imported
+     */
+    public CsvImportProgress importCsv(Reader csv, String entityKey, FrontendMappingDefinition definition, String tableName,
+                                       Long organizationId, boolean overwrite, Consumer<CsvImportProgress> listener) throws SQLException, IOException {
+        debug("[importCsv] {} into {}", entityKey, tableName);
+        if (!tableName.matches(LOWERCASE_NUMERIC_UNDERSCORE_REGEXP)) {
+            throw new IllegalArgumentException("Invalid table name " + tableName);
+        }
+        try (Connection connection = dataSource.getConnection();
+             CSVParser parser = CSV_FORMAT.parse(csv)) {
+            prepareStaging(connection);
+            connection.setAutoCommit(false);
+            CsvImportProgress progress = new CsvImportProgress(nextUploadId(connection), entityKey);
+            Map<String, Column> columns = mapColumns(definition, parser.getHeaderNames(), progress);
+            try {
+                long lines = stage(connection, parser, columns, organizationId, progress, listener);
+                if (progress.getLinesValid() > 0) {
+                    promote(connection, tableName, columns.values(), organizationId, overwrite, lines, progress, listener);
+                }
+                progress.done();
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                progress.failed(ExceptionUtils.getRootCauseMessage(e));
+                error(e, "[importCsv] Import {} of {} failed", progress.getUploadId(), entityKey);
+            }
+            info("[importCsv] {} {}: {}", entityKey, progress.getUploadId(), progress);
+            listener.accept(progress);
+            return progress;
+        }
+    }
+
+    /**
+     * @return csv header to form field mapping, unknown headers are added to ignored columns of the progress
+     */
+    Map<String, Column> mapColumns(FrontendMappingDefinition definition, List<String> headers, CsvImportProgress progress) {
+        Map<String, FrontendMappingFieldDefinition> fields = new HashMap<>();
+        for (FrontendMappingFieldDefinition f : definition.getDbTypeFields()) {
+            if (f.getType() != FieldType.files && f.getName().matches(KEY_REGEXP)) {
+                fields.put(f.getName().toLowerCase(), f);
+                fields.put(toColumnName(f.getName()), f);
+            }
+        }
+        Map<String, Column> result = new LinkedHashMap<>();
+        Set<String> mapped = new HashSet<>();
+        for (String header : headers) {
+            FrontendMappingFieldDefinition f = fields.get(header.toLowerCase());
+            if (f == null || !mapped.add(f.getName())) {
+                progress.getIgnoredColumns().add(header);
+            } else {
+                result.put(header, new Column(f.getName(), toColumnName(f.getName()), f.getType()));
+            }
+        }
+        return result;
+    }
+
+    private long stage(Connection connection, CSVParser parser, Map<String, Column> columns, Long organizationId,
+                       CsvImportProgress progress, Consumer<CsvImportProgress> listener) throws SQLException, IOException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        String validateSql = validateSql(columns.values());
+        Iterator<CSVRecord> records = parser.iterator();
+        long line = 0;
+        while (records.hasNext()) {
+            long from = line + 1;
+            try (CSVPrinter printer = new CSVPrinter(new OutputStreamWriter(new PGCopyOutputStream(pgConnection, COPY_SQL, 1 << 16), UTF_8), CSVFormat.POSTGRESQL_CSV)) {
+                for (int i = 0; i < batchSize && records.hasNext(); i++) {
+                    CSVRecord record = records.next();
+                    Map<String, String> content = new LinkedHashMap<>();
+                    for (Map.Entry<String, Column> c : columns.entrySet()) {
+                        if (record.isSet(c.getKey())) {
+                            content.put(c.getValue().key(), record.get(c.getKey()));
+                        }
+                    }
+                    printer.printRecord(progress.getUploadId(), ++line, progress.getEntityKey(), organizationId, JsonHelper.to(content));
+                }
+            }
+            validate(connection, validateSql, progress, from, line);
+            connection.commit();
+            debug("[stage] {} lines staged", line);
+            listener.accept(progress);
+        }
+        return line;
+    }
+
+    private void validate(Connection connection, String validateSql, CsvImportProgress progress, long from, long to) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(validateSql)) {
+            setRange(update, 1, progress.getUploadId(), from, to);
+            update.executeUpdate();
+        }
+        try (PreparedStatement count = connection.prepareStatement("SELECT count(*) FILTER (WHERE valid), count(*) FILTER (WHERE NOT valid) FROM "
+                + STAGING_TABLE + " WHERE upload_id = ? AND line_number BETWEEN ? AND ?")) {
+            setRange(count, 1, progress.getUploadId(), from, to);
+            try (ResultSet rs = count.executeQuery()) {
+                rs.next();
+                progress.staged(to - from + 1, rs.getLong(1), rs.getLong(2));
+            }
+        }
+        int remaining = maxReportedErrors - progress.getErrors().size();
+        if (remaining <= 0 || progress.getLinesInvalid() == 0) {
+            return;
+        }
+        try (PreparedStatement errors = connection.prepareStatement("SELECT line_number, validation_errors FROM "
+                + STAGING_TABLE + " WHERE upload_id = ? AND line_number BETWEEN ? AND ? AND NOT valid ORDER BY line_number LIMIT ?")) {
+            setRange(errors, 1, progress.getUploadId(), from, to);
+            errors.setInt(4, remaining);
+            try (ResultSet rs = errors.executeQuery()) {
+                while (rs.next()) {
+                    progress.getErrors().add(rs.getLong(1) + ": " + rs.getString(2));
+                }
+            }
+        }
+    }
+
+    private void promote(Connection connection, String tableName, Collection<Column> columns, Long organizationId, boolean overwrite,
+                         long lines, CsvImportProgress progress, Consumer<CsvImportProgress> listener) throws SQLException {
+        progress.promoting();
+        listener.accept(progress);
+        if (overwrite) {
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM " + tableName + " WHERE organization_id IS NOT DISTINCT FROM ?")) {
+                delete.setObject(1, organizationId, Types.BIGINT);
+                debug("[promote] {} existing rows removed", delete.executeUpdate());
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement(promoteSql(tableName, columns))) {
+            Optional<OrganizationUser> user = UserProvider.getFromContext();
+            String userName = user.map(OrganizationUser::getUsername).orElse(null);
+            Long userId = user.map(OrganizationUser::getUserId).orElse(null);
+            for (long from = 1; from <= lines; from += batchSize) {
+                insert.setString(1, userName);
+                insert.setObject(2, userId, Types.BIGINT);
+                insert.setString(3, userName);
+                insert.setObject(4, userId, Types.BIGINT);
+                setRange(insert, 5, progress.getUploadId(), from, Math.min(lines, from + batchSize - 1));
+                progress.imported(insert.executeUpdate());
+                listener.accept(progress);
+            }
+        }
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM " + STAGING_TABLE + " WHERE upload_id = ? AND valid")) {
+            delete.setLong(1, progress.getUploadId());
+            delete.executeUpdate();
+        }
+        connection.commit();
+    }
+
+    /**
+     * One statement validating a range of staged lines, errors of all columns are joined in validation_errors
+     */
+    static String validateSql(Collection<Column> columns) {
+        String checks = columns.stream().map(DynamicEntityCsvImportService::check).collect(joining(", "));
+        return "UPDATE " + STAGING_TABLE + " r SET validation_errors = v.errors, valid = v.errors IS NULL FROM ("
+                + "SELECT id, left(NULLIF(concat_ws('; ', " + (checks.isEmpty() ? "NULL" : checks) + "), ''), 1000) AS errors FROM " + STAGING_TABLE
+                + " WHERE upload_id = ? AND line_number BETWEEN ? AND ?) v WHERE r.id = v.id";
+    }
+
+    static String check(Column c) {
+        String message = "'" + c.key() + ": ";
+        if (c.isVarchar()) {
+            String length = StringUtils.substringBetween(c.dbType().getValue(), "(", ")");
+            return "CASE WHEN char_length(" + c.value() + ") > " + length + " THEN " + message + "longer than " + length + "' END";
+        }
+        String typeCheck = "WHEN NOT csv_import_is_valid(" + c.value() + ", '" + c.dbType().getValue() + "') THEN " + message + "not a valid " + c.dbType().getValue() + "'";
+        if (c.fieldType() == FieldType.organization_select) {
+            return "CASE " + typeCheck + " WHEN NULLIF(" + c.value() + ", '') IS NOT NULL AND NOT EXISTS (SELECT 1 FROM organization o WHERE o.id = CAST(" + c.value()
+                    + " AS bigint)) THEN " + message + "organization not found' END";
+        }
+        return "CASE " + typeCheck + " END";
+    }
+
+    /**
+     * One statement promoting valid lines of a range, ids come from the organization related sequence like for entities
+     * saved with JPA (each row takes the low value of a whole pooled-lo block)
+     */
+    static String promoteSql(String tableName, Collection<Column> columns) {
+        String names = columns.stream().map(c -> ", " + c.name()).collect(joining());
+        String values = columns.stream()
+                .map(c -> ", " + (c.isVarchar() ? c.value() : "CAST(NULLIF(" + c.value() + ", '') AS " + c.dbType().getValue() + ")"))
+                .collect(joining());
+        return "INSERT INTO " + tableName + " (id, organization_id, created_by, created_by_id, modified_by, modified_by_id" + names + ") "
+                + "SELECT nextval('" + IdFamily.ORGANIZATION_RELATED.sequenceName + "'), organization_id, ?, ?, ?, ?" + values + " FROM " + STAGING_TABLE
+                + " WHERE upload_id = ? AND line_number BETWEEN ? AND ? AND valid ORDER BY line_number";
+    }
+
+    private static void setRange(PreparedStatement statement, int index, long uploadId, long from, long to) throws SQLException {
+        statement.setLong(index, uploadId);
+        statement.setLong(index + 1, from);
+        statement.setLong(index + 2, to);
+    }
+
+    private void prepareStaging(Connection connection) throws SQLException {
+        if (!stagingReady) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(STAGING_DDL);
+            }
+            stagingReady = true;
+        }
+    }
+
+    private long nextUploadId(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT nextval('" + IdFamily.GLOBAL.sequenceName + "')")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.service.dynamicentity;
+
+import com.openkoda.core.flow.LoggingComponent;
+import com.openkoda.core.form.FrontendMappingFieldDefinition;
+import net.bytebuddy.ByteBuddy;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+
+import static java.nio.file.attribute.PosixFilePermission.GROUP_WRITE;
+import static java.nio.file.attribute.PosixFilePermission.OTHERS_WRITE;
+
+/**
+ * File cache of the bytecode generated for dynamic entities and their repositories.
+ * <p>The cache file is keyed by a hash of all dynamic entity descriptors (form names, tables, db fields and their
+ * database types) together with the Openkoda build version and the version of the generator, so any change of a form
+ * definition, Openkoda or ByteBuddy makes the next boot generate the classes again. When the key matches,
+ * {@link DynamicEntityRegistrationService#buildAndLoadDynamicClasses(ClassLoader)} defines the classes from the cached
+ * bytes, without building them with ByteBuddy.</p>
+ * <p>The cached bytes are loaded into the application class loader, so the cache is off unless enabled with
+ * startup.cache.enabled=true. The directory must be owned by the user running the application and not writable by
+ * others, and every file carries a HMAC-SHA256 of its content, computed with startup.cache.secret or, when it is not
+ * set, with a random key kept in the directory. Files failing either check are ignored.</p>
+ * <p>The cache is used before the Spring context starts, so it is configured from
+ * {@link com.openkoda.JDBCApp} with startup.cache.* properties.</p>
+ */
+public class DynamicEntityClassCache implements LoggingComponent {
+
+    static final int FORMAT = 2;
+
+    static final String FILE_PREFIX = "dynamic-entities-";
+
+    static final String FILE_SUFFIX = ".bin";
+
+    static final String KEY_FILE = "startup-cache.key";
+
+    static final String MAC_ALGORITHM = "HmacSHA256";
+
+    static final Path DEFAULT_DIRECTORY = Path.of(System.getProperty("user.home"), ".openkoda", "startup-cache");
+
+    /**
+     * Bytecode of a dynamic entity and its repository, with the time suffix of their class names
+     */
+    record CachedClass(String entityKey, Long timeMillis, byte[] entityBytes, byte[] repositoryBytes) {}
+
+    private static boolean enabled = false;
+
+    private static Path directory = DEFAULT_DIRECTORY;
+
+    private static String secret;
+
+    public static void configure(boolean enabled, String directory, String secret) {
+        DynamicEntityClassCache.enabled = enabled;
+        DynamicEntityClassCache.directory = StringUtils.isNotBlank(directory) ? Path.of(directory) : DEFAULT_DIRECTORY;
+        DynamicEntityClassCache.secret = StringUtils.trimToNull(secret);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return hash of everything the generated bytecode depends on, excluding the time suffix of class names
+     */
+    static String key(Collection<DynamicEntityDescriptor> descriptors) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(FORMAT).append('\0').append(buildVersion()).append('\0').append(generatorVersion());
+        descriptors.stream().sorted(Comparator.comparing(DynamicEntityDescriptor::getEntityKey)).forEach(d -> {
+            sb.append('\n').append(d.getEntityKey()).append('\0').append(d.getTableName())
+                    .append('\0').append(d.getEntityClassName()).append('\0').append(d.getRepositoryName());
+            for (FrontendMappingFieldDefinition f : d.getFields()) {
+                sb.append('\n').append(f.getName()).append('\0').append(f.getType())
+                        .append('\0').append(f.getType() != null ? f.getType().getDbType() : null)
+                        .append('\0').append(f.sqlFormula).append('\0').append(f.referencedEntityKey);
+            }
+        });
+        return DigestUtils.sha256Hex(sb.toString());
+    }
+
+    /**
+     * @return entity key -> cached classes stored with given key, null when there is no such cache file, it can't be
+     * read, or the directory or the file content can't be trusted
+     */
+    static Map<String, CachedClass> load(String key) {
+        if (!enabled) {
+            return null;
+        }
+        Path file = directory.resolve(FILE_PREFIX + key + FILE_SUFFIX);
+        if (!Files.isReadable(file)) {
+            debugLogger.debug("[load] No cached dynamic entity classes {}", file);
+            return null;
+        }
+        try {
+            if (!isPrivate(directory) || !isPrivate(file)) {
+                debugLogger.warn("[load] Cached dynamic entity classes {} ignored, the directory or file is not owned by {} or is writable by others",
+                        file, System.getProperty("user.name"));
+                return null;
+            }
+            byte[] content = Files.readAllBytes(file);
+            Mac mac = mac(false);
+            int macLength = mac == null ? 0 : mac.getMacLength();
+            if (mac == null || content.length < macLength) {
+                return null;
+            }
+            mac.update(content, 0, content.length - macLength);
+            if (!MessageDigest.isEqual(mac.doFinal(), Arrays.copyOfRange(content, content.length - macLength, content.length))) {
+                debugLogger.warn("[load] Cached dynamic entity classes {} ignored, invalid signature", file);
+                return null;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(content, 0, content.length - macLength));
+            if (in.readInt() != FORMAT || !key.equals(in.readUTF())) {
+                return null;
+            }
+            int count = in.readInt();
+            Map<String, CachedClass> result = new HashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                String entityKey = in.readUTF();
+                Long timeMillis = in.readBoolean() ? in.readLong() : null;
+                result.put(entityKey, new CachedClass(entityKey, timeMillis, readBytes(in), readBytes(in)));
+            }
+            debugLogger.debug("[load] {} cached dynamic entity classes read from {}", count, file);
+            return result;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            debugLogger.warn("[load] Error reading cached dynamic entity classes {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes classes under given key, replacing cache files with other keys
+     */
+    static void save(String key, Collection<CachedClass> classes) {
+        if (!enabled) {
+            return;
+        }
+        Path file = directory.resolve(FILE_PREFIX + key + FILE_SUFFIX);
+        try {
+            createPrivateDirectory();
+            if (!isPrivate(directory)) {
+                debugLogger.warn("[save] Dynamic entity classes not cached, {} is not owned by {} or is writable by others",
+                        directory, System.getProperty("user.name"));
+                return;
+            }
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(content)) {
+                out.writeInt(FORMAT);
+                out.writeUTF(key);
+                out.writeInt(classes.size());
+                for (CachedClass c : classes) {
+                    out.writeUTF(c.entityKey());
+                    out.writeBoolean(c.timeMillis() != null);
+                    if (c.timeMillis() != null) {
+                        out.writeLong(c.timeMillis());
+                    }
+                    writeBytes(out, c.entityBytes());
+                    writeBytes(out, c.repositoryBytes());
+                }
+            }
+            byte[] signature = mac(true).doFinal(content.toByteArray());
+            Path tmp = createPrivateFile(FILE_PREFIX, ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                content.writeTo(out);
+                out.write(signature);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+                for (Path p : stale) {
+                    if (!p.equals(file)) {
+                        Files.deleteIfExists(p);
+                    }
+                }
+            }
+            debugLogger.debug("[save] {} dynamic entity classes written to {}", classes.size(), file);
+        } catch (IOException | GeneralSecurityException e) {
+            debugLogger.warn("[save] Error writing dynamic entity classes to {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * @return true when the path is not a symbolic link, is owned by the user running the application and, on POSIX
+     * file systems, can't be written by group or others
+     */
+    static boolean isPrivate(Path path) throws IOException {
+        if (Files.isSymbolicLink(path)) {
+            return false;
+        }
+        UserPrincipal owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+        UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+        if (!owner.equals(user)) {
+            return false;
+        }
+        PosixFileAttributeView posix = Files.getFileAttributeView(path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+        if (posix == null) {
+            return true;
+        }
+        Set<PosixFilePermission> permissions = posix.readAttributes().permissions();
+        return !permissions.contains(GROUP_WRITE) && !permissions.contains(OTHERS_WRITE);
+    }
+
+    /**
+     * @param create when true, a missing key file is created
+     * @return HMAC with startup.cache.secret or the key kept in the cache directory, null when there is no key
+     */
+    private static Mac mac(boolean create) throws IOException, GeneralSecurityException {
+        byte[] key;
+        if (secret != null) {
+            key = secret.getBytes(StandardCharsets.UTF_8);
+        } else {
+            Path keyFile = directory.resolve(KEY_FILE);
+            if (Files.exists(keyFile, LinkOption.NOFOLLOW_LINKS)) {
+                if (!isPrivate(keyFile)) {
+                    throw new GeneralSecurityException(keyFile + " is not owned by " + System.getProperty("user.name") + " or is writable by others");
+                }
+                key = Files.readAllBytes(keyFile);
+            } else if (create) {
+                key = new byte[32];
+                new SecureRandom().nextBytes(key);
+                Path tmp = createPrivateFile(KEY_FILE, ".tmp");
+                Files.write(tmp, key);
+                Files.move(tmp, keyFile, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                return null;
+            }
+        }
+        Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(new SecretKeySpec(key, MAC_ALGORITHM));
+        return mac;
+    }
+
+    private static boolean isPosix() {
+        return directory.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    private static void createPrivateDirectory() throws IOException {
+        if (isPosix()) {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } else {
+            Files.createDirectories(directory);
+        }
+    }
+
+    private static Path createPrivateFile(String prefix, String suffix) throws IOException {
+        return isPosix()
+                ? Files.createTempFile(directory, prefix, suffix, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+                : Files.createTempFile(directory, prefix, suffix);
+    }
+
+    private static String buildVersion() {
+        return String.valueOf(DynamicEntityClassCache.class.getPackage().getImplementationVersion());
+    }
+
+    private static String generatorVersion() {
+        String generatorHash = "";
+        try (InputStream in = DynamicEntityRegistrationService.class.getResourceAsStream("DynamicEntityRegistrationService.class")) {
+            if (in != null) {
+                generatorHash = DigestUtils.md5Hex(in);
+            }
+        } catch (IOException e) {
+            debugLogger.warn("[generatorVersion] Error reading generator class: {}", e.getMessage());
+        }
+        return generatorHash + "\0" + ByteBuddy.class.getPackage().getImplementationVersion();
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] result = new byte[in.readInt()];
+        in.readFully(result);
+        return result;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -91,6 +91,7 @@ public class DynamicEntityDescriptor {
 
     public void setTimeMillis(Long timeMillis) {
         this.timeMillis = timeMillis;
+        this.typeDescription = new DynamicEntityTypeDescription(PACKAGE + getSuffixedEntityClassName(), 0, null, null);
     }
 
     public String getEntityKey() {
@@ -6,6 +6,7 @@ import com.openkoda.core.flow.LoggingComponent;
 import com.openkoda.core.form.FieldType;
 import com.openkoda.core.form.FrontendMappingDefinition;
 import com.openkoda.core.form.FrontendMappingFieldDefinition;
+import com.openkoda.core.repository.pagination.CountModeJpaRepository;
 import com.openkoda.core.service.form.FormService;
 import com.openkoda.dto.CanonicalObject;
 import com.openkoda.model.common.OpenkodaEntity;
@@ -69,11 +70,13 @@ public class DynamicEntityRegistrationService implements LoggingComponent {
         if(!proceed){
             return;
         }
+        JpaRepositoryFactory repositoryFactory = new JpaRepositoryFactory(em);
+        repositoryFactory.setRepositoryBaseClass(CountModeJpaRepository.class);
         for(Map.Entry<String, Tuple2<String, Class<? extends SecureRepository<? extends OpenkodaEntity>>>> entry : dynamicRepositoryClasses.entrySet()) {
             String tableName = entry.getKey();
             Class<? extends SecureRepository<? extends OpenkodaEntity>> repositoryClass = entry.getValue().getT2();
 
-            SearchableRepositories.registerSearchableRepository(tableName, new JpaRepositoryFactory(em).getRepository(repositoryClass));
+            SearchableRepositories.registerSearchableRepository(tableName, repositoryFactory.getRepository(repositoryClass));
         }
     }
 
@@ -82,7 +85,9 @@ public class DynamicEntityRegistrationService implements LoggingComponent {
      */
     public static int generateDynamicEntityDescriptors(List<Form> forms, Long timeMillis) {
         debugLogger.debug("[generateDynamicEntityDescriptors] forms to process: {}", forms.size());
-        return generateDynamicEntityDescriptors(forms, forms.stream().collect(toMap(Form::getName, FormService::getFrontendMappingDefinition)), timeMillis);
+        Map<String, FrontendMappingDefinition> definitions = forms.stream().collect(toMap(Form::getName, FormService::getFrontendMappingDefinition));
+        FormService.addPrecompiledDefinitions(forms, definitions);
+        return generateDynamicEntityDescriptors(forms, definitions, timeMillis);
     }
 
     public static int generateDynamicEntityDescriptors(List<Form> forms, Map<String, FrontendMappingDefinition> frontendMappingDefinitions, Long timeMillis) {
@@ -101,18 +106,30 @@ public class DynamicEntityRegistrationService implements LoggingComponent {
         return generatedEntities;
     }
 
+    /**
+     * Builds and loads classes of dynamic entities and their repositories for all loadable descriptors.
+     * On the first build in this JVM the classes are defined from {@link DynamicEntityClassCache} when it holds bytecode
+     * generated for the same descriptors, newly generated classes are written to the cache for the next boot.
+     */
     public static void buildAndLoadDynamicClasses(ClassLoader classLoader) throws IOException, URISyntaxException {
         debugLogger.debug("[buildAndLoadDynamicClasses]");
+        List<DynamicEntityDescriptor> descriptors = DynamicEntityDescriptorFactory.loadableInstances();
+        String cacheKey = DynamicEntityClassCache.isEnabled() ? DynamicEntityClassCache.key(descriptors) : null;
+        if (cacheKey != null && dynamicEntityClasses.isEmpty() && loadCachedDynamicClasses(cacheKey, descriptors, classLoader)) {
+            return;
+        }
+
         Map<String, Tuple4<DynamicType.Unloaded<OpenkodaEntity>, String, String, List<String>>> unloadedClasses = new HashMap<>();
+        List<DynamicEntityClassCache.CachedClass> generatedClasses = new ArrayList<>(descriptors.size());
 
 //        create unloaded types
-        for (DynamicEntityDescriptor descriptor : DynamicEntityDescriptorFactory.loadableInstances()) {
+        for (DynamicEntityDescriptor descriptor : descriptors) {
             Tuple4<DynamicType.Unloaded<OpenkodaEntity>, String, String, List<String>> dynamicEntity = createDynamicEntityType(descriptor.getSuffixedEntityClassName(), descriptor.getTableName(), descriptor.getFields());
             unloadedClasses.put(descriptor.getEntityKey(), dynamicEntity);
         }
 
 //        load all dynamic types
-        for (DynamicEntityDescriptor descriptor : DynamicEntityDescriptorFactory.loadableInstances()) {
+        for (DynamicEntityDescriptor descriptor : descriptors) {
             Tuple4<DynamicType.Unloaded<OpenkodaEntity>, String, String, List<String>> dynamicClass = unloadedClasses.get(descriptor.getEntityKey());
             DynamicType.Unloaded<OpenkodaEntity> t1 = dynamicClass.getT1();
             for(String type : dynamicClass.getT4()) {
@@ -126,19 +143,72 @@ public class DynamicEntityRegistrationService implements LoggingComponent {
         }
 
 //        create and load repositories for all dynamic types
-        for (DynamicEntityDescriptor descriptor : DynamicEntityDescriptorFactory.loadableInstances()) {
+        for (DynamicEntityDescriptor descriptor : descriptors) {
             Tuple4<DynamicType.Unloaded<OpenkodaEntity>, String, String, List<String>> dynamicEntityTuple = unloadedClasses.get(descriptor.getEntityKey());
-            Class<? extends SecureRepository<? extends OpenkodaEntity>> dynamicRepository = createAndLoadDynamicRepository(
+            DynamicType.Unloaded<?> repositoryType = createDynamicRepositoryType(
                     dynamicEntityClasses.get(descriptor.getEntityKey()), //generated entity class
                     descriptor.getEntityKey(),
                     dynamicEntityTuple.getT2(), //description formula
                     dynamicEntityTuple.getT3(), //search index formula
-                    descriptor.getSuffixedRepositoryName(),
-                    classLoader);
+                    descriptor.getSuffixedRepositoryName());
+            Class<?> repositoryClass = repositoryType.load(classLoader, INJECTION).getLoaded();
+            Class<? extends SecureRepository<? extends OpenkodaEntity>> dynamicRepository = (Class<? extends SecureRepository<? extends OpenkodaEntity>>) repositoryClass;
             dynamicRepositoryClasses.put(descriptor.getTableName(), Tuples.of(descriptor.getSuffixedEntityClassName().toLowerCase(), dynamicRepository));
             descriptor.setLoaded(true);
+            generatedClasses.add(new DynamicEntityClassCache.CachedClass(descriptor.getEntityKey(), descriptor.getTimeMillis(),
+                    dynamicEntityTuple.getT1().getBytes(), repositoryType.getBytes()));
             debugLogger.debug("[buildAndLoadDynamicClasses] loaded repository class for key: {}", descriptor.getEntityKey());
         }
+
+        if (cacheKey != null) {
+            DynamicEntityClassCache.save(cacheKey, generatedClasses);
+        }
+    }
+
+    /**
+     * Defines entity and repository classes of the descriptors from bytecode cached by a previous boot.
+     * Descriptors take over the time suffix of the cached class names.
+     * @return false when the cache does not have classes for all descriptors or they failed to load
+     */
+    private static boolean loadCachedDynamicClasses(String cacheKey, List<DynamicEntityDescriptor> descriptors, ClassLoader classLoader) {
+        Map<String, DynamicEntityClassCache.CachedClass> cached = DynamicEntityClassCache.load(cacheKey);
+        if (cached == null || !descriptors.stream().allMatch(d -> cached.containsKey(d.getEntityKey()))) {
+            return false;
+        }
+        Map<DynamicEntityDescriptor, Long> originalTimeMillis = new HashMap<>();
+        try {
+            Map<TypeDescription, byte[]> entityTypes = new LinkedHashMap<>();
+            Map<TypeDescription, byte[]> repositoryTypes = new LinkedHashMap<>();
+            for (DynamicEntityDescriptor descriptor : descriptors) {
+                DynamicEntityClassCache.CachedClass c = cached.get(descriptor.getEntityKey());
+                originalTimeMillis.put(descriptor, descriptor.getTimeMillis());
+                descriptor.setTimeMillis(c.timeMillis());
+                entityTypes.put(descriptor.getTypeDescription(), c.entityBytes());
+                repositoryTypes.put(new TypeDescription.Latent(PACKAGE + descriptor.getSuffixedRepositoryName(), 0, null, Collections.emptyList()), c.repositoryBytes());
+            }
+            Map<TypeDescription, Class<?>> entities = INJECTION.load(classLoader, entityTypes);
+            Map<TypeDescription, Class<?>> repositories = INJECTION.load(classLoader, repositoryTypes);
+            for (DynamicEntityDescriptor descriptor : descriptors) {
+                dynamicEntityClasses.put(descriptor.getEntityKey(), (Class<? extends OpenkodaEntity>) entities.get(descriptor.getTypeDescription()));
+            }
+            for (Map.Entry<TypeDescription, Class<?>> e : repositories.entrySet()) {
+                DynamicEntityDescriptor descriptor = descriptors.stream()
+                        .filter(d -> (PACKAGE + d.getSuffixedRepositoryName()).equals(e.getKey().getName()))
+                        .findFirst().orElseThrow();
+                dynamicRepositoryClasses.put(descriptor.getTableName(), Tuples.of(descriptor.getSuffixedEntityClassName().toLowerCase(),
+                        (Class<? extends SecureRepository<? extends OpenkodaEntity>>) e.getValue()));
+                descriptor.setLoaded(true);
+            }
+            debugLogger.debug("[loadCachedDynamicClasses] {} dynamic entities loaded from cache", descriptors.size());
+            return true;
+        } catch (RuntimeException | LinkageError e) {
+            debugLogger.warn("[loadCachedDynamicClasses] Cached classes not loaded, generating them: {}", e.getMessage());
+            originalTimeMillis.forEach(DynamicEntityDescriptor::setTimeMillis);
+            dynamicEntityClasses.clear();
+            dynamicRepositoryClasses.clear();
+            descriptors.forEach(d -> d.setLoaded(false));
+            return false;
+        }
     }
 
     private static <O extends OpenkodaEntity> Tuple4<DynamicType.Unloaded<OpenkodaEntity>, String, String, List<String>> createDynamicEntityType(
@@ -284,13 +354,12 @@ public class DynamicEntityRegistrationService implements LoggingComponent {
         return Tuples.of(entityType, String.format("(''||id%s)", descriptionFormula), String.format("(''||'id:'||id%s)", searchIndexFormula),includeTypes);
     }
 
-    private static <T extends OpenkodaEntity> Class<SecureRepository<T>> createAndLoadDynamicRepository(Class<T> entity,
-                                                                                                        String entityKey,
-                                                                                                        String entityDescriptionFormula,
-                                                                                                        String searchIndexFormula,
-                                                                                                        String repositoryName,
-                                                                                                        ClassLoader cl) {
-        debugLogger.debug("[createAndLoadDynamicRepository] {}", entityKey);
+    private static <T extends OpenkodaEntity> DynamicType.Unloaded<?> createDynamicRepositoryType(Class<T> entity,
+                                                                                                 String entityKey,
+                                                                                                 String entityDescriptionFormula,
+                                                                                                 String searchIndexFormula,
+                                                                                                 String repositoryName) {
+        debugLogger.debug("[createDynamicRepositoryType] {}", entityKey);
 
         AnnotationDescription repositoryAnnotation = AnnotationDescription.Builder.ofType(Repository.class)
                 .build();
@@ -305,19 +374,13 @@ public class DynamicEntityRegistrationService implements LoggingComponent {
                 .parameterizedType(SecureRepository.class, entity)
                 .build();
 
-        DynamicType.Unloaded<?> repositoryType = new ByteBuddy()
+        return new ByteBuddy()
                 .with(SKIP_DEFAULTS)
                 .makeInterface()
                 .implement(secureRepositoryType)
                 .annotateType(repositoryAnnotation, searchableRepositoryAnnotation)
                 .name(PACKAGE + repositoryName)
                 .make();
-
-        Class<?> repo = repositoryType
-                .load(cl, INJECTION)
-                .getLoaded();
-
-        return (Class<SecureRepository<T>>) repo;
     }
     
     public interface CanonicalObjectInterceptor extends CanonicalObject {
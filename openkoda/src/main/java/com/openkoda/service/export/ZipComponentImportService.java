@@ -135,6 +135,7 @@ public class ZipComponentImportService extends YamlComponentImportService {
                 repositories.unsecure.form.deleteByModule(openkodaModule);
                 repositories.unsecure.eventListener.deleteByModule(openkodaModule);
                 repositories.unsecure.scheduler.deleteByModule(openkodaModule);
+                repositories.unsecure.serverJs.findByModule(openkodaModule).forEach(componentEntity -> services.webendpointAutocompleteIndex.removeClusterAware(componentEntity.getId()));
                 repositories.unsecure.serverJs.deleteByModule(openkodaModule);
             } else {
                 openkodaModule = new OpenkodaModule(module);
@@ -136,6 +136,23 @@ public class NotificationService extends ComponentProvider {
         return n;
     }
 
+    /**
+     * Creates the same notification for each of the users, inserted in JDBC batches with {@link com.openkoda.core.service.BulkPersistService}
+     * @return number of created notifications
+     */
+    public int createUserNotifications(Notification.NotificationType type, String message, String requiredPrivilege, Collection<Long> userIds, String attachmentURL) {
+        debug("[createUserNotifications] {} users", userIds.size());
+        List<Notification> notifications = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            Notification notification = new Notification(message, type, requiredPrivilege, userId);
+            notification.setAttachmentURL(attachmentURL);
+            notifications.add(notification);
+        }
+        int result = services.bulkPersist.persistAll(notifications);
+        notifications.forEach(n -> services.applicationEvent.emitEvent(ApplicationEvent.NOTIFICATION_CREATED, new NotificationDto(n)));
+        return result;
+    }
+
     public boolean markAsRead(String unreadNotifications, Long userId) {
         debug("[markAsRead] userId: {}", userId);
         if (StringUtils.isNotBlank(unreadNotifications)) {
@@ -157,7 +174,7 @@ public class NotificationService extends ComponentProvider {
                 orgsId = Set.of(user.getOrganizationIds());
             }
             List<Notification> allUnreadForUser = repositories.secure.notification.search(allUnreadForUser(userId, orgsId));
-            repositories.unsecure.readNotification.saveAll(allUnreadForUser.stream().map(notification -> new ReadNotification(userId, notification.getId())).collect(Collectors.toSet()));
+            services.bulkPersist.persistAll(allUnreadForUser.stream().map(notification -> new ReadNotification(userId, notification.getId())).toList());
             return true;
         }
         return false;
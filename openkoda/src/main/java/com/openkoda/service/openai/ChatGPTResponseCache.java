@@ -0,0 +1,156 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.service.openai;
+
+import com.google.gson.annotations.Expose;
+import com.openkoda.core.helper.JsonHelper;
+import com.openkoda.core.tracker.LoggingComponentWithRequestId;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>GPT responses keyed by a hash of the conversation's user prompts.</p>
+ * <p>Responses are kept in memory and appended to the cache file as JSON lines, one line per response. Appends run on
+ * a single writer thread, so the thread that got the response never waits for the disk. The file in the previous
+ * format (one JSON document with all prompts and responses) is converted on load.</p>
+ */
+class ChatGPTResponseCache implements LoggingComponentWithRequestId {
+
+    private record Entry(@Expose String key, @Expose String response) {}
+
+    private record LegacyConversationCache(@Expose Map<String, String> prompts, @Expose Map<String, String> responses) {}
+
+    private final Path file;
+
+    private final Map<String, String> responses = new ConcurrentHashMap<>();
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("chat-gpt-cache-writer-"));
+
+    private BufferedWriter out;
+
+    ChatGPTResponseCache(String fileLocation) {
+        this.file = Path.of(fileLocation);
+    }
+
+    /**
+     * @return cache key of the prompt, for the legacy format it equals the hash of its concatenated prompts
+     */
+    static String key(String concatenatedPrompts) {
+        return DigestUtils.sha256Hex(concatenatedPrompts);
+    }
+
+    void load() {
+        if (!Files.exists(file)) {
+            debug("[load] No cache file {}", file);
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (!lines.isEmpty() && lines.get(0).startsWith("{\"prompts\"")) {
+                migrateLegacy(String.join("\n", lines));
+                return;
+            }
+            for (String line : lines) {
+                if (StringUtils.isNotBlank(line)) {
+                    Entry e = JsonHelper.from(line, Entry.class);
+                    responses.put(e.key(), e.response());
+                }
+            }
+            debug("[load] Read {} responses", responses.size());
+        } catch (Exception e) {
+            warn("[load] Error reading cache file {}: {}", file, e.getMessage());
+        }
+    }
+
+    String get(String key) {
+        return responses.get(key);
+    }
+
+    void put(String key, String response) {
+        if (responses.putIfAbsent(key, response) == null) {
+            writer.execute(() -> append(new Entry(key, response)));
+        }
+    }
+
+    int size() {
+        return responses.size();
+    }
+
+    void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+            if (out != null) {
+                out.close();
+            }
+        } catch (Exception e) {
+            warn("[close] Error closing cache file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void migrateLegacy(String json) throws IOException {
+        LegacyConversationCache legacy = JsonHelper.from(json, LegacyConversationCache.class);
+        legacy.prompts().forEach((prompts, responseKey) -> {
+            String response = legacy.responses().get(responseKey);
+            if (response != null) {
+                responses.put(key(prompts), response);
+            }
+        });
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> e : responses.entrySet()) {
+                w.write(JsonHelper.to(new Entry(e.getKey(), e.getValue())));
+                w.newLine();
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        info("[migrateLegacy] Converted {} cached responses to the append-only format", responses.size());
+    }
+
+    private void append(Entry entry) {
+        try {
+            if (out == null) {
+                out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            out.write(JsonHelper.to(entry));
+            out.newLine();
+            out.flush();
+        } catch (IOException e) {
+            error("[append] Error writing conversation cache", e);
+        }
+    }
+}
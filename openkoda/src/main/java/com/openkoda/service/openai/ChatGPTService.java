@@ -1,8 +1,8 @@
 package com.openkoda.service.openai;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.gson.annotations.Expose;
-import com.openkoda.core.helper.JsonHelper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.openkoda.core.security.OrganizationUser;
 import com.openkoda.core.security.UserProvider;
 import com.openkoda.core.service.AuditService;
@@ -14,28 +14,39 @@ import com.theokanning.openai.completion.chat.ChatCompletionRequest;
 import com.theokanning.openai.completion.chat.ChatMessage;
 import com.theokanning.openai.service.OpenAiService;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
 import okhttp3.OkHttpClient;
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import retrofit2.Retrofit;
 
-import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.*;
 
 import static com.theokanning.openai.service.OpenAiService.*;
 
+/**
+ * <p>Sends conversations to GPT and delivers responses to a WebSocket channel.</p>
+ * <p>Conversations are kept in a bounded store and expire after {@code chat.gpt.conversations.ttl.minutes} of
+ * inactivity. Requests run on a bounded executor, each user may have at most {@code chat.gpt.user.max-concurrent}
+ * requests in progress. With {@code chat.gpt.stream.enabled} the response is streamed and the text received so far
+ * is sent to the channel as {@code partial} messages before the final {@code response} message.</p>
+ */
 @Service
 public class ChatGPTService implements LoggingComponentWithRequestId {
 
     public static final int MAX_GPT_REQUEST_LENGTH = 8000;
-    private static OpenAiService openAiService;
+    private static final String USER_CHANNEL = "/queue/ai";
+    private final OpenAiService openAiService;
 
     @Inject
     WebsocketService websocketService;
@@ -43,42 +54,71 @@ public class ChatGPTService implements LoggingComponentWithRequestId {
     ChatGPTPromptService promptService;
     @Value("${chat.gpt.prompt.cacheFile}") String cacheFileLocation;
     @Value("${chat.gpt.prompt.cacheEnabled}") Boolean cacheGPTMessages;
+    @Value("${chat.gpt.conversations.max:1000}") long maxConversations;
+    @Value("${chat.gpt.conversations.ttl.minutes:120}") long conversationTtlMinutes;
+    @Value("${chat.gpt.threads:5}") int threads;
+    @Value("${chat.gpt.queue.capacity:100}") int queueCapacity;
+    @Value("${chat.gpt.user.max-concurrent:2}") int maxConcurrentPerUser;
+    @Value("${chat.gpt.stream.enabled:false}") boolean streamEnabled;
+    @Value("${chat.gpt.stream.interval-ms:250}") long streamIntervalMillis;
 
     private static final int REQUEST_TIMEOUT_SECONDS = 120;
-    private static ExecutorService executors = Executors.newFixedThreadPool(5);
+    private ThreadPoolExecutor executor;
 
-    private static final Map<String /* conversationId */, Conversation /* conversation */> messageMap = new HashMap<>();
+    private Cache<String /* conversationId */, Conversation /* conversation */> conversations;
 
+    /**
+     * Only users with requests in progress have an entry, it is removed when their last request completes
+     */
+    private final Map<Long /* userId */, Integer /* requests in progress */> userRequests = new ConcurrentHashMap<>();
 
-    private record ConversationCache(
-            @Expose Map<String /* concatenatedUserPrompts */, String /* conversationId */> prompts,
-            @Expose Map<String /* conversationId */, String /* response */> responses
-            ){};
-    private record Message(@Expose String role, @Expose String content){};
-    private static ConversationCache conversationCache;
+    private ChatGPTResponseCache responseCache;
 
-    public record Conversation(@Expose String id, @Expose String userEmail, @Expose Long userId, @Expose String model, @Expose Double temperature, @Expose ArrayList<Message> messages){
-        private void addSystemMessage(String systemMessage) {
+    private record Message(String role, String content){};
+
+    public static class Conversation {
+        private final String id;
+        private final String userEmail;
+        private final Long userId;
+        private final String model;
+        private final Double temperature;
+        private final List<Message> messages = new ArrayList<>();
+        /** digest of "prompt|||" for every user prompt so far, the cache key only needs the new prompt appended */
+        private final MessageDigest userPromptsDigest;
+
+        public Conversation(String id, String userEmail, Long userId, String model, Double temperature, String systemMessage) {
+            this.id = id;
+            this.userEmail = userEmail;
+            this.userId = userId;
+            this.model = model;
+            this.temperature = temperature;
+            try {
+                this.userPromptsDigest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
             messages.add(new Message("system", systemMessage));
         }
-        public void addMessages(String userMessage, String assistantMessage) {
+
+        public synchronized void addMessages(String userMessage, String assistantMessage) {
             messages.add(new Message("user", userMessage));
             messages.add(new Message("assistant", assistantMessage));
+            userPromptsDigest.update((userMessage + "|||").getBytes(StandardCharsets.UTF_8));
         }
 
-        public String getCacheKey(String message) {
-            StringBuffer sb = new StringBuffer();
-            for (Message m: messages) {
-                if ("user".equals(m.role)) {
-                    sb.append(m.content);
-                    sb.append("|||");
-                }
+        /**
+         * @return hash of all user prompts of the conversation followed by the given message
+         */
+        public synchronized String getCacheKey(String message) {
+            try {
+                MessageDigest digest = (MessageDigest) userPromptsDigest.clone();
+                return Hex.encodeHexString(digest.digest(message.getBytes(StandardCharsets.UTF_8)));
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(e);
             }
-            sb.append(message);
-            return sb.toString();
         }
 
-        public String getLastAssistantMessage() {
+        public synchronized String getLastAssistantMessage() {
             Message m = messages.get(messages.size() - 1);
             if ("assistant".equals(m.role)) {
                 return m.content;
@@ -86,93 +126,140 @@ public class ChatGPTService implements LoggingComponentWithRequestId {
             return null;
         }
 
-        public Conversation(String id, String userEmail, Long userId, String model, Double temperature, String systemMessage) {
-            this( id, userEmail, userId, model, temperature, new ArrayList<>());
-            addSystemMessage(systemMessage);
+        synchronized List<Message> getMessages() {
+            return new ArrayList<>(messages);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getUserEmail() {
+            return userEmail;
+        }
+
+        public Long getUserId() {
+            return userId;
         }
     }
 
     @Autowired
-    public ChatGPTService(@Value("${chat.gpt.api.key:apiKey}") String gptApiKey) {
+    public ChatGPTService(@Value("${chat.gpt.api.key:apiKey}") String gptApiKey, @Value("${chat.gpt.api.url:https://api.openai.com/}") String gptApiUrl) {
         ObjectMapper mapper = defaultObjectMapper();
         OkHttpClient client = defaultClient(gptApiKey, Duration.ofSeconds(REQUEST_TIMEOUT_SECONDS));
-        Retrofit retrofit = defaultRetrofit(client, mapper);
+        Retrofit retrofit = defaultRetrofit(client, mapper).newBuilder().baseUrl(gptApiUrl).build();
 
         OpenAiApi api = retrofit.create(OpenAiApi.class);
-        openAiService = new OpenAiService(api);
+        openAiService = new OpenAiService(api, client.dispatcher().executorService());
     }
 
     public String sendMessageToGPT(String promptFileName, String message, String model, String temperature, String channelName, String ... repositoryNames) {
         debug("[sendMessageToGPT-1] {} {} {} {}", message, model, temperature, repositoryNames);
         String systemPrompt = promptService.getPromptFromFileForEntities(promptFileName, repositoryNames);
         OrganizationUser ou = UserProvider.getFromContext().orElseThrow(RuntimeException::new);
-        String id = UUID.randomUUID().toString();
-        debug("[sendMessageToGPT-1] user {} conversation {}", ou.getUser().getEmail(), id);
-        Conversation c = new Conversation(id, ou.getUser().getEmail(), ou.getUserId(), model, Double.parseDouble(temperature), systemPrompt);
-        messageMap.put(id, c);
+        String id = startConversation(ou.getUser().getEmail(), ou.getUserId(), systemPrompt, model, temperature);
         return sendMessageToGPT(message, id, channelName);
     }
 
     public String sendInitMessageToGPT(String systemPrompt, String message, String model, String temperature, String channelName) {
         debug("[sendInitMessageToGPT] {} {} {} {}", message, model, temperature);
         OrganizationUser ou = UserProvider.getFromContext().orElseThrow(RuntimeException::new);
-        String id = UUID.randomUUID().toString();
-        debug("[sendInitMessageToGPT] user {} conversation {}", ou.getUser().getEmail(), id);
-        Conversation c = new Conversation(id, ou.getUser().getEmail(), ou.getUserId(), model, Double.parseDouble(temperature), systemPrompt);
-        messageMap.put(id, c);
+        String id = startConversation(ou.getUser().getEmail(), ou.getUserId(), systemPrompt, model, temperature);
         return sendMessageToGPT(message, id, channelName);
     }
 
+    /**
+     * @return id of the new conversation
+     */
+    public String startConversation(String userEmail, Long userId, String systemPrompt, String model, String temperature) {
+        String id = UUID.randomUUID().toString();
+        debug("[startConversation] user {} conversation {}", userEmail, id);
+        conversations.put(id, new Conversation(id, userEmail, userId, model, Double.parseDouble(temperature), systemPrompt));
+        return id;
+    }
+
+    public Conversation getConversation(String conversationId) {
+        return conversations.getIfPresent(conversationId);
+    }
+
+    /**
+     * Queues the message, the response is sent to the channel (or to user's /queue/ai when no channel given)
+     *
+     * @throws RejectedExecutionException when the user has too many requests in progress or the queue is full
+     */
     public String sendMessageToGPT(String message, String conversationId, String channelName) {
         debug("[sendMessageToGPT-2] {} {}", message, conversationId);
-        Conversation c = messageMap.get(conversationId);
-        executors.submit(() -> {
-            debug("[sendMessageToGPT Task] {} {}", conversationId, message);
-            String responseContent = null;
-            String cacheKey = null;
-            //trying to get conversation from the cache
-            if(cacheGPTMessages) {
-                cacheKey = c.getCacheKey(message);
-                String responseKey = conversationCache.prompts.get(cacheKey);
-                responseContent = responseKey == null ? null : conversationCache.responses.get(responseKey);
-            }
-            boolean cacheHit = responseContent != null;
-            if (cacheHit) {
-                debug("[sendMessageToGPT Task] found in cache {} {}", conversationId, message);
-                c.addMessages(message, responseContent);
-            } else {
-                debug("[sendMessageToGPT Task] not found in cache. Sending request to GPT {} {}", conversationId, message);
-                responseContent = sendMessage(buildCompletionRequest(message, c));
-                debug("[sendMessageToGPT Task] entering synchronized block {} {}", conversationId, message);
-                synchronized (ChatGPTService.class) {
-                    debug("[sendMessageToGPT Task] entered synchronized block {} {}", conversationId, message);
-                    c.addMessages(message, responseContent);
-                    if(cacheGPTMessages) {
-                        String newResponseKey = conversationCache.responses.size() + "";
-                        conversationCache.prompts.put(cacheKey, newResponseKey);
-                        conversationCache.responses.put(newResponseKey, responseContent);
-                        try {
-                            FileUtils.write(new File(cacheFileLocation), JsonHelper.to(conversationCache), "UTF-8");
-                            debug("[sendMessageToGPT Task] updated cache file {} {}", conversationId, message);
-                        } catch (Exception e) {
-                            error("Error writing conversation cache", e);
-                        }
-                    }
+        Conversation c = conversations.getIfPresent(conversationId);
+        if (c == null) {
+            throw new IllegalArgumentException("Conversation " + conversationId + " not found or expired");
+        }
+        Long userId = Objects.requireNonNullElse(c.userId, 0L);
+        if (!acquireUserRequest(userId)) {
+            throw new RejectedExecutionException("Too many GPT requests in progress for user " + c.userId);
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    processMessage(message, c, channelName);
+                } catch (Exception e) {
+                    error(e, "[sendMessageToGPT Task] conversation {} failed", conversationId);
+                } finally {
+                    releaseUserRequest(userId);
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            releaseUserRequest(userId);
+            throw e;
+        }
+        return conversationId;
+    }
 
-                debug("[sendMessageToGPT Task] create audit log {} {}", conversationId, message);
-                AuditService.createSimpleInfoAudit("GPT conversation id: " + conversationId, c.messages.toString());
-            }
-            debug("[sendMessageToGPT Task] sending response to websocket {} {}", conversationId, message);
-            if(StringUtils.isNotEmpty(channelName)) {
-                websocketService.sendToChannel(channelName, Map.of("conversationId", conversationId, "response", responseContent));
-            } else {
-                websocketService.sendToUserChannel(c.userEmail, "/queue/ai", Map.of("conversationId", conversationId, "response", responseContent));
+    /**
+     * @return false when the user has {@code chat.gpt.user.max-concurrent} requests in progress already
+     */
+    private boolean acquireUserRequest(Long userId) {
+        boolean[] acquired = {false};
+        userRequests.compute(userId, (k, inProgress) -> {
+            int current = inProgress == null ? 0 : inProgress;
+            acquired[0] = current < maxConcurrentPerUser;
+            return acquired[0] ? Integer.valueOf(current + 1) : inProgress;
+        });
+        return acquired[0];
+    }
+
+    private void releaseUserRequest(Long userId) {
+        userRequests.computeIfPresent(userId, (k, inProgress) -> inProgress > 1 ? inProgress - 1 : null);
+    }
+
+    private void processMessage(String message, Conversation c, String channelName) {
+        debug("[sendMessageToGPT Task] {} {}", c.id, message);
+        String cacheKey = cacheGPTMessages ? c.getCacheKey(message) : null;
+        String responseContent = cacheKey == null ? null : responseCache.get(cacheKey);
+        if (responseContent != null) {
+            debug("[sendMessageToGPT Task] found in cache {} {}", c.id, message);
+            c.addMessages(message, responseContent);
+        } else {
+            debug("[sendMessageToGPT Task] not found in cache. Sending request to GPT {} {}", c.id, message);
+            ChatCompletionRequest request = buildCompletionRequest(message, c);
+            responseContent = streamEnabled ? streamMessage(request, c, channelName) : sendMessage(request);
+            c.addMessages(message, responseContent);
+            if (cacheKey != null) {
+                responseCache.put(cacheKey, responseContent);
             }
-            debug("[sendMessageToGPT Task] exiting {} {}", conversationId, message);
+            debug("[sendMessageToGPT Task] create audit log {} {}", c.id, message);
+            AuditService.createSimpleInfoAudit("GPT conversation id: " + c.id, c.getMessages().toString());
+        }
+        debug("[sendMessageToGPT Task] sending response to websocket {} {}", c.id, message);
+        send(c, channelName, Map.of("conversationId", c.id, "response", responseContent));
+        debug("[sendMessageToGPT Task] exiting {} {}", c.id, message);
+    }
 
-        });
-        return conversationId;
+    private void send(Conversation c, String channelName, Map<String, String> payload) {
+        if(StringUtils.isNotEmpty(channelName)) {
+            websocketService.sendToChannel(channelName, payload);
+        } else {
+            websocketService.sendToUserChannel(c.userEmail, USER_CHANNEL, payload);
+        }
     }
 
     private String sendMessage(ChatCompletionRequest chatCompletionRequest) {
@@ -185,6 +272,39 @@ public class ChatGPTService implements LoggingComponentWithRequestId {
         }
     }
 
+    /**
+     * Streams the completion, the text received so far is sent to the channel at most every {@code streamIntervalMillis}
+     */
+    private String streamMessage(ChatCompletionRequest request, Conversation c, String channelName) {
+        debug("[streamMessage] {}", request);
+        long timestamp = System.currentTimeMillis();
+        StringBuilder content = new StringBuilder();
+        long[] lastSent = {timestamp};
+        request.setStream(true);
+        try {
+            openAiService.streamChatCompletion(request).blockingForEach(chunk -> {
+                if (chunk.getChoices() == null || chunk.getChoices().isEmpty() || chunk.getChoices().get(0).getMessage() == null) {
+                    return;
+                }
+                String delta = chunk.getChoices().get(0).getMessage().getContent();
+                if (StringUtils.isEmpty(delta)) {
+                    return;
+                }
+                content.append(delta);
+                long now = System.currentTimeMillis();
+                if (now - lastSent[0] >= streamIntervalMillis) {
+                    lastSent[0] = now;
+                    send(c, channelName, Map.of("conversationId", c.id, "partial", content.toString()));
+                }
+            });
+        } catch (Exception e) {
+            error("Streamed completion request failed in {} seconds. Reason: {}", ((System.currentTimeMillis() - timestamp) / 1000), e.getMessage());
+            throw new RuntimeException("Error occurred, try to resend your message.");
+        }
+        debug("Streamed completion request completed in {} seconds", ((System.currentTimeMillis() - timestamp) / 1000));
+        return content.toString();
+    }
+
     public Optional<ChatCompletionChoice> sendCompletionRequest(ChatCompletionRequest request) {
         long timestamp = System.currentTimeMillis();
         try {
@@ -202,8 +322,9 @@ public class ChatGPTService implements LoggingComponentWithRequestId {
 
     private ChatCompletionRequest buildCompletionRequest(String message, Conversation c) {
         ChatMessage newUserMessage = new ChatMessage("user", message);
-        List<ChatMessage> messages = new ArrayList<>(c.messages.size() + 1);
-        c.messages.forEach(a -> messages.add(new ChatMessage(a.role, a.content)));
+        List<Message> history = c.getMessages();
+        List<ChatMessage> messages = new ArrayList<>(history.size() + 1);
+        history.forEach(a -> messages.add(new ChatMessage(a.role, a.content)));
         messages.add(newUserMessage);
 
         return ChatCompletionRequest.builder()
@@ -215,15 +336,23 @@ public class ChatGPTService implements LoggingComponentWithRequestId {
     }
 
     @PostConstruct void init() {
+        conversations = CacheBuilder.newBuilder()
+                .maximumSize(maxConversations)
+                .expireAfterAccess(conversationTtlMinutes, TimeUnit.MINUTES)
+                .build();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("chat-gpt-"), new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
         if(cacheGPTMessages) {
-            try {
-                String cache = FileUtils.readFileToString(new File(cacheFileLocation), "UTF-8");
-                conversationCache = JsonHelper.from(cache, ConversationCache.class);
-                debug("Read {} conversations", conversationCache.prompts.size());
-            } catch (Exception e) {
-                conversationCache = new ConversationCache(new HashMap<>(), new HashMap<>());
-                warn("Error reading cache file {}. Don't worry, it may just not exist.", cacheFileLocation);
-            }
+            responseCache = new ChatGPTResponseCache(cacheFileLocation);
+            responseCache.load();
+        }
+    }
+
+    @PreDestroy void shutdown() {
+        executor.shutdownNow();
+        if (responseCache != null) {
+            responseCache.close();
         }
     }
 }
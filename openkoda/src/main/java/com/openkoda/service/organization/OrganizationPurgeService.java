@@ -0,0 +1,353 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.service.organization;
+
+import com.openkoda.controller.ComponentProvider;
+import com.openkoda.core.customisation.CoreSettledEvent;
+import com.openkoda.core.multitenancy.MultitenancyService;
+import com.openkoda.model.Organization;
+import com.openkoda.model.OrganizationPurge;
+import com.openkoda.model.OrganizationPurge.Status;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.openkoda.model.OrganizationPurge.Status.*;
+
+/**
+ * Removes organizations in background.
+ * <p>{@link #requestPurge(long)} only records the purge and revokes all roles in the organization, so that its data
+ * is not readable by its members anymore. The purge itself runs on a single background thread:</p>
+ * <ol>
+ *     <li>with schema-per-tenant multitenancy the renamed tenant schema is dropped,</li>
+ *     <li>rows of every public table with an <code>organization_id</code> column are deleted in batches of
+ *     <code>organization.purge.batch-size</code>, each batch committed separately, tables referencing other tables
+ *     first (order derived from foreign keys in the catalog),</li>
+ *     <li>the organization row is deleted.</li>
+ * </ol>
+ * <p>After each batch the thread pauses, so that it is busy at most <code>organization.purge.load-target</code> of
+ * the time, and records progress in {@link OrganizationPurge}. A purge cancelled in the meantime stops at the next
+ * batch. A purge interrupted by shutdown is returned to pending. Pending purges, and running ones whose node stopped
+ * sending heartbeats for <code>organization.purge.stale-after-seconds</code>, are resumed on startup and then
+ * periodically (see {@link com.openkoda.core.job.JobsScheduler}). Batches are idempotent, so the purge just continues.</p>
+ */
+@Service
+public class OrganizationPurgeService extends ComponentProvider {
+
+    static final List<Status> ACTIVE = List.of(PENDING, RUNNING);
+
+    private static final String TABLES_QUERY = """
+            SELECT c.relname
+            FROM pg_class c
+            JOIN pg_namespace n ON n.oid = c.relnamespace
+            JOIN pg_attribute a ON a.attrelid = c.oid AND a.attname = 'organization_id' AND NOT a.attisdropped
+            WHERE n.nspname = 'public' AND c.relkind IN ('r', 'p')""";
+
+    private static final String FOREIGN_KEYS_QUERY = """
+            SELECT child.relname, parent.relname
+            FROM pg_constraint k
+            JOIN pg_class child ON child.oid = k.conrelid
+            JOIN pg_class parent ON parent.oid = k.confrelid
+            JOIN pg_namespace n ON n.oid = child.relnamespace
+            WHERE k.contype = 'f' AND n.nspname = 'public'""";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Inject
+    private MultitenancyService multitenancyService;
+
+    @Value("${organization.purge.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${organization.purge.load-target:0.5}")
+    private double loadTarget;
+
+    @Value("${organization.purge.stale-after-seconds:300}")
+    private long staleAfterSeconds;
+
+    @Value("${organization.purge.skip-tables:users,fb_users,ldap_users,linkedin_users,google_users,salesforce_users,token,audit}")
+    private String[] skipTables;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("organization-purge-"));
+
+    /**
+     * Purges submitted to the executor and not finished yet, a purge is queued once
+     */
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Marks the organization as removed and schedules the purge of its data after the current transaction commits.
+     * Requesting a purge of an organization with a cancelled or failed purge restarts that purge.
+     */
+    @Transactional
+    public OrganizationPurge requestPurge(long organizationId) {
+        debug("[requestPurge] org {}", organizationId);
+        OrganizationPurge purge = repositories.unsecure.organizationPurge.findFirstByPurgedOrganizationIdAndStatusNot(organizationId, DONE);
+        if (purge == null) {
+            purge = new OrganizationPurge(organizationId);
+        } else if (purge.getStatus() == RUNNING) {
+            return purge;
+        }
+        purge.setStatus(PENDING);
+        purge.setError(null);
+        purge = repositories.unsecure.organizationPurge.save(purge);
+        int revoked = repositories.unsecure.userRole.deleteAllInOrganization(organizationId);
+        debug("[requestPurge] org {} revoked {} user roles", organizationId, revoked);
+        long purgeId = purge.getId();
+        afterCommit(() -> submit(purgeId));
+        return purge;
+    }
+
+    /**
+     * The organization becomes visible again, but its user roles revoked by the purge request are not restored.
+     * @return true when the purge was pending or running, the running batch completes before it stops
+     */
+    public boolean cancel(long purgeId) {
+        debug("[cancel] {}", purgeId);
+        return repositories.unsecure.organizationPurge.cancel(purgeId, LocalDateTime.now(), CANCELLED, ACTIVE) > 0;
+    }
+
+    /**
+     * @return the last purge of the organization, null if none was requested
+     */
+    public OrganizationPurge getPurge(long organizationId) {
+        return repositories.unsecure.organizationPurge.findFirstByPurgedOrganizationIdOrderByIdDesc(organizationId);
+    }
+
+    public List<OrganizationPurge> getRecentPurges() {
+        return repositories.unsecure.organizationPurge.findRecent();
+    }
+
+    /**
+     * Submits pending purges and running ones, a running purge is taken over only when its heartbeat is stale.
+     * Called on startup and periodically.
+     */
+    @EventListener(CoreSettledEvent.class)
+    public void resumePurges() {
+        for (OrganizationPurge p : repositories.unsecure.organizationPurge.findByStatusIn(ACTIVE)) {
+            debug("[resumePurges] {} of org {}", p.getId(), p.getPurgedOrganizationId());
+            submit(p.getId());
+        }
+    }
+
+    /**
+     * Interrupts the running purge and waits until it is returned to pending
+     */
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                warn("[shutdown] Purge still running, resumed when its heartbeat gets stale");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Orders tables so that each table comes before the tables it references. Tables in a reference cycle are
+     * appended in name order.
+     * @param references tables referenced by each table
+     */
+    static List<String> deletionOrder(Collection<String> tables, Map<String, Set<String>> references) {
+        List<String> result = new ArrayList<>(tables.size());
+        Set<String> remaining = new TreeSet<>(tables);
+        while (!remaining.isEmpty()) {
+            List<String> free = remaining.stream()
+                    .filter(t -> remaining.stream().noneMatch(other -> !other.equals(t) && references.getOrDefault(other, Set.of()).contains(t)))
+                    .toList();
+            if (free.isEmpty()) {
+                result.addAll(remaining);
+                break;
+            }
+            result.addAll(free);
+            free.forEach(remaining::remove);
+        }
+        return result;
+    }
+
+    private void submit(long purgeId) {
+        if (queued.add(purgeId)) {
+            executor.execute(() -> {
+                try {
+                    run(purgeId);
+                } finally {
+                    queued.remove(purgeId);
+                }
+            });
+        }
+    }
+
+    void run(long purgeId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (repositories.unsecure.organizationPurge.claim(purgeId, now, now.minusSeconds(staleAfterSeconds), PENDING, RUNNING) == 0) {
+            debug("[run] Purge {} is not pending or runs on another node", purgeId);
+            return;
+        }
+        OrganizationPurge purge = repositories.unsecure.organizationPurge.findById(purgeId).orElseThrow();
+        long organizationId = purge.getPurgedOrganizationId();
+        info("[run] Purging organization {}", organizationId);
+        try {
+            if (purge(purgeId, organizationId)) {
+                repositories.unsecure.organizationPurge.finish(purgeId, DONE, null, LocalDateTime.now(), RUNNING);
+                info("[run] Organization {} purged", organizationId);
+            } else {
+                info("[run] Purge of organization {} cancelled", organizationId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release(purgeId, organizationId);
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                release(purgeId, organizationId);
+                return;
+            }
+            error(e, "[run] Purge of organization {} failed", organizationId);
+            repositories.unsecure.organizationPurge.finish(purgeId, FAILED, StringUtils.abbreviate(e.getMessage(), 1000), LocalDateTime.now(), RUNNING);
+        }
+    }
+
+    /**
+     * @return false when the purge was cancelled
+     */
+    private boolean purge(long purgeId, long organizationId) throws SQLException, InterruptedException {
+        if (MultitenancyService.isMultitenancy()) {
+            Organization organization = repositories.unsecure.organization.findOne(organizationId);
+            multitenancyService.dropDeletedSchema(organizationId, organization == null ? 0 : organization.getAssignedDatasource());
+        }
+        try (Connection c = dataSource.getConnection()) {
+            c.setAutoCommit(true);
+            List<String> tables = deletionOrder(c);
+            long rows = 0;
+            for (int i = 0; i < tables.size(); i++) {
+                String table = tables.get(i);
+                try (PreparedStatement ps = c.prepareStatement("DELETE FROM public." + table
+                        + " WHERE ctid IN (SELECT ctid FROM public." + table + " WHERE organization_id = ? LIMIT ?)")) {
+                    ps.setLong(1, organizationId);
+                    ps.setInt(2, batchSize);
+                    int deleted;
+                    do {
+                        long start = System.nanoTime();
+                        deleted = ps.executeUpdate();
+                        rows += deleted;
+                        if (!progress(purgeId, table, i, tables.size(), rows)) {
+                            return false;
+                        }
+                        throttle(System.nanoTime() - start);
+                    } while (deleted > 0);
+                }
+            }
+            if (!progress(purgeId, "organization", tables.size(), tables.size(), rows)) {
+                return false;
+            }
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM public.organization WHERE id = ?")) {
+                ps.setLong(1, organizationId);
+                ps.executeUpdate();
+            }
+        }
+        return true;
+    }
+
+    private List<String> deletionOrder(Connection c) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(TABLES_QUERY); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                if (!ArrayUtils.contains(skipTables, rs.getString(1))) {
+                    tables.add(rs.getString(1));
+                }
+            }
+        }
+        Map<String, Set<String>> references = new HashMap<>();
+        try (PreparedStatement ps = c.prepareStatement(FOREIGN_KEYS_QUERY); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                references.computeIfAbsent(rs.getString(1), k -> new HashSet<>()).add(rs.getString(2));
+            }
+        }
+        return deletionOrder(tables, references);
+    }
+
+    /**
+     * Returns the interrupted purge to pending, clears the interrupt flag for the update and restores it afterwards
+     */
+    private void release(long purgeId, long organizationId) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            repositories.unsecure.organizationPurge.release(purgeId, PENDING, RUNNING);
+            info("[release] Purge of organization {} interrupted, returned to pending", organizationId);
+        } catch (RuntimeException e) {
+            warn("[release] Purge of organization {} interrupted, resumed when its heartbeat gets stale: {}", organizationId, e.getMessage());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean progress(long purgeId, String table, int tablesDone, int tablesTotal, long rows) {
+        return repositories.unsecure.organizationPurge.progress(purgeId, table, tablesDone, tablesTotal, rows, LocalDateTime.now(), RUNNING) > 0;
+    }
+
+    /**
+     * Pauses so that the time spent deleting is <code>loadTarget</code> of the total time
+     */
+    private void throttle(long batchNanos) throws InterruptedException {
+        if (loadTarget > 0 && loadTarget < 1) {
+            TimeUnit.NANOSECONDS.sleep((long) (batchNanos * (1 - loadTarget) / loadTarget));
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -29,17 +29,9 @@ import com.openkoda.model.GlobalOrganizationRole;
 import com.openkoda.model.Organization;
 import com.openkoda.model.UserRole;
 import jakarta.inject.Inject;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.stereotype.Service;
 
-import javax.sql.DataSource;
-import java.sql.Array;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
 import java.util.List;
-import java.util.Objects;
 import java.util.stream.Collectors;
 
 
@@ -53,9 +45,6 @@ import java.util.stream.Collectors;
 @Service
 public class OrganizationService extends ComponentProvider {
 
-    @Autowired
-    private DataSource dataSource;
-
     @Inject
     protected MultitenancyService multitenancyService;
 
@@ -80,20 +69,12 @@ public class OrganizationService extends ComponentProvider {
         return result;
     }
 
+    /**
+     * Hides the organization and schedules removal of its data in background, see {@link OrganizationPurgeService}
+     */
     public boolean removeOrganization(Long orgId) {
         debug("[removeOrganization] OrgId: {}", orgId);
-        Connection connection = DataSourceUtils.getConnection(dataSource);
-        boolean deleted = true;
-        try (PreparedStatement preparedStatement = connection.prepareStatement("call remove_organizations_by_id(?)")) {
-            Array org_ids = connection.createArrayOf("bigint", new Long[]{orgId});
-            preparedStatement.setArray(1, org_ids);
-            preparedStatement.execute();
-        } catch (SQLException throwables) {
-            deleted = false;
-            throw new RuntimeException("sql exception in [removeOrganization]", throwables);
-        } finally {
-            DataSourceUtils.releaseConnection(connection, dataSource);
-        }
+        services.organizationPurge.requestPurge(orgId);
         return true;
     }
 
@@ -107,40 +88,17 @@ public class OrganizationService extends ComponentProvider {
         return multitenancyService.dropSchemaConstraints(orgId, schemaName, assignedDatasource);
     }
 
+    /**
+     * Makes the organization have exactly the global organization roles named in dtoGlobalOrgRoles,
+     * see {@link com.openkoda.service.user.UserRoleReconciliationService}
+     */
     public boolean updateGlobalOrgRolesInOrganization(Long organizationId, List<GlobalOrganizationRole> allGlobalOrgRoles,
                                                   List<String> dtoGlobalOrgRoles, List<UserRole> existingGlobalOrgRolesInOrganization){
-        for(GlobalOrganizationRole gor : allGlobalOrgRoles){
-            if(dtoGlobalOrgRoles.contains(gor.getName())){
-                if(!has(existingGlobalOrgRolesInOrganization, gor)){
-                    repositories.secure.userRole.saveOne(new UserRole(null, null, gor.getId(), organizationId));
-                }
-            } else {
-                if(has(existingGlobalOrgRolesInOrganization,gor)){
-                    repositories.secure.userRole.deleteOne(get(existingGlobalOrgRolesInOrganization, gor));
-                }
-            }
-        }
+        debug("[updateGlobalOrgRolesInOrganization] OrgId: {}", organizationId);
+        services.userRoleReconciliation.reconcileGlobalOrgRoles(organizationId, allGlobalOrgRoles, dtoGlobalOrgRoles, existingGlobalOrgRolesInOrganization);
         return true;
     }
 
-    private boolean has(List<UserRole> existingGlobalOrgRolesInOrganization, GlobalOrganizationRole gor) {
-        for(UserRole ur : existingGlobalOrgRolesInOrganization){
-            if(Objects.equals(ur.getRoleId(), gor.getId())){
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private UserRole get(List<UserRole> existingGlobalOrgRolesInOrganization, GlobalOrganizationRole gor) {
-        for(UserRole ur : existingGlobalOrgRolesInOrganization){
-            if(Objects.equals(ur.getRoleId(), gor.getId())){
-                return ur;
-            }
-        }
-        return null;
-    }
-
     public List<String> getNamesOfGlobalOrgRolesInOrganization(Long organizationId){
         return services.userRole.getUserRolesForOrganization(organizationId)
                 .stream()
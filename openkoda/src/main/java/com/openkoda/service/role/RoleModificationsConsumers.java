@@ -24,24 +24,33 @@ package com.openkoda.service.role;
 import com.openkoda.controller.ComponentProvider;
 import com.openkoda.controller.common.PageAttributes;
 import com.openkoda.core.customisation.ServerJSRunner;
-import com.openkoda.core.security.UserProvider;
 import com.openkoda.dto.OrganizationRelatedObject;
-import com.openkoda.model.Role;
-import com.openkoda.model.UserRole;
+import com.openkoda.repository.user.UserRoleBulkRepository;
+import com.openkoda.repository.user.UserRoleBulkRepository.AuditInfo;
 import jakarta.inject.Inject;
 import org.apache.commons.collections.CollectionUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.sql.SQLException;
 import java.util.*;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Applies role changes returned by role scripts to an organization.
+ * Roles are removed and added with set-based statements of {@link UserRoleBulkRepository} in one transaction, which
+ * also write the audit, and privileges of affected users are reloaded once, after commit.
+ */
 @Service
 public class RoleModificationsConsumers extends ComponentProvider {
 
     @Inject
     ServerJSRunner serverJSRunner;
 
+    @Inject
+    UserRoleBulkRepository userRoleBulkRepository;
+
     public boolean modifyRoleForAllUsersInOrganization(OrganizationRelatedObject organizationRelatedObject, String scriptName) {
         debug("[modifyRoleForAllUsersInOrganization]");
 
@@ -49,33 +58,30 @@ public class RoleModificationsConsumers extends ComponentProvider {
 
         Set<String> rolesToRemove = getRoleNamesToRemove(userRolesFromScript);
         Set<String> rolesToAdd = getRoleNamesToAdd(userRolesFromScript);
-
-        if (CollectionUtils.isNotEmpty(rolesToRemove)) {
-//            search user roles which exist and should be removed
-            List<UserRole> userRolesToRemove = repositories.unsecure.userRole.findAllUserRolesInOrganizationWithRoles(organizationRelatedObject.getOrganizationId(), rolesToRemove);
-            repositories.unsecure.userRole.deleteAll(userRolesToRemove);
+        if (CollectionUtils.isEmpty(rolesToRemove) && CollectionUtils.isEmpty(rolesToAdd)) {
+            return true;
         }
 
-        if (CollectionUtils.isNotEmpty(rolesToAdd)) {
-            Set<Long> userIdsInOrganization = repositories.unsecure.userRole.findAllUserIdsInOrganization(organizationRelatedObject.getOrganizationId());
-            Map<String, Role> rolesMappedByName = repositories.unsecure.role.findAll().stream().collect(Collectors.toMap(Role::getName, Function.identity()));
-
-            List<UserRole> userRolesToAdd = new ArrayList<>();
-
-            for (String s : rolesToAdd) {
-
-                Set<Long> userIdsWithRole = repositories.unsecure.userRole.findAllUserIdsInOrganizationWithRole(organizationRelatedObject.getOrganizationId(), s);
-
-                //prepare user Ids where we want to add the role
-                Set<Long> userIdsWithoutRole = new HashSet<>();
-                userIdsWithoutRole.addAll(userIdsInOrganization);
-                userIdsWithoutRole.removeAll(userIdsWithRole);
-
-                userIdsWithoutRole.forEach(a -> userRolesToAdd.add(new UserRole(null, a, rolesMappedByName.get(s).getId(), organizationRelatedObject.getOrganizationId())));
+        Long organizationId = organizationRelatedObject.getOrganizationId();
+        AuditInfo audit = userRoleBulkRepository.currentAuditInfo();
+        Set<Long> affectedUserIds = new HashSet<>();
+        services.transactionalExecutor.executeInTransaction(() -> {
+            try {
+                if (CollectionUtils.isNotEmpty(rolesToRemove)) {
+                    affectedUserIds.addAll(userRoleBulkRepository.removeUserRoles(organizationId, rolesToRemove, audit));
+                }
+                if (CollectionUtils.isNotEmpty(rolesToAdd)) {
+                    affectedUserIds.addAll(userRoleBulkRepository.addUserRoles(organizationId, rolesToAdd, audit));
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("sql exception in [modifyRoleForAllUsersInOrganization]", e);
             }
-
-            repositories.unsecure.userRole.saveAll(userRolesToAdd);
-        }
+            if (!affectedUserIds.isEmpty()) {
+                afterCommit(() -> services.privilege.notifyOnPrivilagesChange(affectedUserIds));
+            }
+            return true;
+        });
+        debug("[modifyRoleForAllUsersInOrganization] org {} roles of {} users changed", organizationId, affectedUserIds.size());
         return true;
 
     }
@@ -85,27 +91,45 @@ public class RoleModificationsConsumers extends ComponentProvider {
         Map<String, Boolean> globalRolesFromScript = runModifyRolesScript(organizationRelatedObject, scriptName);
         Set<String> rolesToRemove = getRoleNamesToRemove(globalRolesFromScript);
         Set<String> rolesToAdd = getRoleNamesToAdd(globalRolesFromScript);
-
-        if (CollectionUtils.isNotEmpty(rolesToRemove)) {
-//            search global organization roles which exist and should be removed
-            UserProvider.setConsumerAuthentication();
-            List<UserRole> rolesToBeRemoved = repositories.unsecure.userRole.findAllGlobalRolesInOrganizationWithRoles(organizationRelatedObject.getOrganizationId(), rolesToRemove);
-            repositories.unsecure.userRole.deleteAll(rolesToBeRemoved);
-            UserProvider.clearAuthentication();
+        if (CollectionUtils.isEmpty(rolesToRemove) && CollectionUtils.isEmpty(rolesToAdd)) {
+            return true;
         }
 
-        if (CollectionUtils.isNotEmpty(rolesToAdd)) {
-            Map<String, Role> rolesMappedByName = repositories.unsecure.role.findAll().stream().collect(Collectors.toMap(Role::getName, Function.identity()));
-
-            List<UserRole> rolesToBeAdded = new ArrayList<>();
-            List<String> rolesAlreadyAdded = repositories.unsecure.userRole.findAllGlobalRolesInOrganizationWithRoles(organizationRelatedObject.getOrganizationId(), rolesToAdd)
-                    .stream().map(UserRole::getRoleName).collect(Collectors.toList());
-            rolesToAdd.stream().filter(role -> !rolesAlreadyAdded.contains(role))
-                    .forEach(role -> rolesToBeAdded.add(new UserRole(null, null, rolesMappedByName.get(role).getId(), organizationRelatedObject.getOrganizationId())));
+        Long organizationId = organizationRelatedObject.getOrganizationId();
+        AuditInfo audit = userRoleBulkRepository.currentAuditInfo();
+        int changed = (int) services.transactionalExecutor.executeInTransaction(() -> {
+            try {
+                int result = 0;
+                if (CollectionUtils.isNotEmpty(rolesToRemove)) {
+                    result += userRoleBulkRepository.removeGlobalRoles(organizationId, rolesToRemove, audit);
+                }
+                if (CollectionUtils.isNotEmpty(rolesToAdd)) {
+                    result += userRoleBulkRepository.addGlobalRoles(organizationId, rolesToAdd, audit);
+                }
+                if (result > 0) {
+                    // global organization roles apply to all members, privileges of any user may have changed
+                    afterCommit(() -> services.privilege.notifyOnPrivilagesChange());
+                }
+                return result;
+            } catch (SQLException e) {
+                throw new RuntimeException("sql exception in [modifyGlobalRoleForOrganization]", e);
+            }
+        });
+        debug("[modifyGlobalRoleForOrganization] org {} {} global roles changed", organizationId, changed);
+        return true;
+    }
 
-            repositories.unsecure.userRole.saveAll(rolesToBeAdded);
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
         }
-        return true;
     }
 
     private Map<String, Boolean> runModifyRolesScript(OrganizationRelatedObject organizationRelatedObject, String scriptName) {
@@ -131,4 +155,3 @@ public class RoleModificationsConsumers extends ComponentProvider {
     }
 
 }
-
@@ -44,6 +44,7 @@ import org.springframework.validation.BindingResult;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Service for managing basic CRUD like opeartion related to DynamicPrivileges. Should be use instead of plain DynamicPrivilegeRepository to achieve Cacheable mechanism 
@@ -70,9 +71,26 @@ public class BasicPrivilegeService extends ComponentProvider implements HasSecur
 
         private static final long serialVersionUID = -8745580408895611463L;
 
+        private final Set<Long> userIds;
+
         public PrivilegeChangeEvent(Object source) {
+            this(source, null);
+        }
+
+        /**
+         * @param userIds users whose privileges changed, null when privileges of any user may have changed
+         */
+        public PrivilegeChangeEvent(Object source, Set<Long> userIds) {
             super(source);
-            
+            this.userIds = userIds;
+        }
+
+        public Set<Long> getUserIds() {
+            return userIds;
+        }
+
+        public boolean affects(Long userId) {
+            return userIds == null || userIds.contains(userId);
         }
     }
     
@@ -123,6 +141,15 @@ public class BasicPrivilegeService extends ComponentProvider implements HasSecur
         return null;
     }
 
+    /**
+     * Notifies once about privileges of given users, only their sessions are reloaded
+     */
+    public Object notifyOnPrivilagesChange(Set<Long> userIds) {
+        debug("[notifyOnPrivilagesChange] Privileges of {} users have changed, notifying", userIds.size());
+        applicationEventPublisher.publishEvent(new PrivilegeChangeEvent(this, userIds));
+        return null;
+    }
+
     @Caching(put = {
             @CachePut(cacheNames = {DYNAMIC_PRIVILEGES_CACHE}, key = "#result.getId()"),
             @CachePut(cacheNames = {DYNAMIC_PRIVILEGES_NAME_CACHE}, key = "#result.getName()"),
@@ -0,0 +1,196 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.service.user;
+
+import com.openkoda.controller.ComponentProvider;
+import com.openkoda.model.GlobalOrganizationRole;
+import com.openkoda.model.UserRole;
+import com.openkoda.repository.user.UserRoleBulkRepository;
+import com.openkoda.repository.user.UserRoleBulkRepository.AuditInfo;
+import jakarta.inject.Inject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Reconciles global organization roles assigned to organizations with the wanted ones.
+ * <p>The difference is computed with hash sets: roles to add are the wanted global organization roles the organization
+ * does not have, roles to remove are the global organization roles it has but which are not wanted. Roles which are
+ * not global organization roles are never touched. The difference is applied with set-based statements of
+ * {@link UserRoleBulkRepository} (which also write the audit). There is no privilege check here, same as when the roles
+ * were saved one by one, access is checked by the calling controllers.
+ * Many organizations are reconciled in chunks of <code>user-role.reconciliation.chunk-size</code>, each chunk in its
+ * own transaction.</p>
+ */
+@Service
+public class UserRoleReconciliationService extends ComponentProvider {
+
+    /**
+     * Global organization roles to add to and remove from an organization
+     */
+    public record Diff(Set<String> toAdd, Set<String> toRemove) {
+        public boolean isEmpty() {
+            return toAdd.isEmpty() && toRemove.isEmpty();
+        }
+    }
+
+    public record Result(int organizations, int added, int removed) {}
+
+    @Inject
+    private UserRoleBulkRepository userRoleBulkRepository;
+
+    @Value("${user-role.reconciliation.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * @param globalOrgRoles names of all global organization roles
+     * @param wanted names of roles the organization should have
+     * @param existing names of global roles the organization has now
+     */
+    public static Diff diff(Set<String> globalOrgRoles, Collection<String> wanted, Collection<String> existing) {
+        Set<String> wantedSet = new HashSet<>(wanted);
+        Set<String> existingSet = new HashSet<>(existing);
+        Set<String> toAdd = new HashSet<>();
+        Set<String> toRemove = new HashSet<>();
+        for (String role : globalOrgRoles) {
+            boolean has = existingSet.contains(role);
+            if (wantedSet.contains(role)) {
+                if (!has) {
+                    toAdd.add(role);
+                }
+            } else if (has) {
+                toRemove.add(role);
+            }
+        }
+        return new Diff(toAdd, toRemove);
+    }
+
+    /**
+     * Reconciles global organization roles of one organization with the roles already loaded by the caller
+     * @param allGlobalOrgRoles all global organization roles
+     * @param wantedRoleNames names of roles the organization should have
+     * @param existingGlobalOrgRoles global roles of the organization
+     */
+    public Result reconcileGlobalOrgRoles(Long organizationId, List<GlobalOrganizationRole> allGlobalOrgRoles,
+                                          Collection<String> wantedRoleNames, List<UserRole> existingGlobalOrgRoles) {
+        debug("[reconcileGlobalOrgRoles] org {}", organizationId);
+        Map<Long, String> roleNamesById = allGlobalOrgRoles.stream().collect(Collectors.toMap(GlobalOrganizationRole::getId, GlobalOrganizationRole::getName));
+        Set<String> existing = existingGlobalOrgRoles.stream()
+                .map(ur -> roleNamesById.get(ur.getRoleId()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Diff diff = diff(new HashSet<>(roleNamesById.values()), wantedRoleNames, existing);
+        if (diff.isEmpty()) {
+            return new Result(1, 0, 0);
+        }
+        return apply(Map.of(organizationId, diff), userRoleBulkRepository.currentAuditInfo());
+    }
+
+    /**
+     * Reconciles global organization roles of all given organizations, reading their current roles in chunks
+     * @param wantedRoleNamesByOrganization organization id -> names of roles the organization should have
+     * @return number of reconciled organizations and added/removed roles in total
+     */
+    public Result reconcileGlobalOrgRoles(Map<Long, ? extends Collection<String>> wantedRoleNamesByOrganization) {
+        debug("[reconcileGlobalOrgRoles] {} organizations", wantedRoleNamesByOrganization.size());
+        AuditInfo audit = userRoleBulkRepository.currentAuditInfo();
+        Set<String> globalOrgRoles = (Set<String>) services.transactionalExecutor.executeInTransaction(() -> {
+            try {
+                return userRoleBulkRepository.findGlobalOrganizationRoleNames();
+            } catch (SQLException e) {
+                throw new RuntimeException("sql exception in [reconcileGlobalOrgRoles]", e);
+            }
+        });
+        List<Long> organizationIds = new ArrayList<>(wantedRoleNamesByOrganization.keySet());
+        int added = 0;
+        int removed = 0;
+        int size = Math.max(1, chunkSize);
+        for (int from = 0; from < organizationIds.size(); from += size) {
+            List<Long> chunk = organizationIds.subList(from, Math.min(from + size, organizationIds.size()));
+            Result r = (Result) services.transactionalExecutor.executeInTransaction(() -> {
+                try {
+                    Map<Long, Set<String>> existing = userRoleBulkRepository.findGlobalRoleNames(chunk);
+                    Map<Long, Diff> diffs = new LinkedHashMap<>();
+                    for (Long organizationId : chunk) {
+                        Diff diff = diff(globalOrgRoles, wantedRoleNamesByOrganization.get(organizationId),
+                                existing.getOrDefault(organizationId, Collections.emptySet()));
+                        if (!diff.isEmpty()) {
+                            diffs.put(organizationId, diff);
+                        }
+                    }
+                    return diffs.isEmpty() ? new Result(chunk.size(), 0, 0) : apply(diffs, audit);
+                } catch (SQLException e) {
+                    throw new RuntimeException("sql exception in [reconcileGlobalOrgRoles]", e);
+                }
+            });
+            added += r.added();
+            removed += r.removed();
+            debug("[reconcileGlobalOrgRoles] {}/{} organizations, {} roles added, {} removed", from + chunk.size(), organizationIds.size(), added, removed);
+        }
+        return new Result(organizationIds.size(), added, removed);
+    }
+
+    /**
+     * Applies differences of all organizations with one delete and one insert statement, in one transaction.
+     * Privileges are reloaded after commit, as global organization roles apply to all members of the organization.
+     */
+    private Result apply(Map<Long, Diff> diffs, AuditInfo audit) {
+        List<Long> addOrganizationIds = new ArrayList<>();
+        List<String> addRoleNames = new ArrayList<>();
+        List<Long> removeOrganizationIds = new ArrayList<>();
+        List<String> removeRoleNames = new ArrayList<>();
+        diffs.forEach((organizationId, diff) -> {
+            diff.toAdd().forEach(role -> { addOrganizationIds.add(organizationId); addRoleNames.add(role); });
+            diff.toRemove().forEach(role -> { removeOrganizationIds.add(organizationId); removeRoleNames.add(role); });
+        });
+        return (Result) services.transactionalExecutor.executeInTransaction(() -> {
+            try {
+                int removed = userRoleBulkRepository.removeGlobalRoles(removeOrganizationIds, removeRoleNames, audit);
+                int added = userRoleBulkRepository.addGlobalRoles(addOrganizationIds, addRoleNames, audit);
+                if (added + removed > 0) {
+                    afterCommit(() -> services.privilege.notifyOnPrivilagesChange());
+                }
+                return new Result(diffs.size(), added, removed);
+            } catch (SQLException e) {
+                throw new RuntimeException("sql exception in [apply]", e);
+            }
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
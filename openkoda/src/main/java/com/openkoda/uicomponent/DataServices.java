@@ -27,6 +27,9 @@ import com.openkoda.model.User;
 import com.openkoda.model.common.SearchableOrganizationRelatedEntity;
 import com.openkoda.uicomponent.annotation.Autocomplete;
 
+import java.util.List;
+import java.util.Map;
+
 public interface DataServices {
     @Autocomplete(doc="Get data repository for an entity using its key value")
     ScopedSecureRepository<?> getRepository(String entityName);
@@ -36,6 +39,12 @@ public interface DataServices {
     SearchableOrganizationRelatedEntity saveForm(AbstractOrganizationRelatedEntityForm form);
     @Autocomplete(doc="Update an entity with form data")
     SearchableOrganizationRelatedEntity saveForm(AbstractOrganizationRelatedEntityForm form, SearchableOrganizationRelatedEntity entity);
+    @Autocomplete(doc="Save forms as new entity records in batches, returns saved ids and per-row errors")
+    BulkSaveResult saveForms(List<AbstractOrganizationRelatedEntityForm> forms);
+    @Autocomplete(doc="Save rows (field name to value maps) as new entity records of a form in batches, returns saved ids and per-row errors")
+    BulkSaveResult saveAll(String frontendMappingName, List<Map<String, Object>> rows);
+    @Autocomplete(doc="Update records having the same key field value as the row or create new ones, in batches, returns saved ids and per-row errors")
+    BulkSaveResult upsertBy(String frontendMappingName, String keyField, List<Map<String, Object>> rows);
     @Autocomplete(doc="Retrieve a form by its identifier (key)")
     AbstractOrganizationRelatedEntityForm getForm(String frontendMappingName);
     @Autocomplete(doc="Retrieve a form associated with a provided entity object")
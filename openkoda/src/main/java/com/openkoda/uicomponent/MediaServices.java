@@ -21,10 +21,12 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 package com.openkoda.uicomponent;
 
+import com.openkoda.core.service.pdf.PdfRenderingJob;
 import com.openkoda.model.file.File;
 import com.openkoda.uicomponent.annotation.Autocomplete;
 
 import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -63,4 +65,24 @@ public interface MediaServices {
     @Autocomplete
     File createFileFromByteArray(byte[] input, String fileName);
 
+    /**
+     * <p>Creates a pdf file based on templateName template and stores it as a file in current organization</p>
+     * <p>The pdf is streamed to storage, without keeping the whole document in memory</p>
+     */
+    @Autocomplete
+    File createPdfFile(String templateName, String fileName, Map<String, Object> ... models);
+
+    /**
+     * <p>Starts asynchronous generation of a pdf file with one document per model, suitable for large batches</p>
+     * <p>Returns the job, which reports progress and the id of the created file when done</p>
+     */
+    @Autocomplete
+    PdfRenderingJob startPdfFileJob(String templateName, String fileName, List<Map<String, Object>> models);
+
+    /**
+     * <p>Returns the state of pdf generation job started with startPdfFileJob by the same user in the same organization</p>
+     */
+    @Autocomplete
+    PdfRenderingJob getPdfFileJob(String jobId);
+
 }
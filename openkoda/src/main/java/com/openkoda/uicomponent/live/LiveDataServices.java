@@ -23,25 +23,54 @@ package com.openkoda.uicomponent.live;
 
 import com.openkoda.core.customisation.FrontendMapping;
 import com.openkoda.core.customisation.FrontendMappingMap;
+import com.openkoda.core.flow.ValidationException;
 import com.openkoda.core.form.AbstractOrganizationRelatedEntityForm;
 import com.openkoda.core.form.CRUDControllerConfiguration;
+import com.openkoda.core.form.FrontendMappingDefinition;
 import com.openkoda.core.form.ReflectionBasedEntityForm;
 import com.openkoda.core.multitenancy.TenantResolver;
 import com.openkoda.core.repository.common.ScopedSecureRepository;
 import com.openkoda.core.security.HasSecurityRules;
+import com.openkoda.core.security.OrganizationUser;
+import com.openkoda.core.security.UserProvider;
+import com.openkoda.core.service.BulkPersistService;
 import com.openkoda.core.service.ValidationService;
+import com.openkoda.core.tracker.LoggingComponentWithRequestId;
 import com.openkoda.form.RegisterUserForm;
 import com.openkoda.model.User;
+import com.openkoda.model.common.EntityWithRequiredPrivilege;
+import com.openkoda.model.common.OrganizationRelatedEntity;
 import com.openkoda.model.common.SearchableOrganizationRelatedEntity;
 import com.openkoda.repository.SearchableRepositories;
 import com.openkoda.service.user.UserService;
+import com.openkoda.uicomponent.BulkSaveResult;
 import com.openkoda.uicomponent.DataServices;
 import jakarta.inject.Inject;
+import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.ObjectError;
 
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Data services exposed to JS flows.
+ * <p>
+ * Controller configurations are cached per frontend mapping and rebuilt when the mapping is reloaded.
+ * The bulk methods ({@link #saveForms(List)}, {@link #saveAll(String, List)}, {@link #upsertBy(String, String, List)})
+ * validate rows chunk by chunk (<code>data.bulk.chunk-size</code>), check write privileges once per distinct
+ * privilege and organization, and write each chunk in its own transaction with JDBC batching
+ * (see {@link BulkPersistService#saveAllInNewTransaction(Iterable)}), also when called in a transaction, so a failing
+ * chunk does not roll back the chunks saved before it or the caller's transaction.
+ * Invalid rows are reported in the result and skipped, a chunk that fails to write is reported for all its rows.
+ */
 @Component
-public class LiveDataServices implements DataServices {
+public class LiveDataServices implements DataServices, LoggingComponentWithRequestId {
     @Inject
     private FrontendMappingMap frontendMappingMap;
 
@@ -51,6 +80,16 @@ public class LiveDataServices implements DataServices {
     @Inject
     private UserService userService;
 
+    @Inject
+    private BulkPersistService bulkPersistService;
+
+    @Value("${data.bulk.chunk-size:1000}")
+    private int bulkChunkSize;
+
+    private final Map<String, CRUDControllerConfiguration> configurations = new ConcurrentHashMap<>();
+
+    private record Row(int index, AbstractOrganizationRelatedEntityForm form, SearchableOrganizationRelatedEntity entity) {}
+
     public ScopedSecureRepository<?> getRepository(String entityKey) {
         return SearchableRepositories.getSearchableRepository(entityKey, HasSecurityRules.SecurityScope.USER_IN_ORGANIZATION);
     }
@@ -61,8 +100,7 @@ public class LiveDataServices implements DataServices {
         return SearchableRepositories.getSearchableRepository(entityKey, HasSecurityRules.SecurityScope.valueOf(securityScope));
     }
     public AbstractOrganizationRelatedEntityForm getForm(String frontendMappingName, SearchableOrganizationRelatedEntity entity) {
-        FrontendMapping frontendMapping = frontendMappingMap.get(frontendMappingName);
-        CRUDControllerConfiguration conf = CRUDControllerConfiguration.getBuilder("form", frontendMapping.definition(), frontendMapping.repository(), ReflectionBasedEntityForm.class);
+        CRUDControllerConfiguration conf = getConfiguration(frontendMappingName);
         Long orgId = TenantResolver.getTenantedResource().organizationId;
         if(entity == null) {
             entity = conf.createNewEntity(orgId);
@@ -90,9 +128,7 @@ public class LiveDataServices implements DataServices {
     }
 
     public SearchableOrganizationRelatedEntity saveForm(AbstractOrganizationRelatedEntityForm form, SearchableOrganizationRelatedEntity entity) {
-        FrontendMapping frontendMapping = frontendMappingMap.get(form.frontendMappingDefinition.name);
-
-        CRUDControllerConfiguration conf = CRUDControllerConfiguration.getBuilder("form", frontendMapping.definition(), frontendMapping.repository(), ReflectionBasedEntityForm.class);
+        CRUDControllerConfiguration conf = getConfiguration(form.frontendMappingDefinition.name);
         Long orgId = TenantResolver.getTenantedResource().organizationId;
         if (entity == null) {
             entity = conf.createNewEntity(orgId);
@@ -109,5 +145,209 @@ public class LiveDataServices implements DataServices {
         return saveForm(form, null);
     }
 
+    @Override
+    public BulkSaveResult saveForms(List<AbstractOrganizationRelatedEntityForm> forms) {
+        debug("[saveForms] {} forms", forms.size());
+        return save(forms.size(), (from, to) -> {
+            List<Row> rows = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                AbstractOrganizationRelatedEntityForm form = forms.get(i);
+                CRUDControllerConfiguration conf = getConfiguration(form.frontendMappingDefinition.name);
+                rows.add(new Row(i, form, (SearchableOrganizationRelatedEntity) conf.createNewEntity(form.getOrganizationId())));
+            }
+            return rows;
+        }, null, null);
+    }
+
+    @Override
+    public BulkSaveResult saveAll(String frontendMappingName, List<Map<String, Object>> rows) {
+        debug("[saveAll] {} {} rows", frontendMappingName, rows.size());
+        CRUDControllerConfiguration conf = getConfiguration(frontendMappingName);
+        return save(rows.size(), (from, to) -> toRows(conf, rows, from, to), null, null);
+    }
 
+    @Override
+    public BulkSaveResult upsertBy(String frontendMappingName, String keyField, List<Map<String, Object>> rows) {
+        debug("[upsertBy] {} by {}, {} rows", frontendMappingName, keyField, rows.size());
+        CRUDControllerConfiguration conf = getConfiguration(frontendMappingName);
+        if (!isKeyField(conf.getFrontendMappingDefinition(), keyField)) {
+            throw new IllegalArgumentException("Unknown key field " + keyField + " of frontend mapping " + frontendMappingName);
+        }
+        return save(rows.size(), (from, to) -> toRows(conf, rows, from, to), conf, keyField);
+    }
+
+    /**
+     * @return true when the key field is one of the mapping's fields stored in a database column
+     */
+    static boolean isKeyField(FrontendMappingDefinition definition, String keyField) {
+        return keyField != null && Arrays.stream(definition.getDbTypeFields())
+                .anyMatch(f -> keyField.equals(f.getPlainName()));
+    }
+
+    /**
+     * @return controller configuration of the frontend mapping, built once per mapping definition
+     */
+    private CRUDControllerConfiguration getConfiguration(String frontendMappingName) {
+        FrontendMapping frontendMapping = frontendMappingMap.get(frontendMappingName);
+        if (frontendMapping == null) {
+            throw new IllegalArgumentException("Unknown frontend mapping " + frontendMappingName);
+        }
+        CRUDControllerConfiguration conf = configurations.get(frontendMappingName);
+        if (conf == null || conf.getFrontendMappingDefinition() != frontendMapping.definition() || conf.getSecureRepository() != frontendMapping.repository()) {
+            conf = CRUDControllerConfiguration.getBuilder("form", frontendMapping.definition(), frontendMapping.repository(), ReflectionBasedEntityForm.class);
+            configurations.put(frontendMappingName, conf);
+        }
+        return conf;
+    }
+
+    private List<Row> toRows(CRUDControllerConfiguration conf, List<Map<String, Object>> values, int from, int to) {
+        Long orgId = TenantResolver.getTenantedResource().organizationId;
+        List<Row> rows = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            SearchableOrganizationRelatedEntity entity = (SearchableOrganizationRelatedEntity) conf.createNewEntity(orgId);
+            AbstractOrganizationRelatedEntityForm form = (AbstractOrganizationRelatedEntityForm) conf.createNewForm(orgId, entity);
+            ((Map<String, Object>) form.dto).putAll(values.get(i));
+            rows.add(new Row(i, form, entity));
+        }
+        return rows;
+    }
+
+    private interface ChunkReader {
+        List<Row> read(int from, int to);
+    }
+
+    private BulkSaveResult save(int size, ChunkReader reader, CRUDControllerConfiguration upsertConf, String keyField) {
+        int chunkSize = Math.max(1, bulkChunkSize);
+        Long[] ids = new Long[size];
+        List<BulkSaveResult.RowError> errors = new ArrayList<>();
+        Map<String, Boolean> privilegeChecks = new HashMap<>();
+        Optional<OrganizationUser> user = UserProvider.getFromContext();
+        int saved = 0;
+        for (int from = 0; from < size; from += chunkSize) {
+            List<Row> valid = new ArrayList<>();
+            for (Row row : reader.read(from, Math.min(size, from + chunkSize))) {
+                if (validate(row, errors)) {
+                    valid.add(row);
+                }
+            }
+            if (upsertConf != null) {
+                valid = matchExisting(upsertConf, keyField, valid, errors);
+            }
+            Set<SearchableOrganizationRelatedEntity> toSave = Collections.newSetFromMap(new IdentityHashMap<>());
+            List<Row> allowed = new ArrayList<>(valid.size());
+            for (Row row : valid) {
+                if (canWrite(row.entity(), user, privilegeChecks)) {
+                    toSave.add(row.entity());
+                    allowed.add(row);
+                } else {
+                    errors.add(new BulkSaveResult.RowError(row.index(), null, "Operation not allowed"));
+                }
+            }
+            if (toSave.isEmpty()) {
+                continue;
+            }
+            try {
+                bulkPersistService.saveAllInNewTransaction(toSave);
+                for (Row row : allowed) {
+                    ids[row.index()] = row.entity().getId();
+                }
+                saved += allowed.size();
+            } catch (RuntimeException e) {
+                String message = ExceptionUtils.getRootCauseMessage(e);
+                warn("[save] Chunk of {} rows not saved: {}", allowed.size(), message);
+                for (Row row : allowed) {
+                    errors.add(new BulkSaveResult.RowError(row.index(), null, message));
+                }
+            }
+        }
+        errors.sort(Comparator.comparingInt(BulkSaveResult.RowError::row));
+        debug("[save] {} rows saved, {} errors", saved, errors.size());
+        return new BulkSaveResult(saved, Arrays.asList(ids), errors);
+    }
+
+    private boolean validate(Row row, List<BulkSaveResult.RowError> errors) {
+        AbstractOrganizationRelatedEntityForm form = row.form();
+        BeanPropertyBindingResult br = new BeanPropertyBindingResult(form, form.frontendMappingDefinition.name);
+        try {
+            validationService.validateAndPopulateToEntity(form, br, row.entity());
+            return true;
+        } catch (ValidationException e) {
+            for (FieldError fe : br.getFieldErrors()) {
+                errors.add(new BulkSaveResult.RowError(row.index(), form.extractFieldName(fe.getField()), fe.getDefaultMessage() != null ? fe.getDefaultMessage() : fe.getCode()));
+            }
+            for (ObjectError oe : br.getGlobalErrors()) {
+                errors.add(new BulkSaveResult.RowError(row.index(), null, oe.getDefaultMessage() != null ? oe.getDefaultMessage() : oe.getCode()));
+            }
+            if (!br.hasErrors()) {
+                errors.add(new BulkSaveResult.RowError(row.index(), null, e.getMessage()));
+            }
+        } catch (RuntimeException e) {
+            errors.add(new BulkSaveResult.RowError(row.index(), null, ExceptionUtils.getRootCauseMessage(e)));
+        }
+        return false;
+    }
+
+    /**
+     * Replaces new entities with the existing ones having the same key value, loaded with one query per chunk.
+     * Rows repeating a key within the chunk update the same entity.
+     */
+    private List<Row> matchExisting(CRUDControllerConfiguration conf, String keyField, List<Row> rows, List<BulkSaveResult.RowError> errors) {
+        List<Row> keyedRows = new ArrayList<>(rows.size());
+        List<Object> keys = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            Object key = keyOf(row.entity(), keyField);
+            if (key == null) {
+                errors.add(new BulkSaveResult.RowError(row.index(), keyField, "not.empty"));
+            } else {
+                keyedRows.add(row);
+                keys.add(key);
+            }
+        }
+        if (keys.isEmpty()) {
+            return keyedRows;
+        }
+        Map<Object, SearchableOrganizationRelatedEntity> targets = new HashMap<>();
+        Specification<SearchableOrganizationRelatedEntity> byKeys = (root, query, cb) -> root.get(keyField).in(new HashSet<>(keys));
+        ScopedSecureRepository<SearchableOrganizationRelatedEntity> repository = conf.getSecureRepository();
+        for (SearchableOrganizationRelatedEntity existing : repository.search(TenantResolver.getTenantedResource().organizationId, byKeys)) {
+            targets.put(keyOf(existing, keyField), existing);
+        }
+        List<Row> result = new ArrayList<>(keyedRows.size());
+        for (int i = 0; i < keyedRows.size(); i++) {
+            Row row = keyedRows.get(i);
+            SearchableOrganizationRelatedEntity target = targets.putIfAbsent(keys.get(i), row.entity());
+            if (target == null) {
+                result.add(row);
+            } else {
+                row.form().populateToEntity(target);
+                result.add(new Row(row.index(), row.form(), target));
+            }
+        }
+        return result;
+    }
+
+    private static Object keyOf(SearchableOrganizationRelatedEntity entity, String keyField) {
+        try {
+            return PropertyUtils.getProperty(entity, keyField);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Can't read key field " + keyField, e);
+        }
+    }
+
+    /**
+     * Same rules as the secure repository, evaluated once per required privilege and organization
+     */
+    private boolean canWrite(SearchableOrganizationRelatedEntity entity, Optional<OrganizationUser> user, Map<String, Boolean> checked) {
+        if (!(entity instanceof EntityWithRequiredPrivilege e)) {
+            return true;
+        }
+        String requiredPrivilege = e.getRequiredWritePrivilege();
+        if (requiredPrivilege == null) {
+            return true;
+        }
+        Long organizationId = entity instanceof OrganizationRelatedEntity o ? o.getOrganizationId() : null;
+        return checked.computeIfAbsent(requiredPrivilege + ":" + organizationId, k -> user
+                .map(u -> u.hasGlobalPrivilege(requiredPrivilege) || (entity instanceof OrganizationRelatedEntity && u.hasOrgPrivilege(requiredPrivilege, organizationId)))
+                .orElse(false));
+    }
 }
@@ -22,8 +22,12 @@ IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 package com.openkoda.uicomponent.live;
 
 import com.openkoda.core.multitenancy.TenantResolver;
+import com.openkoda.core.security.OrganizationUser;
+import com.openkoda.core.security.UserProvider;
 import com.openkoda.core.service.FileService;
 import com.openkoda.core.service.pdf.PdfConstructor;
+import com.openkoda.core.service.pdf.PdfRenderingJob;
+import com.openkoda.core.service.pdf.PdfRenderingService;
 import com.openkoda.model.file.File;
 import com.openkoda.repository.file.SecureFileRepository;
 import com.openkoda.uicomponent.MediaServices;
@@ -33,6 +37,7 @@ import org.springframework.stereotype.Component;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Map;
 
 
@@ -44,6 +49,9 @@ public class LiveMediaServices implements MediaServices {
     @Inject
     PdfConstructor pdfConstructor;
 
+    @Inject
+    PdfRenderingService pdfRenderingService;
+
     @Inject
     FileService fileService;
 
@@ -90,4 +98,23 @@ public class LiveMediaServices implements MediaServices {
             throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public File createPdfFile(String templateName, String fileName, Map<String, Object> ... models) {
+        return pdfRenderingService.renderToFile(templateName, fileName, TenantResolver.getTenantedResource().organizationId, models);
+    }
+
+    @Override
+    public PdfRenderingJob startPdfFileJob(String templateName, String fileName, List<Map<String, Object>> models) {
+        return pdfRenderingService.startJob(templateName, fileName, TenantResolver.getTenantedResource().organizationId, currentUserId(), models);
+    }
+
+    @Override
+    public PdfRenderingJob getPdfFileJob(String jobId) {
+        return pdfRenderingService.getJob(jobId, TenantResolver.getTenantedResource().organizationId, currentUserId());
+    }
+
+    private static Long currentUserId() {
+        return UserProvider.getFromContext().map(OrganizationUser::getUserId).orElse(null);
+    }
+}
@@ -100,6 +100,39 @@ update roles set privileges=privileges||',(canImportData)' where name in ('ROLE_
 update roles set privileges=privileges||',(canCreateReports),(canReadReports)' where name in ('ROLE_ADMIN','ROLE_ORG_ADMIN');
 update public.roles set "privileges" = replace("privileges",'canUseAI','canUseReportingAI')  where "privileges" like '%canUseAI%';
 
+-- @version: 1.7.1.3
+-- ids are allocated in blocks of 50 with the pooled-lo optimizer (see IdFamily), sequence increment must match
+-- other allocation sizes set with spring.jpa.properties.openkoda.id.allocation.* are aligned on startup
+ALTER SEQUENCE IF EXISTS public.seq_global_id INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS public.seq_organization_related_id INCREMENT BY 50;
+
+-- @version: 1.7.1.4
+-- validation result of staged csv import lines, other staging objects are created by DynamicEntityCsvImportService
+ALTER TABLE public.dynamic_entity_csv_import_row ADD COLUMN IF NOT EXISTS validation_errors varchar(1000);
+
+-- @version: 1.7.1.5
+-- progress of organizations removed in background (OrganizationPurgeService)
+create table if not exists public.organization_purge
+(
+    id                     bigint not null
+        primary key,
+    created_by             varchar(255),
+    created_by_id          bigint,
+    created_on             timestamp with time zone default CURRENT_TIMESTAMP,
+    modified_by            varchar(255),
+    modified_by_id         bigint,
+    updated_on             timestamp with time zone default CURRENT_TIMESTAMP,
+    purged_organization_id bigint       not null,
+    status                 varchar(255) not null,
+    current_table          varchar(255),
+    tables_done            integer      not null default 0,
+    tables_total           integer      not null default 0,
+    rows_deleted           bigint       not null default 0,
+    heartbeat_on           timestamp with time zone,
+    finished_on            timestamp with time zone,
+    error                  varchar(1000)
+);
+
 -- following lines contains db changes not ready yet to be executed. Once ready, replace with @version
 -- When adding qierues always think about existing data and how to deal with them
 -- @upcoming: 1.7.x.x
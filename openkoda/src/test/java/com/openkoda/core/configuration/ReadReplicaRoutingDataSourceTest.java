@@ -0,0 +1,326 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.configuration;
+
+import com.openkoda.controller.CRUDControllerHtml;
+import com.openkoda.controller.GlobalSearchController;
+import com.openkoda.controller.api.CRUDApiController;
+import com.openkoda.controller.report.QueryReportController;
+import com.openkoda.core.flow.LoggingComponent;
+import com.openkoda.repository.NativeQueries;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Routing of {@link ReadReplicaRoutingDataSource} with stub pools. The routing against two PostgreSQL instances,
+ * a primary and its streaming replica, runs with
+ * -Dreplica.jdbc-url=jdbc:postgresql://localhost:5433/openkoda [-Dprimary.jdbc-url=...] [-Dreplica.username=... -Dreplica.password=...]
+ */
+public class ReadReplicaRoutingDataSourceTest {
+
+    private final AtomicBoolean replica1Down = new AtomicBoolean();
+    private final Map<String, Long> lags = new LinkedHashMap<>(Map.of("replica-1", 0L, "replica-2", 0L));
+
+    @AfterEach
+    public void cleanup() {
+        ReadReplicaRoutingDataSource.restoreReadOnly(null);
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void readWriteTransactionsUsePrimary() throws SQLException {
+        ReadReplicaRoutingDataSource routing = routing();
+        assertEquals("primary", routing.getConnection().toString());
+        ReadReplicaRoutingDataSource.setReadOnly(false);
+        assertEquals("primary", routing.getConnection().toString());
+    }
+
+    @Test
+    public void readOnlyTransactionsUseReplicasRoundRobin() throws SQLException {
+        ReadReplicaRoutingDataSource routing = routing();
+        ReadReplicaRoutingDataSource.setReadOnly(true);
+        assertEquals(Set.of("replica-1", "replica-2"), Set.of(routing.getConnection().toString(), routing.getConnection().toString()));
+        assertEquals(1, routing.getStats().replicas().get(0).connections());
+        assertEquals(1, routing.getStats().replicas().get(1).connections());
+    }
+
+    @Test
+    public void laggingReplicasFallBackToPrimary() throws SQLException {
+        ReadReplicaRoutingDataSource routing = routing();
+        ReadReplicaRoutingDataSource.setReadOnly(true);
+        lags.put("replica-1", 10_000L);
+        routing.checkReplicas();
+        assertEquals("replica-2", routing.getConnection().toString());
+        assertEquals("replica-2", routing.getConnection().toString());
+
+        lags.put("replica-2", 10_000L);
+        routing.checkReplicas();
+        assertEquals("primary", routing.getConnection().toString());
+        assertEquals(1, routing.getStats().readOnlyOnPrimary());
+
+        lags.put("replica-1", 10L);
+        routing.checkReplicas();
+        assertEquals("replica-1", routing.getConnection().toString());
+        assertEquals(10, routing.getStats().replicas().get(0).lagMs());
+        assertTrue(routing.getStats().replicas().get(0).healthy());
+        assertFalse(routing.getStats().replicas().get(1).healthy());
+    }
+
+    @Test
+    public void failingReplicaIsSkippedUntilNextCheck() throws SQLException {
+        ReadReplicaRoutingDataSource routing = routing();
+        ReadReplicaRoutingDataSource.setReadOnly(true);
+        replica1Down.set(true);
+        for (int i = 0; i < 4; i++) {
+            assertEquals("replica-2", routing.getConnection().toString());
+        }
+        assertEquals(1, routing.getStats().replicas().get(0).failures());
+        assertFalse(routing.getStats().replicas().get(0).healthy());
+
+        replica1Down.set(false);
+        routing.checkReplicas();
+        assertTrue(routing.getStats().replicas().get(0).healthy());
+    }
+
+    @Test
+    public void sessionReadsItsWritesFromPrimary() throws SQLException {
+        ReadReplicaRoutingDataSource routing = routing();
+        MockHttpServletRequest writer = new MockHttpServletRequest();
+        writer.setSession(new MockHttpSession());
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(writer));
+        routing.markWritten();
+
+        ReadReplicaRoutingDataSource.setReadOnly(true);
+        assertEquals("primary", routing.getConnection().toString());
+        assertEquals(1, routing.getStats().stickyReads());
+
+        MockHttpServletRequest other = new MockHttpServletRequest();
+        other.setSession(new MockHttpSession());
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(other));
+        assertTrue(routing.getConnection().toString().startsWith("replica"));
+    }
+
+    @Test
+    public void writesMakeSessionStickyOnlyInTheirRoutingDataSource() throws SQLException {
+        ReadReplicaRoutingDataSource routing = routing();
+        ReadReplicaRoutingDataSource other = routing();
+        MockHttpServletRequest writer = new MockHttpServletRequest();
+        writer.setSession(new MockHttpSession());
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(writer));
+        routing.markWritten();
+
+        ReadReplicaRoutingDataSource.setReadOnly(true);
+        assertEquals("primary", routing.getConnection().toString());
+        assertTrue(other.getConnection().toString().startsWith("replica"));
+    }
+
+    /**
+     * Only connections of read-only transactions are routed, read endpoints have to start one
+     */
+    @Test
+    public void readEndpointsRunInReadOnlyTransactions() {
+        assertReadOnly(CRUDControllerHtml.class, "getAll");
+        assertReadOnly(CRUDControllerHtml.class, "view");
+        assertReadOnly(CRUDControllerHtml.class, "getCsvReport");
+        assertReadOnly(CRUDApiController.class, "getAll");
+        assertReadOnly(CRUDApiController.class, "settings");
+        assertReadOnly(QueryReportController.class, "runQuery");
+        assertReadOnly(QueryReportController.class, "getReport");
+        assertReadOnly(GlobalSearchController.class, "getSearchResult");
+        assertReadOnly(NativeQueries.class, "runReadOnly");
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "replica.jdbc-url", matches = ".+")
+    public void routesToReplicaInstance() throws SQLException {
+        HikariConfig primaryConfig = config(System.getProperty("primary.jdbc-url", "jdbc:postgresql://localhost:5432/openkoda"),
+                System.getProperty("primary.username", "postgres"), System.getProperty("primary.password", "postgres"));
+        HikariConfig replicaConfig = config(System.getProperty("replica.jdbc-url"),
+                System.getProperty("replica.username", "postgres"), System.getProperty("replica.password", "postgres"));
+        Datasources.Routing settings = new Datasources.Routing();
+        try (HikariDataSource primary = new HikariDataSource(primaryConfig)) {
+            ReadReplicaRoutingDataSource routing = Datasources.replicaRouting(primary, "test", List.of(replicaConfig), settings);
+            try {
+                routing.checkReplicas();
+                ReadReplicaRoutingDataSource.PoolStats replica = routing.getStats().replicas().get(0);
+                assertTrue(replica.healthy(), "replica lag " + replica.lagMs() + "ms");
+
+                String primaryPort = port(routing);
+                ReadReplicaRoutingDataSource.setReadOnly(true);
+                String replicaPort = port(routing);
+                LoggingComponent.debugLogger.debug("[read-replica] primary port {}, replica port {}, lag {}ms, {}",
+                        primaryPort, replicaPort, replica.lagMs(), routing.getStats());
+                assertNotEquals(primaryPort, replicaPort);
+                assertEquals(1, routing.getStats().replicas().get(0).connections());
+            } finally {
+                routing.close();
+            }
+        }
+    }
+
+    /**
+     * Under open-in-view one EntityManager runs all transactions of a request, each of them must get its own connection
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "replica.jdbc-url", matches = ".+")
+    public void readOnlyThenWriteTransactionInOneEntityManager() throws SQLException {
+        HikariConfig primaryConfig = config(System.getProperty("primary.jdbc-url", "jdbc:postgresql://localhost:5432/openkoda"),
+                System.getProperty("primary.username", "postgres"), System.getProperty("primary.password", "postgres"));
+        HikariConfig replicaConfig = config(System.getProperty("replica.jdbc-url"),
+                System.getProperty("replica.username", "postgres"), System.getProperty("replica.password", "postgres"));
+        Map<String, Object> jpaProperties = new HashMap<>();
+        new ReadReplicaConfig().readReplicaHibernatePropertiesCustomizer(
+                new MockEnvironment().withProperty("datasources.replicas[0].jdbcUrl", replicaConfig.getJdbcUrl()))
+                .customize(jpaProperties);
+        assertFalse(jpaProperties.isEmpty());
+
+        try (HikariDataSource primary = new HikariDataSource(primaryConfig)) {
+            String primaryPort = port(primary);
+            ReadReplicaRoutingDataSource routing = Datasources.replicaRouting(primary, "test", List.of(replicaConfig), new Datasources.Routing());
+            LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+            factoryBean.setDataSource(routing);
+            factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+            factoryBean.setPackagesToScan(ReadReplicaRoutingDataSourceTest.class.getPackageName() + ".noentities");
+            factoryBean.setJpaPropertyMap(jpaProperties);
+            factoryBean.afterPropertiesSet();
+            EntityManagerFactory entityManagerFactory = factoryBean.getObject();
+            ReadReplicaTransactionManager transactionManager = new ReadReplicaTransactionManager();
+            transactionManager.setEntityManagerFactory(entityManagerFactory);
+            transactionManager.afterPropertiesSet();
+
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+            try {
+                routing.checkReplicas();
+                TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+                readOnly.setReadOnly(true);
+                String readPort = readOnly.execute(status -> port(entityManager));
+                String writePort = new TransactionTemplate(transactionManager).execute(status -> port(entityManager));
+                String secondReadPort = readOnly.execute(status -> port(entityManager));
+
+                assertNotEquals(primaryPort, readPort);
+                assertEquals(primaryPort, writePort);
+                assertEquals(readPort, secondReadPort);
+            } finally {
+                TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+                entityManager.close();
+                factoryBean.destroy();
+                routing.close();
+            }
+        }
+    }
+
+    private static void assertReadOnly(Class<?> c, String methodName) {
+        List<Method> methods = Arrays.stream(c.getDeclaredMethods()).filter(m -> m.getName().equals(methodName)).toList();
+        assertFalse(methods.isEmpty(), c.getSimpleName() + "." + methodName);
+        for (Method m : methods) {
+            Transactional transactional = AnnotatedElementUtils.findMergedAnnotation(m, Transactional.class);
+            assertTrue(transactional != null && transactional.readOnly(), c.getSimpleName() + "." + methodName + " is not read-only");
+        }
+    }
+
+    private ReadReplicaRoutingDataSource routing() {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", dataSource("replica-1", replica1Down));
+        replicas.put("replica-2", dataSource("replica-2", new AtomicBoolean()));
+        return new ReadReplicaRoutingDataSource(dataSource("primary", new AtomicBoolean()), replicas, 5000, 5000,
+                replica -> {
+                    String name = replica.toString();
+                    if (name.equals("replica-1") && replica1Down.get()) {
+                        throw new SQLException(name + " down");
+                    }
+                    return lags.get(name);
+                });
+    }
+
+    private static DataSource dataSource(String name, AtomicBoolean down) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class[]{DataSource.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getConnection" -> {
+                        if (down.get()) {
+                            throw new SQLException(name + " down");
+                        }
+                        yield Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class},
+                                (c, m, a) -> m.getName().equals("toString") ? name : null);
+                    }
+                    case "isWrapperFor" -> false;
+                    case "toString" -> name;
+                    default -> null;
+                });
+    }
+
+    private static HikariConfig config(String jdbcUrl, String username, String password) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(2);
+        return config;
+    }
+
+    private static String port(EntityManager entityManager) {
+        return entityManager.createNativeQuery("SELECT current_setting('port')").getSingleResult().toString();
+    }
+
+    private static String port(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT current_setting('port')")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.configuration;
+
+import com.openkoda.AbstractTest;
+import com.openkoda.core.flow.LoggingComponent;
+import com.openkoda.core.helper.SqlCommentStatementInspector;
+import com.openkoda.core.security.OrganizationUser;
+import com.openkoda.core.security.UserProvider;
+import com.openkoda.model.PrivilegeNames;
+import com.openkoda.model.common.ModelConstants;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionContextDataSourceTest extends AbstractTest {
+
+    private static final String FORMULA_SQL = "SELECT ( CASE id WHEN " + ModelConstants.USER_ID_PLACEHOLDER + " THEN NULL ELSE '"
+            + PrivilegeNames._readUserData + "' END ) FROM (SELECT ?::bigint AS id) u";
+
+    @Inject
+    private DataSource dataSource;
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @Inject
+    private EntityManagerFactory entityManagerFactory;
+
+    @Inject
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void currentUserIdIsSetOnConnection() {
+        assertInstanceOf(SessionContextDataSource.class, dataSource);
+
+        mockAndAuthenticateUser(42l, "test@openkoda.com", "TEST", "");
+        assertEquals(42l, jdbcTemplate.queryForObject("SELECT " + ModelConstants.USER_ID_SESSION_VARIABLE_SQL, Long.class));
+
+        UserProvider.clearAuthentication();
+        assertEquals(OrganizationUser.nonExistingUserId, jdbcTemplate.queryForObject("SELECT " + ModelConstants.USER_ID_SESSION_VARIABLE_SQL, Long.class));
+    }
+
+    @Test
+    public void transactionManagerBeginsTransactionsWithSessionContext() {
+        assertInstanceOf(SessionContextJpaDialect.class, ((JpaTransactionManager) transactionManager).getJpaDialect());
+    }
+
+    /**
+     * Under open-in-view one EntityManager holds its connection for all transactions of a request, the user id
+     * must follow authentication changes between them (eg. RunAsService)
+     */
+    @Test
+    public void currentUserIdFollowsAuthenticationWithinOneEntityManager() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        try {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            mockAndAuthenticateUser(42l, "test@openkoda.com", "TEST", "");
+            assertEquals(42l, transaction.execute(status -> currentUserId(entityManager)));
+
+            mockAndAuthenticateUser(43l, "other@openkoda.com", "OTHER", "");
+            assertEquals(43l, transaction.execute(status -> currentUserId(entityManager)));
+
+            UserProvider.clearAuthentication();
+            assertEquals(OrganizationUser.nonExistingUserId, transaction.execute(status -> currentUserId(entityManager)));
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            entityManager.close();
+        }
+    }
+
+    @Test
+    public void placeholderIsReplacedWithSessionVariable() {
+        String sql = new SqlCommentStatementInspector().inspect(FORMULA_SQL);
+
+        assertFalse(sql.contains(ModelConstants.USER_ID_PLACEHOLDER));
+        mockAndAuthenticateUser(42l, "test@openkoda.com", "TEST", "");
+        assertNull(jdbcTemplate.queryForObject(sql, String.class, 42l));
+        assertEquals(PrivilegeNames._readUserData, jdbcTemplate.queryForObject(sql, String.class, 43l));
+    }
+
+    /**
+     * Executes the user privilege formula on one connection with the user id and request id inlined in the statement
+     * text, as before, and with the session variable, and prints execution times and the number of statements
+     * prepared on the server. Run with -Dbenchmark.sql-context=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.sql-context", matches = "true")
+    public void compareInlinedAndSessionVariableStatements() throws SQLException {
+        int iterations = Integer.getInteger("benchmark.sql-context.iterations", 20_000);
+        String sessionVariableSql = new SqlCommentStatementInspector().inspect(FORMULA_SQL);
+        try (Connection connection = dataSource.getConnection()) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                String inlined = FORMULA_SQL.replace(ModelConstants.USER_ID_PLACEHOLDER, String.valueOf(i % 500)) + " /*" + UUID.randomUUID() + "*/";
+                execute(connection, inlined, i);
+            }
+            long inlinedMs = (System.nanoTime() - start) / 1_000_000;
+            long inlinedPrepared = countPrepared(connection);
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                execute(connection, sessionVariableSql, i);
+            }
+            long sessionVariableMs = (System.nanoTime() - start) / 1_000_000;
+            long sessionVariablePrepared = countPrepared(connection) - inlinedPrepared;
+
+            LoggingComponent.debugLogger.debug("[sql-context] {} statements: inlined {} ms ({} server prepared), session variable {} ms ({} server prepared)",
+                    iterations, inlinedMs, inlinedPrepared, sessionVariableMs, sessionVariablePrepared);
+            assertTrue(sessionVariablePrepared > 0, "session variable statement should be prepared on the server");
+        }
+    }
+
+    private static long currentUserId(EntityManager entityManager) {
+        return ((Number) entityManager.createNativeQuery("SELECT " + ModelConstants.USER_ID_SESSION_VARIABLE_SQL).getSingleResult()).longValue();
+    }
+
+    private static void execute(Connection connection, String sql, long id) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, id);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+            }
+        }
+    }
+
+    private static long countPrepared(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT count(*) FROM pg_prepared_statements WHERE statement LIKE '%" + PrivilegeNames._readUserData + "%'");
+             ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.configuration.session;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs two Hazelcast members in this JVM, each with its own scope instance, sharing one http session
+ */
+public class AbstractHazelcastSessionScopeTest {
+
+    static class Cart implements Serializable {
+        String owner;
+        List<String> items = new ArrayList<>();
+        byte[] attachment = new byte[10_000];
+    }
+
+    static class CartScope extends AbstractHazelcastSessionScope<Cart> {
+        private final HazelcastInstance hazelcastInstance;
+
+        CartScope(HazelcastInstance hazelcastInstance) {
+            super("cart", 0);
+            this.hazelcastInstance = hazelcastInstance;
+        }
+
+        @Override
+        protected boolean isCluster() {
+            return true;
+        }
+
+        @Override
+        protected HazelcastInstance getHazelcastInstance() {
+            return hazelcastInstance;
+        }
+    }
+
+    private static HazelcastInstance first;
+    private static HazelcastInstance second;
+
+    private final MockHttpSession session = new MockHttpSession();
+
+    @BeforeAll
+    public static void startMembers() {
+        first = Hazelcast.newHazelcastInstance(config());
+        second = Hazelcast.newHazelcastInstance(config());
+        assertEquals(2, second.getCluster().getMembers().size());
+    }
+
+    @AfterAll
+    public static void stopMembers() {
+        second.shutdown();
+        first.shutdown();
+    }
+
+    @AfterEach
+    public void resetRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void onlyChangedFieldsAreReplicatedAndOtherMemberSeesThem() throws InterruptedException {
+        CartScope firstScope = new CartScope(first);
+        CartScope secondScope = new CartScope(second);
+
+        ServletRequestAttributes request = startRequest();
+        Cart cart = (Cart) firstScope.get("cart", Cart::new);
+        cart.items.add("book");
+        request.requestCompleted();
+        long initialBytes = firstScope.getStats().lastReplicatedBytes();
+        assertTrue(initialBytes > 10_000, "whole bean is replicated first, was " + initialBytes);
+
+        request = startRequest();
+        cart = (Cart) firstScope.get("cart", Cart::new);
+        cart.owner = "jane";
+        request.requestCompleted();
+        long deltaBytes = firstScope.getStats().lastReplicatedBytes();
+        assertTrue(deltaBytes < 1_000, "only the changed field is replicated, was " + deltaBytes);
+
+        request = startRequest();
+        firstScope.get("cart", Cart::new);
+        request.requestCompleted();
+        assertEquals(2, firstScope.getStats().replications());
+        assertEquals(2, firstScope.getStats().nearCacheHits());
+        assertEquals(initialBytes + deltaBytes, firstScope.getStats().replicatedBytes());
+
+        awaitReplicated("cartcart" + session.getId());
+        request = startRequest();
+        Cart replicated = (Cart) secondScope.get("cart", Cart::new);
+        request.requestCompleted();
+        assertEquals("jane", replicated.owner);
+        assertEquals(List.of("book"), replicated.items);
+        assertEquals(10_000, replicated.attachment.length);
+        assertEquals(0, secondScope.getStats().replications());
+    }
+
+    private void awaitReplicated(String key) throws InterruptedException {
+        Object expected = first.getReplicatedMap(AbstractHazelcastSessionScope.CACHE_NAME).get(key);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!expected.equals(second.getReplicatedMap(AbstractHazelcastSessionScope.CACHE_NAME).get(key))) {
+            assertTrue(System.currentTimeMillis() < deadline, "bean version not replicated");
+            Thread.sleep(20);
+        }
+    }
+
+    private ServletRequestAttributes startRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setSession(session);
+        ServletRequestAttributes attributes = new ServletRequestAttributes(request);
+        RequestContextHolder.setRequestAttributes(attributes);
+        return attributes;
+    }
+
+    private static Config config() {
+        Config config = new Config();
+        config.setClusterName("session-scope-test-" + ProcessHandle.current().pid());
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+        config.getNetworkConfig().setPort(5911).setPortAutoIncrement(true);
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getAutoDetectionConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1:5911").addMember("127.0.0.1:5912");
+        return config;
+    }
+}
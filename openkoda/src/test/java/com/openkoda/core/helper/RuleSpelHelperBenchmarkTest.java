@@ -0,0 +1,226 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.helper;
+
+import com.openkoda.core.flow.LoggingComponent;
+import com.openkoda.dto.RuleDto;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Root;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.expression.spel.SpelEvaluationException;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Benchmark of rule-heavy list filtering: 20 rules applied to 5000 rows, each rule parsed per row
+ * compared to rules compiled once by {@link RuleSpelHelper}. The timing comparison runs only with -Dbenchmark.rule-spel=true,
+ * number of rounds can be changed with -Drule.benchmark.rounds
+ */
+public class RuleSpelHelperBenchmarkTest {
+
+    private static final int RULES = 20;
+    private static final int ROWS = 5_000;
+    private static final int ROUNDS = Integer.getInteger("rule.benchmark.rounds", 3);
+
+    public static class Item {
+        private final String name;
+        private final String category;
+
+        Item(String name, String category) {
+            this.name = name;
+            this.category = category;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+    }
+
+    private final List<String> conditions = new ArrayList<>();
+    private final List<String> rules = new ArrayList<>();
+    private final List<Item> items = new ArrayList<>();
+
+    @BeforeEach
+    public void init() {
+        RuleSpelHelper.invalidateAll();
+        conditions.clear();
+        rules.clear();
+        items.clear();
+        for (int i = 0; i < RULES; i++) {
+            String condition = "name == 'item" + i + "' or category.contains('c" + (i % 7) + "')";
+            conditions.add(condition);
+            rules.add(condition + " ? category == 'matched' : category == 'other'");
+        }
+        for (int i = 0; i < ROWS; i++) {
+            items.add(new Item("item" + i, "c" + (i % 11)));
+        }
+    }
+
+    @Test
+    public void compiledRulesFilterLikeParsedRules() {
+        assertArrayEquals(filterParsingPerRow(1), filterWithCompiledRules(1));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.rule-spel", matches = "true")
+    public void compareWithParsingPerRow() {
+        long start = System.nanoTime();
+        int[] parsed = filterParsingPerRow(ROUNDS);
+        long parsePerRow = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int[] compiled = filterWithCompiledRules(ROUNDS);
+        long cached = System.nanoTime() - start;
+
+        LoggingComponent.debugLogger.debug("[compareWithParsingPerRow] {} rules x {} rows x {} rounds, parse per row: {} ms, compiled and cached: {} ms",
+                RULES, ROWS, ROUNDS, parsePerRow / 1_000_000, cached / 1_000_000);
+        assertArrayEquals(parsed, compiled);
+    }
+
+    @Test
+    public void returnsSameCompiledRuleForSameText() {
+        String rule = rules.get(0);
+        CompiledRule first = RuleSpelHelper.compile(rule);
+        assertSame(first, RuleSpelHelper.compile(new String(rule)));
+        assertNotSame(first, RuleSpelHelper.compile(rules.get(1)));
+    }
+
+    /**
+     * Predicate built by the compiled rule must be the same as the one {@link RuleSpelHelper#parse} builds from the AST
+     */
+    @Test
+    public void compiledPredicateIsTranslatedLikeParsedRule() {
+        CriteriaBuilder cb = recorder(CriteriaBuilder.class, "cb");
+        Root<?> root = recorder(Root.class, "root");
+        EntityManager entityManager = mock(EntityManager.class);
+        when(entityManager.getCriteriaBuilder()).thenReturn(cb);
+
+        for (String condition : List.of(
+                "name == 'a'",
+                "name != 'a'",
+                "amount > '5'",
+                "amount < '5'",
+                "name.contains('ab')",
+                "{'a','b'}.contains(category)",
+                "name == 'a' and category != 'b'",
+                "name == 'a' or category.contains('c')",
+                "name == 'a' and {'x','y'}.contains(category) or amount > '3'")) {
+            String parsed = RuleSpelHelper.parse(0, new TreeMap<>(), root, "", List.of(), entityManager,
+                    new SpelExpressionParser().parseRaw(condition).getAST()).getT2().toString();
+            assertEquals(parsed, RuleSpelHelper.getPredicate(condition, root, cb).toString(), condition);
+            assertEquals(parsed, RuleSpelHelper.getPredicate(condition + " ? category == 'x' : null", root, cb).toString(), condition);
+        }
+        assertEquals("cb.like(root.get(name),%ab%)", RuleSpelHelper.getPredicate("name.contains('ab')", root, cb).toString());
+        assertEquals("root.get(category).in([a, b])", RuleSpelHelper.getPredicate("{'a','b'}.contains(category)", root, cb).toString());
+    }
+
+    @Test
+    public void rulesCannotReferenceTypes() {
+        assertThrows(SpelEvaluationException.class, () -> RuleSpelHelper.matches("T(java.lang.Math).abs(-1) == 1", items.get(0)));
+        assertTrue(RuleSpelHelper.matches("category.contains('c0')", items.get(0)));
+    }
+
+    @Test
+    public void ruleDtoIsCopiedFromCachedStatements() {
+        String rule = "name == 'test' ? category == 'test2' : category.contains('test3')";
+        RuleDto first = RuleSpelHelper.parseToRuleDto(rule);
+        first.getIfStatements().get(0L).put(RuleDto.StatementKey.Value, "changed");
+        first.getIfStatements().put(1L, new TreeMap<>());
+
+        RuleDto second = RuleSpelHelper.parseToRuleDto(rule);
+        assertEquals("test", second.getIfStatements().get(0L).get(RuleDto.StatementKey.Value));
+        assertEquals(1, second.getIfStatements().size());
+        assertEquals("SELECT CASE WHEN (name == 'test') THEN (category == 'test2') ELSE category.contains('test3') FROM items",
+                RuleSpelHelper.getSelect(rule, "items"));
+    }
+
+    /**
+     * @return number of rows matching each rule condition, parsing the condition for each row
+     */
+    private int[] filterParsingPerRow(int rounds) {
+        int[] result = new int[RULES];
+        for (int round = 0; round < rounds; round++) {
+            for (int r = 0; r < RULES; r++) {
+                result[r] = 0;
+                for (Item item : items) {
+                    if (Boolean.TRUE.equals(new SpelExpressionParser().parseExpression(conditions.get(r)).getValue(item, Boolean.class))) {
+                        result[r]++;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return number of rows matching each rule, with rules compiled by {@link RuleSpelHelper}
+     */
+    private int[] filterWithCompiledRules(int rounds) {
+        int[] result = new int[RULES];
+        for (int round = 0; round < rounds; round++) {
+            for (int r = 0; r < RULES; r++) {
+                result[r] = 0;
+                for (Item item : items) {
+                    if (RuleSpelHelper.matches(rules.get(r), item)) {
+                        result[r]++;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return proxy describing each call made on it, results of calls returning interfaces are proxies too
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T recorder(Class<T> type, String description) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, (proxy, method, args) -> switch (method.getName()) {
+            case "toString" -> description;
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            default -> {
+                String call = description + "." + method.getName() + "(" + (args == null ? "" : Arrays.stream(args)
+                        .map(a -> a instanceof Object[] array ? Arrays.toString(array) : String.valueOf(a))
+                        .collect(Collectors.joining(","))) + ")";
+                yield method.getReturnType().isInterface() ? recorder(method.getReturnType(), call) : null;
+            }
+        });
+    }
+}
@@ -0,0 +1,106 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.profiler;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProfilerTest {
+
+    private Profiler profiler;
+
+    @BeforeEach
+    public void init() {
+        profiler = new Profiler(0);
+        ReflectionTestUtils.setField(profiler, "slowRequestThresholdMs", 0L);
+        ReflectionTestUtils.setField(profiler, "slowRequestsMax", 2);
+        ReflectionTestUtils.setField(profiler, "methodsMax", 100);
+        profiler.init();
+    }
+
+    @Test
+    public void histogramPercentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.recordNanos(i * 1000L);
+        }
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000, histogram.getMaxMicros());
+        assertEquals(5_000, histogram.getPercentileMicros(50), 5_000 * 0.07);
+        assertEquals(9_900, histogram.getPercentileMicros(99), 9_900 * 0.07);
+        assertEquals(10_000, histogram.getPercentileMicros(100));
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (long micros = 0; micros < 1 << 20; micros++) {
+            int bucket = LatencyHistogram.bucket(micros);
+            assertTrue(micros <= LatencyHistogram.upperBound(bucket));
+            assertTrue(bucket == 0 || micros > LatencyHistogram.upperBound(bucket - 1));
+        }
+    }
+
+    @Test
+    public void disabledProfilerDoesNotSampleNorTrackRequests() {
+        assertFalse(profiler.shouldSample());
+        profiler.startRequest("GET /html/organization/all");
+        Profiler.onStatement("select 1");
+        Profiler.onStatementExecuted(1_000_000);
+        profiler.endRequest();
+        assertEquals(0, profiler.snapshot().requests());
+        assertTrue(profiler.snapshot().slowRequests().isEmpty());
+    }
+
+    @Test
+    public void slowRequestHasSqlAndMethodBreakdown() {
+        profiler.setSamplingRate(1);
+        profiler.startRequest("GET /html/organization/all");
+        assertTrue(profiler.shouldSample());
+        profiler.recordMethod("OrganizationService.find(..)", 3_000_000);
+        Profiler.onStatement("select o from organization o");
+        Profiler.onStatementExecuted(2_000_000);
+        profiler.endRequest();
+
+        Profiler.Snapshot snapshot = profiler.snapshot();
+        assertEquals(1, snapshot.requests());
+        assertEquals(1, snapshot.sql().count());
+        assertEquals(1, snapshot.methods().size());
+        Profiler.SlowRequest slowRequest = snapshot.slowRequests().get(0);
+        assertEquals(1, slowRequest.sqlCount());
+        assertTrue(slowRequest.methods().get(0).startsWith("OrganizationService.find(..): 1x"));
+        assertTrue(slowRequest.statements().get(0).endsWith("select o from organization o"));
+
+        for (int i = 0; i < 3; i++) {
+            profiler.startRequest("GET /" + i);
+            profiler.endRequest();
+        }
+        assertEquals(2, profiler.snapshot().slowRequests().size());
+        assertEquals("GET /2", profiler.snapshot().slowRequests().get(0).request());
+
+        profiler.reset();
+        assertEquals(0, profiler.snapshot().requests());
+        assertTrue(profiler.snapshot().methods().isEmpty());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.repository.pagination;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.MethodParameter;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CountModePageableArgumentResolverTest {
+
+    private final CountModePageableArgumentResolver resolver = new CountModePageableArgumentResolver(new PageableHandlerMethodArgumentResolver());
+
+    @PageCount(CountMode.SLICE)
+    static class SliceController {
+        public void list(@Qualifier("item") Pageable pageable) {}
+        public void cached(@Qualifier("item") @PageCount(CountMode.CACHED) Pageable pageable) {}
+    }
+
+    static class PlainController {
+        public void list(@Qualifier("item") Pageable pageable) {}
+    }
+
+    @Test
+    public void resolvesOnlyOptedInParameters() throws Exception {
+        assertTrue(resolver.supportsParameter(parameter(SliceController.class, "list")));
+        assertTrue(resolver.supportsParameter(parameter(SliceController.class, "cached")));
+        assertFalse(resolver.supportsParameter(parameter(PlainController.class, "list")));
+    }
+
+    @Test
+    public void parameterAnnotationOverridesClassAnnotation() throws Exception {
+        MockHttpServletRequest request = request("/html/item/all");
+        request.addParameter("item_page", "2");
+        request.addParameter("item_size", "20");
+
+        Pageable slice = resolver.resolveArgument(parameter(SliceController.class, "list"), null, new ServletWebRequest(request), null);
+        Pageable cached = resolver.resolveArgument(parameter(SliceController.class, "cached"), null, new ServletWebRequest(request), null);
+
+        assertEquals(CountMode.SLICE, CountModePageable.countMode(slice));
+        assertNull(((CountModePageable) slice).getCountKey());
+        assertEquals(CountMode.CACHED, CountModePageable.countMode(cached));
+        assertNotNull(((CountModePageable) cached).getCountKey());
+        assertEquals(2, cached.getPageNumber());
+        assertEquals(20, cached.getPageSize());
+    }
+
+    @Test
+    public void countKeyIgnoresPagingButNotFilters() throws Exception {
+        MockHttpServletRequest first = request("/html/item/all");
+        first.addParameter("item_search", "abc");
+        MockHttpServletRequest next = request("/html/item/all");
+        next.addParameter("item_search", "abc");
+        next.addParameter("item_page", "3");
+        next.addParameter("item_sort", "name,desc");
+        MockHttpServletRequest filtered = request("/html/item/all");
+        filtered.addParameter("item_search", "abd");
+
+        assertEquals(PaginationHelper.countKey(first, "item"), PaginationHelper.countKey(next, "item"));
+        assertNotEquals(PaginationHelper.countKey(first, "item"), PaginationHelper.countKey(filtered, "item"));
+    }
+
+    @Test
+    public void pageFromSliceKeepsNavigation() {
+        Pageable pageable = CountModePageable.of(PageRequest.of(1, 10), CountMode.SLICE, null);
+        CountModePage<Integer> withNext = CountModePage.of(new SliceImpl<>(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), pageable, true));
+        CountModePage<Integer> last = CountModePage.of(new SliceImpl<>(List.of(1, 2, 3), pageable, false));
+
+        assertTrue(withNext.hasNext());
+        assertFalse(withNext.isTotalExact());
+        assertEquals(3, withNext.getTotalPages());
+        assertFalse(last.hasNext());
+        assertTrue(last.isTotalExact());
+        assertEquals(13, last.getTotalElements());
+        assertInstanceOf(CountModePageable.class, pageable.next());
+    }
+
+    private static MockHttpServletRequest request(String uri) {
+        return new MockHttpServletRequest("GET", uri);
+    }
+
+    private static MethodParameter parameter(Class<?> controller, String method) throws NoSuchMethodException {
+        return new MethodParameter(controller.getMethod(method, Pageable.class), 0);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service;
+
+import com.openkoda.AbstractTest;
+import com.openkoda.core.flow.LoggingComponent;
+import com.openkoda.model.notification.Notification;
+import com.openkoda.repository.notifications.NotificationRepository;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Inserts 100k notifications with {@link BulkPersistService} (pooled-lo ids, JDBC batching) and compares the rate
+ * with saving one notification at a time through the repository. Needs the test database, run with
+ * -Dbenchmark.bulk-persist=true, number of rows can be changed with -Dbenchmark.bulk-persist.rows
+ */
+@EnabledIfSystemProperty(named = "benchmark.bulk-persist", matches = "true")
+public class BulkPersistServiceBenchmarkTest extends AbstractTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.bulk-persist.rows", 100_000);
+    private static final int SINGLE_ROWS = Math.min(ROWS, 5_000);
+    private static final String MESSAGE = "bulk-persist-benchmark";
+
+    @Inject
+    private BulkPersistService bulkPersistService;
+
+    @Inject
+    private NotificationRepository notificationRepository;
+
+    @Inject
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @AfterEach
+    public void cleanup() {
+        transactionTemplate.executeWithoutResult(s ->
+                entityManager.createQuery("delete from Notification n where n.message = :message").setParameter("message", MESSAGE).executeUpdate());
+    }
+
+    @Test
+    public void insertNotifications() {
+        long start = System.nanoTime();
+        int persisted = bulkPersistService.persistAll(notifications(ROWS));
+        long bulk = System.nanoTime() - start;
+        assertEquals(ROWS, persisted);
+
+        start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(s -> notifications(SINGLE_ROWS).forEach(notificationRepository::save));
+        long single = System.nanoTime() - start;
+
+        LoggingComponent.debugLogger.debug("[BulkPersistServiceBenchmarkTest] bulk persist: {} rows in {} ms, repository save: {} rows in {} ms",
+                ROWS, bulk / 1_000_000, SINGLE_ROWS, single / 1_000_000);
+    }
+
+    private static List<Notification> notifications(int count) {
+        List<Notification> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(new Notification(MESSAGE, Notification.NotificationType.INFO, null));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service;
+
+import com.openkoda.core.flow.LoggingComponent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark of {@link ThymeleafService#prepareContentForHtml(String, Map)} rendering pages of 100 widgets,
+ * compared to the previous engine-per-call path. The comparison runs only with -Dbenchmark.thymeleaf=true,
+ * number of pages can be raised with -Dthymeleaf.benchmark.pages
+ */
+public class ThymeleafServiceBenchmarkTest {
+
+    private static final int PAGES = Integer.getInteger("thymeleaf.benchmark.pages", 20);
+    private static final int WIDGETS_PER_PAGE = 100;
+    private static final int DISTINCT_WIDGETS = 10;
+
+    private StringTemplateResolver stringTemplateResolver;
+    private ThymeleafService service;
+    private List<String> widgets;
+
+    @BeforeEach
+    public void init() {
+        stringTemplateResolver = new StringTemplateResolver();
+        stringTemplateResolver.setTemplateMode(TemplateMode.HTML);
+        service = new ThymeleafService(new TemplateEngine(), stringTemplateResolver, 100);
+        widgets = new ArrayList<>();
+        for (int i = 0; i < DISTINCT_WIDGETS; i++) {
+            widgets.add("<div class=\"widget-" + i + "\"><h3 th:text=\"${title}\">title</h3><ul>"
+                    + "<li th:each=\"item : ${items}\" th:text=\"${item}\" th:classappend=\"${item == title} ? 'active'\">item</li>"
+                    + "</ul><span th:if=\"${items.size() > 2}\" th:text=\"${'total ' + items.size()}\"></span></div>");
+        }
+    }
+
+    @Test
+    public void parsesEachDistinctWidgetOnce() {
+        for (int i = 0; i < 3; i++) {
+            renderPage(service::prepareContentForHtml);
+        }
+        ThymeleafService.StringTemplateCacheStatistics statistics = service.getStringTemplateCacheStatistics();
+        assertEquals(3 * WIDGETS_PER_PAGE, statistics.renders());
+        assertEquals(DISTINCT_WIDGETS, statistics.parses());
+        assertEquals(DISTINCT_WIDGETS, statistics.cachedTemplates());
+        assertTrue(service.prepareContentForHtml(widgets.get(0), model(0)).contains("<h3>Widget 0</h3>"));
+
+        service.evictStringTemplate(widgets.get(0));
+        service.prepareContentForHtml(widgets.get(0), model(0));
+        assertEquals(DISTINCT_WIDGETS + 1, service.getStringTemplateCacheStatistics().parses());
+    }
+
+    @Test
+    public void invalidTemplateIsParsedOnce() {
+        String invalid = "<div th:text=\"${title}\" th:text=\"${title}\"></div>";
+        String first = service.prepareContentForHtml(invalid, model(1));
+        String second = service.prepareContentForHtml(invalid, model(1));
+        assertEquals(first, second);
+        ThymeleafService.StringTemplateCacheStatistics statistics = service.getStringTemplateCacheStatistics();
+        assertEquals(1, statistics.parses());
+        assertEquals(1, statistics.invalidRenders());
+        assertEquals(1, statistics.invalidTemplates());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.thymeleaf", matches = "true")
+    public void compareWithEnginePerCall() {
+        //warm up both paths
+        renderPage(this::renderWithNewEngine);
+        renderPage(service::prepareContentForHtml);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < PAGES; i++) {
+            renderPage(this::renderWithNewEngine);
+        }
+        long perCall = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < PAGES; i++) {
+            renderPage(service::prepareContentForHtml);
+        }
+        long shared = System.nanoTime() - start;
+
+        LoggingComponent.debugLogger.debug("[compareWithEnginePerCall] {} pages of {} widgets, engine per call: {} us/page, shared engine: {} us/page",
+                PAGES, WIDGETS_PER_PAGE, perCall / 1000 / PAGES, shared / 1000 / PAGES);
+        assertEquals(DISTINCT_WIDGETS, service.getStringTemplateCacheStatistics().parses());
+    }
+
+    private void renderPage(BiFunction<String, Map<String, Object>, String> renderer) {
+        StringBuilder page = new StringBuilder();
+        for (int i = 0; i < WIDGETS_PER_PAGE; i++) {
+            page.append(renderer.apply(widgets.get(i % DISTINCT_WIDGETS), model(i)));
+        }
+        assertTrue(page.length() > 0);
+    }
+
+    /**
+     * Rendering path used by prepareContentForHtml before the shared string template engine
+     */
+    private String renderWithNewEngine(String html, Map<String, Object> model) {
+        TemplateEngine engine = new TemplateEngine();
+        engine.addTemplateResolver(stringTemplateResolver);
+        Context ctx = new Context();
+        ctx.setVariables(model);
+        return engine.process(html, ctx);
+    }
+
+    private static Map<String, Object> model(int i) {
+        return Map.of("title", "Widget " + i, "items", List.of("a" + i, "b" + i, "Widget " + i));
+    }
+}
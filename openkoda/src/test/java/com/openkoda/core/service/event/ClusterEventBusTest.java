@@ -0,0 +1,149 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.event;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.openkoda.core.service.event.ClusterEvent.EventType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs two Hazelcast members in this JVM and propagates events between them
+ */
+public class ClusterEventBusTest {
+
+    private static final String TOPIC = "clusterEventBusTest";
+
+    private static HazelcastInstance first;
+    private static HazelcastInstance second;
+
+    @BeforeAll
+    public static void startMembers() {
+        first = Hazelcast.newHazelcastInstance(config());
+        second = Hazelcast.newHazelcastInstance(config());
+        assertEquals(2, second.getCluster().getMembers().size());
+    }
+
+    @AfterAll
+    public static void stopMembers() {
+        second.shutdown();
+        first.shutdown();
+    }
+
+    @Test
+    public void eventsAreCoalescedAndDeliveredToAllMembers() throws InterruptedException {
+        List<ClusterEvent> appliedOnFirst = new CopyOnWriteArrayList<>();
+        List<ClusterEvent> appliedOnSecond = new CopyOnWriteArrayList<>();
+        ClusterEventBus firstBus = new ClusterEventBus(first, TOPIC, 50, 500, appliedOnFirst::addAll).start();
+        ClusterEventBus secondBus = new ClusterEventBus(second, TOPIC, 50, 500, appliedOnSecond::addAll).start();
+        try {
+            for (int i = 0; i < 100; i++) {
+                firstBus.publish(FORM_RELOAD, 1);
+                firstBus.publish(FORM_RELOAD, 2);
+            }
+            firstBus.publish(SCHEDULER_ADD, 3);
+            firstBus.publish(SCHEDULER_REMOVE, 3);
+            firstBus.publish(SCHEDULER_REMOVE, 4);
+            firstBus.publish(SCHEDULER_ADD, 4);
+
+            for (List<ClusterEvent> applied : List.of(appliedOnFirst, appliedOnSecond)) {
+                Map<String, ClusterEvent> last = awaitLastPerComponent(applied, 4);
+                assertEquals(FORM_RELOAD, last.get("FORM:1").eventType);
+                assertEquals(FORM_RELOAD, last.get("FORM:2").eventType);
+                assertEquals(SCHEDULER_REMOVE, last.get("SCHEDULER:3").eventType);
+                assertEquals(SCHEDULER_RELOAD, last.get("SCHEDULER:4").eventType);
+                assertTrue(applied.size() < 20, "events should be coalesced, applied " + applied.size());
+            }
+
+            ClusterEventBus.Stats published = firstBus.getStats();
+            assertEquals(204, published.published());
+            assertTrue(published.messages() < 10);
+            ClusterEventBus.Stats received = secondBus.getStats();
+            assertTrue(received.received() < 20);
+            assertTrue(received.maxLagMs() >= 0 && received.avgLagMs() >= 0);
+        } finally {
+            firstBus.close();
+            secondBus.close();
+        }
+    }
+
+    @Test
+    public void staleEventsAreDropped() {
+        ClusterEventBus bus = new ClusterEventBus(first, TOPIC + "Stale", 50, 500, events -> {});
+        ClusterEventBatch newer = new ClusterEventBatch("a", 0, List.of(new ClusterEvent(FORM_RELOAD, 7, 10)));
+        ClusterEventBatch older = new ClusterEventBatch("b", 0, List.of(new ClusterEvent(FORM_REMOVE, 7, 5)));
+
+        List<ClusterEvent> result = bus.coalesceReceived(List.of(newer, older), 1);
+
+        assertEquals(1, result.size());
+        assertEquals(FORM_RELOAD, result.get(0).eventType);
+        assertEquals(1, bus.getStats().stale());
+        assertTrue(bus.coalesceReceived(List.of(older), 1).isEmpty());
+    }
+
+    @Test
+    public void coalescedEventHasTheEffectOfTheSequence() {
+        assertEquals(FORM_ADD, new ClusterEvent(FORM_ADD, 1, 1).coalesce(new ClusterEvent(FORM_RELOAD, 1, 2)).eventType);
+        assertEquals(FORM_REMOVE, new ClusterEvent(FORM_ADD, 1, 1).coalesce(new ClusterEvent(FORM_REMOVE, 1, 2)).eventType);
+        assertEquals(FORM_RELOAD, new ClusterEvent(FORM_REMOVE, 1, 1).coalesce(new ClusterEvent(FORM_ADD, 1, 2)).eventType);
+        assertEquals(SERVER_JS_RELOAD, new ClusterEvent(SERVER_JS_REMOVE, 1, 1).coalesce(new ClusterEvent(SERVER_JS_RELOAD, 1, 2)).eventType);
+        assertEquals(2, new ClusterEvent(FORM_RELOAD, 1, 1).coalesce(new ClusterEvent(FORM_RELOAD, 1, 2)).version);
+    }
+
+    private static Map<String, ClusterEvent> awaitLastPerComponent(List<ClusterEvent> applied, int components) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        Map<String, ClusterEvent> last = new HashMap<>();
+        while (System.currentTimeMillis() < deadline) {
+            last.clear();
+            applied.forEach(e -> last.put(e.key(), e));
+            if (last.size() >= components) {
+                Thread.sleep(200);
+                applied.forEach(e -> last.put(e.key(), e));
+                return last;
+            }
+            Thread.sleep(20);
+        }
+        fail("events not delivered, got " + applied);
+        return last;
+    }
+
+    private static Config config() {
+        Config config = new Config();
+        config.setClusterName("cluster-event-bus-test-" + ProcessHandle.current().pid());
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+        config.getNetworkConfig().setPort(5901).setPortAutoIncrement(true);
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getAutoDetectionConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1:5901").addMember("127.0.0.1:5902");
+        return config;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.event;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.scheduling.support.SimpleTriggerContext;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScheduledJobTest {
+
+    @Test
+    public void jobsSharingCronAreSpreadWithinWindow() {
+        Set<Long> offsets = new HashSet<>();
+        for (long id = 1; id <= 100; id++) {
+            long offset = ScheduledJob.offset(id, "0 0 * * * *", 60_000);
+            assertTrue(offset >= 0 && offset < 60_000);
+            assertEquals(offset, ScheduledJob.offset(id, "0 0 * * * *", 60_000));
+            offsets.add(offset / 1000);
+        }
+        assertTrue(offsets.size() > 40, "offsets should be spread over the window, got " + offsets.size() + " distinct seconds");
+    }
+
+    @Test
+    public void offsetIsAtMostHalfOfCronPeriod() {
+        assertTrue(ScheduledJob.offset(7, "*/10 * * * * *", 60_000) < 5_000);
+        assertEquals(0, ScheduledJob.offset(7, "0 0 * * * *", 0));
+        assertTrue(ScheduledJob.offset(7, "0 0,1 * * * *", 60_000) < 30_000);
+    }
+
+    @Test
+    public void minIntervalIsShortestGapBetweenExecutions() {
+        assertEquals(60_000L, ScheduledJob.minInterval(CronExpression.parse("0 0,1 * * * *")));
+        assertEquals(86_400_000L, ScheduledJob.minInterval(CronExpression.parse("0 0 9 * * MON-FRI")));
+        assertEquals(900_000L, ScheduledJob.minInterval(CronExpression.parse("0 */15 9-17 * * *")));
+    }
+
+    @Test
+    public void nextExecutionIsShiftedByOffset() {
+        ScheduledJob job = new ScheduledJob(3, "0 * * * * *", 60_000);
+        Instant next = job.nextExecution(new SimpleTriggerContext());
+        assertEquals(job.offsetMs, next.toEpochMilli() % 60_000);
+        assertEquals(next, job.getStats().plannedAt());
+    }
+
+    @Test
+    public void overlappingRunIsSkipped() {
+        ScheduledJob job = new ScheduledJob(1, "0 0 * * * *", 0);
+        assertTrue(job.tryStart());
+        assertFalse(job.tryStart());
+        job.finished(25);
+        assertTrue(job.tryStart());
+        job.finished(75);
+
+        ScheduledJob.Stats stats = job.getStats();
+        assertEquals(2, stats.runs());
+        assertEquals(1, stats.overlapsSkipped());
+        assertEquals(75, stats.maxDurationMs());
+        assertEquals(50, stats.avgDurationMs(), 0.001);
+        assertFalse(stats.running());
+    }
+}
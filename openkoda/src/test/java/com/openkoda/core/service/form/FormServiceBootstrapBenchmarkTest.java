@@ -0,0 +1,151 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.form;
+
+import com.openkoda.core.flow.LoggingComponent;
+import com.openkoda.core.form.FrontendMappingDefinition;
+import com.openkoda.core.form.FrontendMappingFieldDefinition;
+import com.openkoda.model.component.Form;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark of form definition bootstrap in {@link FormService#compileAll(List)} for 500 forms, serial compared to parallel
+ * evaluation, and cache behaviour on reload. JS evaluation is replaced by a fixed cost, which can be changed with
+ * -Dform.benchmark.evaluation-ms. The timing comparison runs only with -Dbenchmark.form-bootstrap=true
+ */
+public class FormServiceBootstrapBenchmarkTest {
+
+    private static final int FORMS = 500;
+    private static final long EVALUATION_MS = Long.getLong("form.benchmark.evaluation-ms", 2);
+
+    private List<Form> forms;
+
+    @BeforeEach
+    public void init() {
+        forms = new ArrayList<>();
+        for (long i = 0; i < FORMS; i++) {
+            Form f = new Form();
+            f.setId(i);
+            f.setName("form" + i);
+            f.setCode("a => a.text('title').text('description" + i + "')");
+            f.setReadPrivilegeString("readOrgData");
+            f.setWritePrivilegeString("manageOrgData");
+            forms.add(f);
+        }
+    }
+
+    @Test
+    public void evaluatesOnlyChangedForms() {
+        CountingFormService service = service(4, null);
+        Map<Long, FrontendMappingDefinition> first = service.compileAll(forms);
+        assertEquals(FORMS, first.size());
+        assertEquals(FORMS, service.evaluations.get());
+
+        Map<Long, FrontendMappingDefinition> second = service.compileAll(forms);
+        assertEquals(FORMS, service.evaluations.get());
+        assertSame(first.get(7L), second.get(7L));
+
+        forms.get(7).setCode("a => a.text('name')");
+        forms.get(8).setWritePrivilegeString("readOrgData");
+        Map<Long, FrontendMappingDefinition> third = service.compileAll(forms);
+        assertEquals(FORMS + 2, service.evaluations.get());
+        assertNotSame(first.get(7L), third.get(7L));
+        assertSame(first.get(9L), third.get(9L));
+    }
+
+    @Test
+    public void failedEvaluationFailsWholeBatch() {
+        CountingFormService service = service(4, "form13");
+        assertThrows(RuntimeException.class, () -> service.compileAll(forms));
+    }
+
+    @Test
+    public void registrationHashCoversControllerSettings() {
+        Form f = forms.get(0);
+        String hash = FormService.registrationHash(f);
+        assertEquals(hash, FormService.registrationHash(f));
+        f.setTableColumns("title");
+        assertNotEquals(hash, FormService.registrationHash(f));
+        assertEquals(FormService.definitionHash(forms.get(1)), FormService.definitionHash(forms.get(1)));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.form-bootstrap", matches = "true")
+    public void compareSerialWithParallel() {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+        long start = System.nanoTime();
+        service(1, null).compileAll(forms);
+        long serial = System.nanoTime() - start;
+
+        CountingFormService parallelService = service(threads, null);
+        start = System.nanoTime();
+        parallelService.compileAll(forms);
+        long parallel = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        parallelService.compileAll(forms);
+        long reload = System.nanoTime() - start;
+
+        LoggingComponent.debugLogger.debug("[compareSerialWithParallel] {} forms, {} ms per evaluation, serial: {} ms, {} threads: {} ms, unchanged reload: {} ms",
+                FORMS, EVALUATION_MS, serial / 1_000_000, threads, parallel / 1_000_000, reload / 1_000_000);
+        assertEquals(FORMS, parallelService.evaluations.get());
+    }
+
+    private CountingFormService service(int threads, String failingForm) {
+        CountingFormService result = new CountingFormService(failingForm);
+        ReflectionTestUtils.setField(result, "bootstrapThreads", threads);
+        ReflectionTestUtils.setField(result, "bootstrapTimeoutSeconds", 60L);
+        return result;
+    }
+
+    static class CountingFormService extends FormService {
+
+        final AtomicInteger evaluations = new AtomicInteger();
+        final String failingForm;
+
+        CountingFormService(String failingForm) {
+            this.failingForm = failingForm;
+        }
+
+        @Override
+        FrontendMappingDefinition evaluate(Form form) {
+            evaluations.incrementAndGet();
+            LockSupport.parkNanos(EVALUATION_MS * 1_000_000);
+            if (form.getName().equals(failingForm)) {
+                throw new RuntimeException("Error when evaluating js");
+            }
+            return new FrontendMappingDefinition(form.getName(), new FrontendMappingFieldDefinition[0], null, null);
+        }
+    }
+}
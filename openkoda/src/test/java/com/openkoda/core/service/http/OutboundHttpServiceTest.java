@@ -0,0 +1,214 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link OutboundHttpService} against a local stub server injecting latency and errors
+ */
+public class OutboundHttpServiceTest {
+
+    /** status and delay of the next responses of the stub, when empty the stub answers 200 immediately */
+    private final BlockingQueue<int[]> script = new LinkedBlockingQueue<>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private HttpServer server;
+    private String url;
+    private OutboundHttpService service;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            hits.incrementAndGet();
+            int[] next = script.poll();
+            int status = next == null ? 200 : next[0];
+            int delay = next == null ? 0 : next[1];
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("{\"status\":" + status + "}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("outbound.http.default.read-timeout-ms", "300")
+                .withProperty("outbound.http.default.retry.backoff-ms", "10")
+                .withProperty("outbound.http.default.retry.max-backoff-ms", "50")
+                .withProperty("outbound.http.default.circuit.failure-threshold", "2")
+                .withProperty("outbound.http.default.circuit.open-ms", "60000")
+                .withProperty("outbound.http.bulkhead.max-concurrent", "1")
+                .withProperty("outbound.http.bulkhead.bulkhead-wait-ms", "0")
+                .withProperty("outbound.http.bulkhead.read-timeout-ms", "5000")
+                .withProperty("outbound.http.patient.read-timeout-ms", "5000");
+        service = new OutboundHttpService();
+        ReflectionTestUtils.setField(service, "environment", environment);
+        ReflectionTestUtils.setField(service, "poolMaxTotal", 20);
+        ReflectionTestUtils.setField(service, "poolMaxPerRoute", 10);
+        ReflectionTestUtils.setField(service, "poolIdleTimeoutSeconds", 30L);
+        ReflectionTestUtils.setField(service, "poolTimeToLiveSeconds", 300L);
+        service.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void idempotentCallIsRetriedOnServerErrors() {
+        script.add(new int[]{503, 0});
+        script.add(new int[]{500, 0});
+        String result = service.execute("retry", rt -> rt.getForObject(url, String.class));
+        assertEquals("{\"status\":200}", result);
+        assertEquals(3, hits.get());
+        assertEquals(CircuitBreaker.State.CLOSED, service.getCircuitState("retry"));
+    }
+
+    @Test
+    public void nonIdempotentCallIsNotRetriedOnServerError() {
+        script.add(new int[]{500, 0});
+        assertThrows(HttpServerErrorException.class, () -> service.execute("post", false, rt -> rt.postForObject(url, "{}", String.class)));
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    public void clientErrorIsNotRetried() {
+        script.add(new int[]{404, 0});
+        assertThrows(RestClientException.class, () -> service.execute("notfound", rt -> rt.getForObject(url, String.class)));
+        assertEquals(1, hits.get());
+        assertEquals(CircuitBreaker.State.CLOSED, service.getCircuitState("notfound"));
+    }
+
+    @Test
+    public void readTimeoutIsEnforced() {
+        for (int i = 0; i < 3; i++) {
+            script.add(new int[]{200, 2000});
+        }
+        long start = System.currentTimeMillis();
+        assertThrows(ResourceAccessException.class, () -> service.execute("slow", rt -> rt.getForObject(url, String.class)));
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue(elapsed < 1900, "3 attempts with 300 ms read timeout took " + elapsed + " ms");
+    }
+
+    @Test
+    public void circuitOpensAfterConsecutiveFailures() {
+        for (int i = 0; i < 6; i++) {
+            script.add(new int[]{500, 0});
+        }
+        assertThrows(HttpServerErrorException.class, () -> service.execute("failing", rt -> rt.getForObject(url, String.class)));
+        assertThrows(HttpServerErrorException.class, () -> service.execute("failing", rt -> rt.getForObject(url, String.class)));
+        assertEquals(CircuitBreaker.State.OPEN, service.getCircuitState("failing"));
+        int hitsWhenOpened = hits.get();
+        assertThrows(OutboundCallRejectedException.class, () -> service.execute("failing", rt -> rt.getForObject(url, String.class)));
+        assertEquals(hitsWhenOpened, hits.get());
+        assertEquals(CircuitBreaker.State.CLOSED, service.getCircuitState("other"));
+    }
+
+    @Test
+    public void bulkheadRejectsCallsAboveLimit() throws Exception {
+        script.add(new int[]{200, 500});
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> slow = callers.submit(() -> service.execute("bulkhead", rt -> rt.getForObject(url, String.class)));
+            while (hits.get() == 0) {
+                Thread.sleep(5);
+            }
+            Future<String> rejected = callers.submit(() -> service.execute("bulkhead", rt -> rt.getForObject(url, String.class)));
+            ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+            assertInstanceOf(OutboundCallRejectedException.class, e.getCause());
+            assertEquals("{\"status\":200}", slow.get());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void slowClientDoesNotBlockOthers() throws Exception {
+        script.add(new int[]{200, 1000});
+        CountDownLatch done = new CountDownLatch(2);
+        List<String> order = new CopyOnWriteArrayList<>();
+        service.submit("patient", () -> {
+            service.execute("patient", rt -> rt.getForObject(url, String.class));
+            order.add("slow");
+            done.countDown();
+            return null;
+        });
+        while (hits.get() == 0) {
+            Thread.sleep(5);
+        }
+        service.submit("fast", () -> {
+            service.execute("fast", rt -> rt.getForObject(url, String.class));
+            order.add("fast");
+            done.countDown();
+            return null;
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("fast", "slow"), order);
+    }
+
+    @Test
+    public void coalescingBufferFlushesBatches() throws Exception {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch flushed = new CountDownLatch(3);
+        CoalescingBuffer<Long, Integer> buffer = service.coalescingBuffer("batch", 200, 3, (key, batch) -> {
+            batches.add(new ArrayList<>(batch));
+            flushed.countDown();
+        });
+        for (int i = 1; i <= 7; i++) {
+            buffer.add(1L, i);
+        }
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+        assertEquals(Set.of(List.of(1, 2, 3), List.of(4, 5, 6), List.of(7)), new HashSet<>(batches));
+        assertEquals(0, buffer.getPendingCount());
+    }
+}
@@ -0,0 +1,156 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.pdf;
+
+import com.openkoda.core.flow.LoggingComponent;
+import org.jsoup.Jsoup;
+import org.jsoup.parser.Parser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Throughput benchmark of {@link PdfRenderingService} compared to the previous per-call renderer path.
+ * The comparison runs only with -Dbenchmark.pdf=true, number of documents can be raised with -Dpdf.benchmark.documents
+ */
+public class PdfRenderingServiceBenchmarkTest {
+
+    private static final int DOCUMENTS = Integer.getInteger("pdf.benchmark.documents", 200);
+    private static final int CALLERS = 8;
+    private static final String TEMPLATE = "<html xmlns:th=\"http://www.thymeleaf.org\"><head><style>td { border: 1px solid black; }</style></head>"
+            + "<body><h1 th:text=\"${title}\">title</h1><table><tr th:each=\"i : ${#numbers.sequence(1, 20)}\">"
+            + "<td th:text=\"${i}\">1</td><td th:text=\"${title}\">t</td></tr></table></body></html>";
+
+    private PdfRenderingService service;
+    private TemplateEngine templateEngine;
+
+    @BeforeEach
+    public void init() {
+        templateEngine = new TemplateEngine();
+        StringTemplateResolver resolver = new StringTemplateResolver();
+        resolver.setTemplateMode(TemplateMode.HTML);
+        templateEngine.setTemplateResolver(resolver);
+
+        service = new PdfRenderingService();
+        ReflectionTestUtils.setField(service, "templateEngine", templateEngine);
+        ReflectionTestUtils.setField(service, "threads", 4);
+        ReflectionTestUtils.setField(service, "queueCapacity", DOCUMENTS);
+        ReflectionTestUtils.setField(service, "timeoutSeconds", 600L);
+        ReflectionTestUtils.setField(service, "jobsRetentionMinutes", 60L);
+        ReflectionTestUtils.setField(service, "fontPaths", new String[0]);
+        ReflectionTestUtils.invokeMethod(service, "init");
+    }
+
+    @AfterEach
+    public void shutdown() {
+        ReflectionTestUtils.invokeMethod(service, "shutdown");
+    }
+
+    @Test
+    public void renderManyPagesIntoOneDocument() {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        service.render(TEMPLATE, os, models(50).toArray(new Map[0]));
+        assertTrue(new String(os.toByteArray(), 0, 4).startsWith("%PDF"));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.pdf", matches = "true")
+    public void compareThroughputWithPerCallRenderer() throws Exception {
+        //warm up both paths
+        runConcurrently(10, this::renderPerCall);
+        runConcurrently(10, this::renderPooled);
+
+        long perCall = runConcurrently(DOCUMENTS, this::renderPerCall);
+        long pooled = runConcurrently(DOCUMENTS, this::renderPooled);
+
+        LoggingComponent.debugLogger.debug("[compareThroughputWithPerCallRenderer] {} documents, per-call renderer: {} ms, pooled: {} ms",
+                DOCUMENTS, perCall, pooled);
+        assertEquals(0, service.getQueueSize());
+    }
+
+    private interface Renderer {
+        void render(Map<String, Object> model, OutputStream os) throws Exception;
+    }
+
+    private long runConcurrently(int documents, Renderer renderer) throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        long start = System.currentTimeMillis();
+        List<Future<?>> results = new ArrayList<>();
+        for (Map<String, Object> model : models(documents)) {
+            results.add(callers.submit(() -> {
+                ByteArrayOutputStream os = new ByteArrayOutputStream();
+                renderer.render(model, os);
+                assertTrue(os.size() > 0);
+                return null;
+            }));
+        }
+        for (Future<?> f : results) {
+            f.get();
+        }
+        callers.shutdown();
+        return Math.max(1, System.currentTimeMillis() - start);
+    }
+
+    private void renderPooled(Map<String, Object> model, OutputStream os) {
+        service.render(TEMPLATE, os, model);
+    }
+
+    /**
+     * Rendering path used by PdfConstructor before {@link PdfRenderingService}
+     */
+    private void renderPerCall(Map<String, Object> model, OutputStream os) throws Exception {
+        Context ctx = new Context();
+        ctx.setVariables(model);
+        String html = Jsoup.parse(templateEngine.process(TEMPLATE, ctx), "", Parser.xmlParser()).html();
+        ITextRenderer renderer = new ITextRenderer();
+        renderer.setDocumentFromString(html);
+        renderer.layout();
+        renderer.createPDF(os, true);
+    }
+
+    private List<Map<String, Object>> models(int count) {
+        List<Map<String, Object>> models = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            models.add(Map.of("title", "Invoice " + i));
+        }
+        return models;
+    }
+}
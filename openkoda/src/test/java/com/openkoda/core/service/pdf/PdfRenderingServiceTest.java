@@ -0,0 +1,133 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.pdf;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PdfRenderingServiceTest {
+
+    private record Seen(Authentication authentication, RequestAttributes requestAttributes) {}
+
+    private final Callable<Seen> seen = () -> new Seen(SecurityContextHolder.getContext().getAuthentication(), RequestContextHolder.getRequestAttributes());
+
+    @AfterEach
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void workerRunsWithCallersContext() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("pdf-user", null));
+        ServletRequestAttributes request = new ServletRequestAttributes(new MockHttpServletRequest());
+        RequestContextHolder.setRequestAttributes(request);
+        PdfRenderingService service = new PdfRenderingService();
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        try {
+            Seen withRequest = worker.submit(service.withCallerContext(seen, true)).get();
+            Seen withoutRequest = worker.submit(service.withCallerContext(seen, false)).get();
+            Seen afterwards = worker.submit(seen).get();
+
+            assertEquals("pdf-user", withRequest.authentication().getName());
+            assertSame(request, withRequest.requestAttributes());
+            assertEquals("pdf-user", withoutRequest.authentication().getName());
+            assertNull(withoutRequest.requestAttributes());
+            assertNull(afterwards.authentication());
+            assertNull(afterwards.requestAttributes());
+        } finally {
+            worker.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelledJobIsNeverStoredNorDone() {
+        PdfRenderingJob job = new PdfRenderingJob("template", "file.pdf", 1L, null, 2);
+        assertTrue(job.start());
+
+        assertTrue(job.cancel());
+        assertFalse(job.storing());
+        assertFalse(job.cancel());
+        job.failed("late failure");
+
+        assertEquals(PdfRenderingJob.Status.CANCELLED, job.getStatus());
+        assertTrue(job.isFinished());
+        assertNull(job.getFileId());
+    }
+
+    @Test
+    public void jobBeingStoredCannotBeCancelled() {
+        PdfRenderingJob job = new PdfRenderingJob("template", "file.pdf", 1L, null, 2);
+        assertTrue(job.start());
+        assertTrue(job.storing());
+
+        assertFalse(job.cancel());
+        job.done(5L);
+
+        assertEquals(PdfRenderingJob.Status.DONE, job.getStatus());
+        assertEquals(Long.valueOf(5), job.getFileId());
+        assertNotNull(job.getFinishedOn());
+    }
+
+    @Test
+    public void jobCancelledBeforeStartDoesNotRun() {
+        PdfRenderingJob job = new PdfRenderingJob("template", "file.pdf", 1L, null, 2);
+        assertTrue(job.cancel());
+        assertFalse(job.start());
+        assertEquals(PdfRenderingJob.Status.CANCELLED, job.getStatus());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void jobsAreVisibleOnlyInTheOrganizationAndToTheUserThatStartedThem() {
+        PdfRenderingService service = new PdfRenderingService();
+        Map<String, PdfRenderingJob> jobs = (Map<String, PdfRenderingJob>) ReflectionTestUtils.getField(service, "jobs");
+        PdfRenderingJob own = new PdfRenderingJob("template", "file.pdf", 1L, null, 2);
+        PdfRenderingJob otherUsers = new PdfRenderingJob("template", "file.pdf", 1L, 7L, 2);
+        jobs.put(own.getId(), own);
+        jobs.put(otherUsers.getId(), otherUsers);
+
+        assertSame(own, service.getJob(own.getId(), 1L, null));
+        assertNull(service.getJob(own.getId(), 2L, null));
+        assertNull(service.getJob(own.getId(), 1L, 7L));
+        assertNull(service.getJob(otherUsers.getId(), 1L, 8L));
+        assertSame(otherUsers, service.getJob(otherUsers.getId(), 1L, 7L));
+        assertFalse(service.cancelJob(otherUsers.getId(), 1L, null));
+        assertFalse(otherUsers.isCancelled());
+        assertTrue(service.cancelJob(own.getId(), 1L, null));
+    }
+}
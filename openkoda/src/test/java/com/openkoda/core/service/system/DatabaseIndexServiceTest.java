@@ -0,0 +1,79 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.system;
+
+import com.openkoda.core.service.system.DatabaseIndexService.MissingIndex;
+import com.openkoda.core.service.system.DatabaseIndexService.RequiredIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatabaseIndexServiceTest {
+
+    @Test
+    public void indexNameFitsIdentifierLimit() {
+        assertEquals("okx_task_state_start_after", DatabaseIndexService.indexName("task", List.of("state", "start_after")));
+
+        String table = "a_very_long_dynamic_form_table_name_created_by_the_user";
+        String first = DatabaseIndexService.indexName(table, List.of("reference_to_other_form_one"));
+        String second = DatabaseIndexService.indexName(table, List.of("reference_to_other_form_two"));
+        assertEquals(DatabaseIndexService.MAX_IDENTIFIER_LENGTH, first.length());
+        assertNotEquals(first, second);
+        assertEquals(first, DatabaseIndexService.indexName(table, List.of("reference_to_other_form_one")));
+    }
+
+    @Test
+    public void requiredIndexIsCoveredByIndexWithSameLeadingColumns() {
+        List<RequiredIndex> required = List.of(
+                new RequiredIndex("users_roles", List.of("user_id"), "UserRole.user"),
+                new RequiredIndex("users_roles", List.of("role_id"), "UserRole.role"),
+                new RequiredIndex("users_roles", List.of("organization_id"), "UserRole"),
+                new RequiredIndex("task", List.of("state", "start_after"), "Task"));
+        Map<String, Set<String>> columns = Map.of(
+                "public.users_roles", Set.of("id", "user_id", "role_id", "organization_id"),
+                "public.task", Set.of("id", "state"),
+                "org_1.users_roles", Set.of("id", "user_id", "role_id", "organization_id"));
+        Map<String, List<List<String>>> indexes = Map.of(
+                "public.users_roles", List.of(List.of("id"), List.of("role_id"), List.of("user_id", "role_id", "organization_id")));
+
+        List<MissingIndex> missing = DatabaseIndexService.missing(required, columns, indexes);
+
+        assertEquals(4, missing.size());
+        assertTrue(missing.contains(new MissingIndex("public", "users_roles", List.of("organization_id"), "UserRole", "okx_users_roles_organization_id")));
+        assertEquals(3, missing.stream().filter(m -> m.schema().equals("org_1")).count());
+        // task has no start_after column, there is nothing to index
+        assertTrue(missing.stream().noneMatch(m -> m.table().equals("task")));
+        assertEquals("CREATE INDEX CONCURRENTLY IF NOT EXISTS \"okx_users_roles_organization_id\" ON \"public\".\"users_roles\" (\"organization_id\")",
+                missing.stream().filter(m -> m.schema().equals("public")).findFirst().get().ddl());
+    }
+
+    @Test
+    public void ddlQuotesIdentifiers() {
+        MissingIndex m = new MissingIndex("org_1", "Order", List.of("user\"id", "select"), "Form", "okx_order");
+
+        assertEquals("CREATE INDEX CONCURRENTLY IF NOT EXISTS \"okx_order\" ON \"org_1\".\"Order\" (\"user\"\"id\", \"select\")", m.ddl());
+    }
+}
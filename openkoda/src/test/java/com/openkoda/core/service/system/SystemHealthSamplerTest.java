@@ -0,0 +1,72 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.system;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SystemHealthSamplerTest {
+
+    @Test
+    public void historyKeepsLastSamplesInOrder() {
+        ObjectProvider<DataSource> dataSources = mock(ObjectProvider.class);
+        when(dataSources.orderedStream()).thenAnswer(i -> Stream.empty());
+        SystemHealthSampler sampler = new SystemHealthSampler(dataSources, 3);
+
+        SystemHealthSampler.Sample first = sampler.latest();
+        assertEquals(List.of(first), sampler.history());
+
+        SystemHealthSampler.Sample s2 = sampler.sample();
+        SystemHealthSampler.Sample s3 = sampler.sample();
+        SystemHealthSampler.Sample s4 = sampler.sample();
+
+        assertEquals(List.of(s2, s3, s4), sampler.history());
+        assertSame(s4, sampler.latest());
+        assertTrue(s4.threads() > 0);
+        assertTrue(s4.heapUsed() > 0);
+        assertTrue(s4.connectionPools().isEmpty());
+    }
+
+    @Test
+    public void parseProcLinesConvertsKilobytes() {
+        Map<String, Long> status = SystemHealthSampler.parseProcLines(Stream.of(
+                "Name:\tjava",
+                "VmRSS:\t  2048 kB",
+                "Threads:\t42"), ":");
+        assertEquals(2048L * 1024, status.get("VmRSS"));
+        assertEquals(42L, status.get("Threads"));
+        assertFalse(status.containsKey("Name"));
+
+        Map<String, Long> io = SystemHealthSampler.parseProcLines(Stream.of("read_bytes: 4096", "write_bytes: 512"), ": ");
+        assertEquals(4096L, io.get("read_bytes"));
+        assertEquals(512L, io.get("write_bytes"));
+    }
+}
@@ -0,0 +1,434 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.core.service.websocket;
+
+import com.openkoda.core.flow.LoggingComponent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import jakarta.websocket.Session;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.NativeWebSocketSession;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <p>Load test of websocket fan-out through {@link WebsocketSendBuffers}: in-JVM STOMP clients connect to the simple
+ * broker with the same channel setup as the application, most of them fast, some slow and some with a stalled socket.</p>
+ * <p>Verifies that publishing returns without waiting for the clients, that fast clients get all messages while stalled
+ * ones are disconnected after the send time limit, and that full buffers drop or disconnect per overflow policy.
+ * The fan-out to many clients runs only with -Dbenchmark.websocket-fan-out=true, number of clients can be changed with
+ * -Dwebsocket.loadtest.clients</p>
+ */
+public class WebsocketSendBuffersLoadTest {
+
+    private static final int CLIENTS = Integer.getInteger("websocket.loadtest.clients", 5000);
+    private static final int SLOW_CLIENTS = CLIENTS / 100;
+    private static final int STALLED_CLIENTS = CLIENTS / 100;
+    private static final int MESSAGES = 50;
+    private static final String DESTINATION = "/queue/ticker";
+
+    private ThreadPoolTaskExecutor outboundExecutor;
+    private ThreadPoolTaskExecutor brokerExecutor;
+    private SimpleBrokerMessageHandler broker;
+    private SubProtocolWebSocketHandler stompHandler;
+    private WebsocketSendBuffers sendBuffers;
+    private SimpMessagingTemplate template;
+
+    @BeforeEach
+    public void init() {
+        outboundExecutor = executor("outbound-", 8);
+        brokerExecutor = executor("broker-", 1);
+        ExecutorSubscribableChannel inbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel outbound = new ExecutorSubscribableChannel(outboundExecutor);
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel(brokerExecutor);
+        broker = new SimpleBrokerMessageHandler(inbound, outbound, brokerChannel, List.of("/queue/"));
+        broker.start();
+        stompHandler = new SubProtocolWebSocketHandler(inbound, outbound);
+        stompHandler.addProtocolHandler(new StompSubProtocolHandler());
+        stompHandler.start();
+        template = new SimpMessagingTemplate(brokerChannel);
+        template.setMessageConverter(new StringMessageConverter());
+    }
+
+    @AfterEach
+    public void close() {
+        if (sendBuffers != null) {
+            sendBuffers.close();
+        }
+        stompHandler.stop();
+        broker.stop();
+        outboundExecutor.shutdown();
+        brokerExecutor.shutdown();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.websocket-fan-out", matches = "true")
+    public void fansOutWithoutWaitingForSlowClients() throws Exception {
+        WebSocketHandler handler = startSendBuffers(100, BufferedWebSocketSession.OverflowPolicy.DROP, 500);
+        List<FakeSession> fast = new ArrayList<>();
+        List<FakeSession> stalled = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            FakeSession session;
+            if (i % 100 == 1) {
+                session = new FakeSession("s" + i, 2, null);
+            } else if (i % 100 == 2) {
+                session = new FakeSession("s" + i, 0, new CountDownLatch(1));
+                stalled.add(session);
+            } else {
+                session = new FakeSession("s" + i, 0, null);
+                fast.add(session);
+            }
+            connect(handler, session);
+        }
+        assertEquals(CLIENTS, sendBuffers.getStats().sessions());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MESSAGES; i++) {
+            template.convertAndSend(DESTINATION, "tick " + i);
+        }
+        long publishMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (fast.stream().anyMatch(s -> s.received.get() < MESSAGES) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        long fanOutMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        WebsocketSendBuffers.Stats stats = sendBuffers.getStats();
+        LoggingComponent.debugLogger.debug("[fansOutWithoutWaitingForSlowClients] {} clients ({} slow, {} stalled), {} messages: publish {} ms, fan-out {} ms, {}",
+                CLIENTS, SLOW_CLIENTS, STALLED_CLIENTS, MESSAGES, publishMs, fanOutMs, stats);
+
+        assertTrue(fast.stream().allMatch(s -> s.received.get() == MESSAGES), "fast clients missed messages");
+        assertTrue(stalled.stream().allMatch(s -> CloseStatus.SESSION_NOT_RELIABLE.equals(s.closeStatus)));
+        assertEquals(STALLED_CLIENTS, stats.disconnected());
+        assertTrue(stats.maxSessionBuffer() <= 100);
+    }
+
+    @Test
+    public void fullBufferDropsOldestMessages() throws Exception {
+        WebSocketHandler handler = startSendBuffers(10, BufferedWebSocketSession.OverflowPolicy.DROP, 60_000);
+        CountDownLatch stall = new CountDownLatch(1);
+        FakeSession session = new FakeSession("slow", 0, null);
+        connect(handler, session);
+        awaitConnected(session);
+        session.stall = stall;
+        for (int i = 0; i < MESSAGES; i++) {
+            template.convertAndSend(DESTINATION, "tick " + i);
+        }
+        awaitDelivered(MESSAGES);
+        WebsocketSendBuffers.Stats stats = sendBuffers.getStats();
+        assertEquals(10, stats.maxSessionBuffer());
+        assertTrue(stats.dropped() >= MESSAGES - 11 && stats.dropped() <= MESSAGES - 10, "dropped " + stats.dropped());
+        assertEquals(1, stats.slowConsumers());
+
+        stall.countDown();
+        long expected = MESSAGES - stats.dropped();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (session.received.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, session.received.get());
+        assertEquals(0, sendBuffers.getStats().bufferedMessages());
+    }
+
+    @Test
+    public void fullBufferDisconnectsSession() throws Exception {
+        WebSocketHandler handler = startSendBuffers(10, BufferedWebSocketSession.OverflowPolicy.DISCONNECT, 60_000);
+        FakeSession session = new FakeSession("slow", 0, null);
+        connect(handler, session);
+        awaitConnected(session);
+        session.stall = new CountDownLatch(1);
+        for (int i = 0; i < MESSAGES; i++) {
+            template.convertAndSend(DESTINATION, "tick " + i);
+        }
+        awaitDelivered(MESSAGES);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (session.closeStatus == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE, session.closeStatus);
+        assertEquals(1, sendBuffers.getStats().disconnected());
+        assertEquals(0, sendBuffers.getStats().dropped());
+    }
+
+    @Test
+    public void stalledSessionIgnoringCloseReleasesWriterAfterSendTimeLimit() throws Exception {
+        WebSocketHandler handler = startSendBuffers(100, BufferedWebSocketSession.OverflowPolicy.DROP, 300, 1);
+        FakeSession stalled = new FakeSession("stalled", 0, null);
+        stalled.ignoresClose = true;
+        FakeSession fast = new FakeSession("fast", 0, null);
+        connect(handler, stalled);
+        connect(handler, fast);
+        awaitConnected(stalled);
+        awaitConnected(fast);
+        assertEquals(300L, stalled.userProperties.get(WebsocketSendBuffers.BLOCKING_SEND_TIMEOUT));
+        stalled.stall = new CountDownLatch(1);
+
+        for (int i = 0; i < MESSAGES; i++) {
+            template.convertAndSend(DESTINATION, "tick " + i);
+        }
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (fast.received.get() < MESSAGES && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(MESSAGES, fast.received.get(), "the only writer thread stayed blocked by the stalled session");
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE, stalled.closeStatus);
+        assertEquals(1, stalled.timedOut.get());
+        assertEquals(1, sendBuffers.getStats().disconnected());
+    }
+
+    private WebSocketHandler startSendBuffers(int bufferLimit, BufferedWebSocketSession.OverflowPolicy policy, long sendTimeLimitMs) {
+        return startSendBuffers(bufferLimit, policy, sendTimeLimitMs, 16);
+    }
+
+    private WebSocketHandler startSendBuffers(int bufferLimit, BufferedWebSocketSession.OverflowPolicy policy, long sendTimeLimitMs,
+                                              int writerThreads) {
+        sendBuffers = new WebsocketSendBuffers();
+        sendBuffers.bufferLimit = bufferLimit;
+        sendBuffers.overflowPolicy = policy;
+        sendBuffers.sendTimeLimitMs = sendTimeLimitMs;
+        sendBuffers.slowThresholdMs = 100;
+        sendBuffers.writerThreads = writerThreads;
+        sendBuffers.start();
+        return sendBuffers.decorate(stompHandler);
+    }
+
+    /**
+     * Waits until the outbound channel handed all messages to the session buffers
+     */
+    private void awaitDelivered(int messages) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((brokerExecutor.getActiveCount() > 0 || outboundExecutor.getActiveCount() > 0
+                || outboundExecutor.getThreadPoolExecutor().getQueue().size() > 0
+                || outboundExecutor.getThreadPoolExecutor().getCompletedTaskCount() < messages + 1)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void awaitConnected(FakeSession session) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!session.connected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(session.connected);
+    }
+
+    private void connect(WebSocketHandler handler, FakeSession session) throws Exception {
+        handler.afterConnectionEstablished(session);
+        handler.handleMessage(session, new TextMessage("CONNECT\naccept-version:1.2\nhost:localhost\n\n\0"));
+        handler.handleMessage(session, new TextMessage("SUBSCRIBE\nid:sub-0\ndestination:" + DESTINATION + "\n\n\0"));
+    }
+
+    private static ThreadPoolTaskExecutor executor(String prefix, int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix(prefix);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Socket of an in-JVM client, counts received MESSAGE frames. A stalled write fails after the blocking send timeout
+     * of the native session, as in Tomcat, a session ignoring close stays stalled when closed.
+     */
+    private static class FakeSession implements NativeWebSocketSession {
+
+        private final String id;
+        private final long delayMs;
+        private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        private final Map<String, Object> userProperties = new ConcurrentHashMap<>();
+        private final Session nativeSession = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getUserProperties")) {
+                        return userProperties;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        private final AtomicInteger received = new AtomicInteger();
+        private final AtomicInteger timedOut = new AtomicInteger();
+        private volatile CountDownLatch stall;
+        private volatile boolean ignoresClose;
+        private volatile CloseStatus closeStatus;
+        private volatile boolean connected;
+        private int textMessageSizeLimit = 64 * 1024;
+        private int binaryMessageSizeLimit = 64 * 1024;
+
+        FakeSession(String id, long delayMs, CountDownLatch stall) {
+            this.id = id;
+            this.delayMs = delayMs;
+            this.stall = stall;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            try {
+                CountDownLatch latch = stall;
+                Object timeout = userProperties.get(WebsocketSendBuffers.BLOCKING_SEND_TIMEOUT);
+                if (latch != null && !latch.await(timeout == null ? 20_000 : (Long) timeout, TimeUnit.MILLISECONDS)) {
+                    timedOut.incrementAndGet();
+                    throw new SocketTimeoutException("Blocking send timed out");
+                }
+                if (delayMs > 0) {
+                    Thread.sleep(delayMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (closeStatus != null) {
+                throw new IOException("Session closed");
+            }
+            String payload = String.valueOf(message.getPayload());
+            if (payload.startsWith("MESSAGE")) {
+                received.incrementAndGet();
+            } else if (payload.startsWith("CONNECTED")) {
+                connected = true;
+            }
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+            closeStatus = status;
+            CountDownLatch latch = stall;
+            if (latch != null && !ignoresClose) {
+                latch.countDown();
+            }
+        }
+
+        @Override
+        public void close() {
+            close(CloseStatus.NORMAL);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return closeStatus == null;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public Object getNativeSession() {
+            return nativeSession;
+        }
+
+        @Override
+        public <T> T getNativeSession(Class<T> requiredType) {
+            return requiredType.isInstance(nativeSession) ? requiredType.cast(nativeSession) : null;
+        }
+
+        @Override
+        public URI getUri() {
+            return URI.create("ws://localhost/html/websocket");
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return null;
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+            textMessageSizeLimit = messageSizeLimit;
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return textMessageSizeLimit;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+            binaryMessageSizeLimit = messageSizeLimit;
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return binaryMessageSizeLimit;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return Collections.emptyList();
+        }
+    }
+}
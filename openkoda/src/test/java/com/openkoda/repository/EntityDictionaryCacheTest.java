@@ -0,0 +1,94 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.repository;
+
+import com.openkoda.model.Organization;
+import com.openkoda.model.User;
+import com.openkoda.model.common.ModelConstants;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntityDictionaryCacheTest {
+
+    private static final long NOW = 1_000_000L;
+
+    private final EntityDictionaryCache cache = new EntityDictionaryCache();
+
+    @Test
+    public void keyDependsOnPrivilegesNotOnTheirOrder() {
+        String key = EntityDictionaryCache.key(null, 1L, null, Set.of("readOrgData", "manageOrgData"), List.of("1readOrgData", "2readOrgData"));
+        assertEquals(key, EntityDictionaryCache.key(null, 1L, null, List.of("manageOrgData", "readOrgData"), List.of("2readOrgData", "1readOrgData")));
+        assertNotEquals(key, EntityDictionaryCache.key(null, 1L, null, Set.of("readOrgData"), List.of("1readOrgData", "2readOrgData")));
+        assertNotEquals(key, EntityDictionaryCache.key(null, 2L, null, Set.of("readOrgData", "manageOrgData"), List.of("1readOrgData", "2readOrgData")));
+        assertNotEquals(key, EntityDictionaryCache.key("name", 1L, null, Set.of("readOrgData", "manageOrgData"), List.of("1readOrgData", "2readOrgData")));
+        assertNotEquals(key, EntityDictionaryCache.key(null, 1L, null, null, null));
+    }
+
+    @Test
+    public void keyOfUserDependentDictionaryContainsUserId() {
+        assertTrue(EntityDictionaryCache.isUserDependent(User.class, null));
+        assertFalse(EntityDictionaryCache.isUserDependent(Organization.class, null));
+        assertTrue(EntityDictionaryCache.isUserDependent(Organization.class, "CASE id WHEN " + ModelConstants.USER_ID_PLACEHOLDER + " THEN name END"));
+        assertNotEquals(EntityDictionaryCache.key(null, 1L, 1L, Set.of("readUserData"), List.of()),
+                EntityDictionaryCache.key(null, 1L, 2L, Set.of("readUserData"), List.of()));
+    }
+
+    @Test
+    public void returnsDictionaryUntilExpiredOrInvalidated() {
+        Map<Object, String> dictionary = Map.of(1L, "one");
+        cache.put(String.class, "k", cache.version(String.class), dictionary, NOW + 10);
+        cache.put(Long.class, "k", cache.version(Long.class), dictionary, NOW + 10);
+
+        assertSame(dictionary, cache.get(String.class, "k", NOW));
+        assertNull(cache.get(String.class, "other", NOW));
+        assertNull(cache.get(String.class, "k", NOW + 10));
+
+        cache.invalidate(List.of(String.class));
+        assertNull(cache.get(String.class, "k", NOW));
+        assertSame(dictionary, cache.get(Long.class, "k", NOW));
+    }
+
+    @Test
+    public void skipsDictionaryReadBeforeInvalidation() {
+        long version = cache.version(String.class);
+        cache.invalidate(List.of(String.class));
+        cache.put(String.class, "k", version, Map.of(1L, "stale"), NOW + 10);
+        assertNull(cache.get(String.class, "k", NOW));
+
+        cache.put(String.class, "k", cache.version(String.class), Map.of(1L, "fresh"), NOW + 10);
+        assertEquals("fresh", cache.get(String.class, "k", NOW).get(1L));
+    }
+
+    @Test
+    public void boundsEntriesPerEntity() {
+        for (int i = 0; i <= EntityDictionaryCache.MAX_ENTRIES_PER_ENTITY; i++) {
+            cache.put(String.class, "k" + i, 0, Map.of(), NOW + 10);
+        }
+        assertNull(cache.get(String.class, "k0", NOW));
+        assertNotNull(cache.get(String.class, "k" + EntityDictionaryCache.MAX_ENTRIES_PER_ENTITY, NOW));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.repository;
+
+import com.openkoda.AbstractTest;
+import com.openkoda.controller.AutocompleteController;
+import com.openkoda.model.Organization;
+import com.openkoda.model.common.SearchableRepositoryMetadata;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the dictionary queries of {@link SecureEntityDictionaryRepository} and the typeahead endpoint against the database
+ */
+public class SecureEntityDictionaryRepositoryTest extends AbstractTest {
+
+    @Inject
+    private SecureEntityDictionaryRepository secureEntityDictionaryRepository;
+
+    @Inject
+    private AutocompleteController autocompleteController;
+
+    @Inject
+    private TransactionTemplate transactionTemplate;
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final String suffix = "-" + System.nanoTime();
+
+    private final List<Long> organizationIds = new ArrayList<>();
+
+    private SearchableRepositoryMetadata organizations;
+
+    @BeforeEach
+    public void createOrganizations() {
+        organizations = SearchableRepositories.getSearchableRepositoryMetadata(Organization.class);
+        transactionTemplate.executeWithoutResult(s -> {
+            for (String name : List.of("c", "a", "b")) {
+                Organization organization = new Organization("dictionary-" + name + suffix);
+                entityManager.persist(organization);
+                organizationIds.add(organization.getId());
+            }
+        });
+        Object repository = AopTestUtils.getTargetObject(secureEntityDictionaryRepository);
+        ReflectionTestUtils.setField(repository, "typeaheadThreshold", 1);
+        ReflectionTestUtils.setField(repository, "cacheTtlSeconds", 0L);
+        mockAndAuthenticateUser(1L, "test@openkoda.com", "TEST", "(readOrgData)");
+    }
+
+    @AfterEach
+    public void cleanup() {
+        Object repository = AopTestUtils.getTargetObject(secureEntityDictionaryRepository);
+        ReflectionTestUtils.setField(repository, "typeaheadThreshold", 1000);
+        ReflectionTestUtils.setField(repository, "cacheTtlSeconds", 60L);
+        organizationIds.forEach(id -> jdbcTemplate.update("DELETE FROM organization WHERE id = ?", id));
+    }
+
+    @Test
+    public void dropdownDictionaryAboveThresholdIsTruncatedWithTypeaheadUrl() {
+        Map dictionary = secureEntityDictionaryRepository.dictionary(organizations, "name");
+
+        assertEquals(2, dictionary.size());
+        assertTrue(dictionary.containsKey(SecureEntityDictionaryRepository.TYPEAHEAD_KEY));
+    }
+
+    @Test
+    public void labelsContainAllGivenIdsWithoutTypeahead() {
+        Map labels = SecureEntityDictionaryRepository.labelsOf(organizationIds,
+                () -> secureEntityDictionaryRepository.dictionary(organizations, "name"));
+
+        assertEquals(Map.of(organizationIds.get(0), "dictionary-c" + suffix,
+                organizationIds.get(1), "dictionary-a" + suffix,
+                organizationIds.get(2), "dictionary-b" + suffix), labels);
+    }
+
+    @Test
+    public void labelsOfNativeFormulaContainOnlyGivenIds() {
+        Map labels = SecureEntityDictionaryRepository.labelsOf(List.of(organizationIds.get(1), "not an id"),
+                () -> secureEntityDictionaryRepository.dictionary(organizations, "upper(name)"));
+
+        assertEquals(Map.of(organizationIds.get(1), ("dictionary-a" + suffix).toUpperCase()), labels);
+        assertEquals(Map.of(), SecureEntityDictionaryRepository.labelsOf(List.of(),
+                () -> secureEntityDictionaryRepository.dictionary(organizations, "name")));
+    }
+
+    @Test
+    public void typeaheadEndpointSearchesPagesAndSelectedId() {
+        String url = (String) secureEntityDictionaryRepository.dictionary(organizations, "name")
+                .get(SecureEntityDictionaryRepository.TYPEAHEAD_KEY);
+        String token = StringUtils.substringBefore(StringUtils.substringAfterLast(url, "/"), "?");
+
+        ResponseEntity<Map<Object, String>> search = autocompleteController.getDictionaryPage(token, null, null, "DICTIONARY-%" + suffix, 0, 50);
+        assertEquals(Map.of(), search.getBody());
+
+        search = autocompleteController.getDictionaryPage(token, null, null, suffix, 0, 50);
+        assertEquals(List.of("dictionary-a" + suffix), List.copyOf(search.getBody().values()));
+        search = autocompleteController.getDictionaryPage(token, null, null, suffix, 2, 1);
+        assertEquals(List.of("dictionary-c" + suffix), List.copyOf(search.getBody().values()));
+
+        ResponseEntity<Map<Object, String>> selected = autocompleteController.getDictionaryPage(token, null, organizationIds.get(2), null, 0, 50);
+        assertEquals(Map.of(organizationIds.get(2), "dictionary-b" + suffix), selected.getBody());
+
+        assertEquals(HttpStatus.NOT_FOUND, autocompleteController.getDictionaryPage("unknown", null, null, null, 0, 50).getStatusCode());
+    }
+}
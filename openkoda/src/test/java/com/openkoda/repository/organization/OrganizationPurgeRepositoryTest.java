@@ -0,0 +1,160 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.repository.organization;
+
+import com.openkoda.AbstractTest;
+import com.openkoda.model.Organization;
+import com.openkoda.model.OrganizationPurge;
+import com.openkoda.repository.specifications.OrganizationSpecifications;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.openkoda.model.OrganizationPurge.Status.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Status transitions of {@link OrganizationPurgeRepository}, all updates are conditional on the current status
+ */
+public class OrganizationPurgeRepositoryTest extends AbstractTest {
+
+    private static final long ORGANIZATION_ID = -43L;
+
+    private static final List<OrganizationPurge.Status> ACTIVE = List.of(PENDING, RUNNING);
+
+    @Inject
+    private OrganizationPurgeRepository organizationPurgeRepository;
+
+    @Inject
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final List<Long> purges = new ArrayList<>();
+
+    private final List<Long> organizations = new ArrayList<>();
+
+    @AfterEach
+    public void cleanup() {
+        purges.forEach(organizationPurgeRepository::deleteById);
+        transactionTemplate.executeWithoutResult(s -> organizations.forEach(id -> entityManager.remove(entityManager.find(Organization.class, id))));
+    }
+
+    @Test
+    public void claimTakesPendingOrStaleRunningPurge() {
+        long id = createPurge(ORGANIZATION_ID);
+        LocalDateTime now = LocalDateTime.now();
+
+        assertEquals(1, organizationPurgeRepository.claim(id, now, now.minusSeconds(300), PENDING, RUNNING));
+        assertEquals(RUNNING, organizationPurgeRepository.findById(id).orElseThrow().getStatus());
+        assertEquals(0, organizationPurgeRepository.claim(id, now, now.minusSeconds(300), PENDING, RUNNING));
+        assertEquals(1, organizationPurgeRepository.claim(id, now, now.plusSeconds(1), PENDING, RUNNING));
+    }
+
+    @Test
+    public void releasedPurgeIsPendingAndClaimedAgain() {
+        long id = createPurge(ORGANIZATION_ID);
+        LocalDateTime now = LocalDateTime.now();
+        organizationPurgeRepository.claim(id, now, now.minusSeconds(300), PENDING, RUNNING);
+
+        assertEquals(1, organizationPurgeRepository.release(id, PENDING, RUNNING));
+        OrganizationPurge purge = organizationPurgeRepository.findById(id).orElseThrow();
+        assertEquals(PENDING, purge.getStatus());
+        assertNull(purge.getHeartbeatOn());
+        assertEquals(0, organizationPurgeRepository.release(id, PENDING, RUNNING));
+        assertEquals(1, organizationPurgeRepository.claim(id, now, now.minusSeconds(300), PENDING, RUNNING));
+    }
+
+    @Test
+    public void cancelledPurgeIsNotProgressedFinishedOrClaimed() {
+        long id = createPurge(ORGANIZATION_ID);
+        LocalDateTime now = LocalDateTime.now();
+        organizationPurgeRepository.claim(id, now, now.minusSeconds(300), PENDING, RUNNING);
+
+        assertEquals(1, organizationPurgeRepository.cancel(id, now, CANCELLED, ACTIVE));
+        assertEquals(0, organizationPurgeRepository.progress(id, "notification", 1, 2, 10, now, RUNNING));
+        assertEquals(0, organizationPurgeRepository.finish(id, DONE, null, now, RUNNING));
+        assertEquals(0, organizationPurgeRepository.release(id, PENDING, RUNNING));
+        assertEquals(0, organizationPurgeRepository.claim(id, now, now.plusSeconds(1), PENDING, RUNNING));
+        assertEquals(0, organizationPurgeRepository.cancel(id, now, CANCELLED, ACTIVE));
+        assertEquals(CANCELLED, organizationPurgeRepository.findById(id).orElseThrow().getStatus());
+    }
+
+    @Test
+    public void notPurgedHidesOrganizationsWithActiveOrDonePurge() {
+        long kept = createOrganization("purge-test-kept");
+        long pending = createOrganization("purge-test-pending");
+        long done = createOrganization("purge-test-done");
+        long cancelled = createOrganization("purge-test-cancelled");
+        long failed = createOrganization("purge-test-failed");
+        createPurge(pending);
+        finishPurge(createPurge(done), DONE);
+        organizationPurgeRepository.cancel(createPurge(cancelled), LocalDateTime.now(), CANCELLED, ACTIVE);
+        finishPurge(createPurge(failed), FAILED);
+
+        List<Long> visible = transactionTemplate.execute(s -> {
+            CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Long> query = cb.createQuery(Long.class);
+            Root<Organization> root = query.from(Organization.class);
+            query.select(root.get("id")).where(cb.and(
+                    root.get("id").in(organizations),
+                    OrganizationSpecifications.notPurged().toPredicate(root, query, cb)));
+            return entityManager.createQuery(query).getResultList();
+        });
+
+        assertEquals(3, visible.size());
+        assertTrue(visible.containsAll(List.of(kept, cancelled, failed)));
+    }
+
+    private long createPurge(long organizationId) {
+        long id = organizationPurgeRepository.save(new OrganizationPurge(organizationId)).getId();
+        purges.add(id);
+        return id;
+    }
+
+    private void finishPurge(long id, OrganizationPurge.Status status) {
+        LocalDateTime now = LocalDateTime.now();
+        organizationPurgeRepository.claim(id, now, now, PENDING, RUNNING);
+        organizationPurgeRepository.finish(id, status, null, now, RUNNING);
+    }
+
+    private long createOrganization(String name) {
+        long id = transactionTemplate.execute(s -> {
+            Organization organization = new Organization(name);
+            entityManager.persist(organization);
+            return organization.getId();
+        });
+        organizations.add(id);
+        return id;
+    }
+}
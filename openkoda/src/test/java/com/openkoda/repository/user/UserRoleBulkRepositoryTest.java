@@ -0,0 +1,174 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.repository.user;
+
+import com.openkoda.AbstractTest;
+import com.openkoda.model.*;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the set-based statements of {@link UserRoleBulkRepository} against the database
+ */
+public class UserRoleBulkRepositoryTest extends AbstractTest {
+
+    @Inject
+    private UserRoleBulkRepository userRoleBulkRepository;
+
+    @Inject
+    private TransactionTemplate transactionTemplate;
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final String suffix = "-" + System.nanoTime();
+
+    private final UserRoleBulkRepository.AuditInfo audit = new UserRoleBulkRepository.AuditInfo(null, "test", "127.0.0.1", "user-role-bulk" + suffix);
+
+    private long organizationId;
+    private long firstUserId;
+    private long secondUserId;
+    private long globalRoleId;
+    private String first;
+    private String second;
+    private String global;
+
+    @BeforeEach
+    public void createRoles() {
+        first = "ROLE_BULK_FIRST" + suffix;
+        second = "ROLE_BULK_SECOND" + suffix;
+        global = "ROLE_BULK_GLOBAL" + suffix;
+        transactionTemplate.executeWithoutResult(s -> {
+            Organization organization = persist(new Organization("user-role-bulk" + suffix));
+            Role firstRole = persist(new OrganizationRole(first));
+            Role secondRole = persist(new OrganizationRole(second));
+            Role globalRole = persist(new GlobalOrganizationRole(global));
+            User firstUser = persist(new User("First", "Bulk", "first" + suffix + "@openkoda.com"));
+            User secondUser = persist(new User("Second", "Bulk", "second" + suffix + "@openkoda.com"));
+            organizationId = organization.getId();
+            firstUserId = firstUser.getId();
+            secondUserId = secondUser.getId();
+            globalRoleId = globalRole.getId();
+            persist(new UserRole(null, firstUserId, firstRole.getId(), organizationId));
+            persist(new UserRole(null, firstUserId, secondRole.getId(), organizationId));
+            persist(new UserRole(null, secondUserId, secondRole.getId(), organizationId));
+            persist(new UserRole(null, null, globalRoleId, organizationId));
+        });
+    }
+
+    @AfterEach
+    public void cleanup() {
+        jdbcTemplate.update("DELETE FROM audit WHERE request_id = ?", audit.requestId());
+        jdbcTemplate.update("DELETE FROM users_roles WHERE organization_id = ?", organizationId);
+        jdbcTemplate.update("DELETE FROM users WHERE id IN (?, ?)", firstUserId, secondUserId);
+        jdbcTemplate.update("DELETE FROM roles WHERE name IN (?, ?, ?)", first, second, global);
+        jdbcTemplate.update("DELETE FROM organization WHERE id = ?", organizationId);
+    }
+
+    @Test
+    public void removeUserRolesKeepsGlobalRolesAndWritesAudit() {
+        List<Long> userIds = transactionTemplate.execute(s -> remove(List.of(first, global)));
+
+        assertEquals(List.of(firstUserId), userIds);
+        assertEquals(Set.of(second), Set.copyOf(roleNames(firstUserId)));
+        assertEquals(List.of(second), roleNames(secondUserId));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM users_roles WHERE organization_id = ? AND user_id IS NULL AND role_id = ?",
+                Long.class, organizationId, globalRoleId));
+
+        List<String> changes = audit("DELETE");
+        assertEquals(1, changes.size());
+        assertTrue(changes.get(0).contains("first" + suffix + "@openkoda.com:" + first + "@" + organizationId), changes.get(0));
+        assertEquals(List.of(), transactionTemplate.execute(s -> remove(List.of(first))));
+    }
+
+    @Test
+    public void addUserRolesSkipsExistingRolesAndWritesAudit() {
+        List<Long> userIds = transactionTemplate.execute(s -> add(List.of(first, second)));
+
+        assertEquals(List.of(secondUserId), userIds);
+        assertEquals(Set.of(first, second), Set.copyOf(roleNames(firstUserId)));
+        assertEquals(Set.of(first, second), Set.copyOf(roleNames(secondUserId)));
+
+        List<String> changes = audit("ADD");
+        assertEquals(1, changes.size());
+        assertTrue(changes.get(0).contains("<b>User Id</b> " + secondUserId + "<br/>"), changes.get(0));
+        assertTrue(changes.get(0).contains("<b>Organization Id</b> " + organizationId), changes.get(0));
+        assertEquals(List.of(), transactionTemplate.execute(s -> add(List.of(first, second))));
+        assertEquals(1, audit("ADD").size());
+    }
+
+    @Test
+    public void statementsRollBackWithTheTransaction() {
+        transactionTemplate.executeWithoutResult(s -> {
+            assertEquals(List.of(secondUserId), add(List.of(first)));
+            s.setRollbackOnly();
+        });
+
+        assertEquals(List.of(second), roleNames(secondUserId));
+        assertEquals(0, audit("ADD").size());
+    }
+
+    private List<Long> remove(List<String> roleNames) {
+        try {
+            return userRoleBulkRepository.removeUserRoles(organizationId, roleNames, audit);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<Long> add(List<String> roleNames) {
+        try {
+            return userRoleBulkRepository.addUserRoles(organizationId, roleNames, audit);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<String> roleNames(long userId) {
+        return jdbcTemplate.queryForList("SELECT r.name FROM users_roles ur JOIN roles r ON r.id = ur.role_id "
+                + "WHERE ur.user_id = ? AND ur.organization_id = ? ORDER BY r.name", String.class, userId, organizationId);
+    }
+
+    private List<String> audit(String operation) {
+        return jdbcTemplate.queryForList("SELECT change FROM audit WHERE request_id = ? AND operation = ? AND organization_id = ? "
+                + "AND entity_name = 'UserRole' ORDER BY id", String.class, audit.requestId(), operation, organizationId);
+    }
+
+    private <T> T persist(T entity) {
+        entityManager.persist(entity);
+        return entity;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.service.autocomplete;
+
+import com.openkoda.core.security.OrganizationUser;
+import com.openkoda.model.component.ServerJs;
+import com.openkoda.repository.Repositories;
+import com.openkoda.repository.ServerJsRepository;
+import com.openkoda.repository.UnsecureRepositories;
+import com.openkoda.service.Services;
+import com.openkoda.uicomponent.JsParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import static com.openkoda.model.PrivilegeNames._canReadBackend;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests loading, incremental update and remove of {@link WebendpointAutocompleteIndex}
+ */
+public class WebendpointAutocompleteIndexTest {
+
+    private ServerJsRepository serverJsRepository;
+    private WebendpointAutocompleteIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        serverJsRepository = mock(ServerJsRepository.class);
+        when(serverJsRepository.findAll()).thenReturn(List.of(
+                serverJs(1L, "utils", null, "export function add(a, b) { return a + b; }"),
+                serverJs(2L, "orgUtils", 10L, "export const greet = (name) => 'hi ' + name;")));
+        index = new WebendpointAutocompleteIndex();
+        index.services = new Services();
+        index.services.jsParser = new JsParser();
+        index.repositories = new Repositories();
+        index.repositories.unsecure = new UnsecureRepositories();
+        index.repositories.unsecure.serverJs = serverJsRepository;
+    }
+
+    @Test
+    public void loadsAllServerJsOnce() {
+        WebendpointAutocompleteIndex.Snapshot snapshot = index.getSnapshot();
+
+        assertArrayEquals(new String[]{"orgUtils", "utils"}, snapshot.response().getImportSuggestions());
+        assertEquals(List.of("add(a,b)"), snapshot.response().getServerJsSuggestions().get("utils"));
+        assertEquals(List.of("greet(name)"), snapshot.response().getServerJsSuggestions().get("orgUtils"));
+        assertSame(snapshot, index.getSnapshot());
+        verify(serverJsRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void updateChangesFunctionsAndETag() {
+        WebendpointAutocompleteIndex.Snapshot before = index.getSnapshot();
+
+        assertTrue(index.update(1L, "utils", null, "export function sub(a, b) { return a - b; }"));
+        WebendpointAutocompleteIndex.Snapshot after = index.getSnapshot();
+
+        assertNotSame(before, after);
+        assertNotEquals(before.etag(), after.etag());
+        assertEquals(List.of("sub(a,b)"), after.response().getServerJsSuggestions().get("utils"));
+    }
+
+    @Test
+    public void updateWithSameCodeKeepsETag() {
+        String etag = index.getSnapshot().etag();
+
+        index.update(2L, "orgUtils", 10L, "export const greet = (name) => 'hi ' + name;");
+
+        assertEquals(etag, index.getSnapshot().etag());
+    }
+
+    @Test
+    public void removeDropsEntry() {
+        index.getSnapshot();
+
+        index.remove(2L);
+
+        assertArrayEquals(new String[]{"utils"}, index.getSnapshot().response().getImportSuggestions());
+    }
+
+    @Test
+    public void reloadOfDeletedServerJsRemovesEntry() {
+        index.getSnapshot();
+        when(serverJsRepository.findOne(anyLong())).thenReturn(null);
+
+        index.reload(1L);
+
+        assertArrayEquals(new String[]{"orgUtils"}, index.getSnapshot().response().getImportSuggestions());
+    }
+
+    @Test
+    public void snapshotBuiltBeforeChangeIsNotReused() {
+        index.getSnapshot();
+        WebendpointAutocompleteIndex.Snapshot stale = index.buildSnapshot(e -> true, index.getSnapshot().version());
+
+        index.remove(1L);
+
+        assertNotEquals(stale.version(), index.getSnapshot().version());
+        assertArrayEquals(new String[]{"orgUtils"}, index.getSnapshot().response().getImportSuggestions());
+    }
+
+    @Test
+    public void updateBeforeLoadIsIgnored() {
+        assertFalse(index.update(3L, "late", null, "export function late() {}"));
+
+        assertArrayEquals(new String[]{"orgUtils", "utils"}, index.getSnapshot().response().getImportSuggestions());
+    }
+
+    @Test
+    public void filtersServerJsByReadPrivilege() {
+        OrganizationUser orgUser = mock(OrganizationUser.class);
+        when(orgUser.hasGlobalPrivilege(_canReadBackend)).thenReturn(false);
+        when(orgUser.hasOrgPrivilege(eq(_canReadBackend), eq(10L))).thenReturn(true);
+        OrganizationUser admin = mock(OrganizationUser.class);
+        when(admin.hasGlobalPrivilege(_canReadBackend)).thenReturn(true);
+
+        assertArrayEquals(new String[]{"orgUtils"}, build(WebendpointAutocompleteIndex.readableBy(orgUser)));
+        assertArrayEquals(new String[]{"orgUtils", "utils"}, build(WebendpointAutocompleteIndex.readableBy(admin)));
+        assertArrayEquals(new String[]{}, build(WebendpointAutocompleteIndex.readableBy(null)));
+    }
+
+    private String[] build(Predicate<WebendpointAutocompleteIndex.ServerJsEntry> filter) {
+        return index.buildSnapshot(filter, 0).response().getImportSuggestions();
+    }
+
+    private static ServerJs serverJs(long id, String name, Long organizationId, String code) {
+        ServerJs serverJs = mock(ServerJs.class);
+        when(serverJs.getId()).thenReturn(id);
+        when(serverJs.getName()).thenReturn(name);
+        when(serverJs.getOrganizationId()).thenReturn(organizationId);
+        when(serverJs.getCode()).thenReturn(code);
+        return serverJs;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.service.csv;
+
+import com.openkoda.AbstractTest;
+import com.openkoda.core.form.FrontendMappingDefinition;
+import com.openkoda.repository.NativeQueries;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.openkoda.core.form.FrontendMappingDefinition.createFrontendMappingDefinition;
+import static com.openkoda.model.Privilege.canManageBackend;
+import static com.openkoda.model.Privilege.canReadBackend;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DynamicEntityCsvImportServiceTest extends AbstractTest {
+
+    private static final String TABLE = "csv_import_test";
+
+    @Inject
+    private DynamicEntityCsvImportService csvImportService;
+
+    @Inject
+    private NativeQueries nativeQueries;
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    private final FrontendMappingDefinition definition = createFrontendMappingDefinition("csvImportTest", canReadBackend, canManageBackend,
+            a -> a.text("name").number("amount").date("dueOn").checkbox("active"));
+
+    private final List<CsvImportProgress> notifications = new ArrayList<>();
+
+    @BeforeEach
+    public void createTable() {
+        mockAndAuthenticateUser(1l, "test@openkoda.com", "TEST", "(canReadBackend)(canManageBackend)");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + TABLE);
+        jdbcTemplate.execute(nativeQueries.createTableSql(TABLE));
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD COLUMN name varchar(255), ADD COLUMN amount numeric, "
+                + "ADD COLUMN due_on date, ADD COLUMN active boolean");
+    }
+
+    @AfterEach
+    public void dropTable() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + TABLE);
+        jdbcTemplate.update("DELETE FROM " + DynamicEntityCsvImportService.STAGING_TABLE + " WHERE entity_key = 'csvImportTest'");
+    }
+
+    @Test
+    public void importsValidLinesAndKeepsInvalidOnesStaged() throws Exception {
+        String csv = """
+                Name,amount,due_on,active,unknown
+                first,10.5,2024-01-31,true,x
+                second,not a number,2024-02-01,false,x
+                third,,2024-02-30,,x
+                fourth,-3,,no,x
+                """;
+
+        CsvImportProgress progress = csvImportService.importCsv(new StringReader(csv), "csvImportTest", definition, TABLE,
+                null, false, notifications::add);
+
+        assertEquals(CsvImportProgress.Phase.DONE, progress.getPhase(), progress.getFailure());
+        assertEquals(4, progress.getLinesStaged());
+        assertEquals(2, progress.getLinesValid());
+        assertEquals(2, progress.getLinesInvalid());
+        assertEquals(2, progress.getLinesImported());
+        assertEquals(List.of("unknown"), progress.getIgnoredColumns());
+        assertEquals(2, progress.getErrors().size());
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT name, amount, due_on, active FROM " + TABLE + " ORDER BY id");
+        assertEquals(2, rows.size());
+        assertEquals("first", rows.get(0).get("name"));
+        assertEquals(0, new BigDecimal("10.5").compareTo((BigDecimal) rows.get(0).get("amount")));
+        assertEquals(Boolean.TRUE, rows.get(0).get("active"));
+        assertEquals("fourth", rows.get(1).get("name"));
+        assertEquals(Boolean.FALSE, rows.get(1).get("active"));
+
+        assertEquals(List.of(2L, 3L), jdbcTemplate.queryForList("SELECT line_number FROM " + DynamicEntityCsvImportService.STAGING_TABLE
+                + " WHERE upload_id = ? ORDER BY line_number", Long.class, progress.getUploadId()));
+        assertEquals(CsvImportProgress.Phase.DONE, notifications.get(notifications.size() - 1).getPhase());
+    }
+
+    @Test
+    public void overwriteReplacesExistingRows() throws Exception {
+        String csv = "name\nfirst\nsecond\n";
+        csvImportService.importCsv(new StringReader(csv), "csvImportTest", definition, TABLE, null, false, notifications::add);
+        CsvImportProgress progress = csvImportService.importCsv(new StringReader(csv), "csvImportTest", definition, TABLE,
+                null, true, notifications::add);
+
+        assertEquals(CsvImportProgress.Phase.DONE, progress.getPhase(), progress.getFailure());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT count(*) FROM " + TABLE, Long.class));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.service.dynamicentity;
+
+import com.openkoda.core.form.FieldType;
+import com.openkoda.core.form.FrontendMappingFieldDefinition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Map;
+
+import static com.openkoda.core.form.FrontendMappingFieldDefinition.createFormFieldDefinition;
+import static com.openkoda.model.Privilege.canManageBackend;
+import static com.openkoda.model.Privilege.canReadBackend;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class DynamicEntityClassCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    public void restoreDefaults() {
+        DynamicEntityClassCache.configure(false, null, null);
+    }
+
+    @Test
+    public void disabledCacheIsNotWritten() {
+        DynamicEntityClassCache.configure(false, directory.toString(), null);
+        DynamicEntityClassCache.save("first", List.of(cachedClass()));
+
+        assertNull(DynamicEntityClassCache.load("first"));
+        assertFalse(Files.exists(directory.resolve(DynamicEntityClassCache.FILE_PREFIX + "first" + DynamicEntityClassCache.FILE_SUFFIX)));
+    }
+
+    @Test
+    public void keyIgnoresTimeSuffixAndOrder() {
+        DynamicEntityDescriptor a1 = descriptor("invoice", FieldType.text, 1L);
+        DynamicEntityDescriptor b1 = descriptor("customer", FieldType.number, 1L);
+        DynamicEntityDescriptor a2 = descriptor("invoice", FieldType.text, 2L);
+        DynamicEntityDescriptor b2 = descriptor("customer", FieldType.number, 2L);
+
+        assertEquals(DynamicEntityClassCache.key(List.of(a1, b1)), DynamicEntityClassCache.key(List.of(b2, a2)));
+        assertNotEquals(DynamicEntityClassCache.key(List.of(a1, b1)),
+                DynamicEntityClassCache.key(List.of(a1, descriptor("customer", FieldType.text, 1L))));
+    }
+
+    @Test
+    public void savedClassesAreLoadedWithTheSameKeyOnly() throws Exception {
+        DynamicEntityClassCache.configure(true, directory.toString(), null);
+        DynamicEntityClassCache.save("first", List.of(new DynamicEntityClassCache.CachedClass("invoice", 5L, new byte[]{1, 2}, new byte[]{3})));
+
+        Map<String, DynamicEntityClassCache.CachedClass> loaded = DynamicEntityClassCache.load("first");
+        assertEquals(5L, loaded.get("invoice").timeMillis());
+        assertArrayEquals(new byte[]{1, 2}, loaded.get("invoice").entityBytes());
+        assertArrayEquals(new byte[]{3}, loaded.get("invoice").repositoryBytes());
+        assertNull(DynamicEntityClassCache.load("second"));
+
+        DynamicEntityClassCache.save("second", List.of(new DynamicEntityClassCache.CachedClass("invoice", null, new byte[0], new byte[0])));
+        assertNull(DynamicEntityClassCache.load("first"));
+        assertNull(DynamicEntityClassCache.load("second").get("invoice").timeMillis());
+        try (var files = Files.newDirectoryStream(directory, DynamicEntityClassCache.FILE_PREFIX + "*")) {
+            assertEquals(1, count(files));
+        }
+    }
+
+    @Test
+    public void tamperedFileIsNotLoaded() throws Exception {
+        DynamicEntityClassCache.configure(true, directory.toString(), null);
+        DynamicEntityClassCache.save("first", List.of(cachedClass()));
+        Path file = directory.resolve(DynamicEntityClassCache.FILE_PREFIX + "first" + DynamicEntityClassCache.FILE_SUFFIX);
+        byte[] content = Files.readAllBytes(file);
+        content[content.length / 2] ^= 1;
+        Files.write(file, content);
+
+        assertNull(DynamicEntityClassCache.load("first"));
+    }
+
+    @Test
+    public void fileSignedWithOtherSecretIsNotLoaded() {
+        DynamicEntityClassCache.configure(true, directory.toString(), "first secret");
+        DynamicEntityClassCache.save("first", List.of(cachedClass()));
+        assertNotNull(DynamicEntityClassCache.load("first"));
+
+        DynamicEntityClassCache.configure(true, directory.toString(), "second secret");
+        assertNull(DynamicEntityClassCache.load("first"));
+    }
+
+    @Test
+    public void directoryWritableByOthersIsNotUsed() throws Exception {
+        assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        DynamicEntityClassCache.configure(true, directory.toString(), null);
+        DynamicEntityClassCache.save("first", List.of(cachedClass()));
+        assertNotNull(DynamicEntityClassCache.load("first"));
+
+        Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwxrwxrwx"));
+        assertNull(DynamicEntityClassCache.load("first"));
+    }
+
+    private static DynamicEntityClassCache.CachedClass cachedClass() {
+        return new DynamicEntityClassCache.CachedClass("invoice", 5L, new byte[]{1, 2}, new byte[]{3});
+    }
+
+    private static long count(Iterable<?> items) {
+        long result = 0;
+        for (Object ignored : items) {
+            result++;
+        }
+        return result;
+    }
+
+    private DynamicEntityDescriptor descriptor(String name, FieldType type, Long timeMillis) {
+        FrontendMappingFieldDefinition field = createFormFieldDefinition(name, "amount", null, null, true, type, canReadBackend, canManageBackend);
+        return new DynamicEntityDescriptor(name, name, name, name + "Repository", List.of(field), timeMillis);
+    }
+}
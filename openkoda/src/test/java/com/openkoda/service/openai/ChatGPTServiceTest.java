@@ -0,0 +1,216 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.service.openai;
+
+import com.google.common.cache.Cache;
+import com.openkoda.core.service.WebsocketService;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link ChatGPTService} against a local fake chat completion endpoint
+ */
+public class ChatGPTServiceTest {
+
+    private static final String CHANNEL = "/queue/test";
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private final AtomicInteger hits = new AtomicInteger();
+    private volatile int delayMillis = 0;
+    private String apiUrl;
+    private Path cacheFile;
+    private WebsocketService websocketService;
+    private ChatGPTService service;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v1/chat/completions", exchange -> {
+            int hit = hits.incrementAndGet();
+            String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String body;
+            if (request.contains("\"stream\":true")) {
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+                StringBuilder sb = new StringBuilder();
+                for (String part : new String[]{"Hello", " from", " stream"}) {
+                    sb.append("data: {\"id\":\"c\",\"object\":\"chat.completion.chunk\",\"created\":1,\"model\":\"m\",")
+                            .append("\"choices\":[{\"index\":0,\"delta\":{\"content\":\"").append(part).append("\"},\"finish_reason\":null}]}\n\n");
+                }
+                sb.append("data: [DONE]\n\n");
+                body = sb.toString();
+            } else {
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                body = "{\"id\":\"c\",\"object\":\"chat.completion\",\"created\":1,\"model\":\"m\","
+                        + "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"answer " + hit + "\"},\"finish_reason\":\"stop\"}],"
+                        + "\"usage\":{\"prompt_tokens\":1,\"completion_tokens\":1,\"total_tokens\":2}}";
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        server.start();
+        apiUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        cacheFile = tempDir.resolve("gpt-cache.json");
+        websocketService = mock(WebsocketService.class);
+        service = createService();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdown();
+        server.stop(0);
+    }
+
+    private ChatGPTService createService() {
+        ChatGPTService s = new ChatGPTService("key", apiUrl);
+        ReflectionTestUtils.setField(s, "websocketService", websocketService);
+        ReflectionTestUtils.setField(s, "cacheFileLocation", cacheFile.toString());
+        ReflectionTestUtils.setField(s, "cacheGPTMessages", true);
+        ReflectionTestUtils.setField(s, "maxConversations", 2L);
+        ReflectionTestUtils.setField(s, "conversationTtlMinutes", 10L);
+        ReflectionTestUtils.setField(s, "threads", 2);
+        ReflectionTestUtils.setField(s, "queueCapacity", 10);
+        ReflectionTestUtils.setField(s, "maxConcurrentPerUser", 1);
+        ReflectionTestUtils.setField(s, "streamEnabled", false);
+        ReflectionTestUtils.setField(s, "streamIntervalMillis", 0L);
+        s.init();
+        return s;
+    }
+
+    private void verifyResponse(String conversationId, String response) {
+        verify(websocketService, timeout(5000)).sendToChannel(eq(CHANNEL),
+                argThat(p -> p instanceof Map<?, ?> m && conversationId.equals(m.get("conversationId")) && response.equals(m.get("response"))));
+    }
+
+    @Test
+    public void responseIsCachedByPromptsAndPersisted() throws Exception {
+        String first = service.startConversation("a@b.c", 1L, "system", "m", "0.5");
+        service.sendMessageToGPT("question", first, CHANNEL);
+        verifyResponse(first, "answer 1");
+
+        String second = service.startConversation("a@b.c", 1L, "system", "m", "0.5");
+        service.sendMessageToGPT("question", second, CHANNEL);
+        verifyResponse(second, "answer 1");
+        assertEquals(1, hits.get());
+
+        service.sendMessageToGPT("follow up", second, CHANNEL);
+        verifyResponse(second, "answer 2");
+        assertEquals(2, hits.get());
+
+        service.shutdown();
+        assertEquals(2, Files.readAllLines(cacheFile).size());
+        service = createService();
+        String third = service.startConversation("a@b.c", 1L, "system", "m", "0.5");
+        service.sendMessageToGPT("question", third, CHANNEL);
+        verifyResponse(third, "answer 1");
+        assertEquals(2, hits.get());
+    }
+
+    @Test
+    public void legacyCacheFileIsConverted() throws Exception {
+        Files.writeString(cacheFile, "{\"prompts\":{\"first|||question\":\"0\"},\"responses\":{\"0\":\"legacy answer\"}}");
+        service.shutdown();
+        service = createService();
+        String id = service.startConversation("a@b.c", 1L, "system", "m", "0.5");
+        service.getConversation(id).addMessages("first", "first answer");
+        service.sendMessageToGPT("question", id, CHANNEL);
+        verifyResponse(id, "legacy answer");
+        assertEquals(0, hits.get());
+    }
+
+    @Test
+    public void streamedResponseSendsPartials() {
+        ReflectionTestUtils.setField(service, "streamEnabled", true);
+        String id = service.startConversation("a@b.c", 1L, "system", "m", "0.5");
+        service.sendMessageToGPT("question", id, CHANNEL);
+        verifyResponse(id, "Hello from stream");
+        verify(websocketService, atLeastOnce()).sendToChannel(eq(CHANNEL),
+                argThat(p -> p instanceof Map<?, ?> m && "Hello".equals(m.get("partial"))));
+    }
+
+    @Test
+    public void perUserConcurrencyIsLimited() {
+        delayMillis = 500;
+        String first = service.startConversation("a@b.c", 1L, "system", "m", "0.5");
+        String second = service.startConversation("a@b.c", 1L, "system", "m", "0.5");
+        service.sendMessageToGPT("question", first, CHANNEL);
+        assertThrows(RejectedExecutionException.class, () -> service.sendMessageToGPT("other", second, CHANNEL));
+        String otherUser = service.startConversation("x@b.c", 2L, "system", "m", "0.5");
+        service.sendMessageToGPT("third", otherUser, CHANNEL);
+        verify(websocketService, timeout(5000).times(2)).sendToChannel(eq(CHANNEL), any());
+    }
+
+    @Test
+    public void usersWithoutRequestsInProgressAreForgotten() throws Exception {
+        for (long userId = 1; userId <= 3; userId++) {
+            String id = service.startConversation("a@b.c", userId, "system", "m", "0.5");
+            service.sendMessageToGPT("question " + userId, id, CHANNEL);
+        }
+        verify(websocketService, timeout(5000).times(3)).sendToChannel(eq(CHANNEL), any());
+        Map<?, ?> userRequests = (Map<?, ?>) ReflectionTestUtils.getField(service, "userRequests");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!userRequests.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(userRequests.isEmpty());
+    }
+
+    @Test
+    public void conversationStoreIsBounded() {
+        for (int i = 0; i < 5; i++) {
+            service.startConversation("a@b.c", 1L, "system", "m", "0.5");
+        }
+        Object conversations = ReflectionTestUtils.getField(service, "conversations");
+        assertTrue(((Cache<?, ?>) conversations).size() <= 2);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.service.organization;
+
+import com.openkoda.model.OrganizationPurge;
+import com.openkoda.repository.Repositories;
+import com.openkoda.repository.UnsecureRepositories;
+import com.openkoda.repository.organization.OrganizationPurgeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.openkoda.model.OrganizationPurge.Status.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class OrganizationPurgeServiceTest {
+
+    private static final long PURGE_ID = 5L;
+
+    private OrganizationPurgeRepository organizationPurgeRepository;
+    private DataSource dataSource;
+    private OrganizationPurgeService service;
+
+    @BeforeEach
+    public void setUp() {
+        organizationPurgeRepository = mock(OrganizationPurgeRepository.class);
+        dataSource = mock(DataSource.class);
+        service = new OrganizationPurgeService();
+        service.repositories = new Repositories();
+        service.repositories.unsecure = new UnsecureRepositories();
+        service.repositories.unsecure.organizationPurge = organizationPurgeRepository;
+        ReflectionTestUtils.setField(service, "dataSource", dataSource);
+        when(organizationPurgeRepository.findById(PURGE_ID)).thenReturn(Optional.of(new OrganizationPurge(7L)));
+    }
+
+    @AfterEach
+    public void clearInterrupt() {
+        Thread.interrupted();
+    }
+
+    @Test
+    public void purgeNotClaimedIsSkipped() {
+        when(organizationPurgeRepository.claim(eq(PURGE_ID), any(), any(), eq(PENDING), eq(RUNNING))).thenReturn(0);
+
+        service.run(PURGE_ID);
+
+        verify(organizationPurgeRepository, never()).findById(anyLong());
+        verifyNoInteractions(dataSource);
+    }
+
+    @Test
+    public void interruptedPurgeIsReturnedToPending() throws Exception {
+        when(organizationPurgeRepository.claim(eq(PURGE_ID), any(), any(), eq(PENDING), eq(RUNNING))).thenReturn(1);
+        when(dataSource.getConnection()).thenAnswer(i -> {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted");
+        });
+
+        service.run(PURGE_ID);
+
+        verify(organizationPurgeRepository).release(PURGE_ID, PENDING, RUNNING);
+        verify(organizationPurgeRepository, never()).finish(anyLong(), any(), any(), any(), any());
+        assertTrue(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void failedPurgeIsMarkedFailed() throws Exception {
+        when(organizationPurgeRepository.claim(eq(PURGE_ID), any(), any(), eq(PENDING), eq(RUNNING))).thenReturn(1);
+        when(dataSource.getConnection()).thenThrow(new SQLException("connection refused"));
+
+        service.run(PURGE_ID);
+
+        verify(organizationPurgeRepository).finish(eq(PURGE_ID), eq(FAILED), eq("connection refused"), any(), eq(RUNNING));
+        verify(organizationPurgeRepository, never()).release(anyLong(), any(), any());
+    }
+
+    @Test
+    public void resumeClaimsActivePurges() {
+        OrganizationPurge purge = spy(new OrganizationPurge(7L));
+        doReturn(PURGE_ID).when(purge).getId();
+        when(organizationPurgeRepository.findByStatusIn(OrganizationPurgeService.ACTIVE)).thenReturn(List.of(purge));
+        when(organizationPurgeRepository.claim(eq(PURGE_ID), any(), any(), eq(PENDING), eq(RUNNING))).thenReturn(0);
+
+        service.resumePurges();
+
+        verify(organizationPurgeRepository, timeout(5000)).claim(eq(PURGE_ID), any(), any(), eq(PENDING), eq(RUNNING));
+        service.shutdown();
+    }
+
+    @Test
+    public void referencingTablesAreDeletedFirst() {
+        Map<String, Set<String>> references = Map.of(
+                "read_notification", Set.of("notification", "users"),
+                "notification", Set.of("organization", "users"),
+                "file_reference", Set.of("file"),
+                "file", Set.of("organization"),
+                "task", Set.of("task", "organization"));
+
+        List<String> order = OrganizationPurgeService.deletionOrder(
+                List.of("notification", "file", "task", "read_notification", "file_reference"), references);
+
+        assertEquals(5, order.size());
+        assertTrue(order.indexOf("read_notification") < order.indexOf("notification"));
+        assertTrue(order.indexOf("file_reference") < order.indexOf("file"));
+    }
+
+    @Test
+    public void tablesInCycleAreAppended() {
+        Map<String, Set<String>> references = Map.of(
+                "a", Set.of("b"),
+                "b", Set.of("a"),
+                "c", Set.of("a"));
+
+        assertEquals(List.of("c", "a", "b"), OrganizationPurgeService.deletionOrder(List.of("a", "b", "c"), references));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.service.user;
+
+import com.openkoda.core.flow.LoggingComponent;
+import com.openkoda.service.user.UserRoleReconciliationService.Diff;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares {@link UserRoleReconciliationService#diff(Set, Collection, Collection)} with the previous reconciliation
+ * (scan of existing roles for every global organization role) for 5000 roles, half of them wanted and half existing.
+ * The timing comparison runs only with -Dbenchmark.user-role-reconciliation=true, number of roles can be changed with
+ * -Dbenchmark.user-role-reconciliation.roles
+ */
+public class UserRoleReconciliationBenchmarkTest {
+
+    private static final int ROLES = Integer.getInteger("benchmark.user-role-reconciliation.roles", 5_000);
+
+    @Test
+    public void diffTouchesGlobalOrganizationRolesOnly() {
+        Diff diff = UserRoleReconciliationService.diff(Set.of("a", "b", "c"), List.of("a", "b", "x"), List.of("b", "c", "y"));
+        assertEquals(Set.of("a"), diff.toAdd());
+        assertEquals(Set.of("c"), diff.toRemove());
+        assertTrue(UserRoleReconciliationService.diff(Set.of("a"), List.of("a"), List.of("a")).isEmpty());
+    }
+
+    @Test
+    public void diffEqualsScanningReconciliation() {
+        Set<String> roles = new LinkedHashSet<>();
+        List<String> wanted = new ArrayList<>();
+        List<String> existing = new ArrayList<>();
+        randomRoles(100, roles, wanted, existing);
+        assertEquals(scanningDiff(roles, wanted, existing), UserRoleReconciliationService.diff(roles, wanted, existing));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.user-role-reconciliation", matches = "true")
+    public void compareWithScanningReconciliation() {
+        Set<String> roles = new LinkedHashSet<>();
+        List<String> wanted = new ArrayList<>();
+        List<String> existing = new ArrayList<>();
+        randomRoles(ROLES, roles, wanted, existing);
+
+        long start = System.nanoTime();
+        Diff scanned = scanningDiff(roles, wanted, existing);
+        long scanning = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        Diff hashed = UserRoleReconciliationService.diff(roles, wanted, existing);
+        long hashing = System.nanoTime() - start;
+
+        LoggingComponent.debugLogger.debug("[compareWithScanningReconciliation] {} roles, scanning: {} us, hash sets: {} us, {} to add, {} to remove",
+                ROLES, scanning / 1000, hashing / 1000, hashed.toAdd().size(), hashed.toRemove().size());
+        assertEquals(scanned, hashed);
+    }
+
+    /**
+     * Fills the roles, about half of them wanted and half existing
+     */
+    private static void randomRoles(int count, Set<String> roles, List<String> wanted, List<String> existing) {
+        Random random = new Random(7);
+        for (int i = 0; i < count; i++) {
+            String role = "ROLE_" + i;
+            roles.add(role);
+            if (random.nextBoolean()) {
+                wanted.add(role);
+            }
+            if (random.nextBoolean()) {
+                existing.add(role);
+            }
+        }
+    }
+
+    /**
+     * Reconciliation as it was done in OrganizationService, with linear scans of existing roles
+     */
+    private static Diff scanningDiff(Collection<String> roles, List<String> wanted, List<String> existing) {
+        Set<String> toAdd = new HashSet<>();
+        Set<String> toRemove = new HashSet<>();
+        for (String role : roles) {
+            if (wanted.contains(role)) {
+                if (!existing.contains(role)) {
+                    toAdd.add(role);
+                }
+            } else if (existing.contains(role)) {
+                toRemove.add(role);
+            }
+        }
+        return new Diff(toAdd, toRemove);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.service.user;
+
+import com.openkoda.AbstractTest;
+import com.openkoda.model.*;
+import com.openkoda.repository.user.UserRoleBulkRepository;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Reconciles global organization roles of several organizations against the database, with the pair statements of
+ * {@link UserRoleBulkRepository}
+ */
+public class UserRoleReconciliationServiceTest extends AbstractTest {
+
+    @Inject
+    private UserRoleReconciliationService userRoleReconciliationService;
+
+    @Inject
+    private UserRoleBulkRepository userRoleBulkRepository;
+
+    @Inject
+    private TransactionTemplate transactionTemplate;
+
+    @Inject
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final String suffix = "-" + System.nanoTime();
+
+    private final UserRoleBulkRepository.AuditInfo audit = new UserRoleBulkRepository.AuditInfo(null, "test", "127.0.0.1", "user-role-reconciliation" + suffix);
+
+    private String first;
+    private String second;
+    private long firstOrganizationId;
+    private long secondOrganizationId;
+    private long thirdOrganizationId;
+    private long userId;
+    private long firstRoleId;
+    private long auditBefore;
+
+    /**
+     * First organization has both roles globally and the first one assigned to a user, second has none, third has
+     * the second role globally
+     */
+    @BeforeEach
+    public void createOrganizations() {
+        mockAndAuthenticateUser(1L, "test@openkoda.com", "TEST", "(canReadBackend)");
+        first = "ROLE_RECONCILE_FIRST" + suffix;
+        second = "ROLE_RECONCILE_SECOND" + suffix;
+        transactionTemplate.executeWithoutResult(s -> {
+            firstRoleId = persist(new GlobalOrganizationRole(first)).getId();
+            long secondRoleId = persist(new GlobalOrganizationRole(second)).getId();
+            firstOrganizationId = persist(new Organization("reconcile-first" + suffix)).getId();
+            secondOrganizationId = persist(new Organization("reconcile-second" + suffix)).getId();
+            thirdOrganizationId = persist(new Organization("reconcile-third" + suffix)).getId();
+            userId = persist(new User("Reconcile", "User", "reconcile" + suffix + "@openkoda.com")).getId();
+            persist(new UserRole(null, null, firstRoleId, firstOrganizationId));
+            persist(new UserRole(null, null, secondRoleId, firstOrganizationId));
+            persist(new UserRole(null, userId, firstRoleId, firstOrganizationId));
+            persist(new UserRole(null, null, secondRoleId, thirdOrganizationId));
+        });
+        auditBefore = jdbcTemplate.queryForObject("SELECT coalesce(max(id), 0) FROM audit", Long.class);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        ReflectionTestUtils.setField(AopTestUtils.getTargetObject(userRoleReconciliationService), "chunkSize", 500);
+        for (long organizationId : List.of(firstOrganizationId, secondOrganizationId, thirdOrganizationId)) {
+            jdbcTemplate.update("DELETE FROM audit WHERE organization_id = ? AND entity_name = 'UserRole'", organizationId);
+            jdbcTemplate.update("DELETE FROM users_roles WHERE organization_id = ?", organizationId);
+            jdbcTemplate.update("DELETE FROM organization WHERE id = ?", organizationId);
+        }
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+        jdbcTemplate.update("DELETE FROM roles WHERE name IN (?, ?)", first, second);
+    }
+
+    @Test
+    public void pairStatementsChangeOnlyGlobalRoles() {
+        int removed = transactionTemplate.execute(s -> {
+            try {
+                return userRoleBulkRepository.removeGlobalRoles(
+                        List.of(firstOrganizationId, secondOrganizationId, thirdOrganizationId),
+                        List.of(first, first, second), audit);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        int added = transactionTemplate.execute(s -> {
+            try {
+                return userRoleBulkRepository.addGlobalRoles(
+                        List.of(firstOrganizationId, secondOrganizationId, secondOrganizationId, thirdOrganizationId),
+                        List.of(second, first, first, first), audit);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertEquals(2, removed);
+        assertEquals(2, added);
+        assertEquals(Set.of(second), globalRoles(firstOrganizationId));
+        assertEquals(Set.of(first), globalRoles(secondOrganizationId));
+        assertEquals(Set.of(first), globalRoles(thirdOrganizationId));
+        assertUserRoleUntouched();
+        assertEquals(2, auditRows("DELETE"));
+        assertEquals(2, auditRows("ADD"));
+    }
+
+    @Test
+    public void reconcilesOrganizationsInChunks() {
+        ReflectionTestUtils.setField(AopTestUtils.getTargetObject(userRoleReconciliationService), "chunkSize", 2);
+
+        UserRoleReconciliationService.Result result = userRoleReconciliationService.reconcileGlobalOrgRoles(Map.of(
+                firstOrganizationId, List.of(second),
+                secondOrganizationId, List.of(first, second),
+                thirdOrganizationId, List.of(second)));
+
+        assertEquals(new UserRoleReconciliationService.Result(3, 2, 1), result);
+        assertEquals(Set.of(second), globalRoles(firstOrganizationId));
+        assertEquals(Set.of(first, second), globalRoles(secondOrganizationId));
+        assertEquals(Set.of(second), globalRoles(thirdOrganizationId));
+        assertUserRoleUntouched();
+        assertEquals(1, auditRows("DELETE"));
+        assertEquals(2, auditRows("ADD"));
+        assertEquals(new UserRoleReconciliationService.Result(3, 0, 0), userRoleReconciliationService.reconcileGlobalOrgRoles(Map.of(
+                firstOrganizationId, List.of(second),
+                secondOrganizationId, List.of(first, second),
+                thirdOrganizationId, List.of(second))));
+    }
+
+    private void assertUserRoleUntouched() {
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM users_roles WHERE user_id = ? AND role_id = ? AND organization_id = ?",
+                Long.class, userId, firstRoleId, firstOrganizationId));
+    }
+
+    private Set<String> globalRoles(long organizationId) {
+        return Set.copyOf(jdbcTemplate.queryForList("SELECT r.name FROM users_roles ur JOIN roles r ON r.id = ur.role_id "
+                + "WHERE ur.user_id IS NULL AND ur.organization_id = ?", String.class, organizationId));
+    }
+
+    private long auditRows(String operation) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM audit WHERE id > ? AND operation = ? AND entity_name = 'UserRole' "
+                + "AND organization_id IN (?, ?, ?)", Long.class, auditBefore, operation, firstOrganizationId, secondOrganizationId, thirdOrganizationId);
+    }
+
+    private <T> T persist(T entity) {
+        entityManager.persist(entity);
+        return entity;
+    }
+}
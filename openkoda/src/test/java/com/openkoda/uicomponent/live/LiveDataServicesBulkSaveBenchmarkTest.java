@@ -0,0 +1,111 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.uicomponent.live;
+
+import com.openkoda.AbstractTest;
+import com.openkoda.core.customisation.CustomisationService;
+import com.openkoda.core.flow.LoggingComponent;
+import com.openkoda.core.flow.PageModelMap;
+import com.openkoda.core.form.FrontendMappingDefinition;
+import com.openkoda.core.security.HasSecurityRules;
+import com.openkoda.repository.SearchableRepositories;
+import com.openkoda.uicomponent.BulkSaveResult;
+import com.openkoda.uicomponent.JsFlowRunner;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+
+import static com.openkoda.core.form.FrontendMappingDefinition.createFrontendMappingDefinition;
+import static com.openkoda.model.Privilege.canManageBackend;
+import static com.openkoda.model.Privilege.canReadBackend;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Saves 50k rows from a live JS flow with {@link LiveDataServices#saveAll} and compares the rate with
+ * {@link LiveDataServices#saveForm} called row by row. Needs the test database, run with
+ * -Dbenchmark.bulk-save=true, number of rows can be changed with -Dbenchmark.bulk-save.rows
+ */
+@EnabledIfSystemProperty(named = "benchmark.bulk-save", matches = "true")
+public class LiveDataServicesBulkSaveBenchmarkTest extends AbstractTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.bulk-save.rows", 50_000);
+    private static final int SINGLE_ROWS = Math.min(ROWS, 2_000);
+    private static final String FORM = "bulkSaveBenchmarkForm";
+    private static final String PREFIX = "bulk-save-benchmark-";
+
+    @Inject
+    private JsFlowRunner jsFlowRunner;
+
+    @Inject
+    private CustomisationService customisationService;
+
+    @Inject
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @BeforeEach
+    public void registerForm() {
+        FrontendMappingDefinition definition = createFrontendMappingDefinition(FORM, canReadBackend, canManageBackend, a -> a.text("value"));
+        customisationService.registerFrontendMapping(definition,
+                SearchableRepositories.getSearchableRepository("mapEntity", HasSecurityRules.SecurityScope.USER));
+        mockAndAuthenticateUser(1l, "test@openkoda.com", "TEST", "(canReadBackend)(canManageBackend)");
+    }
+
+    @AfterEach
+    public void cleanup() {
+        customisationService.unregisterFrontendMapping(FORM);
+        transactionTemplate.executeWithoutResult(s ->
+                entityManager.createQuery("delete from MapEntity m where m.value like :prefix").setParameter("prefix", PREFIX + "%").executeUpdate());
+    }
+
+    @Test
+    public void saveRowsFromFlow() {
+        String bulkFlow = "flow.then(a => { let rows = []; for (let i = 0; i < " + ROWS + "; i++) { rows.push({value: '" + PREFIX + "' + i}); }"
+                + " a.model.put('result', a.services.data.saveAll('" + FORM + "', rows)); })";
+        String singleFlow = "flow.then(a => { for (let i = 0; i < " + SINGLE_ROWS + "; i++) {"
+                + " let f = a.services.data.getForm('" + FORM + "'); f.dto.put('value', '" + PREFIX + "single-' + i); a.services.data.saveForm(f); } })";
+
+        long start = System.nanoTime();
+        PageModelMap model = jsFlowRunner.runLiveFlow(bulkFlow, new HashMap<>(), null, 1, null, "bulkSave.mjs");
+        long bulk = System.nanoTime() - start;
+        BulkSaveResult result = (BulkSaveResult) model.get("result");
+        assertFalse(result.hasErrors(), () -> result.errors().toString());
+        assertEquals(ROWS, result.saved());
+
+        start = System.nanoTime();
+        jsFlowRunner.runLiveFlow(singleFlow, new HashMap<>(), null, 1, null, "singleSave.mjs");
+        long single = System.nanoTime() - start;
+
+        LoggingComponent.debugLogger.debug("[LiveDataServicesBulkSaveBenchmarkTest] saveAll: {} rows in {} ms, saveForm: {} rows in {} ms",
+                ROWS, bulk / 1_000_000, SINGLE_ROWS, single / 1_000_000);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+MIT License
+
+Copyright (c) 2016-2023, Openkoda CDX Sp. z o.o. Sp. K. <openkoda.com>
+
+Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+documentation files (the "Software"), to deal in the Software without restriction, including without limitation
+the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software,
+and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice
+shall be included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR
+IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+*/
+
+package com.openkoda.uicomponent.live;
+
+import com.openkoda.core.form.FrontendMappingDefinition;
+import org.junit.jupiter.api.Test;
+
+import static com.openkoda.core.form.FrontendMappingDefinition.createFrontendMappingDefinition;
+import static com.openkoda.model.Privilege.canManageBackend;
+import static com.openkoda.model.Privilege.canReadBackend;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LiveDataServicesTest {
+
+    @Test
+    public void keyFieldMustBeStoredFieldOfMapping() {
+        FrontendMappingDefinition definition = createFrontendMappingDefinition("upsertForm", canReadBackend, canManageBackend,
+                a -> a.text("code").sectionWithLink("details"));
+
+        assertTrue(LiveDataServices.isKeyField(definition, "code"));
+        assertFalse(LiveDataServices.isKeyField(definition, "details"));
+        assertFalse(LiveDataServices.isKeyField(definition, "organization.name"));
+        assertFalse(LiveDataServices.isKeyField(definition, null));
+    }
+}